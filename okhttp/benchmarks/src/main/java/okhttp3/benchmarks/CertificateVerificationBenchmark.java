@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.benchmarks;
+
+import java.io.IOException;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLPeerUnverifiedException;
+
+import okhttp3.CertificatePinner;
+import okhttp3.OkHttpClient;
+import okhttp3.internal.tls.CertificateChainCleaner;
+import okhttp3.internal.tls.OkHostnameVerifier;
+import okhttp3.tls.HandshakeCertificates;
+import okhttp3.tls.HeldCertificate;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.RunnerException;
+
+/**
+ * Measures the CPU that verifying a server's certificates costs each time a connection is made: the
+ * hostname check and certificate pinning. {@link #cached} repeats the checks with the same chain,
+ * as reconnecting to a host does. {@link #uncached} does the work that those checks skip when
+ * they've seen the chain before: cleaning the chain, hashing each public key, and matching the
+ * leaf's subject alternative names.
+ */
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CertificateVerificationBenchmark {
+    private static final String HOSTNAME = "api.example.com";
+
+    private List<Certificate> chain;
+    private X509Certificate leaf;
+    private String pin;
+    private CertificatePinner certificatePinner;
+    private CertificateChainCleaner certificateChainCleaner;
+
+    @Setup
+    public void setUp() {
+        HeldCertificate root = new HeldCertificate.Builder()
+                .certificateAuthority(1)
+                .commonName("root")
+                .rsa2048()
+                .build();
+        HeldCertificate intermediate = new HeldCertificate.Builder()
+                .certificateAuthority(0)
+                .commonName("intermediate")
+                .signedBy(root)
+                .rsa2048()
+                .build();
+        HeldCertificate server = new HeldCertificate.Builder()
+                .addSubjectAlternativeName("www.example.com")
+                .addSubjectAlternativeName(HOSTNAME)
+                .signedBy(intermediate)
+                .rsa2048()
+                .build();
+        chain = Arrays.asList(server.certificate(), intermediate.certificate());
+        leaf = server.certificate();
+
+        // Pin the root so that every certificate in the chain is hashed.
+        pin = CertificatePinner.pin(root.certificate());
+        HandshakeCertificates handshakeCertificates = new HandshakeCertificates.Builder()
+                .addTrustedCertificate(root.certificate())
+                .build();
+        OkHttpClient client = new OkHttpClient.Builder()
+                .sslSocketFactory(handshakeCertificates.sslSocketFactory(),
+                        handshakeCertificates.trustManager())
+                .certificatePinner(new CertificatePinner.Builder()
+                        .add(HOSTNAME, pin)
+                        .build())
+                .build();
+        certificatePinner = client.certificatePinner();
+        certificateChainCleaner = CertificateChainCleaner.get(handshakeCertificates.trustManager());
+    }
+
+    @Benchmark
+    public boolean cached() throws SSLPeerUnverifiedException {
+        certificatePinner.check(HOSTNAME, chain);
+        return OkHostnameVerifier.INSTANCE.verify(HOSTNAME, leaf);
+    }
+
+    @Benchmark
+    public boolean uncached() throws SSLPeerUnverifiedException {
+        boolean pinned = false;
+        for (Certificate certificate : certificateChainCleaner.clean(chain, HOSTNAME)) {
+            if (CertificatePinner.pin(certificate).equals(pin)) pinned = true;
+        }
+        if (!pinned) throw new SSLPeerUnverifiedException("Certificate pinning failure!");
+
+        for (String altName : OkHostnameVerifier.allSubjectAltNames(leaf)) {
+            if (OkHostnameVerifier.INSTANCE.verifyHostname(HOSTNAME, altName)) return true;
+        }
+        return false;
+    }
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        Main.main(new String[]{
+                CertificateVerificationBenchmark.class.getName()
+        });
+    }
+}
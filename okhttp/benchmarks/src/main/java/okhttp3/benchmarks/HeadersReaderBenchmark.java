@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Headers;
+import okhttp3.internal.Internal;
+import okhttp3.internal.http.StatusLine;
+import okhttp3.internal.http1.HeadersReader;
+import okio.Buffer;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.RunnerException;
+
+/**
+ * Measures reading an HTTP/1 response's status line and headers. The response headers were recorded
+ * from a CDN-served JSON API. {@link #lineByLine} is how responses were read before {@link
+ * HeadersReader}: each line is decoded to a string and then split.
+ */
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HeadersReaderBenchmark {
+    private static final String RESPONSE = ""
+            + "HTTP/1.1 200 OK\r\n"
+            + "Date: Mon, 01 Apr 2019 17:04:43 GMT\r\n"
+            + "Content-Type: application/json; charset=utf-8\r\n"
+            + "Content-Length: 1853\r\n"
+            + "Connection: keep-alive\r\n"
+            + "Server: nginx\r\n"
+            + "Cache-Control: public, max-age=60, s-maxage=60\r\n"
+            + "Vary: Accept, Accept-Encoding\r\n"
+            + "ETag: W/\"4a3c7f5e1f2b8d9c0e6a7b3d2c1f0e9d\"\r\n"
+            + "Last-Modified: Mon, 01 Apr 2019 16:58:12 GMT\r\n"
+            + "Access-Control-Allow-Origin: *\r\n"
+            + "Strict-Transport-Security: max-age=31536000; includeSubdomains; preload\r\n"
+            + "X-Frame-Options: deny\r\n"
+            + "X-Content-Type-Options: nosniff\r\n"
+            + "X-XSS-Protection: 1; mode=block\r\n"
+            + "X-Request-Id: 8f6a1c2e-7b3d-4e5f-9a0b-1c2d3e4f5a6b\r\n"
+            + "Age: 12\r\n"
+            + "Via: 1.1 varnish\r\n"
+            + "Accept-Ranges: bytes\r\n"
+            + "\r\n";
+
+    private final Buffer response = new Buffer().writeUtf8(RESPONSE);
+
+    @Setup
+    public void setUp() {
+        Internal.initializeInstanceForTests();
+    }
+
+    @Benchmark
+    public void headersReader(Blackhole blackhole) throws IOException {
+        HeadersReader reader = new HeadersReader(response.clone());
+        blackhole.consume(reader.readStatusLine());
+        blackhole.consume(reader.readHeaders());
+    }
+
+    @Benchmark
+    public void lineByLine(Blackhole blackhole) throws IOException {
+        Buffer source = response.clone();
+        blackhole.consume(StatusLine.parse(source.readUtf8LineStrict()));
+        Headers.Builder headers = new Headers.Builder();
+        for (String line; (line = source.readUtf8LineStrict()).length() != 0; ) {
+            Internal.instance.addLenient(headers, line);
+        }
+        blackhole.consume(headers.build());
+    }
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        Main.main(new String[]{
+                HeadersReaderBenchmark.class.getName()
+        });
+    }
+}
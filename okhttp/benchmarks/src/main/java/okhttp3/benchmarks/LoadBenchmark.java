@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.logging.LatencyHistogram;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Okio;
+
+/**
+ * Drives local load against {@link OkHttpClient} using MockWebServer and reports throughput and
+ * latency percentiles. Use it to measure changes to the dispatcher, the connection pool, and the
+ * HTTP/2 connection.
+ *
+ * <p>Two load models are supported. A closed loop runs {@code concurrency} threads that each issue
+ * a call as soon as their previous call completes; it measures peak throughput. An open loop
+ * issues calls asynchronously at a fixed {@code rate} regardless of how quickly they complete,
+ * with at most {@code concurrency} running at once; latency is measured from each call's scheduled
+ * start so that queueing in the dispatcher is included.
+ *
+ * <p>Options are passed as {@code --name=value} arguments:
+ * <pre>{@code
+ * --transport=http/1.1,h2,h2c   Transports to measure.
+ * --mode=closed                 closed or open.
+ * --concurrency=1,8,64          Concurrent calls.
+ * --body-size=128,65536         Response body sizes in bytes.
+ * --rate=1000                   Calls per second, open loop only.
+ * --server-delay=0              Milliseconds the server waits before responding.
+ * --warmup=2                    Seconds of unmeasured load before each measurement.
+ * --duration=5                  Seconds of measured load.
+ * }</pre>
+ */
+public final class LoadBenchmark {
+    enum Mode {
+        CLOSED_LOOP,
+        OPEN_LOOP
+    }
+
+    private List<Transport> transports = Arrays.asList(Transport.values());
+    private Mode mode = Mode.CLOSED_LOOP;
+    private List<Long> concurrencies = Arrays.asList(1L, 8L, 64L);
+    private List<Long> bodySizes = Arrays.asList(128L, 65536L);
+    private int rate = 1000;
+    private long serverDelayMillis;
+    private long warmupNanos = TimeUnit.SECONDS.toNanos(2);
+    private long durationNanos = TimeUnit.SECONDS.toNanos(5);
+
+    public static void main(String[] args) throws Exception {
+        // MockWebServer logs every request, which would dominate the measurement.
+        Logger.getLogger(MockWebServer.class.getName()).setLevel(Level.WARNING);
+
+        LoadBenchmark benchmark = new LoadBenchmark();
+        for (String arg : args) {
+            benchmark.parseOption(arg);
+        }
+        benchmark.run();
+    }
+
+    private void parseOption(String arg) {
+        int equals = arg.indexOf('=');
+        if (!arg.startsWith("--") || equals == -1) {
+            throw new IllegalArgumentException("expected --name=value but was " + arg);
+        }
+        String name = arg.substring(2, equals);
+        String value = arg.substring(equals + 1);
+        switch (name) {
+            case "transport":
+                transports = new ArrayList<>();
+                for (String transport : value.split(",")) {
+                    transports.add(Transport.parse(transport));
+                }
+                break;
+            case "mode":
+                mode = value.equals("open") ? Mode.OPEN_LOOP : Mode.CLOSED_LOOP;
+                break;
+            case "concurrency":
+                concurrencies = parseLongs(value);
+                break;
+            case "body-size":
+                bodySizes = parseLongs(value);
+                break;
+            case "rate":
+                rate = Integer.parseInt(value);
+                // The open loop spaces calls 1s / rate apart, which must be at least 1 ns.
+                if (rate <= 0 || rate > TimeUnit.SECONDS.toNanos(1)) {
+                    throw new IllegalArgumentException("rate out of range: " + value);
+                }
+                break;
+            case "server-delay":
+                serverDelayMillis = Long.parseLong(value);
+                break;
+            case "warmup":
+                warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(value));
+                break;
+            case "duration":
+                durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(value));
+                break;
+            default:
+                throw new IllegalArgumentException("unexpected option: " + name);
+        }
+    }
+
+    private static List<Long> parseLongs(String value) {
+        List<Long> result = new ArrayList<>();
+        for (String s : value.split(",")) {
+            result.add(Long.parseLong(s));
+        }
+        return result;
+    }
+
+    private void run() throws Exception {
+        System.out.printf("%-9s %-12s %11s %9s %9s %7s %10s %9s %9s %9s%n", "transport", "mode",
+                "concurrency", "body", "calls", "errors", "calls/s", "p50 ms", "p99 ms", "p999 ms");
+
+        for (Transport transport : transports) {
+            try (MockWebServer server = new MockWebServer()) {
+                transport.configure(server);
+                server.setServerSocketFactory(new NoDelayServerSocketFactory());
+                server.setDispatcher(new SizedBodyDispatcher(serverDelayMillis));
+                server.start();
+                Thread drainer = drainRecordedRequests(server);
+
+                for (long concurrency : concurrencies) {
+                    for (long bodySize : bodySizes) {
+                        OkHttpClient client = transport.configure(new OkHttpClient.Builder()).build();
+                        client.dispatcher().setMaxRequests((int) concurrency);
+                        client.dispatcher().setMaxRequestsPerHost((int) concurrency);
+                        HttpUrl url = SizedBodyDispatcher.url(server.url("/"), bodySize);
+
+                        runPhase(client, url, (int) concurrency, warmupNanos, new LatencyHistogram());
+                        LatencyHistogram histogram = new LatencyHistogram();
+                        Result result = runPhase(client, url, (int) concurrency, durationNanos, histogram);
+
+                        LatencyHistogram.Snapshot latency = histogram.snapshot();
+                        System.out.printf("%-9s %-12s %11d %9d %9d %7d %10.1f %9.3f %9.3f %9.3f%n",
+                                transport, mode, concurrency, bodySize, latency.count(), result.errors,
+                                latency.count() * 1e9 / result.elapsedNanos,
+                                latency.valueAtPercentile(50.0) / 1e6,
+                                latency.valueAtPercentile(99.0) / 1e6,
+                                latency.valueAtPercentile(99.9) / 1e6);
+
+                        client.dispatcher().executorService().shutdown();
+                        client.connectionPool().evictAll();
+                    }
+                }
+
+                drainer.interrupt();
+            }
+        }
+    }
+
+    /**
+     * MockWebServer retains every request it receives. Discard them so that long runs don't grow the
+     * heap and skew the results.
+     */
+    private static Thread drainRecordedRequests(MockWebServer server) {
+        Thread thread = new Thread("MockWebServer request drainer") {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        server.takeRequest();
+                    }
+                } catch (InterruptedException ignored) {
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private Result runPhase(OkHttpClient client, HttpUrl url, int concurrency, long durationNanos,
+            LatencyHistogram histogram) throws InterruptedException {
+        Request request = new Request.Builder().url(url).build();
+        return mode == Mode.CLOSED_LOOP
+                ? closedLoop(client, request, concurrency, durationNanos, histogram)
+                : openLoop(client, request, durationNanos, histogram);
+    }
+
+    private static Result closedLoop(OkHttpClient client, Request request, int concurrency,
+            long durationNanos, LatencyHistogram histogram) throws InterruptedException {
+        AtomicLong errors = new AtomicLong();
+        long startNanos = System.nanoTime();
+        long deadlineNanos = startNanos + durationNanos;
+
+        Thread[] threads = new Thread[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            threads[i] = new Thread("LoadBenchmark " + i) {
+                @Override
+                public void run() {
+                    for (long callStartNanos; (callStartNanos = System.nanoTime()) < deadlineNanos; ) {
+                        try (Response response = client.newCall(request).execute()) {
+                            response.body().source().readAll(Okio.blackhole());
+                            histogram.record(System.nanoTime() - callStartNanos);
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        return new Result(System.nanoTime() - startNanos, errors.get());
+    }
+
+    private Result openLoop(OkHttpClient client, Request request, long durationNanos,
+            LatencyHistogram histogram) throws InterruptedException {
+        AtomicLong errors = new AtomicLong();
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long callCount = durationNanos / intervalNanos;
+        CountDownLatch completed = new CountDownLatch((int) callCount);
+        long startNanos = System.nanoTime();
+
+        for (long i = 0; i < callCount; i++) {
+            long scheduledNanos = startNanos + i * intervalNanos;
+            for (long now; (now = System.nanoTime()) < scheduledNanos; ) {
+                LockSupport.parkNanos(scheduledNanos - now);
+            }
+
+            client.newCall(request).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    errors.incrementAndGet();
+                    completed.countDown();
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    try (Response r = response) {
+                        r.body().source().readAll(Okio.blackhole());
+                        histogram.record(System.nanoTime() - scheduledNanos);
+                    } catch (IOException e) {
+                        errors.incrementAndGet();
+                    } finally {
+                        completed.countDown();
+                    }
+                }
+            });
+        }
+        completed.await();
+
+        return new Result(System.nanoTime() - startNanos, errors.get());
+    }
+
+    static final class Result {
+        final long elapsedNanos;
+        final long errors;
+
+        Result(long elapsedNanos, long errors) {
+            this.elapsedNanos = elapsedNanos;
+            this.errors = errors;
+        }
+    }
+}
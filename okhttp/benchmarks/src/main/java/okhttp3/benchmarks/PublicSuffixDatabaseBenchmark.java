@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.internal.publicsuffix.PublicSuffixDatabase;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.RunnerException;
+
+/**
+ * Measures loading the public suffix list and looking up domains in it. {@link #coldStart} loads a
+ * new database for each invocation, which is what the first cookie or {@link
+ * okhttp3.HttpUrl#topPrivateDomain()} check in a process pays.
+ */
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+public class PublicSuffixDatabaseBenchmark {
+    private static final String[] DOMAINS = {
+            "www.google.com",
+            "square.github.io",
+            "a.b.c.example.co.uk",
+            "foo.bar.kawasaki.jp",
+            "city.kawasaki.jp",
+            "xn--85x722f.xn--55qx5d.cn",
+            "api.eu-west-1.amazonaws.com",
+            "localhost",
+    };
+
+    private final PublicSuffixDatabase database = PublicSuffixDatabase.get();
+    private int next;
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String coldStart() {
+        return new PublicSuffixDatabase().getEffectiveTldPlusOne("www.google.com");
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public String lookup() {
+        String domain = DOMAINS[next++ & 7];
+        return database.getEffectiveTldPlusOne(domain);
+    }
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        Main.main(new String[]{
+                PublicSuffixDatabaseBenchmark.class.getName()
+        });
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okhttp3.sse.BatchedEventSourceListener;
+import okhttp3.sse.EventSource;
+import okhttp3.sse.EventSourceListener;
+import okhttp3.sse.EventSources;
+import okhttp3.sse.ServerSentEvent;
+import okio.Buffer;
+import okio.Okio;
+import okio.Source;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.RunnerException;
+
+/**
+ * Measures how many server-sent events per second are parsed and delivered to a listener. The
+ * stream is a feed of small, typed events like a price ticker's. {@code batched} delivers them to a
+ * {@link BatchedEventSourceListener} instead of one at a time.
+ */
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ServerSentEventBenchmark {
+    private static final int EVENT_COUNT = 10_000;
+    private static final MediaType EVENT_STREAM = MediaType.get("text/event-stream");
+
+    @Param({"false", "true"})
+    boolean batched;
+
+    private final Request request = new Request.Builder()
+            .url("https://example.com/prices")
+            .build();
+    private final Buffer stream = new Buffer();
+
+    @Setup
+    public void setUp() {
+        // Event sources are created by a client, which initializes OkHttp's internals.
+        new OkHttpClient();
+
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            stream.writeUtf8("event: price\n")
+                    .writeUtf8("id: ").writeUtf8(Integer.toString(i)).writeUtf8("\n")
+                    .writeUtf8("data: {\"symbol\":\"SQ\",\"price\":")
+                    .writeUtf8(Integer.toString(7000 + i % 100))
+                    .writeUtf8("}\n")
+                    .writeUtf8("\n");
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENT_COUNT)
+    public void events(Blackhole blackhole) {
+        Response response = new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                // Read the stream in segment-sized chunks, like a socket's.
+                .body(ResponseBody.create(EVENT_STREAM, stream.size(),
+                        Okio.buffer((Source) stream.clone())))
+                .build();
+        EventSources.processResponse(response, batched
+                ? new BatchedEventSourceListener() {
+                    @Override
+                    public void onEvents(EventSource eventSource, List<ServerSentEvent> events) {
+                        for (int i = 0, size = events.size(); i < size; i++) {
+                            blackhole.consume(events.get(i).data());
+                        }
+                    }
+                }
+                : new EventSourceListener() {
+                    @Override
+                    public void onEvent(EventSource eventSource, @Nullable String id,
+                                        @Nullable String type, String data) {
+                        blackhole.consume(data);
+                    }
+                });
+    }
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        Main.main(new String[]{
+                ServerSentEventBenchmark.class.getName()
+        });
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.benchmarks;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.ByteString;
+
+/**
+ * Serves response bodies of the size requested by the {@code size} query parameter, after an
+ * optional fixed delay that stands in for server think time.
+ */
+final class SizedBodyDispatcher extends Dispatcher {
+    private final ConcurrentMap<Long, ByteString> bodies = new ConcurrentHashMap<>();
+    private final long delayMillis;
+
+    SizedBodyDispatcher(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    static HttpUrl url(HttpUrl base, long bodySize) {
+        return base.newBuilder()
+                .addQueryParameter("size", Long.toString(bodySize))
+                .build();
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) {
+        String size = request.getRequestUrl().queryParameter("size");
+        long bodySize = size != null ? Long.parseLong(size) : 0L;
+        ByteString body = bodies.get(bodySize);
+        if (body == null) {
+            body = ByteString.of(new byte[(int) bodySize]);
+            bodies.put(bodySize, body);
+        }
+        return new MockResponse()
+                .setHeadersDelay(delayMillis, TimeUnit.MILLISECONDS)
+                .setBody(new Buffer().write(body));
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.benchmarks;
+
+import java.util.Collections;
+import java.util.List;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.tls.HandshakeCertificates;
+
+import static java.util.Arrays.asList;
+import static okhttp3.tls.internal.TlsUtil.localhost;
+
+/**
+ * How the benchmark client talks to MockWebServer.
+ */
+enum Transport {
+    /**
+     * Cleartext HTTP/1.1. Each concurrent call needs its own connection.
+     */
+    HTTP_1_1(false, Collections.singletonList(Protocol.HTTP_1_1)),
+    /**
+     * HTTP/2 negotiated with ALPN over TLS. All calls share a single connection.
+     */
+    H2(true, asList(Protocol.HTTP_2, Protocol.HTTP_1_1)),
+    /**
+     * Cleartext HTTP/2 with prior knowledge. All calls share a single connection.
+     */
+    H2C(false, Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+
+    final boolean tls;
+    final List<Protocol> protocols;
+
+    Transport(boolean tls, List<Protocol> protocols) {
+        this.tls = tls;
+        this.protocols = protocols;
+    }
+
+    void configure(MockWebServer server) {
+        if (tls) {
+            server.useHttps(localhost().sslSocketFactory(), false);
+        }
+        server.setProtocols(protocols);
+    }
+
+    OkHttpClient.Builder configure(OkHttpClient.Builder builder) {
+        if (tls) {
+            HandshakeCertificates handshakeCertificates = localhost();
+            builder.sslSocketFactory(
+                    handshakeCertificates.sslSocketFactory(), handshakeCertificates.trustManager());
+        }
+        return builder.protocols(protocols);
+    }
+
+    static Transport parse(String name) {
+        switch (name) {
+            case "http/1.1":
+                return HTTP_1_1;
+            case "h2":
+                return H2;
+            case "h2c":
+                return H2C;
+            default:
+                throw new IllegalArgumentException("unexpected transport: " + name);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.logging;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static okhttp3.internal.Util.threadFactory;
+
+/**
+ * A logger that hands messages to a background thread, so that threads making calls never block
+ * on slow log output. Messages are delivered to the delegate in order. When more than {@code
+ * capacity} messages are waiting, new messages are dropped and counted rather than queued.
+ *
+ * <p>The background thread is created on demand and exits after a minute without messages.
+ */
+public final class AsyncLogger implements HttpLoggingInterceptor.Logger {
+    private final HttpLoggingInterceptor.Logger delegate;
+    private final AtomicLong droppedMessageCount = new AtomicLong();
+    private final ThreadPoolExecutor executor;
+
+    public AsyncLogger(HttpLoggingInterceptor.Logger delegate, int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity <= 0: " + capacity);
+        this.delegate = delegate;
+        this.executor = new ThreadPoolExecutor(0, 1, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(capacity), threadFactory("OkHttp AsyncLogger", true),
+                (runnable, executor) -> droppedMessageCount.incrementAndGet());
+    }
+
+    @Override
+    public void log(String message) {
+        executor.execute(() -> delegate.log(message));
+    }
+
+    /**
+     * Returns the number of messages that were discarded because the queue was full.
+     */
+    public long droppedMessageCount() {
+        return droppedMessageCount.get();
+    }
+}
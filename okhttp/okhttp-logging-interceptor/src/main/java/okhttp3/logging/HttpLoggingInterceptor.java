@@ -37,6 +37,7 @@ import okhttp3.internal.platform.Platform;
 import okio.Buffer;
 import okio.BufferedSource;
 import okio.GzipSource;
+import okio.Okio;
 
 import static okhttp3.internal.platform.Platform.INFO;
 
@@ -151,6 +152,28 @@ public final class HttpLoggingInterceptor implements Interceptor {
         return level;
     }
 
+    private volatile long streamingBodyLimit = -1L;
+
+    /**
+     * Log response bodies as the application reads them instead of buffering them up front. At
+     * {@link Level#BODY} the first {@code byteCount} bytes of each response body are logged once the
+     * body is exhausted or closed, and the rest of the body is streamed through without being
+     * retained. Gzipped bodies are decoded incrementally, and only as far as needed to log {@code
+     * byteCount} bytes.
+     *
+     * <p>Pass -1 to restore the default behavior of buffering each response body in its entirety.
+     * Combine with an {@link AsyncLogger} so that logging never blocks the thread reading the body.
+     */
+    public HttpLoggingInterceptor setStreamingBodyLimit(long byteCount) {
+        if (byteCount < -1L) throw new IllegalArgumentException("byteCount < -1: " + byteCount);
+        this.streamingBodyLimit = byteCount;
+        return this;
+    }
+
+    public long getStreamingBodyLimit() {
+        return streamingBodyLimit;
+    }
+
     @Override
     public Response intercept(Chain chain) throws IOException {
         Level level = this.level;
@@ -254,6 +277,21 @@ public final class HttpLoggingInterceptor implements Interceptor {
                 logger.log("<-- END HTTP");
             } else if (bodyHasUnknownEncoding(response.headers())) {
                 logger.log("<-- END HTTP (encoded body omitted)");
+            } else if (streamingBodyLimit != -1L) {
+                Charset charset = UTF8;
+                MediaType contentType = responseBody.contentType();
+                if (contentType != null) {
+                    charset = contentType.charset(UTF8);
+                }
+
+                boolean gzip = "gzip".equalsIgnoreCase(headers.get("Content-Encoding"));
+                LoggingSource loggingSource = new LoggingSource(
+                        responseBody.source(), logger, charset, gzip, streamingBodyLimit);
+                ResponseBody loggingBody = ResponseBody.create(
+                        contentType, contentLength, Okio.buffer(loggingSource));
+                return response.newBuilder()
+                        .body(loggingBody)
+                        .build();
             } else {
                 BufferedSource source = responseBody.source();
                 source.request(Long.MAX_VALUE); // Buffer the entire body.
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.logging;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of durations in nanoseconds. Values are counted in log-linear buckets in the
+ * style of HdrHistogram: each power of two is split into {@value #SUB_BUCKET_COUNT} linear
+ * sub-buckets, so any recorded value is reported within 12.5% of its true magnitude.
+ *
+ * <p>Recording a value is a handful of atomic increments and never allocates. Values of 2^45
+ * nanoseconds (about 9.7 hours) or more are counted in the highest bucket.
+ */
+public final class LatencyHistogram {
+    static final int SUB_BUCKET_BITS = 3;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    static final int MAX_EXPONENT = 45;
+    static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records a single duration. Negative durations are counted as zero.
+     */
+    public void record(long nanos) {
+        if (nanos < 0L) nanos = 0L;
+        counts.incrementAndGet(bucketIndex(nanos));
+        totalNanos.addAndGet(nanos);
+        for (long max = maxNanos.get(); nanos > max; max = maxNanos.get()) {
+            if (maxNanos.compareAndSet(max, nanos)) break;
+        }
+    }
+
+    /**
+     * Returns a copy of the values recorded so far. Values recorded concurrently with this call may
+     * or may not be included.
+     */
+    public Snapshot snapshot() {
+        long[] snapshotCounts = new long[BUCKET_COUNT];
+        long count = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshotCounts[i] = counts.get(i);
+            count += snapshotCounts[i];
+        }
+        return new Snapshot(snapshotCounts, count, totalNanos.get(), maxNanos.get());
+    }
+
+    /**
+     * Discards all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0L);
+        }
+        totalNanos.set(0L);
+        maxNanos.set(0L);
+    }
+
+    static int bucketIndex(long nanos) {
+        if (nanos < SUB_BUCKET_COUNT) return (int) nanos;
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent >= MAX_EXPONENT) return BUCKET_COUNT - 1;
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + subBucket;
+    }
+
+    /**
+     * Returns the largest value that is counted in the bucket at {@code index}.
+     */
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) return index;
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long lowest = (long) (SUB_BUCKET_COUNT + (index & (SUB_BUCKET_COUNT - 1))) << shift;
+        return lowest + (1L << shift) - 1L;
+    }
+
+    /**
+     * An immutable copy of a histogram's counts.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+
+        Snapshot(long[] counts, long count, long totalNanos, long maxNanos) {
+            this.counts = counts;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        /**
+         * Returns the number of recorded values.
+         */
+        public long count() {
+            return count;
+        }
+
+        /**
+         * Returns the sum of the recorded values in nanoseconds.
+         */
+        public long totalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * Returns the largest recorded value in nanoseconds, or 0 if nothing was recorded.
+         */
+        public long maxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * Returns the mean of the recorded values in nanoseconds, or 0 if nothing was recorded.
+         */
+        public long meanNanos() {
+            return count != 0L ? totalNanos / count : 0L;
+        }
+
+        /**
+         * Returns the value in nanoseconds at or below which {@code percentile} percent of the
+         * recorded values fall, such as 50.0 for the median or 99.9 for the 999th permille. Returns
+         * 0 if nothing was recorded.
+         */
+        public long valueAtPercentile(double percentile) {
+            if (percentile < 0.0 || percentile > 100.0) {
+                throw new IllegalArgumentException("percentile < 0 || percentile > 100: " + percentile);
+            }
+            if (count == 0L) return 0L;
+
+            long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * count));
+            long seen = 0L;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(highestEquivalentValue(i), maxNanos);
+            }
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count
+                    + " p50=" + TimeUnit.NANOSECONDS.toMicros(valueAtPercentile(50.0)) + "us"
+                    + " p99=" + TimeUnit.NANOSECONDS.toMicros(valueAtPercentile(99.0)) + "us"
+                    + " p999=" + TimeUnit.NANOSECONDS.toMicros(valueAtPercentile(99.9)) + "us"
+                    + " max=" + TimeUnit.NANOSECONDS.toMicros(maxNanos) + "us";
+        }
+    }
+}
@@ -156,6 +156,26 @@ public final class LoggingEventListener extends EventListener {
         logWithTime("responseFailed: " + ioe);
     }
 
+    @Override
+    public void retryStart(Call call, IOException ioe) {
+        logWithTime("retryStart: " + ioe);
+    }
+
+    @Override
+    public void retryBudgetExhausted(Call call) {
+        logWithTime("retryBudgetExhausted");
+    }
+
+    @Override
+    public void hedgeStart(Call call) {
+        logWithTime("hedgeStart");
+    }
+
+    @Override
+    public void hedgeEnd(Call call, boolean hedgeWon) {
+        logWithTime("hedgeEnd: hedgeWon=" + hedgeWon);
+    }
+
     @Override
     public void callEnd(Call call) {
         logWithTime("callEnd");
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.logging;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Source;
+
+/**
+ * A source that logs a response body as the application consumes it. At most {@code limit} bytes
+ * of the body are retained for logging; everything else passes through without being copied.
+ * Gzipped bodies are inflated incrementally, and only until {@code limit} decoded bytes have been
+ * captured.
+ *
+ * <p>The body and the closing line are logged once, when the body is exhausted or closed.
+ */
+final class LoggingSource extends ForwardingSource {
+    private static final int FHCRC = 1 << 1;
+    private static final int FEXTRA = 1 << 2;
+    private static final int FNAME = 1 << 3;
+    private static final int FCOMMENT = 1 << 4;
+
+    private final HttpLoggingInterceptor.Logger logger;
+    private final Charset charset;
+    private final long limit;
+    private final Buffer captured = new Buffer();
+
+    /**
+     * Compressed bytes not yet given to the inflater. Null unless the body is gzipped.
+     */
+    private final Buffer compressed;
+    private Inflater inflater;
+    private byte[] input;
+    private byte[] output;
+
+    private long byteCount;
+    private boolean capturing = true;
+    private boolean plaintextChecked;
+    private boolean binary;
+    private boolean undecodable;
+    private boolean finished;
+
+    LoggingSource(Source delegate, HttpLoggingInterceptor.Logger logger, Charset charset,
+            boolean gzip, long limit) {
+        super(delegate);
+        this.logger = logger;
+        this.charset = charset;
+        this.limit = limit;
+        this.compressed = gzip ? new Buffer() : null;
+    }
+
+    @Override
+    public long read(Buffer sink, long byteCount) throws IOException {
+        long read = super.read(sink, byteCount);
+        if (read == -1L) {
+            finish(true);
+            return -1L;
+        }
+        this.byteCount += read;
+        if (capturing) capture(sink, sink.size() - read, read);
+        return read;
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish(false);
+        super.close();
+    }
+
+    private void capture(Buffer sink, long offset, long read) {
+        if (compressed == null) {
+            sink.copyTo(captured, offset, Math.min(read, limit - captured.size()));
+            capturing = captured.size() < limit;
+        } else {
+            sink.copyTo(compressed, offset, read);
+            try {
+                inflate();
+            } catch (DataFormatException | IOException e) {
+                undecodable = true;
+                capturing = false;
+            }
+        }
+
+        if (!plaintextChecked && captured.size() >= Math.min(64L, limit)) {
+            checkPlaintext();
+        }
+    }
+
+    private void inflate() throws DataFormatException, IOException {
+        if (inflater == null) {
+            long headerSize = gzipHeaderSize();
+            if (headerSize == -1L) return;
+            compressed.skip(headerSize);
+            inflater = new Inflater(true);
+            input = new byte[8192];
+            output = new byte[8192];
+        }
+
+        while (captured.size() < limit && !inflater.finished()) {
+            if (inflater.needsInput()) {
+                if (compressed.size() == 0L) return;
+                inflater.setInput(input, 0, compressed.read(input, 0, input.length));
+            }
+            int toInflate = (int) Math.min(output.length, limit - captured.size());
+            int inflated = inflater.inflate(output, 0, toInflate);
+            if (inflated == 0 && !inflater.needsInput() && !inflater.finished()) {
+                throw new DataFormatException("inflater stalled");
+            }
+            captured.write(output, 0, inflated);
+        }
+
+        capturing = false;
+        compressed.clear();
+    }
+
+    /**
+     * Returns the size of the gzip header at the front of {@link #compressed}, or -1 if the complete
+     * header hasn't been received yet.
+     */
+    private long gzipHeaderSize() throws DataFormatException {
+        long size = compressed.size();
+        if (size < 10L) return -1L;
+        if (compressed.getByte(0) != (byte) 0x1f || compressed.getByte(1) != (byte) 0x8b) {
+            throw new DataFormatException("not in gzip format");
+        }
+
+        int flags = compressed.getByte(3) & 0xff;
+        long offset = 10L;
+        if ((flags & FEXTRA) != 0) {
+            if (size < offset + 2L) return -1L;
+            int extraLength = (compressed.getByte(offset) & 0xff)
+                    | (compressed.getByte(offset + 1L) & 0xff) << 8;
+            offset += 2L + extraLength;
+        }
+        if ((flags & FNAME) != 0) {
+            if (size <= offset) return -1L;
+            long terminator = compressed.indexOf((byte) 0, offset);
+            if (terminator == -1L) return -1L;
+            offset = terminator + 1L;
+        }
+        if ((flags & FCOMMENT) != 0) {
+            if (size <= offset) return -1L;
+            long terminator = compressed.indexOf((byte) 0, offset);
+            if (terminator == -1L) return -1L;
+            offset = terminator + 1L;
+        }
+        if ((flags & FHCRC) != 0) {
+            offset += 2L;
+        }
+        return size >= offset ? offset : -1L;
+    }
+
+    private void checkPlaintext() {
+        plaintextChecked = true;
+        if (!HttpLoggingInterceptor.isPlaintext(captured)) {
+            binary = true;
+            capturing = false;
+            captured.clear();
+        }
+    }
+
+    private void finish(boolean exhausted) {
+        if (finished) return;
+        finished = true;
+
+        if (!plaintextChecked && !undecodable) checkPlaintext();
+        boolean inflated = inflater != null && inflater.finished();
+        if (inflater != null) inflater.end();
+
+        String bodySize = compressed != null
+                ? byteCount + "-gzipped-byte body"
+                : byteCount + "-byte body";
+
+        if (undecodable) {
+            logger.log("<-- END HTTP (undecodable " + bodySize + " omitted)");
+            return;
+        }
+        if (binary) {
+            logger.log("");
+            logger.log("<-- END HTTP (binary " + bodySize + " omitted)");
+            return;
+        }
+
+        long loggedByteCount = captured.size();
+        boolean complete = exhausted && (byteCount == 0L || (compressed != null
+                ? inflated
+                : loggedByteCount == byteCount));
+        if (loggedByteCount > 0L) {
+            logger.log("");
+            logger.log(captured.readString(charset));
+        }
+
+        if (!exhausted) {
+            logger.log("<-- END HTTP (closed after " + bodySize + ", "
+                    + loggedByteCount + " bytes logged)");
+        } else if (!complete) {
+            logger.log("<-- END HTTP (" + bodySize + ", " + loggedByteCount + " bytes logged)");
+        } else if (compressed != null && byteCount != 0L) {
+            logger.log("<-- END HTTP (" + loggedByteCount + "-byte, " + bodySize + ")");
+        } else {
+            logger.log("<-- END HTTP (" + bodySize + ")");
+        }
+    }
+}
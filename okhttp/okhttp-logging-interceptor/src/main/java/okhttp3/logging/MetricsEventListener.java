@@ -0,0 +1,382 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.logging;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * An OkHttp EventListener which records per-host latency histograms for each phase of a call, along
+ * with connection reuse and byte counts. Install its {@link Factory} as an {@linkplain
+ * OkHttpClient#eventListenerFactory() event listener factory} and read the results with {@link
+ * Factory#snapshot()}.
+ *
+ * <p>Metrics are attributed to the host of the call's original request, including any redirects
+ * and retries the call follows. Recording never formats strings and never blocks; each event costs
+ * a read of {@link System#nanoTime()} and a few atomic increments.
+ */
+public final class MetricsEventListener extends EventListener {
+    /**
+     * The timed phases of a call.
+     */
+    public enum Phase {
+        /**
+         * From {@link EventListener#dnsStart} to {@link EventListener#dnsEnd}.
+         */
+        DNS,
+        /**
+         * From {@link EventListener#connectStart} to {@link EventListener#connectEnd}. This includes
+         * the TLS handshake.
+         */
+        CONNECT,
+        /**
+         * From {@link EventListener#secureConnectStart} to {@link EventListener#secureConnectEnd}.
+         */
+        SECURE_CONNECT,
+        /**
+         * From {@link EventListener#requestHeadersStart} to {@link EventListener#requestHeadersEnd}.
+         */
+        REQUEST_HEADERS,
+        /**
+         * From {@link EventListener#requestBodyStart} to {@link EventListener#requestBodyEnd}.
+         */
+        REQUEST_BODY,
+        /**
+         * From the end of the request to {@link EventListener#responseHeadersEnd}.
+         */
+        TIME_TO_FIRST_BYTE,
+        /**
+         * From {@link EventListener#responseBodyStart} to {@link EventListener#responseBodyEnd}.
+         */
+        RESPONSE_BODY,
+        /**
+         * From {@link EventListener#callStart} to {@link EventListener#callEnd}. Failed calls are not
+         * recorded.
+         */
+        CALL
+    }
+
+    private final Factory factory;
+    private HostMetrics metrics;
+    private long callStartNs;
+    private long dnsStartNs;
+    private long connectStartNs;
+    private long secureConnectStartNs;
+    private long requestHeadersStartNs;
+    private long requestBodyStartNs;
+    private long requestEndNs;
+    private long responseBodyStartNs;
+    private boolean connected;
+
+    private MetricsEventListener(Factory factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public void callStart(Call call) {
+        metrics = factory.metricsFor(call.request().url().host());
+        callStartNs = System.nanoTime();
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        dnsStartNs = System.nanoTime();
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+        record(Phase.DNS, dnsStartNs);
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        connectStartNs = System.nanoTime();
+        connected = true;
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+        secureConnectStartNs = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectEnd(Call call, @Nullable Handshake handshake) {
+        record(Phase.SECURE_CONNECT, secureConnectStartNs);
+    }
+
+    @Override
+    public void connectEnd(
+            Call call, InetSocketAddress inetSocketAddress, Proxy proxy, @Nullable Protocol protocol) {
+        record(Phase.CONNECT, connectStartNs);
+    }
+
+    @Override
+    public void connectFailed(
+            Call call,
+            InetSocketAddress inetSocketAddress,
+            Proxy proxy,
+            @Nullable Protocol protocol,
+            IOException ioe) {
+        metrics.connectFailures.incrementAndGet();
+    }
+
+    @Override
+    public void connectionAcquired(Call call, Connection connection) {
+        metrics.connectionsAcquired.incrementAndGet();
+        if (!connected) metrics.connectionsReused.incrementAndGet();
+        connected = false;
+    }
+
+    @Override
+    public void requestHeadersStart(Call call) {
+        requestHeadersStartNs = System.nanoTime();
+    }
+
+    @Override
+    public void requestHeadersEnd(Call call, Request request) {
+        requestEndNs = record(Phase.REQUEST_HEADERS, requestHeadersStartNs);
+    }
+
+    @Override
+    public void requestBodyStart(Call call) {
+        requestBodyStartNs = System.nanoTime();
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+        requestEndNs = record(Phase.REQUEST_BODY, requestBodyStartNs);
+        metrics.requestBodyBytes.addAndGet(byteCount);
+    }
+
+    @Override
+    public void responseHeadersEnd(Call call, Response response) {
+        record(Phase.TIME_TO_FIRST_BYTE, requestEndNs);
+    }
+
+    @Override
+    public void responseBodyStart(Call call) {
+        responseBodyStartNs = System.nanoTime();
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        record(Phase.RESPONSE_BODY, responseBodyStartNs);
+        metrics.responseBodyBytes.addAndGet(byteCount);
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        record(Phase.CALL, callStartNs);
+        metrics.calls.incrementAndGet();
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        metrics.calls.incrementAndGet();
+        metrics.failedCalls.incrementAndGet();
+    }
+
+    /**
+     * Records the time elapsed since {@code startNs} and returns the current time.
+     */
+    private long record(Phase phase, long startNs) {
+        long nowNs = System.nanoTime();
+        metrics.histograms[phase.ordinal()].record(nowNs - startNs);
+        return nowNs;
+    }
+
+    public static final class Factory implements EventListener.Factory {
+        private final ConcurrentMap<String, HostMetrics> hosts = new ConcurrentHashMap<>();
+
+        @Override
+        public EventListener create(Call call) {
+            return new MetricsEventListener(this);
+        }
+
+        HostMetrics metricsFor(String host) {
+            HostMetrics result = hosts.get(host);
+            if (result == null) {
+                HostMetrics created = new HostMetrics();
+                result = hosts.putIfAbsent(host, created);
+                if (result == null) result = created;
+            }
+            return result;
+        }
+
+        /**
+         * Returns a copy of the metrics recorded so far, keyed by host.
+         */
+        public Map<String, HostSnapshot> snapshot() {
+            Map<String, HostSnapshot> result = new LinkedHashMap<>();
+            for (Map.Entry<String, HostMetrics> entry : hosts.entrySet()) {
+                result.put(entry.getKey(), entry.getValue().snapshot(entry.getKey()));
+            }
+            return Collections.unmodifiableMap(result);
+        }
+
+        /**
+         * Discards all recorded metrics. Calls that are in flight continue to record into the
+         * discarded metrics.
+         */
+        public void reset() {
+            hosts.clear();
+        }
+    }
+
+    static final class HostMetrics {
+        final LatencyHistogram[] histograms = new LatencyHistogram[Phase.values().length];
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong failedCalls = new AtomicLong();
+        final AtomicLong connectionsAcquired = new AtomicLong();
+        final AtomicLong connectionsReused = new AtomicLong();
+        final AtomicLong connectFailures = new AtomicLong();
+        final AtomicLong requestBodyBytes = new AtomicLong();
+        final AtomicLong responseBodyBytes = new AtomicLong();
+
+        HostMetrics() {
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new LatencyHistogram();
+            }
+        }
+
+        HostSnapshot snapshot(String host) {
+            LatencyHistogram.Snapshot[] snapshots = new LatencyHistogram.Snapshot[histograms.length];
+            for (int i = 0; i < histograms.length; i++) {
+                snapshots[i] = histograms[i].snapshot();
+            }
+            return new HostSnapshot(host, snapshots, calls.get(), failedCalls.get(),
+                    connectionsAcquired.get(), connectionsReused.get(), connectFailures.get(),
+                    requestBodyBytes.get(), responseBodyBytes.get());
+        }
+    }
+
+    /**
+     * An immutable copy of the metrics recorded for a single host.
+     */
+    public static final class HostSnapshot {
+        private final String host;
+        private final LatencyHistogram.Snapshot[] histograms;
+        private final long calls;
+        private final long failedCalls;
+        private final long connectionsAcquired;
+        private final long connectionsReused;
+        private final long connectFailures;
+        private final long requestBodyBytes;
+        private final long responseBodyBytes;
+
+        HostSnapshot(String host, LatencyHistogram.Snapshot[] histograms, long calls,
+                long failedCalls, long connectionsAcquired, long connectionsReused, long connectFailures,
+                long requestBodyBytes, long responseBodyBytes) {
+            this.host = host;
+            this.histograms = histograms;
+            this.calls = calls;
+            this.failedCalls = failedCalls;
+            this.connectionsAcquired = connectionsAcquired;
+            this.connectionsReused = connectionsReused;
+            this.connectFailures = connectFailures;
+            this.requestBodyBytes = requestBodyBytes;
+            this.responseBodyBytes = responseBodyBytes;
+        }
+
+        public String host() {
+            return host;
+        }
+
+        public LatencyHistogram.Snapshot latency(Phase phase) {
+            return histograms[phase.ordinal()];
+        }
+
+        /**
+         * Returns the number of completed calls, including failed calls.
+         */
+        public long calls() {
+            return calls;
+        }
+
+        public long failedCalls() {
+            return failedCalls;
+        }
+
+        /**
+         * Returns the number of times a call acquired a connection, either new or pooled.
+         */
+        public long connectionsAcquired() {
+            return connectionsAcquired;
+        }
+
+        /**
+         * Returns the number of times a call acquired a connection that it didn't establish itself.
+         */
+        public long connectionsReused() {
+            return connectionsReused;
+        }
+
+        /**
+         * Returns the fraction of acquired connections that were reused, or 0 if no connections were
+         * acquired.
+         */
+        public double connectionReuseRatio() {
+            return connectionsAcquired != 0L ? (double) connectionsReused / connectionsAcquired : 0.0;
+        }
+
+        public long connectFailures() {
+            return connectFailures;
+        }
+
+        public long requestBodyBytes() {
+            return requestBodyBytes;
+        }
+
+        public long responseBodyBytes() {
+            return responseBodyBytes;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder result = new StringBuilder()
+                    .append(host)
+                    .append(": calls=").append(calls)
+                    .append(" failedCalls=").append(failedCalls)
+                    .append(" connectionReuseRatio=").append(connectionReuseRatio())
+                    .append(" requestBodyBytes=").append(requestBodyBytes)
+                    .append(" responseBodyBytes=").append(responseBodyBytes);
+            for (Phase phase : Phase.values()) {
+                result.append("\n  ").append(phase).append(": ").append(latency(phase));
+            }
+            return result.toString();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.logging;
+
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class AsyncLoggerTest {
+    private final BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+
+    @Test
+    public void messagesAreDeliveredInOrder() throws Exception {
+        AsyncLogger logger = new AsyncLogger(messages::add, 100);
+        for (int i = 0; i < 50; i++) {
+            logger.log("message " + i);
+        }
+
+        for (int i = 0; i < 50; i++) {
+            assertThat(messages.poll(5, TimeUnit.SECONDS)).isEqualTo("message " + i);
+        }
+        assertThat(logger.droppedMessageCount()).isEqualTo(0L);
+    }
+
+    @Test
+    public void messagesAreDroppedWhenFull() throws Exception {
+        CountDownLatch delegateStarted = new CountDownLatch(1);
+        CountDownLatch releaseDelegate = new CountDownLatch(1);
+        AsyncLogger logger = new AsyncLogger(message -> {
+            delegateStarted.countDown();
+            try {
+                releaseDelegate.await();
+            } catch (InterruptedException e) {
+                throw new AssertionError();
+            }
+            messages.add(message);
+        }, 2);
+
+        logger.log("a");
+        assertThat(delegateStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        logger.log("b");
+        logger.log("c");
+        logger.log("d");
+        assertThat(logger.droppedMessageCount()).isEqualTo(1L);
+
+        releaseDelegate.countDown();
+        assertThat(messages.poll(5, TimeUnit.SECONDS)).isEqualTo("a");
+        assertThat(messages.poll(5, TimeUnit.SECONDS)).isEqualTo("b");
+        assertThat(messages.poll(5, TimeUnit.SECONDS)).isEqualTo("c");
+        assertThat(messages.poll(100, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    public void capacityMustBePositive() {
+        try {
+            new AsyncLogger(messages::add, 0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
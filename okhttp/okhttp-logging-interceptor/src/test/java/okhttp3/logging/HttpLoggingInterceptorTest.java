@@ -877,6 +877,168 @@ public final class HttpLoggingInterceptorTest {
                 .assertNoMoreLogs();
     }
 
+    @Test
+    public void streamingBodyLogsAfterBodyIsConsumed() throws IOException {
+        setLevel(Level.BODY);
+        setStreamingBodyLimit(1024L);
+
+        server.enqueue(new MockResponse()
+                .setBody("Hello!")
+                .setHeader("Content-Type", PLAIN));
+        Response response = client.newCall(request().build()).execute();
+
+        applicationLogs
+                .assertLogEqual("--> GET " + url)
+                .assertLogEqual("--> END GET")
+                .assertLogMatch("<-- 200 OK " + url + " \\(\\d+ms\\)")
+                .assertLogEqual("Content-Length: 6")
+                .assertLogEqual("Content-Type: text/plain; charset=utf-8")
+                .assertNoMoreLogs();
+
+        assertThat(response.body().string()).isEqualTo("Hello!");
+
+        applicationLogs
+                .assertLogEqual("")
+                .assertLogEqual("Hello!")
+                .assertLogEqual("<-- END HTTP (6-byte body)")
+                .assertNoMoreLogs();
+    }
+
+    @Test
+    public void streamingBodyTruncated() throws IOException {
+        setLevel(Level.BODY);
+        setStreamingBodyLimit(5L);
+
+        server.enqueue(new MockResponse()
+                .setBody("Hello, world!")
+                .setHeader("Content-Type", PLAIN));
+        Response response = client.newCall(request().build()).execute();
+        assertThat(response.body().string()).isEqualTo("Hello, world!");
+
+        networkLogs
+                .assertLogEqual("--> GET " + url + " http/1.1")
+                .assertLogEqual("Host: " + host)
+                .assertLogEqual("Connection: Keep-Alive")
+                .assertLogEqual("Accept-Encoding: gzip")
+                .assertLogMatch("User-Agent: okhttp/.+")
+                .assertLogEqual("--> END GET")
+                .assertLogMatch("<-- 200 OK " + url + " \\(\\d+ms\\)")
+                .assertLogEqual("Content-Length: 13")
+                .assertLogEqual("Content-Type: text/plain; charset=utf-8")
+                .assertLogEqual("")
+                .assertLogEqual("Hello")
+                .assertLogEqual("<-- END HTTP (13-byte body, 5 bytes logged)")
+                .assertNoMoreLogs();
+    }
+
+    @Test
+    public void streamingBodyGzipEncoded() throws IOException {
+        setLevel(Level.BODY);
+        setStreamingBodyLimit(1024L);
+
+        server.enqueue(new MockResponse()
+                .setHeader("Content-Encoding", "gzip")
+                .setHeader("Content-Type", PLAIN)
+                .setBody(new Buffer().write(ByteString.decodeBase64(
+                        "H4sIAAAAAAAAAPNIzcnJ11HwQKIAdyO+9hMAAAA="))));
+        Response response = client.newCall(request().build()).execute();
+        assertThat(response.body().string()).isEqualTo("Hello, Hello, Hello");
+
+        networkLogs
+                .assertLogEqual("--> GET " + url + " http/1.1")
+                .assertLogEqual("Host: " + host)
+                .assertLogEqual("Connection: Keep-Alive")
+                .assertLogEqual("Accept-Encoding: gzip")
+                .assertLogMatch("User-Agent: okhttp/.+")
+                .assertLogEqual("--> END GET")
+                .assertLogMatch("<-- 200 OK " + url + " \\(\\d+ms\\)")
+                .assertLogEqual("Content-Encoding: gzip")
+                .assertLogEqual("Content-Type: text/plain; charset=utf-8")
+                .assertLogMatch("Content-Length: \\d+")
+                .assertLogEqual("")
+                .assertLogEqual("Hello, Hello, Hello")
+                .assertLogEqual("<-- END HTTP (19-byte, 29-gzipped-byte body)")
+                .assertNoMoreLogs();
+
+        applicationLogs
+                .assertLogEqual("--> GET " + url)
+                .assertLogEqual("--> END GET")
+                .assertLogMatch("<-- 200 OK " + url + " \\(\\d+ms\\)")
+                .assertLogEqual("Content-Type: text/plain; charset=utf-8")
+                .assertLogEqual("")
+                .assertLogEqual("Hello, Hello, Hello")
+                .assertLogEqual("<-- END HTTP (19-byte body)")
+                .assertNoMoreLogs();
+    }
+
+    @Test
+    public void streamingBodyGzipEncodedTruncated() throws IOException {
+        networkInterceptor.setLevel(Level.BODY);
+        networkInterceptor.setStreamingBodyLimit(5L);
+
+        server.enqueue(new MockResponse()
+                .setHeader("Content-Encoding", "gzip")
+                .setHeader("Content-Type", PLAIN)
+                .setBody(new Buffer().write(ByteString.decodeBase64(
+                        "H4sIAAAAAAAAAPNIzcnJ11HwQKIAdyO+9hMAAAA="))));
+        Response response = client.newCall(request().build()).execute();
+        assertThat(response.body().string()).isEqualTo("Hello, Hello, Hello");
+
+        networkLogs
+                .assertLogEqual("--> GET " + url + " http/1.1")
+                .assertLogEqual("Host: " + host)
+                .assertLogEqual("Connection: Keep-Alive")
+                .assertLogEqual("Accept-Encoding: gzip")
+                .assertLogMatch("User-Agent: okhttp/.+")
+                .assertLogEqual("--> END GET")
+                .assertLogMatch("<-- 200 OK " + url + " \\(\\d+ms\\)")
+                .assertLogEqual("Content-Encoding: gzip")
+                .assertLogEqual("Content-Type: text/plain; charset=utf-8")
+                .assertLogMatch("Content-Length: \\d+")
+                .assertLogEqual("")
+                .assertLogEqual("Hello")
+                .assertLogEqual("<-- END HTTP (29-gzipped-byte body, 5 bytes logged)")
+                .assertNoMoreLogs();
+    }
+
+    @Test
+    public void streamingBodyClosedEarly() throws IOException {
+        applicationInterceptor.setLevel(Level.BODY);
+        applicationInterceptor.setStreamingBodyLimit(4L);
+
+        server.enqueue(new MockResponse()
+                .setBody(new String(new char[100_000]).replace('\0', 'a'))
+                .setHeader("Content-Type", PLAIN));
+        Response response = client.newCall(request().build()).execute();
+        response.body().source().readByte();
+        response.body().close();
+
+        applicationLogs
+                .assertLogEqual("--> GET " + url)
+                .assertLogEqual("--> END GET")
+                .assertLogMatch("<-- 200 OK " + url + " \\(\\d+ms\\)")
+                .assertLogEqual("Content-Length: 100000")
+                .assertLogEqual("Content-Type: text/plain; charset=utf-8")
+                .assertLogEqual("")
+                .assertLogEqual("aaaa")
+                .assertLogMatch("<-- END HTTP \\(closed after \\d+-byte body, 4 bytes logged\\)")
+                .assertNoMoreLogs();
+    }
+
+    @Test
+    public void streamingBodyRejectsInvalidLimit() {
+        try {
+            applicationInterceptor.setStreamingBodyLimit(-2L);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private void setStreamingBodyLimit(long byteCount) {
+        networkInterceptor.setStreamingBodyLimit(byteCount);
+        applicationInterceptor.setStreamingBodyLimit(byteCount);
+    }
+
     private Request.Builder request() {
         return new Request.Builder().url(url);
     }
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.logging;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class LatencyHistogramTest {
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    public void bucketsAreContiguous() {
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT - 1; i++) {
+            long highest = LatencyHistogram.highestEquivalentValue(i);
+            assertThat(LatencyHistogram.bucketIndex(highest)).isEqualTo(i);
+            assertThat(LatencyHistogram.bucketIndex(highest + 1)).isEqualTo(i + 1);
+        }
+    }
+
+    @Test
+    public void hugeValuesAreClamped() {
+        assertThat(LatencyHistogram.bucketIndex(Long.MAX_VALUE))
+                .isEqualTo(LatencyHistogram.BUCKET_COUNT - 1);
+    }
+
+    @Test
+    public void emptySnapshot() {
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.count()).isEqualTo(0L);
+        assertThat(snapshot.meanNanos()).isEqualTo(0L);
+        assertThat(snapshot.valueAtPercentile(99.0)).isEqualTo(0L);
+    }
+
+    @Test
+    public void percentilesAreWithinPrecision() {
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.count()).isEqualTo(1000L);
+        assertThat(snapshot.maxNanos()).isEqualTo(1_000_000L);
+        assertThat(snapshot.meanNanos()).isEqualTo(500_500L);
+        assertThat(snapshot.valueAtPercentile(50.0)).isBetween(500_000L, 562_500L);
+        assertThat(snapshot.valueAtPercentile(99.0)).isBetween(990_000L, 1_000_000L);
+        assertThat(snapshot.valueAtPercentile(100.0)).isEqualTo(1_000_000L);
+    }
+
+    @Test
+    public void negativeValuesRecordedAsZero() {
+        histogram.record(-5L);
+        assertThat(histogram.snapshot().valueAtPercentile(50.0)).isEqualTo(0L);
+    }
+
+    @Test
+    public void reset() {
+        histogram.record(1000L);
+        histogram.reset();
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.count()).isEqualTo(0L);
+        assertThat(snapshot.maxNanos()).isEqualTo(0L);
+    }
+
+    @Test
+    public void snapshotIsUnaffectedByLaterRecords() {
+        histogram.record(1000L);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        histogram.record(2000L);
+        assertThat(snapshot.count()).isEqualTo(1L);
+    }
+
+    @Test
+    public void invalidPercentile() {
+        try {
+            histogram.snapshot().valueAtPercentile(100.1);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
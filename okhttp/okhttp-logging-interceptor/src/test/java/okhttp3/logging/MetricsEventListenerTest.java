@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.logging;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.UnknownHostException;
+
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.logging.MetricsEventListener.HostSnapshot;
+import okhttp3.logging.MetricsEventListener.Phase;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.tls.HandshakeCertificates;
+
+import static okhttp3.tls.internal.TlsUtil.localhost;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class MetricsEventListenerTest {
+    private static final MediaType PLAIN = MediaType.get("text/plain");
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    private final HandshakeCertificates handshakeCertificates = localhost();
+    private final MetricsEventListener.Factory metricsFactory = new MetricsEventListener.Factory();
+    private OkHttpClient client;
+    private HttpUrl url;
+
+    @Before
+    public void setUp() {
+        client = new OkHttpClient.Builder()
+                .eventListenerFactory(metricsFactory)
+                .sslSocketFactory(
+                        handshakeCertificates.sslSocketFactory(), handshakeCertificates.trustManager())
+                .retryOnConnectionFailure(false)
+                .build();
+
+        url = server.url("/");
+    }
+
+    @Test
+    public void get() throws Exception {
+        server.enqueue(new MockResponse().setBody("Hello!"));
+        execute(request().build());
+
+        HostSnapshot snapshot = metricsFactory.snapshot().get(url.host());
+        assertThat(snapshot.calls()).isEqualTo(1L);
+        assertThat(snapshot.failedCalls()).isEqualTo(0L);
+        assertThat(snapshot.responseBodyBytes()).isEqualTo(6L);
+        assertThat(snapshot.latency(Phase.DNS).count()).isEqualTo(1L);
+        assertThat(snapshot.latency(Phase.CONNECT).count()).isEqualTo(1L);
+        assertThat(snapshot.latency(Phase.SECURE_CONNECT).count()).isEqualTo(0L);
+        assertThat(snapshot.latency(Phase.REQUEST_HEADERS).count()).isEqualTo(1L);
+        assertThat(snapshot.latency(Phase.REQUEST_BODY).count()).isEqualTo(0L);
+        assertThat(snapshot.latency(Phase.TIME_TO_FIRST_BYTE).count()).isEqualTo(1L);
+        assertThat(snapshot.latency(Phase.RESPONSE_BODY).count()).isEqualTo(1L);
+        assertThat(snapshot.latency(Phase.CALL).count()).isEqualTo(1L);
+        assertThat(snapshot.latency(Phase.CALL).maxNanos())
+                .isGreaterThanOrEqualTo(snapshot.latency(Phase.TIME_TO_FIRST_BYTE).maxNanos());
+    }
+
+    @Test
+    public void post() throws Exception {
+        server.enqueue(new MockResponse());
+        execute(request().post(RequestBody.create(PLAIN, "Hello!")).build());
+
+        HostSnapshot snapshot = metricsFactory.snapshot().get(url.host());
+        assertThat(snapshot.requestBodyBytes()).isEqualTo(6L);
+        assertThat(snapshot.latency(Phase.REQUEST_BODY).count()).isEqualTo(1L);
+    }
+
+    @Test
+    public void secureGet() throws Exception {
+        server.useHttps(handshakeCertificates.sslSocketFactory(), false);
+        url = server.url("/");
+        server.enqueue(new MockResponse());
+        execute(request().build());
+
+        HostSnapshot snapshot = metricsFactory.snapshot().get(url.host());
+        assertThat(snapshot.latency(Phase.SECURE_CONNECT).count()).isEqualTo(1L);
+    }
+
+    @Test
+    public void connectionReuse() throws Exception {
+        server.enqueue(new MockResponse());
+        server.enqueue(new MockResponse());
+        server.enqueue(new MockResponse());
+        server.enqueue(new MockResponse());
+        for (int i = 0; i < 4; i++) {
+            execute(request().build());
+        }
+
+        HostSnapshot snapshot = metricsFactory.snapshot().get(url.host());
+        assertThat(snapshot.calls()).isEqualTo(4L);
+        assertThat(snapshot.connectionsAcquired()).isEqualTo(4L);
+        assertThat(snapshot.connectionsReused()).isEqualTo(3L);
+        assertThat(snapshot.connectionReuseRatio()).isEqualTo(0.75);
+        assertThat(snapshot.latency(Phase.CONNECT).count()).isEqualTo(1L);
+    }
+
+    @Test
+    public void dnsFail() {
+        client = client.newBuilder()
+                .dns(hostname -> {
+                    throw new UnknownHostException("reason");
+                })
+                .build();
+
+        try {
+            execute(request().build());
+            fail();
+        } catch (IOException expected) {
+        }
+
+        HostSnapshot snapshot = metricsFactory.snapshot().get(url.host());
+        assertThat(snapshot.calls()).isEqualTo(1L);
+        assertThat(snapshot.failedCalls()).isEqualTo(1L);
+        assertThat(snapshot.latency(Phase.DNS).count()).isEqualTo(0L);
+        assertThat(snapshot.latency(Phase.CALL).count()).isEqualTo(0L);
+    }
+
+    @Test
+    public void reset() throws Exception {
+        server.enqueue(new MockResponse());
+        execute(request().build());
+        assertThat(metricsFactory.snapshot()).containsKey(url.host());
+
+        metricsFactory.reset();
+        assertThat(metricsFactory.snapshot()).isEmpty();
+    }
+
+    private void execute(Request request) throws IOException {
+        try (Response response = client.newCall(request).execute()) {
+            response.body().bytes();
+        }
+    }
+
+    private Request.Builder request() {
+        return new Request.Builder().url(url);
+    }
+}
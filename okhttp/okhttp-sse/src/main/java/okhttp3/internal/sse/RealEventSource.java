@@ -16,6 +16,8 @@
 package okhttp3.internal.sse;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.annotation.Nullable;
 
@@ -30,8 +32,10 @@ import okhttp3.ResponseBody;
 import okhttp3.internal.Internal;
 import okhttp3.internal.Util;
 import okhttp3.internal.connection.Exchange;
+import okhttp3.sse.BatchedEventSourceListener;
 import okhttp3.sse.EventSource;
 import okhttp3.sse.EventSourceListener;
+import okhttp3.sse.ServerSentEvent;
 
 public final class RealEventSource
         implements EventSource, ServerSentEventReader.Callback, Callback {
@@ -39,12 +43,19 @@ public final class RealEventSource
     private final Request request;
     private final EventSourceListener listener;
 
+    /**
+     * Events not yet delivered to a {@link BatchedEventSourceListener}, or null for other listeners.
+     */
+    private final @Nullable
+    List<ServerSentEvent> batch;
+
     private @Nullable
     Call call;
 
     public RealEventSource(Request request, EventSourceListener listener) {
         this.request = request;
         this.listener = listener;
+        this.batch = listener instanceof BatchedEventSourceListener ? new ArrayList<>() : null;
     }
 
     public void connect(OkHttpClient client) {
@@ -90,6 +101,11 @@ public final class RealEventSource
                 while (reader.processNextEvent()) {
                 }
             } catch (Exception e) {
+                try {
+                    beforeRead(); // Deliver the events that were received before the failure.
+                } catch (Exception suppressed) {
+                    e.addSuppressed(suppressed);
+                }
                 listener.onFailure(this, e, response);
                 return;
             }
@@ -122,7 +138,19 @@ public final class RealEventSource
 
     @Override
     public void onEvent(@Nullable String id, @Nullable String type, String data) {
-        listener.onEvent(this, id, type, data);
+        if (batch != null) {
+            batch.add(new ServerSentEvent(id, type, data));
+        } else {
+            listener.onEvent(this, id, type, data);
+        }
+    }
+
+    @Override
+    public void beforeRead() {
+        if (batch == null || batch.isEmpty()) return;
+        List<ServerSentEvent> events = new ArrayList<>(batch);
+        batch.clear();
+        ((BatchedEventSourceListener) listener).onEvents(this, events);
     }
 
     @Override
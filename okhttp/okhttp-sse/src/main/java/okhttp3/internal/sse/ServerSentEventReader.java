@@ -34,6 +34,12 @@ public final class ServerSentEventReader {
         void onEvent(@Nullable String id, @Nullable String type, String data);
 
         void onRetryChange(long timeMs);
+
+        /**
+         * Invoked when every complete line that was read from the source has been processed, before
+         * the reader waits for more. Events delivered since the previous call arrived together.
+         */
+        void beforeRead();
     }
 
     private final BufferedSource source;
@@ -41,6 +47,17 @@ public final class ServerSentEventReader {
 
     private String lastId = null;
 
+    /**
+     * Event types are usually repeated, so the most recent one is kept to avoid decoding it again.
+     */
+    private ByteString lastType = null;
+
+    /**
+     * Holds the data of events with multiple data lines. Most events have one, which is read
+     * directly from the source.
+     */
+    private final Buffer data = new Buffer();
+
     public ServerSentEventReader(BufferedSource source, Callback callback) {
         if (source == null) throw new NullPointerException("source == null");
         if (callback == null) throw new NullPointerException("callback == null");
@@ -58,23 +75,27 @@ public final class ServerSentEventReader {
     boolean processNextEvent() throws IOException {
         String id = lastId;
         String type = null;
-        Buffer data = new Buffer();
+        String firstData = null;
 
         while (true) {
-            long lineEnd = source.indexOfElement(CRLF);
+            long lineEnd = source.getBuffer().indexOfElement(CRLF);
             if (lineEnd == -1L) {
-                return false;
+                callback.beforeRead();
+                lineEnd = source.indexOfElement(CRLF);
+                if (lineEnd == -1L) {
+                    return false;
+                }
             }
 
             switch (source.getBuffer().getByte(0)) {
                 case '\r':
                 case '\n':
-                    completeEvent(id, type, data);
+                    completeEvent(id, type, firstData);
                     return true;
 
                 case 'd':
                     if (isKey(DATA)) {
-                        parseData(data, lineEnd);
+                        firstData = parseData(firstData, lineEnd);
                         continue;
                     }
                     break;
@@ -106,28 +127,44 @@ public final class ServerSentEventReader {
         }
     }
 
-    private void completeEvent(String id, String type, Buffer data) throws IOException {
+    private void completeEvent(String id, String type, String firstData) throws IOException {
         skipCrAndOrLf();
 
-        if (data.size() != 0L) {
+        if (firstData != null) {
             lastId = id;
-            data.skip(1L); // Leading newline.
-            callback.onEvent(id, type, data.readUtf8());
+            callback.onEvent(id, type, data.size() != 0L ? data.readUtf8() : firstData);
         }
     }
 
-    private void parseData(Buffer data, long end) throws IOException {
-        data.writeByte('\n');
+    /**
+     * Reads a data line. Returns the event's first data line, which is {@code firstData} if this
+     * isn't it. Lines after the first are appended to {@link #data}, which then holds them all.
+     */
+    private String parseData(String firstData, long end) throws IOException {
         end -= skipNameAndDivider(4L);
-        source.readFully(data, end);
+        if (firstData == null) {
+            firstData = source.readUtf8(end);
+        } else {
+            if (data.size() == 0L) data.writeUtf8(firstData);
+            data.writeByte('\n');
+            source.readFully(data, end);
+        }
         skipCrAndOrLf();
+        return firstData;
     }
 
     private String parseEvent(long end) throws IOException {
         String type = null;
         end -= skipNameAndDivider(5L);
         if (end != 0L) {
-            type = source.readUtf8(end);
+            if (lastType == null
+                    || lastType.size() != end
+                    || !source.getBuffer().rangeEquals(0L, lastType)) {
+                lastType = source.readByteString(end);
+            } else {
+                source.skip(end);
+            }
+            type = lastType.utf8();
         }
         skipCrAndOrLf();
         return type;
@@ -164,8 +201,10 @@ public final class ServerSentEventReader {
      * a newline.
      */
     private boolean isKey(ByteString key) throws IOException {
-        if (source.rangeEquals(0, key)) {
-            byte nextByte = source.getBuffer().getByte(key.size());
+        // The line's end is buffered so there's no need to wait for more of it.
+        Buffer buffer = source.getBuffer();
+        if (buffer.rangeEquals(0, key)) {
+            byte nextByte = buffer.getByte(key.size());
             return nextByte == ':'
                     || nextByte == '\r'
                     || nextByte == '\n';
@@ -177,9 +216,14 @@ public final class ServerSentEventReader {
      * Consumes {@code \r}, {@code \r\n}, or {@code \n} from {@link #source}.
      */
     private void skipCrAndOrLf() throws IOException {
-        if ((source.readByte() & 0xff) == '\r'
-                && source.request(1)
-                && source.getBuffer().getByte(0) == '\n') {
+        if ((source.readByte() & 0xff) != '\r') return;
+
+        if (source.getBuffer().size() == 0L) {
+            // Only more data will tell if this is a CRLF.
+            callback.beforeRead();
+            if (!source.request(1)) return;
+        }
+        if (source.getBuffer().getByte(0) == '\n') {
             source.skip(1);
         }
     }
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.sse;
+
+import java.util.List;
+
+/**
+ * A listener that receives events in batches rather than one at a time. Each batch holds the events
+ * that were received from the network together, and is delivered before waiting for more. This is
+ * cheaper than {@link #onEvent} for event sources that send many small events.
+ *
+ * <p>{@link #onEvent} is not called on listeners of this type.
+ */
+public abstract class BatchedEventSourceListener extends EventSourceListener {
+    /**
+     * Invoked with one or more events, in the order that they were received. The list may be
+     * retained.
+     */
+    public abstract void onEvents(EventSource eventSource, List<ServerSentEvent> events);
+}
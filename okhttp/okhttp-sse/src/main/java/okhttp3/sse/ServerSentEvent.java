@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.sse;
+
+import java.util.Objects;
+
+import javax.annotation.Nullable;
+
+/**
+ * An event received from an event source.
+ */
+public final class ServerSentEvent {
+    private final @Nullable
+    String id;
+    private final @Nullable
+    String type;
+    private final String data;
+
+    public ServerSentEvent(@Nullable String id, @Nullable String type, String data) {
+        if (data == null) throw new NullPointerException("data == null");
+        this.id = id;
+        this.type = type;
+        this.data = data;
+    }
+
+    public @Nullable
+    String id() {
+        return id;
+    }
+
+    public @Nullable
+    String type() {
+        return type;
+    }
+
+    public String data() {
+        return data;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object other) {
+        return other instanceof ServerSentEvent
+                && Objects.equals(id, ((ServerSentEvent) other).id)
+                && Objects.equals(type, ((ServerSentEvent) other).type)
+                && data.equals(((ServerSentEvent) other).data);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 17;
+        result = 31 * result + Objects.hashCode(id);
+        result = 31 * result + Objects.hashCode(type);
+        result = 31 * result + data.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ServerSentEvent{id='" + id + "', type='" + type + "', data='" + data + "'}";
+    }
+}
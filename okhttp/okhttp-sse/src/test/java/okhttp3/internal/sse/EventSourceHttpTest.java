@@ -19,6 +19,10 @@ import org.junit.After;
 import org.junit.Rule;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import okhttp3.OkHttpClient;
@@ -26,8 +30,11 @@ import okhttp3.OkHttpClientTestRule;
 import okhttp3.Request;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.sse.BatchedEventSourceListener;
 import okhttp3.sse.EventSource;
+import okhttp3.sse.EventSourceListener;
 import okhttp3.sse.EventSources;
+import okhttp3.sse.ServerSentEvent;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -115,11 +122,89 @@ public final class EventSourceHttpTest {
         listener.assertFailure("timeout");
     }
 
+    @Test
+    public void batchedEvents() throws Exception {
+        server.enqueue(new MockResponse()
+                .setHeader("content-type", "text/event-stream")
+                .setBody(""
+                        + "data: a\n"
+                        + "\n"
+                        + "event: b\n"
+                        + "data: b\n"
+                        + "\n"
+                        + "id: 3\n"
+                        + "data: c\n"
+                        + "\n"));
+
+        BatchRecorder batchRecorder = new BatchRecorder();
+        newEventSource(batchRecorder);
+
+        List<ServerSentEvent> events = new ArrayList<>();
+        while (events.size() < 3) {
+            List<ServerSentEvent> batch = batchRecorder.takeBatch();
+            assertThat(batch).isNotEmpty();
+            events.addAll(batch);
+        }
+        assertThat(events).containsExactly(
+                new ServerSentEvent(null, null, "a"),
+                new ServerSentEvent(null, "b", "b"),
+                new ServerSentEvent("3", null, "c"));
+        assertThat(batchRecorder.takeBatch()).isNull(); // Closed.
+    }
+
+    @Test
+    public void batchIsDeliveredBeforeWaitingForMoreData() throws Exception {
+        server.enqueue(new MockResponse()
+                .setHeader("content-type", "text/event-stream")
+                .setBody(""
+                        + "data: a\n"
+                        + "\n"
+                        + "data: b\n"
+                        + "\n")
+                .throttleBody(10, 500, TimeUnit.MILLISECONDS));
+
+        BatchRecorder batchRecorder = new BatchRecorder();
+        newEventSource(batchRecorder);
+
+        assertThat(batchRecorder.takeBatch()).containsExactly(new ServerSentEvent(null, null, "a"));
+        assertThat(batchRecorder.takeBatch()).containsExactly(new ServerSentEvent(null, null, "b"));
+        assertThat(batchRecorder.takeBatch()).isNull(); // Closed.
+    }
+
     private EventSource newEventSource() {
+        return newEventSource(listener);
+    }
+
+    private EventSource newEventSource(EventSourceListener listener) {
         Request request = new Request.Builder()
                 .url(server.url("/"))
                 .build();
         EventSource.Factory factory = EventSources.createFactory(client);
         return factory.newEventSource(request, listener);
     }
+
+    static final class BatchRecorder extends BatchedEventSourceListener {
+        private static final List<ServerSentEvent> CLOSED = new ArrayList<>();
+
+        private final BlockingQueue<List<ServerSentEvent>> batches = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onEvents(EventSource eventSource, List<ServerSentEvent> events) {
+            batches.add(events);
+        }
+
+        @Override
+        public void onClosed(EventSource eventSource) {
+            batches.add(CLOSED);
+        }
+
+        /**
+         * Returns the next batch, or null if the event source was closed.
+         */
+        List<ServerSentEvent> takeBatch() throws InterruptedException {
+            List<ServerSentEvent> batch = batches.poll(10, TimeUnit.SECONDS);
+            if (batch == null) throw new AssertionError("Timed out waiting for events.");
+            return batch != CLOSED ? batch : null;
+        }
+    }
 }
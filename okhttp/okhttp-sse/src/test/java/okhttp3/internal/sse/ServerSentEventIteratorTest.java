@@ -49,6 +49,49 @@ public final class ServerSentEventIteratorTest {
         assertThat(callbacks.remove()).isEqualTo(new Event(null, null, "YHOO\n+2\n10"));
     }
 
+    @Test
+    public void multilineWithEmptyLines() throws IOException {
+        consumeEvents(""
+                + "data\n"
+                + "data: YHOO\n"
+                + "data\n"
+                + "\n");
+        assertThat(callbacks.remove()).isEqualTo(new Event(null, null, "\nYHOO\n"));
+    }
+
+    @Test
+    public void multilineFollowedBySingleLine() throws IOException {
+        consumeEvents(""
+                + "data: YHOO\n"
+                + "data: +2\n"
+                + "\n"
+                + "data: GOOG\n"
+                + "\n");
+        assertThat(callbacks.remove()).isEqualTo(new Event(null, null, "YHOO\n+2"));
+        assertThat(callbacks.remove()).isEqualTo(new Event(null, null, "GOOG"));
+    }
+
+    @Test
+    public void repeatedEventType() throws IOException {
+        consumeEvents(""
+                + "event: add\n"
+                + "data: 1\n"
+                + "\n"
+                + "event: add\n"
+                + "data: 2\n"
+                + "\n"
+                + "event: addition\n"
+                + "data: 3\n"
+                + "\n"
+                + "event: ad\n"
+                + "data: 4\n"
+                + "\n");
+        assertThat(callbacks.remove()).isEqualTo(new Event(null, "add", "1"));
+        assertThat(callbacks.remove()).isEqualTo(new Event(null, "add", "2"));
+        assertThat(callbacks.remove()).isEqualTo(new Event(null, "addition", "3"));
+        assertThat(callbacks.remove()).isEqualTo(new Event(null, "ad", "4"));
+    }
+
     @Test
     public void multilineCr() throws IOException {
         consumeEvents(""
@@ -208,6 +251,10 @@ public final class ServerSentEventIteratorTest {
             public void onRetryChange(long timeMs) {
                 callbacks.add(timeMs);
             }
+
+            @Override
+            public void beforeRead() {
+            }
         };
         Buffer buffer = new Buffer().writeUtf8(source);
         ServerSentEventReader reader = new ServerSentEventReader(buffer, callback);
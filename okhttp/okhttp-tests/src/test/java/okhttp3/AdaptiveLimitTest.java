@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.internal.io.InMemoryFileSystem;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.Timeout;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class AdaptiveLimitTest {
+    private static final long SERVICE_MILLIS = 20L;
+
+    @Rule
+    public final TestRule timeout = new Timeout(30_000, TimeUnit.MILLISECONDS);
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+    @Rule
+    public final OkHttpClientTestRule clientTestRule = new OkHttpClientTestRule();
+    @Rule
+    public final InMemoryFileSystem fileSystem = new InMemoryFileSystem();
+
+    @Test
+    public void limitGrowsWhileResponseTimeIsSteady() {
+        AdaptiveLimit limit = new AdaptiveLimit(5);
+        for (int i = 0; i < 100; i++) {
+            limit.recordResponse(millis(10), limit.limit(), 64);
+        }
+        assertThat(limit.limit()).isGreaterThan(5);
+    }
+
+    @Test
+    public void limitIsCappedByMaxLimit() {
+        AdaptiveLimit limit = new AdaptiveLimit(5);
+        for (int i = 0; i < 1000; i++) {
+            limit.recordResponse(millis(10), limit.limit(), 20);
+        }
+        assertThat(limit.limit()).isEqualTo(20);
+    }
+
+    @Test
+    public void limitDoesNotGrowWhenCallerIsMostlyIdle() {
+        AdaptiveLimit limit = new AdaptiveLimit(5);
+        for (int i = 0; i < 100; i++) {
+            limit.recordResponse(millis(10), 1, 64);
+        }
+        assertThat(limit.limit()).isEqualTo(5);
+    }
+
+    @Test
+    public void limitShrinksWhenResponseTimeRises() {
+        AdaptiveLimit limit = new AdaptiveLimit(16);
+        limit.recordResponse(millis(10), 16, 64);
+        for (int i = 0; i < 100; i++) {
+            limit.recordResponse(millis(10) * limit.limit() / 2, limit.limit(), 64);
+        }
+        assertThat(limit.limit()).isBetween(1, 6);
+    }
+
+    @Test
+    public void hostThatBecomesSlowerIsEventuallyNotConsideredOverloaded() {
+        AdaptiveLimit limit = new AdaptiveLimit(16);
+        limit.recordResponse(millis(10), 16, 64);
+        for (int i = 0; i < 2 * AdaptiveLimit.WINDOW_SIZE; i++) {
+            limit.recordResponse(millis(40), limit.limit(), 64);
+        }
+        int limitAfterSlowdown = limit.limit();
+        for (int i = 0; i < 100; i++) {
+            limit.recordResponse(millis(40), limit.limit(), 64);
+        }
+        assertThat(limit.limit()).isGreaterThan(limitAfterSlowdown);
+    }
+
+    @Test
+    public void queueDelayIsAveraged() {
+        AdaptiveLimit limit = new AdaptiveLimit(5);
+        for (int i = 0; i < 100; i++) {
+            limit.recordQueueDelay(millis(10));
+        }
+        assertThat(TimeUnit.NANOSECONDS.toMillis(limit.queueDelayNanos())).isBetween(9L, 10L);
+    }
+
+    /**
+     * A backend that serves a limited number of requests concurrently gets slower. With a static
+     * limit its response time would grow with its queue. The adaptive limit keeps the extra requests
+     * queued in the client instead, so the backend's response time stays close to its service time.
+     */
+    @Test
+    public void responseTimeStaysStableAsBackendSlowsDown() throws Exception {
+        SimulatedBackend backend = new SimulatedBackend(8);
+        server.setDispatcher(backend);
+
+        OkHttpClient client = clientTestRule.client;
+        Dispatcher dispatcher = client.dispatcher();
+        dispatcher.setMaxRequestsPerHost(16);
+        dispatcher.setAdaptiveRequestsPerHost(true);
+        String host = server.getHostName();
+
+        List<Long> fastBackend = run(client, server.url("/"), 300);
+        assertThat(median(fastBackend)).isLessThan(3 * SERVICE_MILLIS);
+        int fastBackendLimit = dispatcher.getMaxRequestsPerHost(host);
+        assertThat(fastBackendLimit).isGreaterThanOrEqualTo(8);
+
+        backend.capacity = new Semaphore(2);
+        List<Long> slowBackend = run(client, server.url("/"), 300);
+        List<Long> settled = slowBackend.subList(slowBackend.size() - 100, slowBackend.size());
+        assertThat(median(settled)).isLessThan(3 * SERVICE_MILLIS);
+        assertThat(dispatcher.getMaxRequestsPerHost(host)).isLessThan(fastBackendLimit);
+
+        // The requests the backend couldn't take waited in the dispatcher instead.
+        assertThat(dispatcher.getQueueDelayMillis(host)).isGreaterThan(SERVICE_MILLIS);
+        assertThat(dispatcher.getMaxRequestsPerHost()).isEqualTo(16);
+    }
+
+    /**
+     * Like {@link #responseTimeStaysStableAsBackendSlowsDown} but without the network, so the limit's
+     * response to a queueing backend can be checked exactly.
+     */
+    @Test
+    public void limitFollowsCapacityOfSimulatedBackend() {
+        AdaptiveLimit limit = new AdaptiveLimit(16);
+        limit.recordResponse(millis(SERVICE_MILLIS), 1, 64);
+
+        long fastBackendRtt = simulate(limit, 8, 300);
+        assertThat(fastBackendRtt).isLessThan(3 * millis(SERVICE_MILLIS));
+        int fastBackendLimit = limit.limit();
+        assertThat(fastBackendLimit).isGreaterThanOrEqualTo(8);
+
+        // With the static limit of 16 each response would take 8 service times.
+        long slowBackendRtt = simulate(limit, 2, 300);
+        assertThat(slowBackendRtt).isLessThan(3 * millis(SERVICE_MILLIS));
+        assertThat(limit.limit()).isLessThan(fastBackendLimit);
+    }
+
+    @Test
+    public void cacheHitsDoNotAffectLimit() throws Exception {
+        SimulatedBackend backend = new SimulatedBackend(16);
+        server.setDispatcher(backend);
+        Cache cache = new Cache(new File("/cache/"), Integer.MAX_VALUE, fileSystem);
+        OkHttpClient client = clientTestRule.client.newBuilder()
+                .cache(cache)
+                .build();
+        Dispatcher dispatcher = client.dispatcher();
+        dispatcher.setMaxRequestsPerHost(16);
+        dispatcher.setAdaptiveRequestsPerHost(true);
+        String host = server.getHostName();
+
+        client.newCall(new Request.Builder()
+                .url(server.url("/cached"))
+                .build()).execute().close();
+        run(client, server.url("/cached"), 50);
+        assertThat(cache.hitCount()).isEqualTo(50);
+
+        // Had the hits been sampled, these responses would look twice as slow as the host's no-load
+        // response time, and the limit would shrink towards 4.
+        run(client, server.url("/"), 50);
+        assertThat(dispatcher.getMaxRequestsPerHost(host)).isGreaterThan(10);
+        cache.delete();
+    }
+
+    @Test
+    public void staticLimitIsUsedWhenNotAdaptive() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(7);
+        assertThat(dispatcher.isAdaptiveRequestsPerHost()).isFalse();
+        assertThat(dispatcher.getMaxRequestsPerHost("example.com")).isEqualTo(7);
+        assertThat(dispatcher.getQueueDelayMillis("example.com")).isEqualTo(0L);
+    }
+
+    /**
+     * Enqueues {@code count} calls to {@code url} and returns the backend's response times in the
+     * order that the calls completed.
+     */
+    private List<Long> run(OkHttpClient client, HttpUrl url, int count)
+            throws InterruptedException {
+        List<Long> responseTimes = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            Request request = new Request.Builder()
+                    .url(url)
+                    .build();
+            client.newCall(request).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    latch.countDown();
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) throws IOException {
+                    try (Response r = response) {
+                        r.body().string();
+                        responseTimes.add(r.receivedResponseAtMillis() - r.sentRequestAtMillis());
+                    }
+                    latch.countDown();
+                }
+            });
+        }
+        latch.await();
+        assertThat(responseTimes).hasSize(count);
+        return new ArrayList<>(responseTimes);
+    }
+
+    private static long median(List<Long> values) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+
+    /**
+     * Records {@code count} responses from a backend that serves {@code capacity} requests at a time
+     * and queues the rest, while the client keeps as many requests in flight as {@code limit} allows.
+     * Returns the response time of the last request.
+     */
+    private static long simulate(AdaptiveLimit limit, int capacity, int count) {
+        long rttNanos = 0L;
+        for (int i = 0; i < count; i++) {
+            int inFlight = limit.limit();
+            rttNanos = millis(SERVICE_MILLIS) * Math.max(inFlight, capacity) / capacity;
+            limit.recordResponse(rttNanos, inFlight, 64);
+        }
+        return rttNanos;
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Serves {@code capacity} requests at a time. Others wait in its queue. Responses to {@code
+     * /cached} may be cached.
+     */
+    static final class SimulatedBackend extends okhttp3.mockwebserver.Dispatcher {
+        volatile Semaphore capacity;
+
+        SimulatedBackend(int capacity) {
+            this.capacity = new Semaphore(capacity);
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            Semaphore capacity = this.capacity;
+            capacity.acquire();
+            try {
+                Thread.sleep(SERVICE_MILLIS);
+            } finally {
+                capacity.release();
+            }
+            MockResponse response = new MockResponse().setBody("ok");
+            if (request.getPath().equals("/cached")) {
+                response.setHeader("Cache-Control", "max-age=60");
+            }
+            return response;
+        }
+    }
+}
@@ -109,6 +109,28 @@ public final class CacheControlTest {
         assertThat(cacheControl.toString()).isEqualTo(header);
     }
 
+    @Test
+    public void parseStaleDirectives() throws Exception {
+        String header = "max-age=1, stale-while-revalidate=2, stale-if-error=3";
+        CacheControl cacheControl = CacheControl.parse(new Headers.Builder()
+                .set("Cache-Control", header)
+                .build());
+        assertThat(cacheControl.maxAgeSeconds()).isEqualTo(1);
+        assertThat(cacheControl.staleWhileRevalidateSeconds()).isEqualTo(2);
+        assertThat(cacheControl.staleIfErrorSeconds()).isEqualTo(3);
+        assertThat(cacheControl.toString()).isEqualTo(header);
+    }
+
+    @Test
+    public void staleIfErrorBuilder() throws Exception {
+        CacheControl cacheControl = new CacheControl.Builder()
+                .staleIfError(2, TimeUnit.MINUTES)
+                .build();
+        assertThat(cacheControl.toString()).isEqualTo("stale-if-error=120");
+        assertThat(cacheControl.staleIfErrorSeconds()).isEqualTo(120);
+        assertThat(cacheControl.staleWhileRevalidateSeconds()).isEqualTo(-1);
+    }
+
     @Test
     public void parseIgnoreCacheControlExtensions() throws Exception {
         // Example from http://www.w3.org/Protocols/rfc2616/rfc2616-sec14.html#sec14.9.6
@@ -32,9 +32,11 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
@@ -47,6 +49,7 @@ import okhttp3.internal.platform.Platform;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
 import okhttp3.tls.HandshakeCertificates;
 import okio.Buffer;
 import okio.BufferedSink;
@@ -1878,6 +1881,460 @@ public final class CacheTest {
         assertThat(get(server.url("/")).body().string()).isEqualTo("B");
     }
 
+    @Test
+    public void varyVariantsAreCachedSideBySide() throws Exception {
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=60")
+                .addHeader("Vary: Accept-Language")
+                .setBody("A"));
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=60")
+                .addHeader("Vary: Accept-Language")
+                .setBody("B"));
+
+        HttpUrl url = server.url("/");
+        assertThat(get(url, "Accept-Language", "fr-CA").body().string()).isEqualTo("A");
+        assertThat(get(url, "Accept-Language", "en-US").body().string()).isEqualTo("B");
+        assertThat(get(url, "Accept-Language", "fr-CA").body().string()).isEqualTo("A");
+        assertThat(get(url, "Accept-Language", "en-US").body().string()).isEqualTo("B");
+        assertThat(cache.networkCount()).isEqualTo(2);
+        assertThat(cache.hitCount()).isEqualTo(2);
+
+        // Each variant is a cached response for the URL.
+        Iterator<String> i = cache.urls();
+        assertThat(i.next()).isEqualTo(url.toString());
+        assertThat(i.next()).isEqualTo(url.toString());
+        assertThat(i.hasNext()).isFalse();
+    }
+
+    @Test
+    public void invalidatingVaryingUrlRemovesAllVariants() throws Exception {
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=60")
+                .addHeader("Vary: Accept-Language")
+                .setBody("A"));
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=60")
+                .addHeader("Vary: Accept-Language")
+                .setBody("B"));
+        server.enqueue(new MockResponse()
+                .setBody("C"));
+        server.enqueue(new MockResponse()
+                .setBody("D"));
+        server.enqueue(new MockResponse()
+                .setBody("E"));
+
+        HttpUrl url = server.url("/");
+        assertThat(get(url, "Accept-Language", "fr-CA").body().string()).isEqualTo("A");
+        assertThat(get(url, "Accept-Language", "en-US").body().string()).isEqualTo("B");
+
+        Request invalidate = new Request.Builder()
+                .url(url)
+                .post(RequestBody.create(null, ""))
+                .build();
+        assertThat(client.newCall(invalidate).execute().body().string()).isEqualTo("C");
+
+        assertThat(get(url, "Accept-Language", "fr-CA").body().string()).isEqualTo("D");
+        assertThat(get(url, "Accept-Language", "en-US").body().string()).isEqualTo("E");
+    }
+
+    @Test
+    public void oldestVariantIsEvictedBeyondMaxVariants() throws Exception {
+        HttpUrl url = server.url("/");
+        for (int i = 0; i <= Cache.MAX_VARIANTS; i++) {
+            server.enqueue(new MockResponse()
+                    .addHeader("Cache-Control: max-age=60")
+                    .addHeader("Vary: X-Variant")
+                    .setBody("variant " + i));
+            assertThat(get(url, "X-Variant", Integer.toString(i)).body().string())
+                    .isEqualTo("variant " + i);
+        }
+        server.enqueue(new MockResponse()
+                .setBody("refetched"));
+
+        assertThat(get(url, "X-Variant", "1").body().string()).isEqualTo("variant 1");
+        assertThat(get(url, "X-Variant", "0").body().string()).isEqualTo("refetched");
+    }
+
+    @Test
+    public void changedVaryFieldsReplaceVariants() throws Exception {
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=60")
+                .addHeader("Vary: Accept-Language")
+                .setBody("A"));
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=60")
+                .addHeader("Vary: X-Variant")
+                .setBody("B"));
+        server.enqueue(new MockResponse()
+                .setBody("C"));
+
+        HttpUrl url = server.url("/");
+        assertThat(get(url, "Accept-Language", "fr-CA").body().string()).isEqualTo("A");
+        Request request = new Request.Builder()
+                .url(url)
+                .header("Accept-Language", "en-US")
+                .header("X-Variant", "1")
+                .build();
+        assertThat(client.newCall(request).execute().body().string()).isEqualTo("B");
+        assertThat(client.newCall(request).execute().body().string()).isEqualTo("B");
+        assertThat(get(url, "Accept-Language", "fr-CA").body().string()).isEqualTo("C");
+    }
+
+    @Test
+    public void responseWithoutVaryReplacesVariants() throws Exception {
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=60")
+                .addHeader("Vary: Accept-Language")
+                .setBody("A"));
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=60")
+                .addHeader("Vary: Accept-Language")
+                .setBody("B"));
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=60")
+                .setBody("C"));
+
+        HttpUrl url = server.url("/");
+        assertThat(get(url, "Accept-Language", "fr-CA").body().string()).isEqualTo("A");
+        assertThat(get(url, "Accept-Language", "en-US").body().string()).isEqualTo("B");
+        assertThat(get(url).body().string()).isEqualTo("C");
+        assertThat(get(url, "Accept-Language", "fr-CA").body().string()).isEqualTo("C");
+
+        // The variants were removed with the index that listed them.
+        Iterator<String> i = cache.urls();
+        assertThat(i.next()).isEqualTo(url.toString());
+        assertThat(i.hasNext()).isFalse();
+    }
+
+    @Test
+    public void staleWhileRevalidateServesStaleAndRefreshesInBackground() throws Exception {
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=0, stale-while-revalidate=60")
+                .addHeader("ETag: v1")
+                .setBody("A"));
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=60")
+                .addHeader("ETag: v2")
+                .setBody("B")
+                .setHeadersDelay(500, TimeUnit.MILLISECONDS));
+
+        HttpUrl url = server.url("/");
+        assertThat(get(url).body().string()).isEqualTo("A");
+
+        // The stale response is served while it is revalidated, and revalidations are merged.
+        for (int i = 0; i < 3; i++) {
+            Response response = get(url);
+            assertThat(response.body().string()).isEqualTo("A");
+            assertThat(response.header("Warning")).isEqualTo(
+                    "110 HttpURLConnection \"Response is stale\"");
+        }
+        RecordedRequest revalidation = server.takeRequest(); // The first request.
+        assertThat(revalidation.getHeader("If-None-Match")).isNull();
+        revalidation = server.takeRequest();
+        assertThat(revalidation.getHeader("If-None-Match")).isEqualTo("v1");
+
+        // Once the revalidation completes, the fresh response is served.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        String body;
+        do {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(50);
+            body = get(url).body().string();
+        } while (!body.equals("B"));
+        assertThat(server.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void staleWhileRevalidateRefreshesEachVariant() throws Exception {
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=0, stale-while-revalidate=60")
+                .addHeader("Vary: Accept-Language")
+                .addHeader("ETag: en1")
+                .setBody("A"));
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=0, stale-while-revalidate=60")
+                .addHeader("Vary: Accept-Language")
+                .addHeader("ETag: fr1")
+                .setBody("B"));
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=60")
+                .addHeader("Vary: Accept-Language")
+                .setBody("C")
+                .setHeadersDelay(500, TimeUnit.MILLISECONDS));
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=60")
+                .addHeader("Vary: Accept-Language")
+                .setBody("D")
+                .setHeadersDelay(500, TimeUnit.MILLISECONDS));
+
+        HttpUrl url = server.url("/");
+        assertThat(get(url, "Accept-Language", "en-US").body().string()).isEqualTo("A");
+        assertThat(get(url, "Accept-Language", "fr-CA").body().string()).isEqualTo("B");
+        server.takeRequest();
+        server.takeRequest();
+
+        // Both variants are stale. Revalidating one doesn't stop the other from being revalidated.
+        assertThat(get(url, "Accept-Language", "en-US").body().string()).isEqualTo("A");
+        assertThat(get(url, "Accept-Language", "fr-CA").body().string()).isEqualTo("B");
+        Set<String> revalidated = new LinkedHashSet<>();
+        for (int i = 0; i < 2; i++) {
+            RecordedRequest revalidation = server.takeRequest(5, TimeUnit.SECONDS);
+            assertThat(revalidation).isNotNull();
+            revalidated.add(revalidation.getHeader("If-None-Match"));
+        }
+        assertThat(revalidated).containsExactlyInAnyOrder("en1", "fr1");
+
+        // Wait for both refreshed variants to be stored.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (get(url, "Accept-Language", "en-US").body().string().equals("A")
+                || get(url, "Accept-Language", "fr-CA").body().string().equals("B")) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(50);
+        }
+    }
+
+    @Test
+    public void staleWhileRevalidateDoesNotServeResponsesBeyondItsWindow() throws Exception {
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=0, stale-while-revalidate=60")
+                .addHeader("Date: " + formatDate(-120, TimeUnit.SECONDS))
+                .setBody("A"));
+        server.enqueue(new MockResponse()
+                .setBody("B"));
+
+        HttpUrl url = server.url("/");
+        assertThat(get(url).body().string()).isEqualTo("A");
+        assertThat(get(url).body().string()).isEqualTo("B");
+        assertThat(cache.hitCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void staleWhileRevalidateDoesNotUseNetworkIfOnlyIfCached() throws Exception {
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=0, stale-while-revalidate=60")
+                .setBody("A"));
+
+        HttpUrl url = server.url("/");
+        assertThat(get(url).body().string()).isEqualTo("A");
+        Request request = new Request.Builder()
+                .url(url)
+                .cacheControl(new CacheControl.Builder().onlyIfCached().build())
+                .build();
+        Response response = client.newCall(request).execute();
+        assertThat(response.body().string()).isEqualTo("A");
+        assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void staleIfErrorServesStaleResponseOnServerError() throws Exception {
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=0, stale-if-error=60")
+                .setBody("A"));
+        server.enqueue(new MockResponse()
+                .setResponseCode(503)
+                .setBody("Service unavailable"));
+
+        HttpUrl url = server.url("/");
+        assertThat(get(url).body().string()).isEqualTo("A");
+        Response response = get(url);
+        assertThat(response.body().string()).isEqualTo("A");
+        assertThat(response.headers("Warning")).containsExactly(
+                "110 HttpURLConnection \"Response is stale\"",
+                "111 HttpURLConnection \"Revalidation failed\"");
+        assertThat(response.cacheResponse()).isNotNull();
+        assertThat(response.networkResponse()).isNull();
+        assertThat(cache.hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void staleIfErrorServesStaleResponseOnConnectionFailure() throws Exception {
+        client = client.newBuilder()
+                .retryOnConnectionFailure(false)
+                .build();
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=0, stale-if-error=60")
+                .addHeader("ETag: v1")
+                .setBody("A"));
+        server.enqueue(new MockResponse()
+                .setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST));
+
+        HttpUrl url = server.url("/");
+        assertThat(get(url).body().string()).isEqualTo("A");
+        assertThat(get(url).body().string()).isEqualTo("A");
+    }
+
+    @Test
+    public void staleIfErrorRequestDirective() throws Exception {
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=0")
+                .addHeader("ETag: v1")
+                .setBody("A"));
+        server.enqueue(new MockResponse()
+                .setResponseCode(500));
+        server.enqueue(new MockResponse()
+                .setResponseCode(500));
+
+        HttpUrl url = server.url("/");
+        assertThat(get(url).body().string()).isEqualTo("A");
+        assertThat(get(url).code()).isEqualTo(500);
+
+        Request request = new Request.Builder()
+                .url(url)
+                .cacheControl(new CacheControl.Builder().staleIfError(60, TimeUnit.SECONDS).build())
+                .build();
+        Response response = client.newCall(request).execute();
+        assertThat(response.code()).isEqualTo(200);
+        assertThat(response.body().string()).isEqualTo("A");
+    }
+
+    @Test
+    public void staleIfErrorDoesNotServeResponsesThatMustRevalidate() throws Exception {
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=0, stale-if-error=60, must-revalidate")
+                .setBody("A"));
+        server.enqueue(new MockResponse()
+                .setResponseCode(503));
+
+        HttpUrl url = server.url("/");
+        assertThat(get(url).body().string()).isEqualTo("A");
+        assertThat(get(url).code()).isEqualTo(503);
+    }
+
+    @Test
+    public void gzipCompressedBodyIsDecompressedOnRead() throws Exception {
+        compressedBodyIsDecompressedOnRead(CacheCompression.gzip(1024, "text/*"));
+    }
+
+    @Test
+    public void deflateCompressedBodyIsDecompressedOnRead() throws Exception {
+        compressedBodyIsDecompressedOnRead(CacheCompression.deflate(1024, "text/*"));
+    }
+
+    private void compressedBodyIsDecompressedOnRead(CacheCompression compression) throws Exception {
+        useCompression(compression);
+        String body = repeat("Hello, world! ", 1000);
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=60")
+                .addHeader("Content-Type: text/plain")
+                .setBody(body));
+
+        HttpUrl url = server.url("/");
+        assertThat(get(url).body().string()).isEqualTo(body);
+        Response cached = get(url);
+        assertThat(cached.body().string()).isEqualTo(body);
+        assertThat(cached.header("Content-Length")).isEqualTo(Integer.toString(body.length()));
+        assertThat(cached.headers().names()).doesNotContain(
+                Platform.get().getPrefix() + "-Body-Encoding");
+        assertThat(cache.hitCount()).isEqualTo(1);
+        assertThat(cache.size()).isLessThan(1024L);
+    }
+
+    @Test
+    public void compressedBodyOfUnknownLength() throws Exception {
+        useCompression(CacheCompression.gzip(1024, "text/*"));
+        String body = repeat("Hello, world! ", 1000);
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=60")
+                .addHeader("Content-Type: text/plain")
+                .setChunkedBody(body, 1024));
+
+        HttpUrl url = server.url("/");
+        assertThat(get(url).body().string()).isEqualTo(body);
+        assertThat(get(url).body().string()).isEqualTo(body);
+        assertThat(cache.hitCount()).isEqualTo(1);
+        assertThat(cache.size()).isLessThan(1024L);
+    }
+
+    @Test
+    public void bodiesThatDontMatchCompressionAreStoredAsReceived() throws Exception {
+        useCompression(CacheCompression.gzip(1024, "text/*"));
+        String body = repeat("Hello, world! ", 1000);
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=60")
+                .addHeader("Content-Type: application/octet-stream")
+                .setBody(body));
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=60")
+                .addHeader("Content-Type: text/plain")
+                .setBody("Too small to compress"));
+
+        assertThat(get(server.url("/a")).body().string()).isEqualTo(body);
+        assertThat(cache.size()).isGreaterThan((long) body.length());
+
+        long sizeBefore = cache.size();
+        assertThat(get(server.url("/b")).body().string()).isEqualTo("Too small to compress");
+        assertThat(get(server.url("/b")).body().string()).isEqualTo("Too small to compress");
+        assertThat(cache.size() - sizeBefore).isGreaterThan((long) "Too small to compress".length());
+        assertThat(cache.hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void conditionalCacheHitKeepsCompressedBody() throws Exception {
+        useCompression(CacheCompression.gzip(0));
+        String body = repeat("Hello, world! ", 1000);
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=0")
+                .addHeader("ETag: v1")
+                .setBody(body));
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=0")
+                .addHeader("ETag: v1")
+                .setResponseCode(HttpURLConnection.HTTP_NOT_MODIFIED));
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=0")
+                .addHeader("ETag: v1")
+                .setResponseCode(HttpURLConnection.HTTP_NOT_MODIFIED));
+
+        HttpUrl url = server.url("/");
+        assertThat(get(url).body().string()).isEqualTo(body);
+        assertThat(get(url).body().string()).isEqualTo(body);
+        assertThat(get(url).body().string()).isEqualTo(body);
+        assertThat(cache.hitCount()).isEqualTo(2);
+        assertThat(server.takeRequest().getHeader("If-None-Match")).isNull();
+        assertThat(server.takeRequest().getHeader("If-None-Match")).isEqualTo("v1");
+        assertThat(server.takeRequest().getHeader("If-None-Match")).isEqualTo("v1");
+    }
+
+    @Test
+    public void compressionOnlyAppliesToBodiesWithoutContentEncoding() throws Exception {
+        useCompression(CacheCompression.gzip(0));
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control: max-age=60")
+                .addHeader("Content-Encoding: gzip")
+                .setBody(gzip("ABCABCABC")));
+
+        HttpUrl url = server.url("/");
+        assertThat(get(url).body().string()).isEqualTo("ABCABCABC");
+        assertThat(get(url).body().string()).isEqualTo("ABCABCABC");
+        assertThat(cache.hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void compressionRejectsMalformedContentTypes() {
+        try {
+            CacheCompression.gzip(0, "text");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private void useCompression(CacheCompression compression) throws IOException {
+        cache.delete();
+        cache = new Cache(new File("/cache/"), Integer.MAX_VALUE, fileSystem, compression);
+        client = client.newBuilder()
+                .cache(cache)
+                .build();
+    }
+
+    private static String repeat(String s, int count) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            result.append(s);
+        }
+        return result.toString();
+    }
+
     @Test
     public void varyAndHttps() throws Exception {
         server.useHttps(handshakeCertificates.sslSocketFactory(), false);
@@ -2609,6 +3066,14 @@ public final class CacheTest {
         return client.newCall(request).execute();
     }
 
+    private Response get(HttpUrl url, String headerName, String headerValue) throws IOException {
+        Request request = new Request.Builder()
+                .url(url)
+                .header(headerName, headerValue)
+                .build();
+        return client.newCall(request).execute();
+    }
+
     private void writeFile(File directory, String file, String content) throws IOException {
         BufferedSink sink = Okio.buffer(fileSystem.sink(new File(directory, file)));
         sink.writeUtf8(content);
@@ -17,12 +17,14 @@ package okhttp3;
 
 import org.junit.Test;
 
+import java.security.cert.Certificate;
 import java.util.Arrays;
 import java.util.List;
 
 import javax.net.ssl.SSLPeerUnverifiedException;
 
 import okhttp3.CertificatePinner.Pin;
+import okhttp3.internal.tls.CertificateChainCleaner;
 import okhttp3.tls.HeldCertificate;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -316,4 +318,58 @@ public final class CertificatePinnerTest {
         assertThat(certificatePinner.findMatchingPins("example.example.com"))
                 .containsExactly(expectedPin);
     }
+
+    @Test
+    public void successfulCheckIsCached() throws Exception {
+        CountingChainCleaner cleaner = new CountingChainCleaner();
+        CertificatePinner certificatePinner = new CertificatePinner.Builder()
+                .add("example.com", certA1Sha256Pin)
+                .add("*.example.com", certA1Sha256Pin)
+                .build()
+                .withCertificateChainCleaner(cleaner);
+
+        certificatePinner.check("example.com", certA1.certificate());
+        certificatePinner.check("example.com", certA1.certificate());
+        assertThat(cleaner.count).isEqualTo(1);
+
+        // The result is specific to the hostname.
+        certificatePinner.check("a.example.com", certA1.certificate());
+        assertThat(cleaner.count).isEqualTo(2);
+    }
+
+    @Test
+    public void failedCheckIsNotCached() throws Exception {
+        CountingChainCleaner cleaner = new CountingChainCleaner();
+        CertificatePinner certificatePinner = new CertificatePinner.Builder()
+                .add("example.com", certA1Sha256Pin)
+                .build()
+                .withCertificateChainCleaner(cleaner);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                certificatePinner.check("example.com", certB1.certificate());
+                fail();
+            } catch (SSLPeerUnverifiedException expected) {
+            }
+        }
+        assertThat(cleaner.count).isEqualTo(2);
+
+        // A cached success for one chain doesn't cover another.
+        certificatePinner.check("example.com", certA1.certificate());
+        try {
+            certificatePinner.check("example.com", certB1.certificate());
+            fail();
+        } catch (SSLPeerUnverifiedException expected) {
+        }
+    }
+
+    static final class CountingChainCleaner extends CertificateChainCleaner {
+        int count;
+
+        @Override
+        public List<Certificate> clean(List<Certificate> chain, String hostname) {
+            count++;
+            return chain;
+        }
+    }
 }
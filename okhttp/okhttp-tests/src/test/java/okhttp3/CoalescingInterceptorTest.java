@@ -0,0 +1,355 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.Timeout;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class CoalescingInterceptorTest {
+    @Rule
+    public final TestRule timeout = new Timeout(30_000, TimeUnit.MILLISECONDS);
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+    @Rule
+    public final OkHttpClientTestRule clientTestRule = new OkHttpClientTestRule();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    /** The server doesn't respond until this is released. */
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final Queue<MockResponse> responses = new ConcurrentLinkedQueue<>();
+
+    @Before
+    public void setUp() {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                release.await();
+                return responses.remove();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void identicalRequestsAreCoalesced() throws Exception {
+        CoalescingInterceptor interceptor = new CoalescingInterceptor();
+        OkHttpClient client = client(interceptor);
+        responses.add(new MockResponse()
+                .addHeader("Content-Type: application/json")
+                .setBody("{\"config\":true}"));
+
+        List<Future<Response>> calls = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            calls.add(execute(client, new Request.Builder()
+                    .url(server.url("/config"))
+                    .tag(String.class, "call " + i)
+                    .build()));
+        }
+        awaitRequestCount(interceptor, 5);
+        release.countDown();
+
+        for (int i = 0; i < 5; i++) {
+            Response response = calls.get(i).get();
+            assertThat(response.request().tag(String.class)).isEqualTo("call " + i);
+            assertThat(response.body().contentType()).isEqualTo(MediaType.get("application/json"));
+            assertThat(response.body().string()).isEqualTo("{\"config\":true}");
+        }
+        assertThat(server.getRequestCount()).isEqualTo(1);
+        assertThat(interceptor.requestCount()).isEqualTo(5);
+        assertThat(interceptor.coalescedCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void requestsWithDifferentKeyHeadersAreNotCoalesced() throws Exception {
+        CoalescingInterceptor interceptor = new CoalescingInterceptor.Builder()
+                .keyHeaders("Authorization")
+                .build();
+        OkHttpClient client = client(interceptor);
+        responses.add(new MockResponse().setBody("a"));
+        responses.add(new MockResponse().setBody("b"));
+
+        HttpUrl url = server.url("/token");
+        Future<Response> a1 = execute(client, new Request.Builder()
+                .url(url)
+                .header("Authorization", "a")
+                .build());
+        Future<Response> b = execute(client, new Request.Builder()
+                .url(url)
+                .header("Authorization", "b")
+                .build());
+        awaitRequestCount(interceptor, 2);
+        Future<Response> a2 = execute(client, new Request.Builder()
+                .url(url)
+                .header("Authorization", "a")
+                .header("Accept", "text/plain")
+                .build());
+        awaitRequestCount(interceptor, 3);
+        release.countDown();
+
+        assertThat(a1.get().body().string()).isEqualTo(a2.get().body().string());
+        assertThat(b.get().body().string()).isNotEqualTo(a1.get().body().string());
+        assertThat(server.getRequestCount()).isEqualTo(2);
+        assertThat(interceptor.coalescedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void requestsWithDifferentHeadersAreNotCoalescedByDefault() throws Exception {
+        CoalescingInterceptor interceptor = new CoalescingInterceptor();
+        OkHttpClient client = client(interceptor);
+        responses.add(new MockResponse().setBody("a"));
+        responses.add(new MockResponse().setBody("b"));
+
+        HttpUrl url = server.url("/token");
+        Future<Response> a = execute(client, new Request.Builder()
+                .url(url)
+                .build());
+        Future<Response> b = execute(client, new Request.Builder()
+                .url(url)
+                .header("Accept", "text/plain")
+                .build());
+        awaitRequestCount(interceptor, 2);
+        release.countDown();
+
+        a.get().close();
+        b.get().close();
+        assertThat(server.getRequestCount()).isEqualTo(2);
+        assertThat(interceptor.coalescedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void postsAreNotCoalesced() throws Exception {
+        CoalescingInterceptor interceptor = new CoalescingInterceptor();
+        OkHttpClient client = client(interceptor);
+        release.countDown();
+        responses.add(new MockResponse().setBody("a"));
+
+        Response response = client.newCall(new Request.Builder()
+                .url(server.url("/"))
+                .post(RequestBody.create(null, "body"))
+                .build()).execute();
+        assertThat(response.body().string()).isEqualTo("a");
+        assertThat(interceptor.requestCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void largeBodiesAreNotShared() throws Exception {
+        CoalescingInterceptor interceptor = new CoalescingInterceptor.Builder()
+                .maxBodySize(4)
+                .build();
+        OkHttpClient client = client(interceptor);
+        responses.add(new MockResponse().setBody("abcdefgh"));
+        responses.add(new MockResponse().setBody("abcdefgh"));
+
+        Future<Response> first = execute(client, new Request.Builder()
+                .url(server.url("/"))
+                .build());
+        Future<Response> second = execute(client, new Request.Builder()
+                .url(server.url("/"))
+                .build());
+        awaitRequestCount(interceptor, 2);
+        release.countDown();
+
+        assertThat(first.get().body().string()).isEqualTo("abcdefgh");
+        assertThat(second.get().body().string()).isEqualTo("abcdefgh");
+        assertThat(server.getRequestCount()).isEqualTo(2);
+        assertThat(interceptor.coalescedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void bodiesOfUnknownLengthAreNotShared() throws Exception {
+        CoalescingInterceptor interceptor = new CoalescingInterceptor();
+        OkHttpClient client = client(interceptor);
+        responses.add(new MockResponse().setChunkedBody("abc", 1));
+        responses.add(new MockResponse().setChunkedBody("abc", 1));
+
+        Future<Response> first = execute(client, new Request.Builder()
+                .url(server.url("/"))
+                .build());
+        Future<Response> second = execute(client, new Request.Builder()
+                .url(server.url("/"))
+                .build());
+        awaitRequestCount(interceptor, 2);
+        release.countDown();
+
+        assertThat(first.get().body().string()).isEqualTo("abc");
+        assertThat(second.get().body().string()).isEqualTo("abc");
+        assertThat(server.getRequestCount()).isEqualTo(2);
+        assertThat(interceptor.coalescedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void responseIsStreamedWhenNoCallsAreWaiting() throws Exception {
+        CoalescingInterceptor interceptor = new CoalescingInterceptor();
+        OkHttpClient client = client(interceptor);
+        release.countDown();
+        responses.add(new MockResponse()
+                .setBody("abcdefghij")
+                .throttleBody(1, 1, TimeUnit.SECONDS));
+
+        long startNanos = System.nanoTime();
+        Response response = client.newCall(new Request.Builder()
+                .url(server.url("/"))
+                .build()).execute();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        assertThat(elapsedMillis).isLessThan(5_000L);
+        assertThat(response.body().source().readByte()).isEqualTo((byte) 'a');
+        response.close();
+    }
+
+    @Test
+    public void webSocketHandshakesAreNotCoalesced() throws Exception {
+        CoalescingInterceptor interceptor = new CoalescingInterceptor.Builder()
+                .keyHeaders("Authorization")
+                .build();
+        OkHttpClient client = client(interceptor);
+        responses.add(new MockResponse().setBody("a"));
+        responses.add(new MockResponse().setBody("b"));
+
+        Future<Response> first = execute(client, new Request.Builder()
+                .url(server.url("/socket"))
+                .header("Upgrade", "websocket")
+                .header("Sec-WebSocket-Key", "dGhlIHNhbXBsZSBub25jZQ==")
+                .build());
+        Future<Response> second = execute(client, new Request.Builder()
+                .url(server.url("/socket"))
+                .header("Upgrade", "websocket")
+                .header("Sec-WebSocket-Key", "AQIDBAUGBwgJCgsMDQ4PEA==")
+                .build());
+        // Both handshakes reach the server while neither has a response.
+        server.takeRequest();
+        server.takeRequest();
+        release.countDown();
+
+        assertThat(first.get().body().string()).isNotEqualTo(second.get().body().string());
+        assertThat(interceptor.requestCount()).isEqualTo(0);
+        assertThat(interceptor.coalescedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void waitingCallsMakeTheirOwnRequestsWhenTheFirstFails() throws Exception {
+        CoalescingInterceptor interceptor = new CoalescingInterceptor();
+        OkHttpClient client = client(interceptor).newBuilder()
+                .retryOnConnectionFailure(false)
+                .build();
+        responses.add(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST));
+        responses.add(new MockResponse().setBody("b"));
+
+        Future<Response> first = execute(client, new Request.Builder()
+                .url(server.url("/"))
+                .build());
+        awaitRequestCount(interceptor, 1);
+        server.takeRequest();
+        Future<Response> second = execute(client, new Request.Builder()
+                .url(server.url("/"))
+                .build());
+        awaitRequestCount(interceptor, 2);
+        release.countDown();
+
+        try {
+            first.get();
+            fail();
+        } catch (ExecutionException expected) {
+            assertThat(expected.getCause()).isInstanceOf(IOException.class);
+        }
+        assertThat(second.get().body().string()).isEqualTo("b");
+        assertThat(interceptor.coalescedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void canceledWaitingCallFails() throws Exception {
+        CoalescingInterceptor interceptor = new CoalescingInterceptor();
+        OkHttpClient client = client(interceptor);
+        responses.add(new MockResponse().setBody("a"));
+
+        Future<Response> first = execute(client, new Request.Builder()
+                .url(server.url("/"))
+                .build());
+        awaitRequestCount(interceptor, 1);
+        final Call second = client.newCall(new Request.Builder()
+                .url(server.url("/"))
+                .build());
+        Future<Response> secondResponse = executor.submit(new Callable<Response>() {
+            @Override
+            public Response call() throws Exception {
+                return second.execute();
+            }
+        });
+        awaitRequestCount(interceptor, 2);
+        second.cancel();
+
+        try {
+            secondResponse.get();
+            fail();
+        } catch (ExecutionException expected) {
+            assertThat(expected.getCause()).hasMessage("Canceled");
+        }
+        release.countDown();
+        assertThat(first.get().body().string()).isEqualTo("a");
+    }
+
+    private OkHttpClient client(CoalescingInterceptor interceptor) {
+        return clientTestRule.client.newBuilder()
+                .addInterceptor(interceptor)
+                .build();
+    }
+
+    private Future<Response> execute(final OkHttpClient client, final Request request) {
+        return executor.submit(new Callable<Response>() {
+            @Override
+            public Response call() throws Exception {
+                return client.newCall(request).execute();
+            }
+        });
+    }
+
+    private static void awaitRequestCount(CoalescingInterceptor interceptor, int count)
+            throws InterruptedException {
+        while (interceptor.requestCount() < count) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -178,6 +178,32 @@ public final class DispatcherTest {
         executor.assertJobs("http://a/2");
     }
 
+    @Test
+    public void queueDelayIsNotTrackedWhenNotAdaptive() throws Exception {
+        dispatcher.setMaxRequestsPerHost(1);
+        client.newCall(newRequest("http://a/1")).enqueue(callback);
+        client.newCall(newRequest("http://a/2")).enqueue(callback);
+        Thread.sleep(50);
+        executor.finishJob("http://a/1");
+        executor.assertJobs("http://a/2");
+        assertThat(dispatcher.getQueueDelayMillis("a")).isEqualTo(0L);
+    }
+
+    @Test
+    public void adaptiveLimitsAreDiscardedWhenDisabled() throws Exception {
+        dispatcher.setMaxRequestsPerHost(1);
+        dispatcher.setAdaptiveRequestsPerHost(true);
+        client.newCall(newRequest("http://a/1")).enqueue(callback);
+        client.newCall(newRequest("http://a/2")).enqueue(callback);
+        Thread.sleep(50);
+        executor.finishJob("http://a/1");
+        executor.assertJobs("http://a/2");
+        assertThat(dispatcher.getQueueDelayMillis("a")).isGreaterThan(0L);
+
+        dispatcher.setAdaptiveRequestsPerHost(false);
+        assertThat(dispatcher.getQueueDelayMillis("a")).isEqualTo(0L);
+    }
+
     @Test
     public void asyncCallAccessors() throws Exception {
         dispatcher.setMaxRequests(3);
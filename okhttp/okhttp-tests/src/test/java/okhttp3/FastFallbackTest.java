@@ -0,0 +1,319 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.SocketFactory;
+
+import okhttp3.RecordingEventListener.ConnectFailed;
+import okhttp3.RecordingEventListener.ConnectStart;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.Timeout;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class FastFallbackTest {
+    @Rule
+    public final TestRule timeout = new Timeout(30_000, TimeUnit.MILLISECONDS);
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+    @Rule
+    public final OkHttpClientTestRule clientTestRule = new OkHttpClientTestRule();
+
+    private final RecordingEventListener listener = new RecordingEventListener();
+    private final FakeDns dns = new FakeDns();
+    private final FakeRoutesSocketFactory socketFactory = new FakeRoutesSocketFactory();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private InetAddress localhost;
+    private InetAddress ipv6Address;
+    private InetAddress ipv4Address;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        localhost = InetAddress.getByName(server.getHostName());
+        ipv6Address = InetAddress.getByName("2001:db8::1");
+        ipv4Address = InetAddress.getByName("198.51.100.1");
+        client = clientTestRule.client.newBuilder()
+                .connectionPool(new ConnectionPool()) // Don't share failed routes between tests.
+                .dns(dns)
+                .socketFactory(socketFactory)
+                .eventListener(listener)
+                .connectTimeout(10, TimeUnit.SECONDS)
+                .fastFallback(true)
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void unreachableAddressDoesNotWaitForConnectTimeout() throws Exception {
+        dns.set("android.com", Arrays.asList(ipv6Address, localhost));
+        socketFactory.blackholed.add(ipv6Address);
+        server.enqueue(new MockResponse().setBody("hello"));
+
+        long startNanos = System.nanoTime();
+        assertThat(execute("android.com")).isEqualTo("hello");
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        assertThat(elapsedMillis).isLessThan(5_000L);
+
+        assertThat(connectStarts()).containsExactly(ipv6Address, localhost);
+        ConnectFailed connectFailed = listener.removeUpToEvent(ConnectFailed.class);
+        assertThat(connectFailed.inetSocketAddress.getAddress()).isEqualTo(ipv6Address);
+        assertThat(connectFailed.ioe).hasMessage("Canceled: another route connected first");
+        socketFactory.awaitAllClosedExcept(localhost);
+    }
+
+    @Test
+    public void failedAttemptStartsNextAttemptImmediately() throws Exception {
+        dns.set("android.com", Arrays.asList(ipv4Address, localhost));
+        socketFactory.refused.add(ipv4Address);
+        server.enqueue(new MockResponse().setBody("hello"));
+
+        assertThat(execute("android.com")).isEqualTo("hello");
+
+        assertThat(listener.recordedEventTypes()).containsSubsequence(
+                "ConnectStart", "ConnectFailed", "ConnectStart", "ConnectEnd");
+        ConnectFailed connectFailed = listener.removeUpToEvent(ConnectFailed.class);
+        assertThat(connectFailed.inetSocketAddress.getAddress()).isEqualTo(ipv4Address);
+        assertThat(connectFailed.ioe).isInstanceOf(ConnectException.class);
+    }
+
+    @Test
+    public void addressFamiliesAreInterleaved() throws Exception {
+        InetAddress ipv6Address2 = InetAddress.getByName("2001:db8::2");
+        dns.set("android.com", Arrays.asList(ipv6Address, ipv6Address2, ipv4Address, localhost));
+        socketFactory.refused.addAll(Arrays.asList(ipv6Address, ipv6Address2, ipv4Address));
+        server.enqueue(new MockResponse().setBody("hello"));
+
+        assertThat(execute("android.com")).isEqualTo("hello");
+
+        assertThat(connectStarts()).containsExactly(ipv6Address, ipv4Address, ipv6Address2, localhost);
+    }
+
+    @Test
+    public void failingAddressFamilyIsTriedSecond() throws Exception {
+        dns.set("android.com", Arrays.asList(ipv6Address, localhost));
+        socketFactory.blackholed.add(ipv6Address);
+        server.enqueue(new MockResponse().setBody("a").addHeader("Connection", "close"));
+        server.enqueue(new MockResponse().setBody("b"));
+
+        assertThat(execute("android.com")).isEqualTo("a");
+        assertThat(connectStarts()).containsExactly(ipv6Address, localhost);
+        listener.clearAllEvents();
+
+        // IPv6 lost the race, so IPv4 goes first and connects before a new IPv6 address is attempted.
+        InetAddress ipv6Address2 = InetAddress.getByName("2001:db8::2");
+        dns.set("android.com", Arrays.asList(ipv6Address2, localhost));
+        socketFactory.blackholed.add(ipv6Address2);
+        assertThat(execute("android.com")).isEqualTo("b");
+        assertThat(connectStarts()).containsExactly(localhost);
+    }
+
+    @Test
+    public void allAddressesFail() throws Exception {
+        dns.set("android.com", Arrays.asList(ipv6Address, ipv4Address));
+        socketFactory.refused.addAll(Arrays.asList(ipv6Address, ipv4Address));
+
+        try {
+            execute("android.com");
+            fail();
+        } catch (ConnectException expected) {
+            assertThat(expected.getSuppressed()).hasSize(1);
+        }
+
+        assertThat(listener.recordedEventTypes()).containsSubsequence(
+                "ConnectStart", "ConnectFailed", "ConnectStart", "ConnectFailed", "CallFailed");
+    }
+
+    @Test
+    public void cancelDuringRaceClosesAllSockets() throws Exception {
+        dns.set("android.com", Arrays.asList(ipv6Address, ipv4Address));
+        socketFactory.blackholed.addAll(Arrays.asList(ipv6Address, ipv4Address));
+
+        Call call = client.newCall(new Request.Builder()
+                .url(server.url("/").newBuilder().host("android.com").build())
+                .build());
+        executor.schedule(call::cancel, 500, TimeUnit.MILLISECONDS);
+        try {
+            call.execute();
+            fail();
+        } catch (IOException expected) {
+            assertThat(expected).hasMessage("Canceled");
+        }
+
+        assertThat(connectStarts()).containsExactly(ipv6Address, ipv4Address);
+        socketFactory.awaitAllClosedExcept(null);
+    }
+
+    @Test
+    public void unroutableAddress() throws Exception {
+        // This address is reserved for documentation. Depending on the network it either fails
+        // immediately or never connects; neither should delay the call.
+        dns.set("android.com", Arrays.asList(ipv4Address, localhost));
+        client = client.newBuilder()
+                .socketFactory(SocketFactory.getDefault())
+                .build();
+        server.enqueue(new MockResponse().setBody("hello"));
+
+        long startNanos = System.nanoTime();
+        assertThat(execute("android.com")).isEqualTo("hello");
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        assertThat(elapsedMillis).isLessThan(5_000L);
+    }
+
+    @Test
+    public void disabledTriesAddressesOneAtATime() throws Exception {
+        dns.set("android.com", Arrays.asList(ipv6Address, localhost));
+        socketFactory.blackholed.add(ipv6Address);
+        client = client.newBuilder()
+                .connectTimeout(250, TimeUnit.MILLISECONDS)
+                .fastFallback(false)
+                .build();
+        server.enqueue(new MockResponse().setBody("hello"));
+
+        assertThat(execute("android.com")).isEqualTo("hello");
+
+        assertThat(listener.recordedEventTypes()).containsSubsequence(
+                "ConnectStart", "ConnectFailed", "ConnectStart", "ConnectEnd");
+        ConnectFailed connectFailed = listener.removeUpToEvent(ConnectFailed.class);
+        assertThat(connectFailed.ioe).isInstanceOf(SocketTimeoutException.class);
+    }
+
+    private String execute(String host) throws IOException {
+        Request request = new Request.Builder()
+                .url(server.url("/").newBuilder().host(host).build())
+                .build();
+        try (Response response = client.newCall(request).execute()) {
+            return response.body().string();
+        }
+    }
+
+    private List<InetAddress> connectStarts() {
+        List<InetAddress> result = new ArrayList<>();
+        for (RecordingEventListener.CallEvent event : listener.eventSequence) {
+            if (event instanceof ConnectStart) {
+                result.add(((ConnectStart) event).inetSocketAddress.getAddress());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates sockets that simulate unreachable addresses. Connecting to a blackholed address blocks
+     * until the socket is closed or the connect times out, and connecting to a refused address fails
+     * immediately. Other addresses connect normally.
+     */
+    static final class FakeRoutesSocketFactory extends SocketFactory {
+        final Set<InetAddress> blackholed = new LinkedHashSet<>();
+        final Set<InetAddress> refused = new LinkedHashSet<>();
+        final List<FakeRouteSocket> sockets = new CopyOnWriteArrayList<>();
+
+        @Override
+        public Socket createSocket() {
+            FakeRouteSocket socket = new FakeRouteSocket();
+            sockets.add(socket);
+            return socket;
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Socket createSocket(
+                InetAddress address, int port, InetAddress localAddress, int localPort) {
+            throw new UnsupportedOperationException();
+        }
+
+        void awaitAllClosedExcept(InetAddress connected) throws InterruptedException {
+            for (FakeRouteSocket socket : sockets) {
+                if (connected != null && connected.equals(socket.address)) continue;
+                assertThat(socket.closed.await(5, TimeUnit.SECONDS)).isTrue();
+            }
+        }
+
+        final class FakeRouteSocket extends Socket {
+            final CountDownLatch closed = new CountDownLatch(1);
+            volatile InetAddress address;
+
+            @Override
+            public void connect(SocketAddress endpoint, int timeout) throws IOException {
+                address = ((InetSocketAddress) endpoint).getAddress();
+                if (refused.contains(address)) {
+                    throw new ConnectException("Connection refused");
+                }
+                if (blackholed.contains(address)) {
+                    try {
+                        if (closed.await(timeout != 0 ? timeout : Long.MAX_VALUE, TimeUnit.MILLISECONDS)) {
+                            throw new SocketException("Socket closed");
+                        }
+                    } catch (InterruptedException e) {
+                        throw new SocketException("interrupted");
+                    }
+                    throw new SocketTimeoutException("connect timed out");
+                }
+                super.connect(endpoint, timeout);
+            }
+
+            @Override
+            public synchronized void close() throws IOException {
+                closed.countDown();
+                super.close();
+            }
+        }
+    }
+}
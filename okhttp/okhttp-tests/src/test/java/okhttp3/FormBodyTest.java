@@ -106,6 +106,20 @@ public final class FormBodyTest {
         assertThat(buffer.readUtf8()).isEqualTo(expected);
     }
 
+    @Test
+    public void largeFormContentLengthMatchesWrittenBytes() throws Exception {
+        FormBody.Builder builder = new FormBody.Builder();
+        for (int i = 0; i < 1000; i++) {
+            builder.add("name" + i, "välue " + i);
+        }
+        FormBody body = builder.build();
+
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+        assertThat(body.contentLength()).isEqualTo(buffer.size());
+        assertThat(buffer.readUtf8(15)).isEqualTo("name0=v%C3%A4lu");
+    }
+
     @Test
     public void buildEmptyForm() throws Exception {
         FormBody body = new FormBody.Builder().build();
@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.RecordingEventListener.HedgeEnd;
+import okhttp3.RecordingEventListener.RetryStart;
+import okhttp3.internal.DoubleInetAddressDns;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.Timeout;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class HedgingTest {
+    @Rule
+    public final TestRule timeout = new Timeout(30_000, TimeUnit.MILLISECONDS);
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+    @Rule
+    public final OkHttpClientTestRule clientTestRule = new OkHttpClientTestRule();
+
+    private final RecordingEventListener listener = new RecordingEventListener();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() {
+        client = clientTestRule.client.newBuilder()
+                .eventListener(listener)
+                .hedgePolicy(new HedgePolicy(90))
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void hedgeWinsWhenFirstCopyIsSlow() throws Exception {
+        warmUp();
+        server.enqueue(new MockResponse()
+                .setBody("slow")
+                .setHeadersDelay(10, TimeUnit.SECONDS));
+        server.enqueue(new MockResponse().setBody("fast"));
+
+        long startNanos = System.nanoTime();
+        assertThat(get("/")).isEqualTo("fast");
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        assertThat(elapsedMillis).isLessThan(5_000L);
+
+        assertThat(listener.recordedEventTypes()).containsSubsequence(
+                "CallStart", "HedgeStart", "ResponseBodyEnd", "CallEnd");
+        assertThat(listener.removeUpToEvent(HedgeEnd.class).hedgeWon).isTrue();
+    }
+
+    @Test
+    public void firstCopyWinsWhenHedgeIsSlower() throws Exception {
+        warmUp();
+        server.enqueue(new MockResponse()
+                .setBody("first")
+                .setHeadersDelay(500, TimeUnit.MILLISECONDS));
+        server.enqueue(new MockResponse()
+                .setBody("hedge")
+                .setHeadersDelay(10, TimeUnit.SECONDS));
+
+        assertThat(get("/")).isEqualTo("first");
+
+        assertThat(listener.recordedEventTypes()).contains("HedgeStart");
+        assertThat(listener.removeUpToEvent(HedgeEnd.class).hedgeWon).isFalse();
+    }
+
+    @Test
+    public void losingCopyEventsAreNotReported() throws Exception {
+        warmUp();
+        server.enqueue(new MockResponse()
+                .setBody("first")
+                .setHeadersDelay(500, TimeUnit.MILLISECONDS));
+        server.enqueue(new MockResponse()
+                .setBody("hedge")
+                .setHeadersDelay(10, TimeUnit.SECONDS));
+
+        assertThat(get("/")).isEqualTo("first");
+
+        // The hedge connects and sends its request, but only the first copy's exchange is reported.
+        List<String> events = listener.recordedEventTypes();
+        assertThat(events).doesNotContain("ConnectStart");
+        assertThat(Collections.frequency(events, "ConnectionAcquired")).isEqualTo(1);
+        assertThat(Collections.frequency(events, "RequestHeadersStart")).isEqualTo(1);
+        assertThat(Collections.frequency(events, "ResponseHeadersStart")).isEqualTo(1);
+    }
+
+    @Test
+    public void winningHedgeEventsAreReportedAfterItIsAdopted() throws Exception {
+        warmUp();
+        server.enqueue(new MockResponse()
+                .setBody("slow")
+                .setHeadersDelay(10, TimeUnit.SECONDS));
+        server.enqueue(new MockResponse().setBody("fast"));
+
+        assertThat(get("/")).isEqualTo("fast");
+
+        List<String> events = listener.recordedEventTypes();
+        assertThat(events).doesNotContain("ConnectStart");
+        assertThat(events).containsSubsequence("HedgeStart", "ConnectionReleased",
+                "ConnectionAcquired", "ResponseBodyStart", "HedgeEnd", "ResponseBodyEnd",
+                "ConnectionReleased", "CallEnd");
+        assertThat(Collections.frequency(events, "ConnectionAcquired"))
+                .isEqualTo(Collections.frequency(events, "ConnectionReleased"));
+    }
+
+    @Test
+    public void hedgeUsesAnotherConnection() throws Exception {
+        warmUp();
+        server.enqueue(new MockResponse()
+                .setBody("slow")
+                .setHeadersDelay(10, TimeUnit.SECONDS));
+        server.enqueue(new MockResponse().setBody("fast"));
+
+        assertThat(get("/")).isEqualTo("fast");
+
+        // The first copy reuses the warm up connection and the hedge gets a new one.
+        for (int i = 0; i < HedgePolicy.MIN_SAMPLES; i++) {
+            assertThat(server.takeRequest().getSequenceNumber()).isEqualTo(i);
+        }
+        assertThat(server.takeRequest().getSequenceNumber()).isEqualTo(HedgePolicy.MIN_SAMPLES);
+        assertThat(server.takeRequest().getSequenceNumber()).isEqualTo(0);
+    }
+
+    @Test
+    public void notHedgedWithoutEnoughSamples() throws Exception {
+        server.enqueue(new MockResponse()
+                .setBody("slow")
+                .setHeadersDelay(500, TimeUnit.MILLISECONDS));
+
+        assertThat(get("/")).isEqualTo("slow");
+
+        assertThat(listener.recordedEventTypes()).doesNotContain("HedgeStart");
+    }
+
+    @Test
+    public void postIsNotHedged() throws Exception {
+        warmUp();
+        server.enqueue(new MockResponse()
+                .setBody("slow")
+                .setHeadersDelay(500, TimeUnit.MILLISECONDS));
+
+        Request request = new Request.Builder()
+                .url(server.url("/"))
+                .post(RequestBody.create(null, "abc"))
+                .build();
+        try (Response response = client.newCall(request).execute()) {
+            assertThat(response.body().string()).isEqualTo("slow");
+        }
+
+        assertThat(listener.recordedEventTypes()).doesNotContain("HedgeStart");
+    }
+
+    @Test
+    public void hedgesAreLimitedByRetryBudget() throws Exception {
+        client = client.newBuilder()
+                .retryBudget(new RetryBudget(1, 0.0))
+                .build();
+        warmUp();
+        server.enqueue(new MockResponse()
+                .setBody("slow")
+                .setHeadersDelay(10, TimeUnit.SECONDS));
+        server.enqueue(new MockResponse().setBody("fast"));
+        server.enqueue(new MockResponse()
+                .setBody("slow again")
+                .setHeadersDelay(500, TimeUnit.MILLISECONDS));
+
+        assertThat(get("/")).isEqualTo("fast");
+        listener.clearAllEvents();
+
+        assertThat(get("/")).isEqualTo("slow again");
+        // Reported on the calling thread, in order with the call's other events.
+        assertThat(listener.recordedEventTypes()).containsSubsequence(
+                "ResponseHeadersEnd", "RetryBudgetExhausted", "CallEnd");
+        assertThat(listener.recordedEventTypes()).doesNotContain("HedgeStart");
+    }
+
+    @Test
+    public void cancelDuringHedgeCancelsBothCopies() throws Exception {
+        warmUp();
+        server.enqueue(new MockResponse()
+                .setBody("slow")
+                .setHeadersDelay(10, TimeUnit.SECONDS));
+        server.enqueue(new MockResponse()
+                .setBody("also slow")
+                .setHeadersDelay(10, TimeUnit.SECONDS));
+
+        Call call = client.newCall(new Request.Builder().url(server.url("/")).build());
+        executor.schedule(call::cancel, 500, TimeUnit.MILLISECONDS);
+        long startNanos = System.nanoTime();
+        try {
+            call.execute();
+            fail();
+        } catch (IOException expected) {
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        assertThat(elapsedMillis).isLessThan(5_000L);
+
+        assertThat(listener.recordedEventTypes()).containsSubsequence("HedgeStart", "CallFailed");
+        assertThat(listener.removeUpToEvent(HedgeEnd.class).hedgeWon).isFalse();
+    }
+
+    @Test
+    public void retriesAreLimitedByRetryBudget() throws Exception {
+        server.enqueue(new MockResponse().setBody("seed connection pool"));
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST));
+        server.enqueue(new MockResponse().setBody("retry success"));
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST));
+        server.enqueue(new MockResponse().setBody("unreachable!"));
+
+        RetryBudget retryBudget = new RetryBudget(1, 0.0);
+        client = client.newBuilder()
+                .dns(new DoubleInetAddressDns())
+                .hedgePolicy(null)
+                .retryBudget(retryBudget)
+                .build();
+
+        assertThat(get("/")).isEqualTo("seed connection pool");
+        assertThat(get("/")).isEqualTo("retry success");
+        assertThat(listener.removeUpToEvent(RetryStart.class).ioe).isNotNull();
+        assertThat(retryBudget.availableRetries(server.getHostName())).isEqualTo(0);
+        listener.clearAllEvents();
+
+        try {
+            get("/");
+            fail();
+        } catch (IOException expected) {
+        }
+        assertThat(listener.recordedEventTypes()).containsSubsequence(
+                "RetryBudgetExhausted", "CallFailed");
+        assertThat(listener.recordedEventTypes()).doesNotContain("RetryStart");
+    }
+
+    /**
+     * Makes enough fast requests for the hedge policy to learn the server's latency.
+     */
+    private void warmUp() throws IOException {
+        for (int i = 0; i < HedgePolicy.MIN_SAMPLES; i++) {
+            server.enqueue(new MockResponse().setBody("warm up"));
+        }
+        for (int i = 0; i < HedgePolicy.MIN_SAMPLES; i++) {
+            assertThat(get("/")).isEqualTo("warm up");
+        }
+        listener.clearAllEvents();
+    }
+
+    private String get(String path) throws IOException {
+        Request request = new Request.Builder()
+                .url(server.url(path))
+                .build();
+        try (Response response = client.newCall(request).execute()) {
+            return response.body().string();
+        }
+    }
+}
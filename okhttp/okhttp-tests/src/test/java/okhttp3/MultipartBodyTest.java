@@ -17,10 +17,15 @@ package okhttp3;
 
 import org.junit.Test;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import okio.Buffer;
 import okio.BufferedSink;
+import okio.Okio;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -250,6 +255,101 @@ public final class MultipartBodyTest {
         assertThat(buffer.readUtf8()).isEqualTo(expected);
     }
 
+    @Test
+    public void filePartLengthComesFromFile() throws Exception {
+        File file = File.createTempFile("MultipartBodyTest", ".txt");
+        file.deleteOnExit();
+        try (BufferedSink sink = Okio.buffer(Okio.sink(file))) {
+            sink.writeUtf8("Hello, File!");
+        }
+
+        MultipartBody body = new MultipartBody.Builder("123")
+                .addFormDataPart("file", "hello.txt", RequestBody.create(null, file))
+                .build();
+
+        String expected = ""
+                + "--123\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"hello.txt\"\r\n"
+                + "Content-Length: 12\r\n"
+                + "\r\n"
+                + "Hello, File!\r\n"
+                + "--123--\r\n";
+        assertThat(body.contentLength()).isEqualTo(expected.length());
+
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+        assertThat(buffer.readUtf8()).isEqualTo(expected);
+    }
+
+    @Test
+    public void writeToIsRepeatableWithoutRemeasuringParts() throws Exception {
+        AtomicInteger contentLengthCalls = new AtomicInteger();
+        RequestBody part = new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return null;
+            }
+
+            @Override
+            public long contentLength() {
+                contentLengthCalls.incrementAndGet();
+                return 5L;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                sink.writeUtf8("Quick");
+            }
+        };
+
+        MultipartBody body = new MultipartBody.Builder("123")
+                .addPart(part)
+                .build();
+        long contentLength = body.contentLength();
+        int callsAfterMeasuring = contentLengthCalls.get();
+
+        Buffer first = new Buffer();
+        body.writeTo(first);
+        Buffer second = new Buffer();
+        body.writeTo(second);
+
+        assertThat(first.size()).isEqualTo(contentLength);
+        assertThat(second).isEqualTo(first);
+        assertThat(contentLengthCalls.get()).isEqualTo(callsAfterMeasuring);
+    }
+
+    @Test
+    public void progressListenerReportsCumulativeBytes() throws Exception {
+        List<Long> progress = new ArrayList<>();
+        List<Long> lengths = new ArrayList<>();
+        byte[] large = new byte[20_000];
+        MultipartBody body = new MultipartBody.Builder("123")
+                .addFormDataPart("small", "Quick")
+                .addFormDataPart("large", null, RequestBody.create(null, large))
+                .progressListener((bytesWritten, contentLength) -> {
+                    progress.add(bytesWritten);
+                    lengths.add(contentLength);
+                })
+                .build();
+
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+
+        assertThat(progress.size()).isGreaterThan(1);
+        for (int i = 1; i < progress.size(); i++) {
+            assertThat(progress.get(i)).isGreaterThan(progress.get(i - 1));
+        }
+        assertThat(progress.get(progress.size() - 1)).isEqualTo(buffer.size());
+        assertThat(lengths).containsOnly(body.contentLength());
+
+        // Progress starts over for each attempt, and the bytes are the same as without a listener.
+        progress.clear();
+        Buffer second = new Buffer();
+        body.writeTo(second);
+        assertThat(progress.get(progress.size() - 1)).isEqualTo(second.size());
+        assertThat(second).isEqualTo(buffer);
+    }
+
     @Test
     public void contentTypeHeaderIsForbidden() throws Exception {
         MultipartBody.Builder multipart = new MultipartBody.Builder();
@@ -64,6 +64,18 @@ public final class OkHttpClientTest {
         assertThat(client.pingIntervalMillis()).isEqualTo(0);
     }
 
+    @Test
+    public void preloadPublicSuffixes() {
+        OkHttpClient client = defaultClient();
+        assertThat(client.preloadPublicSuffixes()).isFalse();
+
+        OkHttpClient preloading = client.newBuilder()
+                .preloadPublicSuffixes(true)
+                .build();
+        assertThat(preloading.preloadPublicSuffixes()).isTrue();
+        assertThat(preloading.newBuilder().build().preloadPublicSuffixes()).isTrue();
+    }
+
     @Test
     public void timeoutValidRange() {
         OkHttpClient.Builder builder = new OkHttpClient.Builder();
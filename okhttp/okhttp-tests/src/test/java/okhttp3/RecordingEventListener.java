@@ -184,6 +184,26 @@ public final class RecordingEventListener extends EventListener {
         logEvent(new ResponseFailed(call, ioe));
     }
 
+    @Override
+    public void retryStart(Call call, IOException ioe) {
+        logEvent(new RetryStart(call, ioe));
+    }
+
+    @Override
+    public void retryBudgetExhausted(Call call) {
+        logEvent(new RetryBudgetExhausted(call));
+    }
+
+    @Override
+    public void hedgeStart(Call call) {
+        logEvent(new HedgeStart(call));
+    }
+
+    @Override
+    public void hedgeEnd(Call call, boolean hedgeWon) {
+        logEvent(new HedgeEnd(call, hedgeWon));
+    }
+
     @Override
     public void callEnd(Call call) {
         logEvent(new CallEnd(call));
@@ -355,6 +375,42 @@ public final class RecordingEventListener extends EventListener {
         }
     }
 
+    static final class RetryStart extends CallEvent {
+        final IOException ioe;
+
+        RetryStart(Call call, IOException ioe) {
+            super(call, ioe);
+            this.ioe = ioe;
+        }
+    }
+
+    static final class RetryBudgetExhausted extends CallEvent {
+        RetryBudgetExhausted(Call call) {
+            super(call);
+        }
+    }
+
+    static final class HedgeStart extends CallEvent {
+        HedgeStart(Call call) {
+            super(call);
+        }
+    }
+
+    static final class HedgeEnd extends CallEvent {
+        final boolean hedgeWon;
+
+        HedgeEnd(Call call, boolean hedgeWon) {
+            super(call, hedgeWon);
+            this.hedgeWon = hedgeWon;
+        }
+
+        @Override
+        public @Nullable
+        CallEvent closes() {
+            return new HedgeStart(call);
+        }
+    }
+
     static final class CallStart extends CallEvent {
         CallStart(Call call) {
             super(call);
@@ -89,7 +89,7 @@ public final class RouteSelectorTest {
     public void singleRoute() throws Exception {
         Address address = httpAddress();
         RouteSelector routeSelector = new RouteSelector(address, routeDatabase, null,
-                EventListener.NONE);
+                EventListener.NONE, false);
 
         assertThat(routeSelector.hasNext()).isTrue();
         dns.set(uriHost, dns.allocate(1));
@@ -115,14 +115,14 @@ public final class RouteSelectorTest {
     public void singleRouteReturnsFailedRoute() throws Exception {
         Address address = httpAddress();
         RouteSelector routeSelector = new RouteSelector(address, routeDatabase, null,
-                EventListener.NONE);
+                EventListener.NONE, false);
 
         assertThat(routeSelector.hasNext()).isTrue();
         dns.set(uriHost, dns.allocate(1));
         RouteSelector.Selection selection = routeSelector.next();
         Route route = selection.next();
         routeDatabase.failed(route);
-        routeSelector = new RouteSelector(address, routeDatabase, null, EventListener.NONE);
+        routeSelector = new RouteSelector(address, routeDatabase, null, EventListener.NONE, false);
         selection = routeSelector.next();
         assertRoute(selection.next(), address, NO_PROXY, dns.lookup(uriHost, 0), uriPort);
         assertThat(selection.hasNext()).isFalse();
@@ -146,7 +146,7 @@ public final class RouteSelectorTest {
         Address address = new Address(uriHost, uriPort, dns, socketFactory, null, null, null,
                 authenticator, proxyA, protocols, connectionSpecs, proxySelector);
         RouteSelector routeSelector = new RouteSelector(address, routeDatabase, null,
-                EventListener.NONE);
+                EventListener.NONE, false);
 
         assertThat(routeSelector.hasNext()).isTrue();
         dns.set(proxyAHost, dns.allocate(2));
@@ -165,7 +165,7 @@ public final class RouteSelectorTest {
         Address address = new Address(uriHost, uriPort, dns, socketFactory, null, null, null,
                 authenticator, NO_PROXY, protocols, connectionSpecs, proxySelector);
         RouteSelector routeSelector = new RouteSelector(address, routeDatabase, null,
-                EventListener.NONE);
+                EventListener.NONE, false);
 
         assertThat(routeSelector.hasNext()).isTrue();
         dns.set(uriHost, dns.allocate(2));
@@ -198,7 +198,7 @@ public final class RouteSelectorTest {
         Address address = new Address(uriHost, uriPort, dns, socketFactory, null, null, null,
                 authenticator, null, protocols, connectionSpecs, nullProxySelector);
         RouteSelector routeSelector = new RouteSelector(address, routeDatabase, null,
-                EventListener.NONE);
+                EventListener.NONE, false);
         assertThat(routeSelector.hasNext()).isTrue();
         dns.set(uriHost, dns.allocate(1));
         RouteSelector.Selection selection = routeSelector.next();
@@ -213,7 +213,7 @@ public final class RouteSelectorTest {
     public void proxySelectorReturnsNoProxies() throws Exception {
         Address address = httpAddress();
         RouteSelector routeSelector = new RouteSelector(address, routeDatabase, null,
-                EventListener.NONE);
+                EventListener.NONE, false);
 
         assertThat(routeSelector.hasNext()).isTrue();
         dns.set(uriHost, dns.allocate(2));
@@ -234,7 +234,7 @@ public final class RouteSelectorTest {
         proxySelector.proxies.add(proxyA);
         proxySelector.proxies.add(proxyB);
         RouteSelector routeSelector = new RouteSelector(address, routeDatabase, null,
-                EventListener.NONE);
+                EventListener.NONE, false);
         proxySelector.assertRequests(address.url().uri());
 
         // First try the IP addresses of the first proxy, in sequence.
@@ -264,7 +264,7 @@ public final class RouteSelectorTest {
 
         proxySelector.proxies.add(NO_PROXY);
         RouteSelector routeSelector = new RouteSelector(address, routeDatabase, null,
-                EventListener.NONE);
+                EventListener.NONE, false);
         proxySelector.assertRequests(address.url().uri());
 
         // Only the origin server will be attempted.
@@ -286,7 +286,7 @@ public final class RouteSelectorTest {
         proxySelector.proxies.add(proxyB);
         proxySelector.proxies.add(proxyA);
         RouteSelector routeSelector = new RouteSelector(address, routeDatabase, null,
-                EventListener.NONE);
+                EventListener.NONE, false);
         proxySelector.assertRequests(address.url().uri());
 
         assertThat(routeSelector.hasNext()).isTrue();
@@ -321,7 +321,7 @@ public final class RouteSelectorTest {
         proxySelector.proxies.add(proxyA);
         proxySelector.proxies.add(proxyB);
         RouteSelector routeSelector = new RouteSelector(address, routeDatabase, null,
-                EventListener.NONE);
+                EventListener.NONE, false);
 
         // Proxy A
         dns.set(proxyAHost, dns.allocate(2));
@@ -347,7 +347,7 @@ public final class RouteSelectorTest {
     public void failedRouteWithSingleProxy() throws Exception {
         Address address = httpsAddress();
         RouteSelector routeSelector = new RouteSelector(address, routeDatabase, null,
-                EventListener.NONE);
+                EventListener.NONE, false);
 
         final int numberOfAddresses = 2;
         dns.set(uriHost, dns.allocate(numberOfAddresses));
@@ -361,7 +361,7 @@ public final class RouteSelectorTest {
         // Add first regular route as failed.
         routeDatabase.failed(regularRoutes.get(0));
         // Reset selector
-        routeSelector = new RouteSelector(address, routeDatabase, null, EventListener.NONE);
+        routeSelector = new RouteSelector(address, routeDatabase, null, EventListener.NONE, false);
 
         // The first selection prioritizes the non-failed routes.
         RouteSelector.Selection selection2 = routeSelector.next();
@@ -382,7 +382,7 @@ public final class RouteSelectorTest {
         proxySelector.proxies.add(proxyA);
         proxySelector.proxies.add(proxyB);
         RouteSelector routeSelector = new RouteSelector(address, routeDatabase, null,
-                EventListener.NONE);
+                EventListener.NONE, false);
 
         dns.set(proxyAHost, dns.allocate(1));
         dns.set(proxyBHost, dns.allocate(1));
@@ -394,7 +394,7 @@ public final class RouteSelectorTest {
         assertRoute(route, address, proxyA, dns.lookup(proxyAHost, 0), proxyAPort);
         routeDatabase.failed(route);
 
-        routeSelector = new RouteSelector(address, routeDatabase, null, EventListener.NONE);
+        routeSelector = new RouteSelector(address, routeDatabase, null, EventListener.NONE, false);
 
         // Confirm we enumerate both proxies, giving preference to the route from ProxyB.
         RouteSelector.Selection selection2 = routeSelector.next();
@@ -415,7 +415,7 @@ public final class RouteSelectorTest {
     public void queryForAllSelectedRoutes() throws IOException {
         Address address = httpAddress();
         RouteSelector routeSelector = new RouteSelector(address, routeDatabase, null,
-                EventListener.NONE);
+                EventListener.NONE, false);
 
         dns.set(uriHost, dns.allocate(2));
         RouteSelector.Selection selection = routeSelector.next();
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.http1;
+
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+
+import okhttp3.Headers;
+import okhttp3.Protocol;
+import okhttp3.internal.Internal;
+import okhttp3.internal.http.StatusLine;
+import okio.Buffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class HeadersReaderTest {
+    static {
+        Internal.initializeInstanceForTests();
+    }
+
+    @Test
+    public void statusLine() throws IOException {
+        StatusLine statusLine = readStatusLine("HTTP/1.1 200 OK\r\n");
+        assertThat(statusLine.protocol).isEqualTo(Protocol.HTTP_1_1);
+        assertThat(statusLine.code).isEqualTo(200);
+        assertThat(statusLine.message).isEqualTo("OK");
+    }
+
+    @Test
+    public void statusLinesMatchStatusLineParse() throws IOException {
+        String[] statusLines = {
+                "HTTP/1.1 200 OK",
+                "HTTP/1.0 304 Not Modified",
+                "HTTP/1.1 418 I'm a teapot",
+                "HTTP/1.1 200 OK Computer",
+                "HTTP/1.1 503 ",
+                "HTTP/1.1 503",
+                "ICY 200 OK",
+                "HTTP/1.1 200 Ünïcödé",
+        };
+        for (String line : statusLines) {
+            StatusLine expected = StatusLine.parse(line);
+            for (String terminator : new String[]{"\r\n", "\n"}) {
+                StatusLine actual = readStatusLine(line + terminator);
+                assertThat(actual.protocol).isEqualTo(expected.protocol);
+                assertThat(actual.code).isEqualTo(expected.code);
+                assertThat(actual.message).isEqualTo(expected.message);
+            }
+        }
+    }
+
+    @Test
+    public void invalidStatusLines() throws IOException {
+        String[] statusLines = {
+                "",
+                "HTTP/1.1",
+                "HTTP/1.1 ",
+                "HTTP/1.1 20",
+                "HTTP/1.1 2x0 OK",
+                "HTTP/1.1 200OK",
+                "HTTP/1.2 200 OK",
+                "HTTP/2 200 OK",
+                "ICY 20 OK",
+        };
+        for (String line : statusLines) {
+            try {
+                readStatusLine(line + "\r\n");
+                fail(line);
+            } catch (ProtocolException expected) {
+                assertThat(expected.getMessage()).isEqualTo("Unexpected status line: " + line);
+            }
+        }
+    }
+
+    @Test
+    public void statusLineWithoutNewline() throws IOException {
+        try {
+            readStatusLine("HTTP/1.1 200 OK");
+            fail();
+        } catch (EOFException expected) {
+        }
+    }
+
+    @Test
+    public void headers() throws IOException {
+        Headers headers = readHeaders(""
+                + "Content-Type: text/plain\r\n"
+                + "content-length: 5\r\n"
+                + "X-Custom:value\r\n"
+                + "Cache-Control:  max-age=60  \r\n"
+                + "Set-Cookie: a=b\r\n"
+                + "Set-Cookie: c=d\r\n"
+                + "Vary: \r\n"
+                + "\r\n");
+        assertThat(headers.size()).isEqualTo(7);
+        assertThat(headers.name(0)).isEqualTo("Content-Type");
+        assertThat(headers.value(0)).isEqualTo("text/plain");
+        assertThat(headers.name(1)).isEqualTo("content-length");
+        assertThat(headers.value(1)).isEqualTo("5");
+        assertThat(headers.get("X-Custom")).isEqualTo("value");
+        assertThat(headers.get("Cache-Control")).isEqualTo("max-age=60");
+        assertThat(headers.values("Set-Cookie")).containsExactly("a=b", "c=d");
+        assertThat(headers.get("Vary")).isEqualTo("");
+    }
+
+    @Test
+    public void headersMatchLenientParsing() throws IOException {
+        String block = ""
+                + "Date: Mon, 01 Apr 2019 12:00:00 GMT\n"
+                + "server: nginx\r\n"
+                + "Content-Encoding:gzip\r\n"
+                + ": empty name\r\n"
+                + "no colon\r\n"
+                + "ETag: \"abc:def\"\r\n"
+                + "Location: https://example.com/ünïcödé\r\n"
+                + "CONTENT-TYPE: text/html\r\n"
+                + "\n";
+        Headers.Builder expected = new Headers.Builder();
+        Buffer buffer = new Buffer().writeUtf8(block);
+        for (String line; (line = buffer.readUtf8LineStrict()).length() != 0; ) {
+            Internal.instance.addLenient(expected, line);
+        }
+        assertThat(readHeaders(block)).isEqualTo(expected.build());
+    }
+
+    @Test
+    public void trailersFollowHeaders() throws IOException {
+        Buffer source = new Buffer().writeUtf8(""
+                + "HTTP/1.1 200 OK\r\n"
+                + "Transfer-Encoding: chunked\r\n"
+                + "\r\n"
+                + "Trailer: value\r\n"
+                + "\r\n"
+                + "body");
+        HeadersReader reader = new HeadersReader(source);
+        assertThat(reader.readStatusLine().code).isEqualTo(200);
+        assertThat(reader.readHeaders().get("Transfer-Encoding")).isEqualTo("chunked");
+        assertThat(reader.readHeaders().get("Trailer")).isEqualTo("value");
+        assertThat(source.readUtf8()).isEqualTo("body");
+    }
+
+    @Test
+    public void headersAreLimitedInSize() throws IOException {
+        StringBuilder block = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            block.append("Set-Cookie: ");
+            for (int j = 0; j < 1000; j++) {
+                block.append('a');
+            }
+            block.append("\r\n");
+        }
+        block.append("\r\n");
+        try {
+            readHeaders(block.toString());
+            fail();
+        } catch (EOFException expected) {
+        }
+    }
+
+    private static StatusLine readStatusLine(String s) throws IOException {
+        return new HeadersReader(new Buffer().writeUtf8(s)).readStatusLine();
+    }
+
+    private static Headers readHeaders(String s) throws IOException {
+        return new HeadersReader(new Buffer().writeUtf8(s)).readHeaders();
+    }
+}
@@ -26,11 +26,15 @@ import okio.BufferedSource;
 import okio.GzipSource;
 import okio.Okio;
 
-import static okhttp3.internal.publicsuffix.PublicSuffixDatabase.PUBLIC_SUFFIX_RESOURCE;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
 
 public final class PublicSuffixDatabaseTest {
+    /**
+     * The sorted list that PublicSuffixListGenerator compiled the trie from.
+     */
+    private static final String PUBLIC_SUFFIX_LIST_RESOURCE = "publicsuffixes.gz";
+
     private final PublicSuffixDatabase publicSuffixDatabase = new PublicSuffixDatabase();
 
     @Test
@@ -116,7 +120,7 @@ public final class PublicSuffixDatabaseTest {
     @Test
     public void allPublicSuffixes() throws IOException {
         InputStream resource = PublicSuffixDatabaseTest.class
-                .getResourceAsStream(PUBLIC_SUFFIX_RESOURCE);
+                .getResourceAsStream(PUBLIC_SUFFIX_LIST_RESOURCE);
         BufferedSource source = Okio.buffer(new GzipSource(Okio.source(resource)));
         int length = source.readInt();
         Buffer buffer = new Buffer();
@@ -139,7 +143,7 @@ public final class PublicSuffixDatabaseTest {
     @Test
     public void publicSuffixExceptions() throws IOException {
         InputStream resource = PublicSuffixDatabaseTest.class
-                .getResourceAsStream(PUBLIC_SUFFIX_RESOURCE);
+                .getResourceAsStream(PUBLIC_SUFFIX_LIST_RESOURCE);
         BufferedSource source = Okio.buffer(new GzipSource(Okio.source(resource)));
         int length = source.readInt();
         source.skip(length);
@@ -159,6 +163,58 @@ public final class PublicSuffixDatabaseTest {
         }
     }
 
+    @Test
+    public void exceptionRuleLongerThanWildcardRule() {
+        Buffer exception = new Buffer()
+                .writeUtf8("a.b.c.kawasaki.jp\n")
+                .writeUtf8("city.kawasaki.jp\n");
+        Buffer buffer = new Buffer()
+                .writeUtf8("*.kawasaki.jp\n")
+                .writeUtf8("jp\n");
+        publicSuffixDatabase.setListBytes(buffer.readByteArray(), exception.readByteArray());
+
+        assertThat(publicSuffixDatabase.getEffectiveTldPlusOne("www.city.kawasaki.jp")).isEqualTo(
+                "city.kawasaki.jp");
+        assertThat(publicSuffixDatabase.getEffectiveTldPlusOne("x.a.b.c.kawasaki.jp")).isEqualTo(
+                "a.b.c.kawasaki.jp");
+        assertThat(publicSuffixDatabase.getEffectiveTldPlusOne("b.c.kawasaki.jp")).isEqualTo(
+                "b.c.kawasaki.jp");
+        assertThat(publicSuffixDatabase.getEffectiveTldPlusOne("c.kawasaki.jp")).isNull();
+        assertThat(publicSuffixDatabase.getEffectiveTldPlusOne("kawasaki.jp")).isEqualTo(
+                "kawasaki.jp");
+    }
+
+    @Test
+    public void labelsAreComparedAsUnsignedUtf8() {
+        Buffer buffer = new Buffer()
+                .writeUtf8("com\n")
+                .writeUtf8("ål.no\n")
+                .writeUtf8("al.no\n")
+                .writeUtf8("no\n")
+                .writeUtf8("中国\n");
+        publicSuffixDatabase.setListBytes(buffer.readByteArray(), new byte[]{});
+
+        assertThat(publicSuffixDatabase.getEffectiveTldPlusOne("foo.xn--l-1fa.no")).isEqualTo(
+                "foo.xn--l-1fa.no");
+        assertThat(publicSuffixDatabase.getEffectiveTldPlusOne("foo.bar.al.no")).isEqualTo(
+                "bar.al.no");
+        assertThat(publicSuffixDatabase.getEffectiveTldPlusOne("xn--l-1fa.no")).isNull();
+        assertThat(publicSuffixDatabase.getEffectiveTldPlusOne("a.b.xn--fiqs8s")).isEqualTo(
+                "b.xn--fiqs8s");
+    }
+
+    @Test
+    public void loadInBackground() throws Exception {
+        publicSuffixDatabase.loadInBackground();
+        publicSuffixDatabase.loadInBackground();
+
+        assertThat(publicSuffixDatabase.getEffectiveTldPlusOne("www.google.com")).isEqualTo(
+                "google.com");
+        assertThat(publicSuffixDatabase.getEffectiveTldPlusOne("foo.bar.kawasaki.jp")).isEqualTo(
+                "foo.bar.kawasaki.jp");
+        assertThat(publicSuffixDatabase.getEffectiveTldPlusOne("bar.kawasaki.jp")).isNull();
+    }
+
     @Test
     public void threadIsInterruptedOnFirstRead() {
         Thread.currentThread().interrupt();
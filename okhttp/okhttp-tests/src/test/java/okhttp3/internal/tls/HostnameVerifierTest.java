@@ -30,6 +30,7 @@ import javax.security.auth.x500.X500Principal;
 
 import okhttp3.FakeSSLSession;
 import okhttp3.internal.Util;
+import okhttp3.tls.HeldCertificate;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -563,6 +564,26 @@ public final class HostnameVerifierTest {
         assertThat(Util.verifyAsIpAddress("www.nintendo.co.jp")).isFalse();
     }
 
+    @Test
+    public void cachedResultsAreSpecificToHostAndCertificate() {
+        X509Certificate fooCom = new HeldCertificate.Builder()
+                .addSubjectAlternativeName("foo.com")
+                .build()
+                .certificate();
+        X509Certificate barCom = new HeldCertificate.Builder()
+                .addSubjectAlternativeName("bar.com")
+                .build()
+                .certificate();
+        OkHostnameVerifier verifier = OkHostnameVerifier.INSTANCE;
+
+        for (int i = 0; i < 2; i++) {
+            assertThat(verifier.verify("foo.com", fooCom)).isTrue();
+            assertThat(verifier.verify("bar.com", fooCom)).isFalse();
+            assertThat(verifier.verify("foo.com", barCom)).isFalse();
+            assertThat(verifier.verify("bar.com", barCom)).isTrue();
+        }
+    }
+
     private X509Certificate certificate(String certificate) throws Exception {
         return (X509Certificate) CertificateFactory.getInstance("X.509").generateCertificate(
                 new ByteArrayInputStream(certificate.getBytes(UTF_8)));
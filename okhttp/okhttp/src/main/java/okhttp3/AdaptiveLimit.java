@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3;
+
+/**
+ * Estimates how many concurrent requests a host can serve without queueing them, using the
+ * gradient between its no-load response time and its current response time.
+ *
+ * <p>When the host is idle its response time is its no-load response time, and the gradient is 1.
+ * When it receives more requests than it can serve concurrently, the extra requests wait in its
+ * queue and the gradient drops in proportion. Each sample moves the limit towards {@code limit *
+ * gradient + sqrt(limit)}: the requests the host is serving without queueing, plus a small queue
+ * so that it's probed for more capacity. A host that can serve {@code n} concurrent requests
+ * settles at a limit of about {@code n + sqrt(n)}.
+ *
+ * <p>The no-load response time is the fastest response in the last two windows of {@value
+ * #WINDOW_SIZE} samples. A host that becomes slower for every request is therefore not mistaken for
+ * an overloaded one for long.
+ *
+ * <p>Instances are guarded by the {@link Dispatcher} that owns them.
+ */
+final class AdaptiveLimit {
+    static final int WINDOW_SIZE = 250;
+
+    /**
+     * How much weight each sample has. Lower is smoother but slower to react.
+     */
+    private static final double SMOOTHING = 0.2;
+
+    /**
+     * Queue delays are averaged with this weight.
+     */
+    private static final double QUEUE_DELAY_SMOOTHING = 0.1;
+
+    private double limit;
+    private long previousWindowMinRttNanos = Long.MAX_VALUE;
+    private long windowMinRttNanos = Long.MAX_VALUE;
+    private int windowSampleCount;
+    private double queueDelayNanos;
+
+    AdaptiveLimit(int initialLimit) {
+        this.limit = initialLimit;
+    }
+
+    int limit() {
+        return (int) limit;
+    }
+
+    long queueDelayNanos() {
+        return (long) queueDelayNanos;
+    }
+
+    void recordQueueDelay(long delayNanos) {
+        queueDelayNanos += (delayNanos - queueDelayNanos) * QUEUE_DELAY_SMOOTHING;
+    }
+
+    /**
+     * Updates the limit with a request that took {@code rttNanos} to receive a response while
+     * {@code inFlight} requests to the host were running. The limit won't exceed {@code maxLimit}.
+     */
+    void recordResponse(long rttNanos, int inFlight, int maxLimit) {
+        if (++windowSampleCount > WINDOW_SIZE) {
+            previousWindowMinRttNanos = windowMinRttNanos;
+            windowMinRttNanos = Long.MAX_VALUE;
+            windowSampleCount = 1;
+        }
+        windowMinRttNanos = Math.min(windowMinRttNanos, rttNanos);
+        long noLoadRttNanos = Math.min(windowMinRttNanos, previousWindowMinRttNanos);
+
+        double gradient = Math.max(0.5, Math.min(1.0, (double) noLoadRttNanos / rttNanos));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+
+        // If the caller isn't using most of the limit, a response tells us nothing about more.
+        if (newLimit > limit && inFlight < limit / 2) return;
+
+        newLimit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        limit = Math.max(1.0, Math.min(maxLimit, newLimit));
+    }
+}
@@ -25,9 +25,13 @@ import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
 
 import javax.annotation.Nullable;
 
@@ -142,6 +146,16 @@ public final class Cache implements Closeable, Flushable {
     private static final int ENTRY_BODY = 1;
     private static final int ENTRY_COUNT = 2;
 
+    /**
+     * Replaces the request method in the metadata of a URL's Vary index.
+     */
+    private static final String VARY_INDEX = "VARY-INDEX";
+
+    /**
+     * The most variants of a URL to keep. Beyond this the oldest is evicted.
+     */
+    static final int MAX_VARIANTS = 16;
+
     final InternalCache internalCache = new InternalCache() {
         @Override
         public @Nullable
@@ -174,9 +188,21 @@ public final class Cache implements Closeable, Flushable {
         public void trackResponse(CacheStrategy cacheStrategy) {
             Cache.this.trackResponse(cacheStrategy);
         }
+
+        @Override
+        public boolean beginRevalidation(Request request, Response cacheResponse) {
+            return Cache.this.beginRevalidation(request, cacheResponse);
+        }
+
+        @Override
+        public void endRevalidation(Request request, Response cacheResponse) {
+            Cache.this.endRevalidation(request, cacheResponse);
+        }
     };
 
     final DiskLruCache cache;
+    final @Nullable
+    CacheCompression compression;
 
     /* read and write statistics, all guarded by 'this' */
     int writeSuccessCount;
@@ -184,22 +210,56 @@ public final class Cache implements Closeable, Flushable {
     private int networkCount;
     private int hitCount;
     private int requestCount;
+    /* keys of the entries being revalidated in the background, guarded by 'this' */
+    private final Set<String> revalidations = new HashSet<>();
 
     /**
      * Create a cache of at most {@code maxSize} bytes in {@code directory}.
      */
     public Cache(File directory, long maxSize) {
-        this(directory, maxSize, FileSystem.SYSTEM);
+        this(directory, maxSize, FileSystem.SYSTEM, null);
+    }
+
+    /**
+     * Create a cache of at most {@code maxSize} bytes in {@code directory} that stores response
+     * bodies compressed as specified by {@code compression}.
+     */
+    public Cache(File directory, long maxSize, CacheCompression compression) {
+        this(directory, maxSize, FileSystem.SYSTEM, compression);
+        if (compression == null) throw new NullPointerException("compression == null");
     }
 
     Cache(File directory, long maxSize, FileSystem fileSystem) {
+        this(directory, maxSize, fileSystem, null);
+    }
+
+    Cache(File directory, long maxSize, FileSystem fileSystem,
+          @Nullable CacheCompression compression) {
         this.cache = DiskLruCache.create(fileSystem, directory, VERSION, ENTRY_COUNT, maxSize);
+        this.compression = compression;
     }
 
     public static String key(HttpUrl url) {
         return ByteString.encodeUtf8(url.toString()).md5().hex();
     }
 
+    /**
+     * Returns the key of the variant of {@code urlKey}'s response that is selected by {@code
+     * headers}, the request headers named by {@code varyFields}.
+     */
+    static String variantKey(String urlKey, Set<String> varyFields, Headers headers) {
+        Buffer buffer = new Buffer();
+        for (String field : varyFields) {
+            List<String> values = headers.values(field);
+            buffer.writeUtf8(field.toLowerCase(Locale.US)).writeByte('\n')
+                    .writeDecimalLong(values.size()).writeByte('\n');
+            for (int i = 0, size = values.size(); i < size; i++) {
+                buffer.writeUtf8(values.get(i)).writeByte('\n');
+            }
+        }
+        return urlKey + "-" + buffer.readByteString().md5().hex();
+    }
+
     @Nullable
     Response get(Request request) {
         String key = key(request.url());
@@ -216,7 +276,22 @@ public final class Cache implements Closeable, Flushable {
         }
 
         try {
-            entry = new Entry(snapshot.getSource(ENTRY_METADATA));
+            BufferedSource metadata = Okio.buffer(snapshot.getSource(ENTRY_METADATA));
+            String url = metadata.readUtf8LineStrict();
+            String requestMethod = metadata.readUtf8LineStrict();
+            if (requestMethod.equals(VARY_INDEX)) {
+                // The response varies. Read the selected variant instead.
+                Set<String> varyFields = VaryIndex.readVaryFields(metadata);
+                snapshot.close();
+                snapshot = cache.get(variantKey(key, varyFields, request.headers()));
+                if (snapshot == null) {
+                    return null;
+                }
+                metadata = Okio.buffer(snapshot.getSource(ENTRY_METADATA));
+                url = metadata.readUtf8LineStrict();
+                requestMethod = metadata.readUtf8LineStrict();
+            }
+            entry = new Entry(url, requestMethod, metadata);
         } catch (IOException e) {
             Util.closeQuietly(snapshot);
             return null;
@@ -255,28 +330,105 @@ public final class Cache implements Closeable, Flushable {
             return null;
         }
 
-        Entry entry = new Entry(response);
+        Entry entry = new Entry(response,
+                compression != null ? compression.encodingFor(response) : null);
         DiskLruCache.Editor editor = null;
         try {
-            editor = cache.edit(key(response.request().url()));
+            String key = key(response.request().url());
+            Set<String> varyFields = HttpHeaders.varyFields(response.headers());
+            if (!varyFields.isEmpty()) {
+                key = addVariant(key, entry, varyFields);
+                if (key == null) {
+                    return null;
+                }
+            } else {
+                // The response no longer varies, so it replaces the URL's Vary index if it has one.
+                removeVariants(key);
+            }
+            editor = cache.edit(key);
             if (editor == null) {
                 return null;
             }
             entry.writeTo(editor);
-            return new CacheRequestImpl(editor);
+            return new CacheRequestImpl(editor, entry.bodyEncoding);
         } catch (IOException e) {
             abortQuietly(editor);
             return null;
         }
     }
 
+    /**
+     * Records a new variant of a URL in its Vary index, and returns the key to store it under. Returns
+     * null if the index couldn't be updated.
+     */
+    private @Nullable
+    String addVariant(String urlKey, Entry entry, Set<String> varyFields) throws IOException {
+        String variantKey = variantKey(urlKey, varyFields, entry.varyHeaders);
+
+        List<String> variantKeys = new ArrayList<>();
+        DiskLruCache.Editor editor;
+        try (DiskLruCache.Snapshot snapshot = cache.get(urlKey)) {
+            if (snapshot != null) {
+                VaryIndex index = VaryIndex.read(snapshot);
+                if (index != null && index.varyFields.equals(varyFields)) {
+                    variantKeys.addAll(index.variantKeys);
+                } else if (index != null) {
+                    // The response varies on different fields now so its old variants are unreachable.
+                    for (String key : index.variantKeys) {
+                        cache.remove(key);
+                    }
+                }
+                editor = snapshot.edit(); // Returns null if the index changed since it was read.
+            } else {
+                editor = cache.edit(urlKey);
+            }
+        }
+        if (editor == null) {
+            return null;
+        }
+
+        variantKeys.remove(variantKey);
+        variantKeys.add(variantKey);
+        while (variantKeys.size() > MAX_VARIANTS) {
+            cache.remove(variantKeys.remove(0));
+        }
+
+        try {
+            new VaryIndex(varyFields, variantKeys).writeTo(entry.url, editor);
+            editor.commit();
+        } catch (IOException e) {
+            abortQuietly(editor);
+            throw e;
+        }
+        return variantKey;
+    }
+
     void remove(Request request) throws IOException {
-        cache.remove(key(request.url()));
+        String key = key(request.url());
+        removeVariants(key);
+        cache.remove(key);
+    }
+
+    /**
+     * Removes the variants listed in {@code urlKey}'s Vary index, if it has one. The index itself is
+     * left for the caller to remove or replace.
+     */
+    private void removeVariants(String urlKey) throws IOException {
+        try (DiskLruCache.Snapshot snapshot = cache.get(urlKey)) {
+            VaryIndex index = snapshot != null ? VaryIndex.read(snapshot) : null;
+            if (index != null) {
+                for (String variantKey : index.variantKeys) {
+                    cache.remove(variantKey);
+                }
+            }
+        }
     }
 
     void update(Response cached, Response network) {
-        Entry entry = new Entry(network);
-        DiskLruCache.Snapshot snapshot = ((CacheResponseBody) cached.body()).snapshot;
+        CacheResponseBody cachedBody = (CacheResponseBody) cached.body();
+        // The body is kept so its encoding is too.
+        Entry entry = new Entry(network, cachedBody.bodyEncoding);
+        DiskLruCache.Snapshot snapshot = cachedBody.snapshot;
         DiskLruCache.Editor editor = null;
         try {
             editor = snapshot.edit(); // Returns null if snapshot is not current.
@@ -355,7 +507,11 @@ public final class Cache implements Closeable, Flushable {
                 while (delegate.hasNext()) {
                     try (DiskLruCache.Snapshot snapshot = delegate.next()) {
                         BufferedSource metadata = Okio.buffer(snapshot.getSource(ENTRY_METADATA));
-                        nextUrl = metadata.readUtf8LineStrict();
+                        String url = metadata.readUtf8LineStrict();
+                        if (metadata.readUtf8LineStrict().equals(VARY_INDEX)) {
+                            continue; // Each variant is returned instead.
+                        }
+                        nextUrl = url;
                         return true;
                     } catch (IOException ignored) {
                         // We couldn't read the metadata for this snapshot; possibly because the host filesystem
@@ -436,6 +592,24 @@ public final class Cache implements Closeable, Flushable {
         hitCount++;
     }
 
+    synchronized boolean beginRevalidation(Request request, Response cacheResponse) {
+        return revalidations.add(revalidationKey(request, cacheResponse));
+    }
+
+    synchronized void endRevalidation(Request request, Response cacheResponse) {
+        revalidations.remove(revalidationKey(request, cacheResponse));
+    }
+
+    /**
+     * Returns the key of the entry that {@code cacheResponse} was read from, so that each variant of
+     * a URL is revalidated independently.
+     */
+    private static String revalidationKey(Request request, Response cacheResponse) {
+        String key = key(request.url());
+        Set<String> varyFields = HttpHeaders.varyFields(cacheResponse.headers());
+        return varyFields.isEmpty() ? key : variantKey(key, varyFields, request.headers());
+    }
+
     public synchronized int networkCount() {
         return networkCount;
     }
@@ -454,9 +628,10 @@ public final class Cache implements Closeable, Flushable {
         private Sink body;
         boolean done;
 
-        CacheRequestImpl(final DiskLruCache.Editor editor) {
+        CacheRequestImpl(final DiskLruCache.Editor editor, @Nullable String bodyEncoding) {
             this.editor = editor;
-            this.cacheOut = editor.newSink(ENTRY_BODY);
+            Sink sink = editor.newSink(ENTRY_BODY);
+            this.cacheOut = bodyEncoding != null ? CacheCompression.compress(bodyEncoding, sink) : sink;
             this.body = new ForwardingSink(cacheOut) {
                 @Override
                 public void close() throws IOException {
@@ -506,6 +681,11 @@ public final class Cache implements Closeable, Flushable {
          */
         private static final String RECEIVED_MILLIS = Platform.get().getPrefix() + "-Received-Millis";
 
+        /**
+         * Synthetic response header: how the body was compressed to store it, like {@code gzip}.
+         */
+        private static final String BODY_ENCODING = Platform.get().getPrefix() + "-Body-Encoding";
+
         private final String url;
         private final Headers varyHeaders;
         private final String requestMethod;
@@ -517,9 +697,12 @@ public final class Cache implements Closeable, Flushable {
         Handshake handshake;
         private final long sentRequestMillis;
         private final long receivedResponseMillis;
+        private final @Nullable
+        String bodyEncoding;
 
         /**
-         * Reads an entry from an input stream. A typical entry looks like this:
+         * Reads an entry whose first two lines, {@code url} and {@code requestMethod}, have already been
+         * read from {@code source}. A typical entry looks like this:
          * <pre>{@code
          *   http://google.com/foo
          *   GET
@@ -566,11 +749,10 @@ public final class Cache implements Closeable, Flushable {
          * base64-encoded and appear each on their own line. A length of -1 is used to encode a null
          * array. The last line is optional. If present, it contains the TLS version.
          */
-        Entry(Source in) throws IOException {
+        Entry(String url, String requestMethod, BufferedSource source) throws IOException {
             try {
-                BufferedSource source = Okio.buffer(in);
-                url = source.readUtf8LineStrict();
-                requestMethod = source.readUtf8LineStrict();
+                this.url = url;
+                this.requestMethod = requestMethod;
                 Headers.Builder varyHeadersBuilder = new Headers.Builder();
                 int varyRequestHeaderLineCount = readInt(source);
                 for (int i = 0; i < varyRequestHeaderLineCount; i++) {
@@ -589,8 +771,10 @@ public final class Cache implements Closeable, Flushable {
                 }
                 String sendRequestMillisString = responseHeadersBuilder.get(SENT_MILLIS);
                 String receivedResponseMillisString = responseHeadersBuilder.get(RECEIVED_MILLIS);
+                bodyEncoding = responseHeadersBuilder.get(BODY_ENCODING);
                 responseHeadersBuilder.removeAll(SENT_MILLIS);
                 responseHeadersBuilder.removeAll(RECEIVED_MILLIS);
+                responseHeadersBuilder.removeAll(BODY_ENCODING);
                 sentRequestMillis = sendRequestMillisString != null
                         ? Long.parseLong(sendRequestMillisString)
                         : 0L;
@@ -616,11 +800,11 @@ public final class Cache implements Closeable, Flushable {
                     handshake = null;
                 }
             } finally {
-                in.close();
+                source.close();
             }
         }
 
-        Entry(Response response) {
+        Entry(Response response, @Nullable String bodyEncoding) {
             this.url = response.request().url().toString();
             this.varyHeaders = HttpHeaders.varyHeaders(response);
             this.requestMethod = response.request().method();
@@ -631,6 +815,7 @@ public final class Cache implements Closeable, Flushable {
             this.handshake = response.handshake();
             this.sentRequestMillis = response.sentRequestAtMillis();
             this.receivedResponseMillis = response.receivedResponseAtMillis();
+            this.bodyEncoding = bodyEncoding;
         }
 
         public void writeTo(DiskLruCache.Editor editor) throws IOException {
@@ -651,7 +836,7 @@ public final class Cache implements Closeable, Flushable {
 
             sink.writeUtf8(new StatusLine(protocol, code, message).toString())
                     .writeByte('\n');
-            sink.writeDecimalLong(responseHeaders.size() + 2)
+            sink.writeDecimalLong(responseHeaders.size() + (bodyEncoding != null ? 3 : 2))
                     .writeByte('\n');
             for (int i = 0, size = responseHeaders.size(); i < size; i++) {
                 sink.writeUtf8(responseHeaders.name(i))
@@ -667,6 +852,12 @@ public final class Cache implements Closeable, Flushable {
                     .writeUtf8(": ")
                     .writeDecimalLong(receivedResponseMillis)
                     .writeByte('\n');
+            if (bodyEncoding != null) {
+                sink.writeUtf8(BODY_ENCODING)
+                        .writeUtf8(": ")
+                        .writeUtf8(bodyEncoding)
+                        .writeByte('\n');
+            }
 
             if (isHttps()) {
                 sink.writeByte('\n');
@@ -739,7 +930,8 @@ public final class Cache implements Closeable, Flushable {
                     .code(code)
                     .message(message)
                     .headers(responseHeaders)
-                    .body(new CacheResponseBody(snapshot, contentType, contentLength))
+                    .body(new CacheResponseBody(snapshot, contentType, contentLength,
+                            bodyEncoding))
                     .handshake(handshake)
                     .sentRequestAtMillis(sentRequestMillis)
                     .receivedResponseAtMillis(receivedResponseMillis)
@@ -747,6 +939,78 @@ public final class Cache implements Closeable, Flushable {
         }
     }
 
+    /**
+     * Stored under a URL's key in place of a response that varies by request headers. Each variant of
+     * the response is stored under a key computed from the headers that select it, so a request
+     * reads this index and then only the variant it selects. A typical index's metadata looks like
+     * this:
+     * <pre>{@code
+     *   http://google.com/foo
+     *   VARY-INDEX
+     *   2
+     *   Accept-Encoding
+     *   Accept-Language
+     * }</pre>
+     * Its body holds the keys of the URL's variants, oldest first, one per line.
+     */
+    private static final class VaryIndex {
+        final Set<String> varyFields;
+        final List<String> variantKeys;
+
+        VaryIndex(Set<String> varyFields, List<String> variantKeys) {
+            this.varyFields = varyFields;
+            this.variantKeys = variantKeys;
+        }
+
+        /**
+         * Returns the index in {@code snapshot}, or null if it holds a response instead.
+         */
+        static @Nullable
+        VaryIndex read(DiskLruCache.Snapshot snapshot) throws IOException {
+            try (BufferedSource metadata = Okio.buffer(snapshot.getSource(ENTRY_METADATA));
+                 BufferedSource body = Okio.buffer(snapshot.getSource(ENTRY_BODY))) {
+                metadata.readUtf8LineStrict(); // URL.
+                if (!metadata.readUtf8LineStrict().equals(VARY_INDEX)) {
+                    return null;
+                }
+                Set<String> varyFields = readVaryFields(metadata);
+                List<String> variantKeys = new ArrayList<>();
+                for (String line; (line = body.readUtf8Line()) != null; ) {
+                    variantKeys.add(line);
+                }
+                return new VaryIndex(varyFields, variantKeys);
+            }
+        }
+
+        /**
+         * Reads the fields of an index whose first two lines have already been read.
+         */
+        static Set<String> readVaryFields(BufferedSource metadata) throws IOException {
+            Set<String> result = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+            int fieldCount = readInt(metadata);
+            for (int i = 0; i < fieldCount; i++) {
+                result.add(metadata.readUtf8LineStrict());
+            }
+            return result;
+        }
+
+        void writeTo(String url, DiskLruCache.Editor editor) throws IOException {
+            try (BufferedSink metadata = Okio.buffer(editor.newSink(ENTRY_METADATA))) {
+                metadata.writeUtf8(url).writeByte('\n');
+                metadata.writeUtf8(VARY_INDEX).writeByte('\n');
+                metadata.writeDecimalLong(varyFields.size()).writeByte('\n');
+                for (String field : varyFields) {
+                    metadata.writeUtf8(field).writeByte('\n');
+                }
+            }
+            try (BufferedSink body = Okio.buffer(editor.newSink(ENTRY_BODY))) {
+                for (String variantKey : variantKeys) {
+                    body.writeUtf8(variantKey).writeByte('\n');
+                }
+            }
+        }
+    }
+
     static int readInt(BufferedSource source) throws IOException {
         try {
             long result = source.readDecimalLong();
@@ -767,14 +1031,20 @@ public final class Cache implements Closeable, Flushable {
         String contentType;
         private final @Nullable
         String contentLength;
+        final @Nullable
+        String bodyEncoding;
 
-        CacheResponseBody(final DiskLruCache.Snapshot snapshot,
-                          String contentType, String contentLength) {
+        CacheResponseBody(final DiskLruCache.Snapshot snapshot, String contentType,
+                          String contentLength, @Nullable String bodyEncoding) {
             this.snapshot = snapshot;
             this.contentType = contentType;
             this.contentLength = contentLength;
+            this.bodyEncoding = bodyEncoding;
 
             Source source = snapshot.getSource(ENTRY_BODY);
+            if (bodyEncoding != null) {
+                source = CacheCompression.decompress(bodyEncoding, source);
+            }
             bodySource = Okio.buffer(new ForwardingSource(source) {
                 @Override
                 public void close() throws IOException {
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javax.annotation.Nullable;
+
+import okio.DeflaterSink;
+import okio.GzipSink;
+import okio.GzipSource;
+import okio.InflaterSource;
+import okio.Sink;
+import okio.Source;
+
+/**
+ * Compresses response bodies stored by a {@link Cache} so that more responses fit in its maximum
+ * size. Bodies are decompressed as they're read from the cache; callers see the original bytes.
+ *
+ * <p>A body is compressed if its response has one of this policy's content types and its {@code
+ * Content-Length} is at least the minimum size. Bodies whose length isn't known in advance are
+ * compressed. Bodies that already have a {@code Content-Encoding}, like those served with {@code
+ * gzip}, are stored as received.
+ *
+ * <p>Use this with a {@link Cache} that is dedicated to it: entries stored with and without
+ * compression can be read by either, but the cache's directory should not be shared with older
+ * versions of OkHttp that don't know to decompress them.
+ */
+public final class CacheCompression {
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+
+    final String encoding;
+    final long minimumSize;
+    /**
+     * Patterns like {@code text/html} or {@code text/*}. Empty to compress all content types.
+     */
+    final List<String> contentTypes;
+
+    private CacheCompression(String encoding, long minimumSize, String... contentTypes) {
+        if (minimumSize < 0) throw new IllegalArgumentException("minimumSize < 0: " + minimumSize);
+        List<String> patterns = new ArrayList<>();
+        for (String contentType : contentTypes) {
+            MediaType mediaType = MediaType.parse(contentType);
+            if (mediaType == null) {
+                throw new IllegalArgumentException("unexpected content type: " + contentType);
+            }
+            patterns.add(mediaType.type() + "/" + mediaType.subtype());
+        }
+        this.encoding = encoding;
+        this.minimumSize = minimumSize;
+        this.contentTypes = Collections.unmodifiableList(patterns);
+    }
+
+    /**
+     * Returns a policy that stores bodies of at least {@code minimumSize} bytes with gzip. If any
+     * {@code contentTypes} are given only those are compressed; {@code *} matches any subtype, as in
+     * {@code text/*}.
+     */
+    public static CacheCompression gzip(long minimumSize, String... contentTypes) {
+        return new CacheCompression(GZIP, minimumSize, contentTypes);
+    }
+
+    /**
+     * Returns a policy that stores bodies of at least {@code minimumSize} bytes with raw deflate,
+     * which omits gzip's header and checksum. If any {@code contentTypes} are given only those are
+     * compressed; {@code *} matches any subtype, as in {@code text/*}.
+     */
+    public static CacheCompression deflate(long minimumSize, String... contentTypes) {
+        return new CacheCompression(DEFLATE, minimumSize, contentTypes);
+    }
+
+    /**
+     * Returns the encoding to store {@code response}'s body with, or null to store it as received.
+     */
+    @Nullable
+    String encodingFor(Response response) {
+        if (response.header("Content-Encoding") != null) return null;
+
+        long contentLength = response.body() != null ? response.body().contentLength() : -1L;
+        if (contentLength == -1L) {
+            String header = response.header("Content-Length");
+            if (header != null) {
+                try {
+                    contentLength = Long.parseLong(header);
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        if (contentLength != -1L && contentLength < minimumSize) return null;
+
+        if (contentTypes.isEmpty()) return encoding;
+        MediaType mediaType = MediaType.parse(response.header("Content-Type", ""));
+        if (mediaType == null) return null;
+        for (int i = 0, size = contentTypes.size(); i < size; i++) {
+            String pattern = contentTypes.get(i);
+            if (pattern.equals("*/*")
+                    || pattern.equals(mediaType.type() + "/" + mediaType.subtype())
+                    || pattern.equals(mediaType.type() + "/*")) {
+                return encoding;
+            }
+        }
+        return null;
+    }
+
+    static Sink compress(String encoding, Sink sink) {
+        switch (encoding) {
+            case GZIP:
+                return new GzipSink(sink);
+            case DEFLATE:
+                return new DeflaterSink(sink, new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+            default:
+                throw new IllegalArgumentException("unexpected encoding: " + encoding);
+        }
+    }
+
+    static Source decompress(String encoding, Source source) {
+        switch (encoding) {
+            case GZIP:
+                return new GzipSource(source);
+            case DEFLATE:
+                return new InflaterSource(source, new Inflater(true));
+            default:
+                throw new IllegalArgumentException("unexpected encoding: " + encoding);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return encoding.toUpperCase(Locale.US) + "(minimumSize=" + minimumSize
+                + ", contentTypes=" + contentTypes + ")";
+    }
+}
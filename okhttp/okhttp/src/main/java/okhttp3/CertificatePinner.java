@@ -29,6 +29,7 @@ import javax.annotation.Nullable;
 import javax.net.ssl.SSLPeerUnverifiedException;
 
 import okhttp3.internal.tls.CertificateChainCleaner;
+import okhttp3.internal.tls.LruCache;
 import okio.ByteString;
 
 /**
@@ -129,10 +130,24 @@ import okio.ByteString;
 public final class CertificatePinner {
     public static final CertificatePinner DEFAULT = new Builder().build();
 
+    static final int CACHE_SIZE = 64;
+
     private final Set<Pin> pins;
     private final @Nullable
     CertificateChainCleaner certificateChainCleaner;
 
+    /**
+     * Hostnames and peer certificate chains that passed {@link #check}. Reconnecting to a host that
+     * presents the same chain skips cleaning and hashing it again.
+     */
+    private final LruCache<List<Object>, Boolean> verifiedChains = new LruCache<>(CACHE_SIZE);
+
+    /**
+     * Hash algorithms and certificates, and the hash of the certificate's public key.
+     */
+    private final LruCache<List<Object>, ByteString> publicKeyHashes =
+            new LruCache<>(CACHE_SIZE * 2);
+
     CertificatePinner(Set<Pin> pins, @Nullable CertificateChainCleaner certificateChainCleaner) {
         this.pins = pins;
         this.certificateChainCleaner = certificateChainCleaner;
@@ -167,6 +182,11 @@ public final class CertificatePinner {
         List<Pin> pins = findMatchingPins(hostname);
         if (pins.isEmpty()) return;
 
+        List<Object> verifiedChainKey = new ArrayList<>(peerCertificates.size() + 1);
+        verifiedChainKey.add(hostname);
+        verifiedChainKey.addAll(peerCertificates);
+        if (verifiedChains.get(verifiedChainKey) != null) return; // Success!
+
         if (certificateChainCleaner != null) {
             peerCertificates = certificateChainCleaner.clean(peerCertificates, hostname);
         }
@@ -181,11 +201,17 @@ public final class CertificatePinner {
             for (int p = 0, pinsSize = pins.size(); p < pinsSize; p++) {
                 Pin pin = pins.get(p);
                 if (pin.hashAlgorithm.equals("sha256/")) {
-                    if (sha256 == null) sha256 = sha256(x509Certificate);
-                    if (pin.hash.equals(sha256)) return; // Success!
+                    if (sha256 == null) sha256 = publicKeyHash("sha256/", x509Certificate);
+                    if (pin.hash.equals(sha256)) {
+                        verifiedChains.put(verifiedChainKey, Boolean.TRUE);
+                        return; // Success!
+                    }
                 } else if (pin.hashAlgorithm.equals("sha1/")) {
-                    if (sha1 == null) sha1 = sha1(x509Certificate);
-                    if (pin.hash.equals(sha1)) return; // Success!
+                    if (sha1 == null) sha1 = publicKeyHash("sha1/", x509Certificate);
+                    if (pin.hash.equals(sha1)) {
+                        verifiedChains.put(verifiedChainKey, Boolean.TRUE);
+                        return; // Success!
+                    }
                 } else {
                     throw new AssertionError("unsupported hashAlgorithm: " + pin.hashAlgorithm);
                 }
@@ -255,6 +281,16 @@ public final class CertificatePinner {
         return "sha256/" + sha256((X509Certificate) certificate).base64();
     }
 
+    private ByteString publicKeyHash(String hashAlgorithm, X509Certificate x509Certificate) {
+        List<Object> key = Arrays.asList(hashAlgorithm, x509Certificate);
+        ByteString result = publicKeyHashes.get(key);
+        if (result == null) {
+            result = hashAlgorithm.equals("sha256/") ? sha256(x509Certificate) : sha1(x509Certificate);
+            publicKeyHashes.put(key, result);
+        }
+        return result;
+    }
+
     static ByteString sha1(X509Certificate x509Certificate) {
         return ByteString.of(x509Certificate.getPublicKey().getEncoded()).sha1();
     }
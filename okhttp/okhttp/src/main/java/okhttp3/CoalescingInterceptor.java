@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import javax.annotation.Nullable;
+
+import okio.BufferedSource;
+import okio.ByteString;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static okhttp3.internal.Util.closeQuietly;
+
+/**
+ * An application interceptor that merges identical requests that are in flight at the same time
+ * into one. The first call for a request proceeds; calls for the same request that arrive before
+ * it completes wait for its response and then each get their own copy of it. This is useful for
+ * endpoints that many threads request at once, like configuration or tokens.
+ *
+ * <p>Only {@code GET} and {@code HEAD} requests are merged, and never protocol upgrades like web
+ * socket handshakes. Requests are identical if their method, URL and {@linkplain
+ * Builder#keyHeaders key headers} are. By default every header is a key header, so requests with
+ * different credentials are never merged.
+ *
+ * <p>When calls are waiting, the response body is buffered in memory so that each caller can read
+ * it. Otherwise it is returned to the first caller as it streams in. Bodies of unknown length, like
+ * chunked or event streams, and bodies larger than {@linkplain Builder#maxBodySize the maximum} are
+ * never buffered: they go to the first caller only, and waiting calls make their own requests. They
+ * do the same if the first call fails.
+ *
+ * <pre>   {@code
+ *
+ *   CoalescingInterceptor coalescingInterceptor = new CoalescingInterceptor.Builder()
+ *       .keyHeaders("Authorization", "Accept")
+ *       .build();
+ *   OkHttpClient client = new OkHttpClient.Builder()
+ *       .addInterceptor(coalescingInterceptor)
+ *       .build();
+ * }</pre>
+ */
+public final class CoalescingInterceptor implements Interceptor {
+    /**
+     * How often waiting calls check whether they've been canceled.
+     */
+    private static final long POLL_MILLIS = 100L;
+
+    final @Nullable
+    List<String> keyHeaders;
+    final long maxBodySize;
+
+    /* guarded by 'this' */
+    private final Map<String, Flight> flights = new HashMap<>();
+    private int requestCount;
+    private int coalescedCount;
+
+    public CoalescingInterceptor() {
+        this(new Builder());
+    }
+
+    CoalescingInterceptor(Builder builder) {
+        this.keyHeaders = builder.keyHeaders;
+        this.maxBodySize = builder.maxBodySize;
+    }
+
+    /**
+     * Returns the headers that requests must agree on to be merged, or null if they must agree on
+     * all of them.
+     */
+    public @Nullable
+    List<String> keyHeaders() {
+        return keyHeaders;
+    }
+
+    public long maxBodySize() {
+        return maxBodySize;
+    }
+
+    /**
+     * Returns the number of requests that could have been merged: {@code GET} and {@code HEAD}
+     * requests.
+     */
+    public synchronized int requestCount() {
+        return requestCount;
+    }
+
+    /**
+     * Returns the number of requests that were satisfied by another call's response, and so didn't
+     * use the network.
+     */
+    public synchronized int coalescedCount() {
+        return coalescedCount;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!request.method().equals("GET") && !request.method().equals("HEAD")) {
+            return chain.proceed(request);
+        }
+        if (request.header("Upgrade") != null || request.header("Sec-WebSocket-Key") != null) {
+            return chain.proceed(request); // Each handshake needs its own exchange.
+        }
+
+        String key = key(request);
+        Flight flight;
+        boolean leader;
+        synchronized (this) {
+            requestCount++;
+            flight = flights.get(key);
+            leader = flight == null;
+            if (leader) {
+                flight = new Flight();
+                flights.put(key, flight);
+            } else {
+                flight.waiting++;
+            }
+        }
+
+        return leader
+                ? proceedAndShare(chain, key, flight)
+                : awaitShared(chain, flight);
+    }
+
+    private Response proceedAndShare(Chain chain, String key, Flight flight) throws IOException {
+        Response response = null;
+        ByteString body = null;
+        try {
+            response = chain.proceed(chain.request());
+            if (shareable(response, key, flight)) {
+                body = readBody(response);
+            }
+        } finally {
+            synchronized (this) {
+                if (flights.get(key) == flight) flights.remove(key);
+            }
+            flight.complete(body != null ? response : null, body);
+        }
+        return body != null
+                ? withBody(response, chain.request(), body)
+                : response;
+    }
+
+    private Response awaitShared(Chain chain, Flight flight) throws IOException {
+        try {
+            flight.await(chain.call());
+        } catch (IOException e) {
+            synchronized (this) {
+                flight.waiting--;
+            }
+            throw e;
+        }
+        if (flight.response == null) {
+            // The first call failed or its body couldn't be shared. Make our own request.
+            return chain.proceed(chain.request());
+        }
+        synchronized (this) {
+            coalescedCount++;
+        }
+        return withBody(flight.response, chain.request(), flight.body);
+    }
+
+    /**
+     * Returns true if {@code response} should be buffered for calls waiting on {@code flight}. If it
+     * shouldn't, this stops new calls from joining the flight so the response can be streamed to its
+     * caller.
+     */
+    private boolean shareable(Response response, String key, Flight flight) {
+        ResponseBody body = response.body();
+        boolean bounded = body != null
+                && (response.request().method().equals("HEAD")
+                || (body.contentLength() != -1L && body.contentLength() <= maxBodySize));
+        synchronized (this) {
+            if (bounded && flight.waiting > 0) return true;
+            flights.remove(key);
+            return false;
+        }
+    }
+
+    /**
+     * Returns the body of {@code response}, or null if it is larger than {@link #maxBodySize}. In that
+     * case {@code response} can still be read by its caller.
+     */
+    private @Nullable
+    ByteString readBody(Response response) throws IOException {
+        ResponseBody body = response.body();
+        try {
+            BufferedSource source = body.source();
+            if (source.request(maxBodySize + 1)) return null; // Leave what was read in the buffer.
+            ByteString result = source.readByteString();
+            body.close();
+            return result;
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(body);
+            throw e;
+        }
+    }
+
+    private static Response withBody(Response response, Request request, ByteString body) {
+        String contentType = response.header("Content-Type");
+        return response.newBuilder()
+                .request(request)
+                .body(ResponseBody.create(
+                        contentType != null ? MediaType.parse(contentType) : null, body))
+                .build();
+    }
+
+    private String key(Request request) {
+        StringBuilder result = new StringBuilder()
+                .append(request.method())
+                .append(' ')
+                .append(request.url())
+                .append('\n');
+        if (keyHeaders == null) {
+            result.append(request.headers());
+        } else {
+            for (String name : keyHeaders) {
+                for (String value : request.headers(name)) {
+                    result.append(name).append(": ").append(value).append('\n');
+                }
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * A request in progress, and the response it gets.
+     */
+    static final class Flight {
+        private final CountDownLatch done = new CountDownLatch(1);
+        /** Calls waiting for this flight's response. Guarded by the interceptor. */
+        int waiting;
+        @Nullable
+        Response response;
+        @Nullable
+        ByteString body;
+
+        void complete(@Nullable Response response, @Nullable ByteString body) {
+            this.response = response;
+            this.body = body;
+            done.countDown();
+        }
+
+        void await(Call call) throws IOException {
+            try {
+                while (!done.await(POLL_MILLIS, MILLISECONDS)) {
+                    if (call.isCanceled()) throw new IOException("Canceled");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+
+    public static final class Builder {
+        @Nullable
+        List<String> keyHeaders;
+        long maxBodySize = 1024 * 1024;
+
+        /**
+         * Merge requests that agree on the values of {@code names}, ignoring other headers. By
+         * default requests must agree on all headers.
+         */
+        public Builder keyHeaders(String... names) {
+            List<String> keyHeaders = new ArrayList<>();
+            for (String name : names) {
+                if (name == null) throw new NullPointerException("name == null");
+                keyHeaders.add(name);
+            }
+            this.keyHeaders = Collections.unmodifiableList(keyHeaders);
+            return this;
+        }
+
+        /**
+         * Sets the largest response body to buffer and share. Defaults to 1 MiB.
+         */
+        public Builder maxBodySize(long maxBodySize) {
+            if (maxBodySize < 0) throw new IllegalArgumentException("maxBodySize < 0: " + maxBodySize);
+            this.maxBodySize = maxBodySize;
+            return this;
+        }
+
+        public CoalescingInterceptor build() {
+            return new CoalescingInterceptor(this);
+        }
+    }
+}
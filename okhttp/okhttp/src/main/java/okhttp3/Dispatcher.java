@@ -19,8 +19,10 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -41,8 +43,11 @@ import okhttp3.internal.Util;
  * 调度器
  */
 public final class Dispatcher {
+    static final int MAX_HOST_LIMITS = 256;
+
     private int maxRequests = 64;
     private int maxRequestsPerHost = 5;
+    private boolean adaptiveRequestsPerHost;
     private @Nullable
     Runnable idleCallback;
 
@@ -67,6 +72,19 @@ public final class Dispatcher {
      */
     private final Deque<RealCall> runningSyncCalls = new ArrayDeque<>();
 
+    /**
+     * Concurrency limits and queue delays of the hosts that async calls have been made to, while
+     * adaptive limits are enabled. Only the {@value #MAX_HOST_LIMITS} most recently used hosts are
+     * kept; a host that is evicted starts over from {@link #maxRequestsPerHost}.
+     */
+    private final Map<String, AdaptiveLimit> hostLimits =
+            new LinkedHashMap<String, AdaptiveLimit>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, AdaptiveLimit> eldest) {
+                    return size() > MAX_HOST_LIMITS;
+                }
+            };
+
     public Dispatcher(ExecutorService executorService) {
         this.executorService = executorService;
     }
@@ -128,6 +146,49 @@ public final class Dispatcher {
         return maxRequestsPerHost;
     }
 
+    /**
+     * Adjust each host's limit on concurrent requests to how many it can serve without slowing down.
+     * This sends fewer requests to a host that is overloaded, so that they wait in this dispatcher's
+     * queue rather than the host's, and more to a host that responds as quickly with more.
+     *
+     * <p>Limits are estimated from the time it takes each async call's final exchange to receive a
+     * response from the network. Responses from the cache aren't counted. Limits start at {@link
+     * #getMaxRequestsPerHost maxRequestsPerHost} and are kept between 1 and {@link #getMaxRequests
+     * maxRequests}. Use {@link #getMaxRequestsPerHost(String)} to see a host's current limit.
+     */
+    public void setAdaptiveRequestsPerHost(boolean adaptiveRequestsPerHost) {
+        synchronized (this) {
+            this.adaptiveRequestsPerHost = adaptiveRequestsPerHost;
+            if (!adaptiveRequestsPerHost) hostLimits.clear();
+        }
+        promoteAndExecute();
+    }
+
+    public synchronized boolean isAdaptiveRequestsPerHost() {
+        return adaptiveRequestsPerHost;
+    }
+
+    /**
+     * Returns the maximum number of requests to {@code host} to execute concurrently. This is {@link
+     * #getMaxRequestsPerHost()} unless {@linkplain #setAdaptiveRequestsPerHost adaptive limits} are
+     * enabled.
+     */
+    public synchronized int getMaxRequestsPerHost(String host) {
+        if (!adaptiveRequestsPerHost) return maxRequestsPerHost;
+        AdaptiveLimit hostLimit = hostLimits.get(host);
+        return hostLimit != null ? hostLimit.limit() : maxRequestsPerHost;
+    }
+
+    /**
+     * Returns the average time that recent async calls to {@code host} waited in this dispatcher's
+     * queue before they were executed. This is 0 unless {@linkplain #setAdaptiveRequestsPerHost
+     * adaptive limits} are enabled.
+     */
+    public synchronized long getQueueDelayMillis(String host) {
+        AdaptiveLimit hostLimit = hostLimits.get(host);
+        return hostLimit != null ? TimeUnit.NANOSECONDS.toMillis(hostLimit.queueDelayNanos()) : 0L;
+    }
+
     /**
      * Set a callback to be invoked each time the dispatcher becomes idle (when the number of running
      * calls returns to zero).
@@ -146,6 +207,7 @@ public final class Dispatcher {
 
     void enqueue(AsyncCall call) {
         synchronized (this) {
+            call.enqueuedAtNanos = System.nanoTime();
             readyAsyncCalls.add(call);
 
             // Mutate the AsyncCall so that it shares the AtomicInteger of an existing running call to
@@ -200,14 +262,18 @@ public final class Dispatcher {
         List<AsyncCall> executableCalls = new ArrayList<>();
         boolean isRunning;
         synchronized (this) {
+            long now = System.nanoTime();
             for (Iterator<AsyncCall> i = readyAsyncCalls.iterator(); i.hasNext(); ) {
                 AsyncCall asyncCall = i.next();
 
                 if (runningAsyncCalls.size() >= maxRequests) break; // Max capacity.
-                if (asyncCall.callsPerHost().get() >= maxRequestsPerHost)
+                if (asyncCall.callsPerHost().get() >= maxRequestsPerHost(asyncCall))
                     continue; // Host max capacity.
 
                 i.remove();
+                if (adaptiveRequestsPerHost && !asyncCall.get().forWebSocket) {
+                    hostLimit(asyncCall.host()).recordQueueDelay(now - asyncCall.enqueuedAtNanos);
+                }
                 asyncCall.callsPerHost().incrementAndGet();
                 executableCalls.add(asyncCall);
                 runningAsyncCalls.add(asyncCall);
@@ -223,6 +289,29 @@ public final class Dispatcher {
         return isRunning;
     }
 
+    private int maxRequestsPerHost(AsyncCall asyncCall) {
+        if (!adaptiveRequestsPerHost || asyncCall.get().forWebSocket) return maxRequestsPerHost;
+        return hostLimit(asyncCall.host()).limit();
+    }
+
+    private AdaptiveLimit hostLimit(String host) {
+        AdaptiveLimit hostLimit = hostLimits.get(host);
+        if (hostLimit == null) {
+            hostLimit = new AdaptiveLimit(maxRequestsPerHost);
+            hostLimits.put(host, hostLimit);
+        }
+        return hostLimit;
+    }
+
+    /**
+     * Used by {@code AsyncCall#run} to signal that the exchange for its response took {@code rttNanos}.
+     * Responses from the cache aren't reported.
+     */
+    synchronized void responseReceived(AsyncCall call, long rttNanos) {
+        if (!adaptiveRequestsPerHost || call.get().forWebSocket) return;
+        hostLimit(call.host()).recordResponse(rttNanos, call.callsPerHost().get(), maxRequests);
+    }
+
     /**
      * Used by {@code Call#execute} to signal it is in-flight.
      */
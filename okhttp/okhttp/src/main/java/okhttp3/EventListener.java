@@ -277,6 +277,46 @@ public abstract class EventListener {
     public void responseFailed(Call call, IOException ioe) {
     }
 
+    /**
+     * Invoked just prior to retrying a request after {@code ioe}. The retry uses a new connection
+     * and is followed by a new sequence of connection events.
+     *
+     * <p>This can be invoked more than 1 time for a single {@link Call}.
+     */
+    public void retryStart(Call call, IOException ioe) {
+    }
+
+    /**
+     * Invoked when a request isn't retried or hedged because its host's {@link RetryBudget} is
+     * exhausted. If the request failed the failure is returned to the caller. Like the call's other
+     * events this is invoked on the thread executing the call, after the first copy of a request
+     * that couldn't be hedged has completed.
+     */
+    public void retryBudgetExhausted(Call call) {
+    }
+
+    /**
+     * Invoked just prior to sending a second copy of a request because the first hasn't received a
+     * response within the delay of the client's {@link HedgePolicy}.
+     *
+     * <p>This is invoked on a background thread. The second copy's own events, such as {@link
+     * #connectionAcquired} and {@link #requestHeadersStart}, aren't reported while both copies are
+     * running, so they are never interleaved with the first copy's. If the second copy wins, its
+     * connection is reported with {@link #connectionAcquired} and the rest of its events, such as
+     * {@link #responseBodyStart}, are reported as the call's.
+     */
+    public void hedgeStart(Call call) {
+    }
+
+    /**
+     * Invoked when a hedged request completes. {@code hedgeWon} is true if the response of the second
+     * copy was used, and false if the first copy's response or failure was used.
+     *
+     * <p>This method is always invoked after {@link #hedgeStart}.
+     */
+    public void hedgeEnd(Call call, boolean hedgeWon) {
+    }
+
     /**
      * Invoked immediately after a call has completely ended.  This includes delayed consumption
      * of response body by the caller.
@@ -25,6 +25,7 @@ import javax.annotation.Nullable;
 import okhttp3.internal.Util;
 import okio.Buffer;
 import okio.BufferedSink;
+import okio.Utf8;
 
 import static okhttp3.HttpUrl.FORM_ENCODE_SET;
 import static okhttp3.HttpUrl.percentDecode;
@@ -70,43 +71,30 @@ public final class FormBody extends RequestBody {
 
     @Override
     public long contentLength() {
-        return writeOrCountBytes(null, true);
-    }
-
-    @Override
-    public void writeTo(BufferedSink sink) throws IOException {
-        writeOrCountBytes(sink, false);
+        long byteCount = 0L;
+        for (int i = 0, size = encodedNames.size(); i < size; i++) {
+            if (i > 0) byteCount++; // '&'
+            byteCount += Utf8.size(encodedNames.get(i));
+            byteCount++; // '='
+            byteCount += Utf8.size(encodedValues.get(i));
+        }
+        return byteCount;
     }
 
     /**
-     * Either writes this request to {@code sink} or measures its content length. We have one method
-     * do double-duty to make sure the counting and content are consistent, particularly when it comes
-     * to awkward operations like measuring the encoded length of header strings, or the
-     * length-in-digits of an encoded integer.
+     * Writes the encoded pairs directly into {@code sink}'s buffer. Keep this consistent with {@link
+     * #contentLength()}, which measures the same bytes without encoding them.
      */
-    private long writeOrCountBytes(@Nullable BufferedSink sink, boolean countBytes) {
-        long byteCount = 0L;
-
-        Buffer buffer;
-        if (countBytes) {
-            buffer = new Buffer();
-        } else {
-            buffer = sink.buffer();
-        }
-
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        Buffer buffer = sink.buffer();
         for (int i = 0, size = encodedNames.size(); i < size; i++) {
             if (i > 0) buffer.writeByte('&');
             buffer.writeUtf8(encodedNames.get(i));
             buffer.writeByte('=');
             buffer.writeUtf8(encodedValues.get(i));
+            sink.emitCompleteSegments();
         }
-
-        if (countBytes) {
-            byteCount = buffer.size();
-            buffer.clear();
-        }
-
-        return byteCount;
     }
 
     public static final class Builder {
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decides when to hedge a request: to send a second copy of it on another connection because the
+ * first is taking longer than usual. Whichever copy receives a response first is used and the other
+ * is canceled. This trades a little extra load for lower tail latency.
+ *
+ * <p>The delay before hedging is a percentile of the time it recently took each host to respond.
+ * A policy of {@code 95} hedges the slowest 5% of requests. Hosts aren't hedged until they have
+ * responded to {@value #MIN_SAMPLES} requests.
+ *
+ * <p>Only idempotent requests (GET, HEAD, OPTIONS, PUT, DELETE and TRACE) whose body can be sent
+ * twice are hedged. Use a {@link RetryBudget} to cap how much load hedging adds. Hedges run on a
+ * shared pool of at most 64 threads and aren't counted against the {@link Dispatcher}'s limits;
+ * while the pool is full, requests aren't hedged.
+ */
+public final class HedgePolicy {
+    static final int MIN_SAMPLES = 20;
+    static final int MAX_SAMPLES = 100;
+
+    private final double percentile;
+    private final ConcurrentMap<String, LatencyWindow> windows = new ConcurrentHashMap<>();
+
+    public HedgePolicy(double percentile) {
+        if (!(percentile > 0.0 && percentile < 100.0)) {
+            throw new IllegalArgumentException("percentile is not in (0..100): " + percentile);
+        }
+        this.percentile = percentile;
+    }
+
+    public double percentile() {
+        return percentile;
+    }
+
+    /**
+     * Returns how long to wait for a response from {@code host} before hedging, or -1 if there
+     * haven't been enough responses from the host to tell.
+     */
+    long hedgeDelayMillis(String host) {
+        LatencyWindow window = windows.get(host);
+        return window != null ? window.percentile(percentile) : -1L;
+    }
+
+    void recordResponse(String host, long tookMillis) {
+        LatencyWindow window = windows.get(host);
+        if (window == null) {
+            LatencyWindow newWindow = new LatencyWindow();
+            window = windows.putIfAbsent(host, newWindow);
+            if (window == null) window = newWindow;
+        }
+        window.add(tookMillis);
+    }
+
+    /**
+     * The most recent response times of a host.
+     */
+    static final class LatencyWindow {
+        private final long[] samples = new long[MAX_SAMPLES];
+        private long[] sorted;
+        private int count;
+        private int next;
+
+        synchronized void add(long tookMillis) {
+            samples[next] = tookMillis;
+            next = (next + 1) % MAX_SAMPLES;
+            count = Math.min(count + 1, MAX_SAMPLES);
+            sorted = null;
+        }
+
+        synchronized long percentile(double percentile) {
+            if (count < MIN_SAMPLES) return -1L;
+            if (sorted == null) {
+                sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+            return sorted[Math.max(index, 0)];
+        }
+    }
+}
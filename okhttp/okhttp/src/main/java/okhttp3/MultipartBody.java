@@ -26,6 +26,8 @@ import okhttp3.internal.Util;
 import okio.Buffer;
 import okio.BufferedSink;
 import okio.ByteString;
+import okio.ForwardingSink;
+import okio.Okio;
 
 /**
  * An <a href="http://www.ietf.org/rfc/rfc2387.txt">RFC 2387</a>-compliant request body.
@@ -73,13 +75,19 @@ public final class MultipartBody extends RequestBody {
     private final MediaType originalType;
     private final MediaType contentType;
     private final List<Part> parts;
+    private final ByteString[] preambles;
+    private final @Nullable
+    ProgressListener progressListener;
     private long contentLength = -1L;
 
-    MultipartBody(ByteString boundary, MediaType type, List<Part> parts) {
+    MultipartBody(ByteString boundary, MediaType type, List<Part> parts,
+                  @Nullable ProgressListener progressListener) {
         this.boundary = boundary;
         this.originalType = type;
         this.contentType = MediaType.get(type + "; boundary=" + boundary.utf8());
         this.parts = Util.immutableList(parts);
+        this.preambles = new ByteString[parts.size()];
+        this.progressListener = progressListener;
     }
 
     public MediaType type() {
@@ -117,73 +125,40 @@ public final class MultipartBody extends RequestBody {
     public long contentLength() throws IOException {
         long result = contentLength;
         if (result != -1L) return result;
-        return contentLength = writeOrCountBytes(null, true);
-    }
-
-    @Override
-    public void writeTo(BufferedSink sink) throws IOException {
-        writeOrCountBytes(sink, false);
-    }
 
-    /**
-     * Either writes this request to {@code sink} or measures its content length. We have one method
-     * do double-duty to make sure the counting and content are consistent, particularly when it comes
-     * to awkward operations like measuring the encoded length of header strings, or the
-     * length-in-digits of an encoded integer.
-     */
-    private long writeOrCountBytes(
-            @Nullable BufferedSink sink, boolean countBytes) throws IOException {
         long byteCount = 0L;
-
-        Buffer byteCountBuffer = null;
-        if (countBytes) {
-            sink = byteCountBuffer = new Buffer();
-        }
-
         for (int p = 0, partCount = parts.size(); p < partCount; p++) {
-            Part part = parts.get(p);
-            Headers headers = part.headers;
-            RequestBody body = part.body;
-
-            sink.write(DASHDASH);
-            sink.write(boundary);
-            sink.write(CRLF);
-
-            if (headers != null) {
-                for (int h = 0, headerCount = headers.size(); h < headerCount; h++) {
-                    sink.writeUtf8(headers.name(h))
-                            .write(COLONSPACE)
-                            .writeUtf8(headers.value(h))
-                            .write(CRLF);
-                }
-            }
-
-            MediaType contentType = body.contentType();
-            if (contentType != null) {
-                sink.writeUtf8("Content-Type: ")
-                        .writeUtf8(contentType.toString())
-                        .write(CRLF);
-            }
-
-            long contentLength = body.contentLength();
-            if (contentLength != -1) {
-                sink.writeUtf8("Content-Length: ")
-                        .writeDecimalLong(contentLength)
-                        .write(CRLF);
-            } else if (countBytes) {
+            long bodyLength = parts.get(p).body.contentLength();
+            if (bodyLength == -1L) {
                 // We can't measure the body's size without the sizes of its components.
-                byteCountBuffer.clear();
                 return -1L;
             }
+            byteCount += preamble(p).size() + bodyLength + CRLF.length;
+        }
+        byteCount += DASHDASH.length + boundary.size() + DASHDASH.length + CRLF.length;
 
-            sink.write(CRLF);
+        return contentLength = byteCount;
+    }
 
-            if (countBytes) {
-                byteCount += contentLength;
-            } else {
-                body.writeTo(sink);
-            }
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        if (progressListener == null) {
+            writeParts(sink);
+            return;
+        }
 
+        // Count the bytes as they pass through to the sink. This allocates once per call, not per
+        // chunk: okio moves whole segments between buffers without copying them.
+        ProgressSink progressSink = new ProgressSink(sink, progressListener, contentLength());
+        BufferedSink counted = Okio.buffer(progressSink);
+        writeParts(counted);
+        counted.emit();
+    }
+
+    private void writeParts(BufferedSink sink) throws IOException {
+        for (int p = 0, partCount = parts.size(); p < partCount; p++) {
+            sink.write(preamble(p));
+            parts.get(p).body.writeTo(sink);
             sink.write(CRLF);
         }
 
@@ -191,13 +166,53 @@ public final class MultipartBody extends RequestBody {
         sink.write(boundary);
         sink.write(DASHDASH);
         sink.write(CRLF);
+    }
+
+    /**
+     * Returns the boundary and headers that precede the body of part {@code p}. These are encoded
+     * once and then shared by {@link #contentLength()} and every call to {@link #writeTo}, so that
+     * the counted and written bytes are consistent and large bodies of many parts aren't re-encoded
+     * for each attempt.
+     */
+    private ByteString preamble(int p) throws IOException {
+        ByteString result = preambles[p];
+        if (result != null) return result;
+
+        Part part = parts.get(p);
+        Headers headers = part.headers;
+        RequestBody body = part.body;
+
+        Buffer buffer = new Buffer();
+        buffer.write(DASHDASH);
+        buffer.write(boundary);
+        buffer.write(CRLF);
+
+        if (headers != null) {
+            for (int h = 0, headerCount = headers.size(); h < headerCount; h++) {
+                buffer.writeUtf8(headers.name(h))
+                        .write(COLONSPACE)
+                        .writeUtf8(headers.value(h))
+                        .write(CRLF);
+            }
+        }
 
-        if (countBytes) {
-            byteCount += byteCountBuffer.size();
-            byteCountBuffer.clear();
+        MediaType contentType = body.contentType();
+        if (contentType != null) {
+            buffer.writeUtf8("Content-Type: ")
+                    .writeUtf8(contentType.toString())
+                    .write(CRLF);
         }
 
-        return byteCount;
+        long contentLength = body.contentLength();
+        if (contentLength != -1) {
+            buffer.writeUtf8("Content-Length: ")
+                    .writeDecimalLong(contentLength)
+                    .write(CRLF);
+        }
+
+        buffer.write(CRLF);
+
+        return preambles[p] = buffer.readByteString();
     }
 
     /**
@@ -232,6 +247,41 @@ public final class MultipartBody extends RequestBody {
         target.append('"');
     }
 
+    /**
+     * Receives the progress of writing a multipart body. Use it to report upload progress.
+     */
+    public interface ProgressListener {
+        /**
+         * Invoked each time bytes of the body are written to the request's sink. {@code
+         * bytesWritten} counts the bytes written so far by the current call to {@link #writeTo}, and
+         * starts over if the request is retried. {@code contentLength} is the body's length, or -1
+         * if it is unknown.
+         * <p>
+         * This is invoked on the thread writing the request, once per chunk of the body, so it
+         * should return quickly.
+         */
+        void onProgress(long bytesWritten, long contentLength);
+    }
+
+    private static final class ProgressSink extends ForwardingSink {
+        private final ProgressListener listener;
+        private final long contentLength;
+        private long bytesWritten;
+
+        ProgressSink(BufferedSink delegate, ProgressListener listener, long contentLength) {
+            super(delegate);
+            this.listener = listener;
+            this.contentLength = contentLength;
+        }
+
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            super.write(source, byteCount);
+            bytesWritten += byteCount;
+            listener.onProgress(bytesWritten, contentLength);
+        }
+    }
+
     public static final class Part {
         public static Part create(RequestBody body) {
             return create(null, body);
@@ -296,6 +346,8 @@ public final class MultipartBody extends RequestBody {
         private final ByteString boundary;
         private MediaType type = MIXED;
         private final List<Part> parts = new ArrayList<>();
+        private @Nullable
+        ProgressListener progressListener;
 
         public Builder() {
             this(UUID.randomUUID().toString());
@@ -357,6 +409,17 @@ public final class MultipartBody extends RequestBody {
             return this;
         }
 
+        /**
+         * Set a listener that is notified as the body is written.
+         */
+        public Builder progressListener(ProgressListener progressListener) {
+            if (progressListener == null) {
+                throw new NullPointerException("progressListener == null");
+            }
+            this.progressListener = progressListener;
+            return this;
+        }
+
         /**
          * Assemble the specified parts into a request body.
          */
@@ -364,7 +427,7 @@ public final class MultipartBody extends RequestBody {
             if (parts.isEmpty()) {
                 throw new IllegalStateException("Multipart body must have at least one part.");
             }
-            return new MultipartBody(boundary, type, parts);
+            return new MultipartBody(boundary, type, parts, progressListener);
         }
     }
 }
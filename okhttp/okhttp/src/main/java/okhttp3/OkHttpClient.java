@@ -45,6 +45,7 @@ import okhttp3.internal.connection.Exchange;
 import okhttp3.internal.connection.RealConnectionPool;
 import okhttp3.internal.platform.Platform;
 import okhttp3.internal.proxy.NullProxySelector;
+import okhttp3.internal.publicsuffix.PublicSuffixDatabase;
 import okhttp3.internal.tls.CertificateChainCleaner;
 import okhttp3.internal.tls.OkHostnameVerifier;
 import okhttp3.internal.ws.RealWebSocket;
@@ -180,6 +181,26 @@ public class OkHttpClient implements Cloneable, Call.Factory, WebSocket.Factory
             Exchange exchange(Response response) {
                 return response.exchange;
             }
+
+            @Override
+            public long hedgeDelayMillis(HedgePolicy hedgePolicy, String host) {
+                return hedgePolicy.hedgeDelayMillis(host);
+            }
+
+            @Override
+            public void recordResponse(HedgePolicy hedgePolicy, String host, long tookMillis) {
+                hedgePolicy.recordResponse(host, tookMillis);
+            }
+
+            @Override
+            public void recordRequest(RetryBudget retryBudget, String host) {
+                retryBudget.recordRequest(host);
+            }
+
+            @Override
+            public boolean tryAcquireRetry(RetryBudget retryBudget, String host) {
+                return retryBudget.tryAcquireRetry(host);
+            }
         };
     }
 
@@ -209,6 +230,12 @@ public class OkHttpClient implements Cloneable, Call.Factory, WebSocket.Factory
     final boolean followSslRedirects;
     final boolean followRedirects;
     final boolean retryOnConnectionFailure;
+    final boolean fastFallback;
+    final boolean preloadPublicSuffixes;
+    final @Nullable
+    RetryBudget retryBudget;
+    final @Nullable
+    HedgePolicy hedgePolicy;
     final int callTimeout;
     final int connectTimeout;// 链接超时
     final int readTimeout;// 读超时
@@ -261,6 +288,10 @@ public class OkHttpClient implements Cloneable, Call.Factory, WebSocket.Factory
         this.followSslRedirects = builder.followSslRedirects;
         this.followRedirects = builder.followRedirects;
         this.retryOnConnectionFailure = builder.retryOnConnectionFailure;
+        this.fastFallback = builder.fastFallback;
+        this.preloadPublicSuffixes = builder.preloadPublicSuffixes;
+        this.retryBudget = builder.retryBudget;
+        this.hedgePolicy = builder.hedgePolicy;
         this.callTimeout = builder.callTimeout;
         this.connectTimeout = builder.connectTimeout;
         this.readTimeout = builder.readTimeout;
@@ -273,6 +304,10 @@ public class OkHttpClient implements Cloneable, Call.Factory, WebSocket.Factory
         if (networkInterceptors.contains(null)) {
             throw new IllegalStateException("Null network interceptor: " + networkInterceptors);
         }
+
+        if (preloadPublicSuffixes) {
+            PublicSuffixDatabase.get().loadInBackground();
+        }
     }
 
     private static SSLSocketFactory newSslSocketFactory(X509TrustManager trustManager) {
@@ -388,6 +423,24 @@ public class OkHttpClient implements Cloneable, Call.Factory, WebSocket.Factory
         return retryOnConnectionFailure;
     }
 
+    public boolean fastFallback() {
+        return fastFallback;
+    }
+
+    public boolean preloadPublicSuffixes() {
+        return preloadPublicSuffixes;
+    }
+
+    public @Nullable
+    RetryBudget retryBudget() {
+        return retryBudget;
+    }
+
+    public @Nullable
+    HedgePolicy hedgePolicy() {
+        return hedgePolicy;
+    }
+
     public Dispatcher dispatcher() {
         return dispatcher;
     }
@@ -481,6 +534,12 @@ public class OkHttpClient implements Cloneable, Call.Factory, WebSocket.Factory
         boolean followSslRedirects;
         boolean followRedirects;
         boolean retryOnConnectionFailure;
+        boolean fastFallback;
+        boolean preloadPublicSuffixes;
+        @Nullable
+        RetryBudget retryBudget;
+        @Nullable
+        HedgePolicy hedgePolicy;
         int callTimeout;
         int connectTimeout;
         int readTimeout;
@@ -538,6 +597,10 @@ public class OkHttpClient implements Cloneable, Call.Factory, WebSocket.Factory
             this.followSslRedirects = okHttpClient.followSslRedirects;
             this.followRedirects = okHttpClient.followRedirects;
             this.retryOnConnectionFailure = okHttpClient.retryOnConnectionFailure;
+            this.fastFallback = okHttpClient.fastFallback;
+            this.preloadPublicSuffixes = okHttpClient.preloadPublicSuffixes;
+            this.retryBudget = okHttpClient.retryBudget;
+            this.hedgePolicy = okHttpClient.hedgePolicy;
             this.callTimeout = okHttpClient.callTimeout;
             this.connectTimeout = okHttpClient.connectTimeout;
             this.readTimeout = okHttpClient.readTimeout;
@@ -963,6 +1026,56 @@ public class OkHttpClient implements Cloneable, Call.Factory, WebSocket.Factory
             return this;
         }
 
+        /**
+         * Configure this client to race connections to a host's IP addresses instead of trying them
+         * one at a time. This implements Happy Eyeballs (<a
+         * href="https://tools.ietf.org/html/rfc8305">RFC 8305</a>): IPv6 and IPv4 addresses are
+         * interleaved, and if an address hasn't connected after 250 ms the next one is attempted in
+         * parallel. The first to connect is used and the others are canceled. An address family that
+         * keeps losing is tried second on later connections.
+         *
+         * <p>This prevents an unreachable address from costing a full {@linkplain #connectTimeout
+         * connect timeout} before the next address is attempted. It has no effect if {@linkplain
+         * #retryOnConnectionFailure retries} are disabled. If unset, addresses are tried one at a
+         * time in the order returned by {@link Dns}.
+         */
+        public Builder fastFallback(boolean fastFallback) {
+            this.fastFallback = fastFallback;
+            return this;
+        }
+
+        /**
+         * Configure this client to start reading the public suffix list on a background thread when
+         * it is built. The list is used to reject cookies whose domain is a public suffix like {@code
+         * co.uk}. If unset, the list is read when the first such cookie is checked, which delays that
+         * response. Applications with a {@linkplain #cookieJar cookie jar} can set this to take the
+         * read off the first response. The list is read at most once per process.
+         */
+        public Builder preloadPublicSuffixes(boolean preloadPublicSuffixes) {
+            this.preloadPublicSuffixes = preloadPublicSuffixes;
+            return this;
+        }
+
+        /**
+         * Sets the budget that limits how many {@linkplain #retryOnConnectionFailure retries} and
+         * {@linkplain #hedgePolicy hedged requests} are made to each host. Without a budget every
+         * recoverable failure is retried, which can multiply the load on a host during an outage.
+         * Redirects and authentication challenges are not retries and don't spend the budget.
+         */
+        public Builder retryBudget(@Nullable RetryBudget retryBudget) {
+            this.retryBudget = retryBudget;
+            return this;
+        }
+
+        /**
+         * Sets the policy for sending a second copy of slow idempotent requests. If unset, requests
+         * are never hedged.
+         */
+        public Builder hedgePolicy(@Nullable HedgePolicy hedgePolicy) {
+            this.hedgePolicy = hedgePolicy;
+            return this;
+        }
+
         /**
          * Sets the dispatcher used to set policy and execute asynchronous requests. Must not be null.
          *
@@ -133,6 +133,10 @@ final class RealCall implements Call {
     final class AsyncCall extends NamedRunnable {
         private final Callback responseCallback;
         private volatile AtomicInteger callsPerHost = new AtomicInteger(0);
+        /**
+         * When this call was added to the dispatcher's queue. Guarded by the dispatcher.
+         */
+        long enqueuedAtNanos;
 
         AsyncCall(Callback responseCallback) {
             super("OkHttp %s", redactedUrl());
@@ -187,6 +191,10 @@ final class RealCall implements Call {
             transmitter.timeoutEnter();
             try {
                 Response response = getResponseWithInterceptorChain();
+                long networkResponseNanos = transmitter.networkResponseNanos();
+                if (networkResponseNanos != -1L) {
+                    client.dispatcher().responseReceived(this, networkResponseNanos);
+                }
                 signalledCallback = true;
                 responseCallback.onResponse(RealCall.this, response);
             } catch (IOException e) {
@@ -222,7 +230,7 @@ final class RealCall implements Call {
         interceptors.addAll(client.interceptors());
         interceptors.add(new RetryAndFollowUpInterceptor(client));
         interceptors.add(new BridgeInterceptor(client.cookieJar()));
-        interceptors.add(new CacheInterceptor(client.internalCache()));
+        interceptors.add(new CacheInterceptor(client.internalCache(), client));
         interceptors.add(new ConnectInterceptor(client));
         if (!forWebSocket) {// HTTP请求
             interceptors.addAll(client.networkInterceptors());
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits how many retries and hedged requests are made to each host, so that they can't multiply
+ * the load on a host that is already failing.
+ *
+ * <p>Each host has a bucket of tokens. Every request to the host adds {@code retriesPerRequest}
+ * tokens, up to {@code maxRetries}, and every retry or hedge takes one. When the bucket is empty
+ * failures are returned to the caller instead of being retried. A budget of {@code (10, 0.2)}
+ * permits a burst of 10 retries and, once that's spent, adds at most 20% to the requests a host
+ * receives.
+ *
+ * <p>Buckets start full. A budget may be shared by multiple clients.
+ */
+public final class RetryBudget {
+    /**
+     * Tokens are counted in thousandths so that fractional deposits can be made atomically.
+     */
+    private static final long SCALE = 1000L;
+
+    private final long maxTokens;
+    private final long tokensPerRequest;
+    private final ConcurrentMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    public RetryBudget(int maxRetries, double retriesPerRequest) {
+        if (maxRetries < 1) throw new IllegalArgumentException("maxRetries < 1: " + maxRetries);
+        if (!(retriesPerRequest >= 0.0 && retriesPerRequest <= 1.0)) {
+            throw new IllegalArgumentException(
+                    "retriesPerRequest is not in [0..1]: " + retriesPerRequest);
+        }
+        this.maxTokens = maxRetries * SCALE;
+        this.tokensPerRequest = Math.round(retriesPerRequest * SCALE);
+    }
+
+    /**
+     * Returns the number of retries that {@code host} may currently make.
+     */
+    public int availableRetries(String host) {
+        AtomicLong bucket = buckets.get(host);
+        return bucket != null ? (int) (bucket.get() / SCALE) : (int) (maxTokens / SCALE);
+    }
+
+    void recordRequest(String host) {
+        AtomicLong bucket = bucket(host);
+        while (true) {
+            long tokens = bucket.get();
+            if (tokens >= maxTokens) return;
+            if (bucket.compareAndSet(tokens, Math.min(tokens + tokensPerRequest, maxTokens))) return;
+        }
+    }
+
+    boolean tryAcquireRetry(String host) {
+        AtomicLong bucket = bucket(host);
+        while (true) {
+            long tokens = bucket.get();
+            if (tokens < SCALE) return false;
+            if (bucket.compareAndSet(tokens, tokens - SCALE)) return true;
+        }
+    }
+
+    private AtomicLong bucket(String host) {
+        AtomicLong bucket = buckets.get(host);
+        if (bucket == null) {
+            AtomicLong newBucket = new AtomicLong(maxTokens);
+            bucket = buckets.putIfAbsent(host, newBucket);
+            if (bucket == null) bucket = newBucket;
+        }
+        return bucket;
+    }
+}
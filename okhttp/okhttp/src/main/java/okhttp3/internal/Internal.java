@@ -23,9 +23,11 @@ import okhttp3.Call;
 import okhttp3.ConnectionPool;
 import okhttp3.ConnectionSpec;
 import okhttp3.Headers;
+import okhttp3.HedgePolicy;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import okhttp3.RetryBudget;
 import okhttp3.internal.connection.Exchange;
 import okhttp3.internal.connection.RealConnectionPool;
 
@@ -62,4 +64,12 @@ public abstract class Internal {
 
     public abstract @Nullable
     Exchange exchange(Response response);
+
+    public abstract long hedgeDelayMillis(HedgePolicy hedgePolicy, String host);
+
+    public abstract void recordResponse(HedgePolicy hedgePolicy, String host, long tookMillis);
+
+    public abstract void recordRequest(RetryBudget retryBudget, String host);
+
+    public abstract boolean tryAcquireRetry(RetryBudget retryBudget, String host);
 }
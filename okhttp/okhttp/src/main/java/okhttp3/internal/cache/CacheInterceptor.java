@@ -20,11 +20,14 @@ import java.io.IOException;
 
 import javax.annotation.Nullable;
 
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.Headers;
 import okhttp3.Interceptor;
 import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
 import okhttp3.internal.Internal;
 import okhttp3.internal.Util;
 import okhttp3.internal.http.ExchangeCodec;
@@ -39,7 +42,11 @@ import okio.Sink;
 import okio.Source;
 import okio.Timeout;
 
+import static java.net.HttpURLConnection.HTTP_BAD_GATEWAY;
+import static java.net.HttpURLConnection.HTTP_GATEWAY_TIMEOUT;
+import static java.net.HttpURLConnection.HTTP_INTERNAL_ERROR;
 import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
+import static java.net.HttpURLConnection.HTTP_UNAVAILABLE;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static okhttp3.internal.Util.closeQuietly;
 import static okhttp3.internal.Util.discard;
@@ -50,9 +57,14 @@ import static okhttp3.internal.Util.discard;
 public final class CacheInterceptor implements Interceptor {
     final @Nullable
     InternalCache cache;
+    /**
+     * Makes the calls that refresh stale responses in the background.
+     */
+    final Call.Factory callFactory;
 
-    public CacheInterceptor(@Nullable InternalCache cache) {
+    public CacheInterceptor(@Nullable InternalCache cache, Call.Factory callFactory) {
         this.cache = cache;
+        this.callFactory = callFactory;
     }
 
     @Override
@@ -72,7 +84,7 @@ public final class CacheInterceptor implements Interceptor {
             cache.trackResponse(strategy);
         }
 
-        if (cacheCandidate != null && cacheResponse == null) {
+        if (cacheCandidate != null && cacheResponse == null && strategy.staleIfErrorResponse == null) {
             closeQuietly(cacheCandidate.body()); // The cache candidate wasn't applicable. Close it.
         }
 
@@ -91,21 +103,45 @@ public final class CacheInterceptor implements Interceptor {
 
         // If we don't need the network, we're done.
         if (networkRequest == null) {
+            if (strategy.revalidationRequest != null) {
+                revalidateInBackground(strategy.revalidationRequest, cacheResponse);
+            }
             return cacheResponse.newBuilder()
                     .cacheResponse(stripBody(cacheResponse))
                     .build();
         }
 
         Response networkResponse = null;
+        boolean networkFailed = false;
         try {
             networkResponse = chain.proceed(networkRequest);
+        } catch (IOException e) {
+            if (strategy.staleIfErrorResponse == null || chain.call().isCanceled()) throw e;
+            networkFailed = true;
         } finally {
             // If we're crashing on I/O or otherwise, don't leak the cache body.
-            if (networkResponse == null && cacheCandidate != null) {
+            if (networkResponse == null && !networkFailed && cacheCandidate != null) {
                 closeQuietly(cacheCandidate.body());
             }
         }
 
+        // If the network failed and a stale response is acceptable, use it.
+        Response staleIfErrorResponse = strategy.staleIfErrorResponse;
+        if (staleIfErrorResponse != null) {
+            if (networkFailed || isServerError(networkResponse.code())) {
+                if (networkResponse != null) {
+                    closeQuietly(networkResponse.body());
+                }
+                cache.trackConditionalCacheHit();
+                return staleIfErrorResponse.newBuilder()
+                        .addHeader("Warning", "111 HttpURLConnection \"Revalidation failed\"")
+                        .cacheResponse(stripBody(staleIfErrorResponse))
+                        .build();
+            } else if (cacheResponse == null) {
+                closeQuietly(staleIfErrorResponse.body());
+            }
+        }
+
         // If we have a cache response too, then we're doing a conditional get.
         if (cacheResponse != null) {
             if (networkResponse.code() == HTTP_NOT_MODIFIED) {
@@ -152,6 +188,38 @@ public final class CacheInterceptor implements Interceptor {
         return response;
     }
 
+    private static boolean isServerError(int code) {
+        return code == HTTP_INTERNAL_ERROR
+                || code == HTTP_BAD_GATEWAY
+                || code == HTTP_UNAVAILABLE
+                || code == HTTP_GATEWAY_TIMEOUT;
+    }
+
+    /**
+     * Refreshes a stale cached response on the client's executor. This does nothing if the response
+     * is already being refreshed.
+     */
+    private void revalidateInBackground(final Request request, final Response cacheResponse) {
+        if (!cache.beginRevalidation(request, cacheResponse)) return;
+
+        callFactory.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                cache.endRevalidation(request, cacheResponse);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                try (ResponseBody body = response.body()) {
+                    // Consume the body so that it is written to the cache.
+                    body.source().readAll(Okio.blackhole());
+                } finally {
+                    cache.endRevalidation(request, cacheResponse);
+                }
+            }
+        });
+    }
+
     private static Response stripBody(Response response) {
         return response != null && response.body() != null
                 ? response.newBuilder().body(null).build()
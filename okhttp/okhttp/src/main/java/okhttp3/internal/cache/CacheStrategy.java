@@ -50,6 +50,13 @@ import static java.util.concurrent.TimeUnit.SECONDS;
  * potentially stale).
  */
 public final class CacheStrategy {
+    /**
+     * Request directives for a background revalidation: use the network, conditionally if possible.
+     */
+    private static final CacheControl REVALIDATE = new CacheControl.Builder()
+            .maxAge(0, SECONDS)
+            .build();
+
     /**
      * The request to send on the network, or null if this call doesn't use the network.
      */
@@ -62,9 +69,32 @@ public final class CacheStrategy {
     public final @Nullable
     Response cacheResponse;
 
+    /**
+     * A request to refresh the stale {@link #cacheResponse} with after it has been returned, or null
+     * if it doesn't need to be refreshed. This is set for responses that allow {@code
+     * stale-while-revalidate}.
+     */
+    public final @Nullable
+    Request revalidationRequest;
+
+    /**
+     * A stale cached response to return if the network request fails, or null if the cache can't be
+     * used then. This is set for responses that allow {@code stale-if-error}. It shares its body with
+     * {@link #cacheResponse} if that is also set.
+     */
+    public final @Nullable
+    Response staleIfErrorResponse;
+
     CacheStrategy(Request networkRequest, Response cacheResponse) {
+        this(networkRequest, cacheResponse, null, null);
+    }
+
+    CacheStrategy(Request networkRequest, Response cacheResponse,
+                  @Nullable Request revalidationRequest, @Nullable Response staleIfErrorResponse) {
         this.networkRequest = networkRequest;
         this.cacheResponse = cacheResponse;
+        this.revalidationRequest = revalidationRequest;
+        this.staleIfErrorResponse = staleIfErrorResponse;
     }
 
     /**
@@ -195,6 +225,11 @@ public final class CacheStrategy {
                 return new CacheStrategy(null, null);
             }
 
+            if (candidate.revalidationRequest != null && request.cacheControl().onlyIfCached()) {
+                // Serve the stale response but don't use the network to refresh it.
+                return new CacheStrategy(null, candidate.cacheResponse);
+            }
+
             return candidate;
         }
 
@@ -255,6 +290,43 @@ public final class CacheStrategy {
                 return new CacheStrategy(null, builder.build());
             }
 
+            // Serve a response that is only a little stale, and refresh it in the background.
+            long staleWhileRevalidateMillis = 0;
+            if (!responseCaching.mustRevalidate()
+                    && requestCaching.maxAgeSeconds() == -1
+                    && responseCaching.staleWhileRevalidateSeconds() != -1) {
+                staleWhileRevalidateMillis =
+                        SECONDS.toMillis(responseCaching.staleWhileRevalidateSeconds());
+            }
+
+            if (!responseCaching.noCache()
+                    && ageMillis + minFreshMillis < freshMillis + staleWhileRevalidateMillis) {
+                Response staleResponse = cacheResponse.newBuilder()
+                        .addHeader("Warning", "110 HttpURLConnection \"Response is stale\"")
+                        .build();
+                Request revalidationRequest = request.newBuilder()
+                        .cacheControl(REVALIDATE)
+                        .build();
+                return new CacheStrategy(null, staleResponse, revalidationRequest, null);
+            }
+
+            // Keep a response that is only a little stale in case the network fails.
+            long staleIfErrorMillis = 0;
+            if (!responseCaching.mustRevalidate()) {
+                int staleIfErrorSeconds = Math.max(responseCaching.staleIfErrorSeconds(),
+                        requestCaching.staleIfErrorSeconds());
+                if (staleIfErrorSeconds != -1) {
+                    staleIfErrorMillis = SECONDS.toMillis(staleIfErrorSeconds);
+                }
+            }
+
+            Response staleIfErrorResponse = null;
+            if (ageMillis + minFreshMillis < freshMillis + staleIfErrorMillis) {
+                staleIfErrorResponse = cacheResponse.newBuilder()
+                        .addHeader("Warning", "110 HttpURLConnection \"Response is stale\"")
+                        .build();
+            }
+
             // Find a condition to add to the request. If the condition is satisfied, the response body
             // will not be transmitted.
             String conditionName;
@@ -269,7 +341,8 @@ public final class CacheStrategy {
                 conditionName = "If-Modified-Since";
                 conditionValue = servedDateString;
             } else {
-                return new CacheStrategy(request, null); // No condition! Make a regular request.
+                // No condition! Make a regular request.
+                return new CacheStrategy(request, null, null, staleIfErrorResponse);
             }
 
             Headers.Builder conditionalRequestHeaders = request.headers().newBuilder();
@@ -278,7 +351,7 @@ public final class CacheStrategy {
             Request conditionalRequest = request.newBuilder()
                     .headers(conditionalRequestHeaders.build())
                     .build();
-            return new CacheStrategy(conditionalRequest, cacheResponse);
+            return new CacheStrategy(conditionalRequest, cacheResponse, null, staleIfErrorResponse);
         }
 
         /**
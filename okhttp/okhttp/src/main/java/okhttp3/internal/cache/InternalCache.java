@@ -55,4 +55,16 @@ public interface InternalCache {
      * Track an HTTP response being satisfied with {@code cacheStrategy}.
      */
     void trackResponse(CacheStrategy cacheStrategy);
+
+    /**
+     * Returns true if the caller should revalidate {@code cacheResponse}, the cached response for
+     * {@code request}, in the background, or false if that is already in progress. Callers that get
+     * true must call {@link #endRevalidation} when they're done.
+     */
+    boolean beginRevalidation(Request request, Response cacheResponse);
+
+    /**
+     * Track the end of a background revalidation that began with {@link #beginRevalidation}.
+     */
+    void endRevalidation(Request request, Response cacheResponse);
 }
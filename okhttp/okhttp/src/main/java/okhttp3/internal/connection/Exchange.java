@@ -43,7 +43,10 @@ import okio.Source;
  * on {@link ExchangeCodec}, which handles the actual I/O.
  */
 public final class Exchange {
-    final Transmitter transmitter;
+    /**
+     * The transmitter that owns this exchange. This changes if a hedge's exchange is adopted.
+     */
+    volatile Transmitter transmitter;
     final Call call;
     final EventListener eventListener;
     final ExchangeFinder finder;
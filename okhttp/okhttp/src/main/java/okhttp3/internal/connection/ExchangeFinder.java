@@ -43,7 +43,8 @@ import static okhttp3.internal.Util.closeQuietly;
  *
  * <li>If there's no existing connection, make a list of routes (which may require blocking DNS
  * lookups) and attempt a new connection them. When failures occur, retries iterate the list
- * of available routes.
+ * of available routes. With {@linkplain OkHttpClient#fastFallback fast fallback} the routes
+ * are attempted in a staggered race instead; see {@link FastFallback}.
  * </ol>
  *
  * <p>If the pool gains an eligible connection while DNS, TCP, or TLS work is in flight, this finder
@@ -58,24 +59,27 @@ final class ExchangeFinder {
     private final RealConnectionPool connectionPool;
     private final Call call;
     private final EventListener eventListener;
+    private final boolean fastFallback;
 
     private RouteSelector.Selection routeSelection;
 
     // State guarded by connectionPool.
     private final RouteSelector routeSelector;
     private RealConnection connectingConnection;
+    private FastFallback connectingRace;
     private boolean hasStreamFailure;
     private Route nextRouteToTry;
 
     ExchangeFinder(Transmitter transmitter, RealConnectionPool connectionPool,
-                   Address address, Call call, EventListener eventListener) {
+                   Address address, Call call, EventListener eventListener, boolean fastFallback) {
         this.transmitter = transmitter;
         this.connectionPool = connectionPool;
         this.address = address;
         this.call = call;
         this.eventListener = eventListener;
+        this.fastFallback = fastFallback;
         this.routeSelector = new RouteSelector(
-                address, connectionPool.routeDatabase, call, eventListener);
+                address, connectionPool.routeDatabase, call, eventListener, fastFallback);
     }
 
     public ExchangeCodec find(
@@ -208,15 +212,23 @@ final class ExchangeFinder {
             }
 
             if (!foundPooledConnection) {
-                if (selectedRoute == null) {
-                    selectedRoute = routeSelection.next();
+                if (selectedRoute == null && fastFallback && connectionRetryEnabled
+                        && routeSelection.remaining() > 1) {
+                    // Race the remaining routes. Like connectingConnection, this is assigned
+                    // immediately so an asynchronous cancel() can interrupt the connects.
+                    connectingRace = new FastFallback(routeSelection, connectionPool, connectTimeout,
+                            readTimeout, call, eventListener);
+                } else {
+                    if (selectedRoute == null) {
+                        selectedRoute = routeSelection.next();
+                    }
+
+                    // Create a connection and assign it to this allocation immediately. This makes it possible
+                    // for an asynchronous cancel() to interrupt the handshake we're about to do.
+                    // 创建连接
+                    result = new RealConnection(connectionPool, selectedRoute);
+                    connectingConnection = result;
                 }
-
-                // Create a connection and assign it to this allocation immediately. This makes it possible
-                // for an asynchronous cancel() to interrupt the handshake we're about to do.
-                // 创建连接
-                result = new RealConnection(connectionPool, selectedRoute);
-                connectingConnection = result;
             }
         }
 
@@ -226,6 +238,10 @@ final class ExchangeFinder {
             return result;
         }
 
+        if (result == null) {
+            result = raceToConnect();
+        }
+
         // Do TCP + TLS handshakes. This is a blocking operation.连接
         result.connect(connectTimeout, readTimeout, writeTimeout, pingIntervalMillis,
                 connectionRetryEnabled, call, eventListener);
@@ -252,11 +268,47 @@ final class ExchangeFinder {
         return result;
     }
 
+    /**
+     * Races TCP connects to the remaining routes of the current selection, then returns a connection
+     * that adopts the winning socket. The connection still needs to be connected.
+     */
+    private RealConnection raceToConnect() throws IOException {
+        FastFallback race;
+        synchronized (connectionPool) {
+            race = connectingRace;
+        }
+
+        FastFallback.Attempt winner;
+        try {
+            winner = race.connect();
+        } finally {
+            synchronized (connectionPool) {
+                connectingRace = null;
+            }
+        }
+
+        synchronized (connectionPool) {
+            if (transmitter.isCanceled()) {
+                closeQuietly(winner.socket);
+                throw new IOException("Canceled");
+            }
+            RealConnection result = new RealConnection(connectionPool, winner.route);
+            result.adoptRawSocket(winner.socket);
+            connectingConnection = result;
+            return result;
+        }
+    }
+
     RealConnection connectingConnection() {
         assert (Thread.holdsLock(connectionPool));
         return connectingConnection;
     }
 
+    FastFallback connectingRace() {
+        assert (Thread.holdsLock(connectionPool));
+        return connectingRace;
+    }
+
     void trackFailure() {
         assert (!Thread.holdsLock(connectionPool));
         synchronized (connectionPool) {
@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.connection;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.Proxy;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Route;
+import okhttp3.internal.Util;
+import okhttp3.internal.platform.Platform;
+
+import static okhttp3.internal.Util.closeQuietly;
+
+/**
+ * Races TCP connects to the routes of a selection, as described by Happy Eyeballs (<a
+ * href="https://tools.ietf.org/html/rfc8305">RFC 8305</a>). The first route is attempted
+ * immediately. Each following route is attempted when the previous attempt fails or after {@link
+ * #CONNECT_ATTEMPT_DELAY_MILLIS}, whichever comes first, while earlier attempts keep running. The
+ * first socket to connect wins and the others are closed.
+ *
+ * <p>Only the TCP connect is raced. TLS, tunnels and protocol negotiation are done by the {@link
+ * RealConnection} that adopts the winning socket.
+ *
+ * <p>Connects run on background threads, but all events are delivered to the {@link
+ * EventListener} on the calling thread.
+ */
+final class FastFallback {
+    /**
+     * How long to wait for an attempt to connect before starting the next in parallel. This is the
+     * Connection Attempt Delay recommended by RFC 8305.
+     */
+    static final long CONNECT_ATTEMPT_DELAY_MILLIS = 250L;
+
+    private static final Executor executor = new ThreadPoolExecutor(0 /* corePoolSize */,
+            Integer.MAX_VALUE /* maximumPoolSize */, 60L /* keepAliveTime */, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), Util.threadFactory("OkHttp FastFallback", true));
+
+    private final RouteSelector.Selection routeSelection;
+    private final RealConnectionPool connectionPool;
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final Call call;
+    private final EventListener eventListener;
+
+    // State guarded by this.
+    private final List<Attempt> attempts = new ArrayList<>();
+    private Attempt winner;
+    private boolean canceled;
+
+    FastFallback(RouteSelector.Selection routeSelection, RealConnectionPool connectionPool,
+                 int connectTimeout, int readTimeout, Call call, EventListener eventListener) {
+        this.routeSelection = routeSelection;
+        this.connectionPool = connectionPool;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.call = call;
+        this.eventListener = eventListener;
+    }
+
+    /**
+     * Returns the attempt that connected first. Routes are taken from the selection only as they're
+     * attempted; routes left over when an attempt wins remain in the selection.
+     *
+     * @throws RouteException if every route failed to connect.
+     */
+    Attempt connect() throws IOException {
+        RouteException routeException = null;
+        long nextAttemptAtMillis = 0L;
+        try {
+            while (true) {
+                Attempt winner;
+                Attempt toStart = null;
+                List<Attempt> failed = new ArrayList<>();
+                synchronized (this) {
+                    while (true) {
+                        if (canceled) throw new IOException("Canceled");
+
+                        boolean running = false;
+                        for (Attempt attempt : attempts) {
+                            if (attempt.failure != null && !attempt.reported) {
+                                attempt.reported = true;
+                                failed.add(attempt);
+                            }
+                            running |= !attempt.done;
+                        }
+                        winner = this.winner;
+                        if (winner != null || !failed.isEmpty()) break;
+
+                        long nowMillis = System.nanoTime() / 1_000_000L;
+                        if (routeSelection.hasNext() && (!running || nowMillis >= nextAttemptAtMillis)) {
+                            toStart = new Attempt(routeSelection.next());
+                            attempts.add(toStart);
+                            nextAttemptAtMillis = nowMillis + CONNECT_ATTEMPT_DELAY_MILLIS;
+                            break;
+                        }
+                        if (!running) throw routeException; // Every route failed.
+
+                        // Wait for an attempt to finish or for the next attempt to be due.
+                        wait(routeSelection.hasNext() ? Math.max(1L, nextAttemptAtMillis - nowMillis) : 0L);
+                    }
+                }
+
+                for (Attempt attempt : failed) {
+                    Route route = attempt.route;
+                    eventListener.connectFailed(
+                            call, route.socketAddress(), route.proxy(), null, attempt.failure);
+                    connectionPool.connectFailed(route, attempt.failure);
+                    if (routeException == null) {
+                        routeException = new RouteException(attempt.failure);
+                    } else {
+                        routeException.addConnectException(attempt.failure);
+                    }
+                    nextAttemptAtMillis = 0L; // Don't wait to attempt the next route.
+                }
+
+                if (winner != null) return winner;
+
+                if (toStart != null) {
+                    Route route = toStart.route;
+                    eventListener.connectStart(call, route.socketAddress(), route.proxy());
+                    executor.execute(toStart);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Retain interrupted status.
+            throw new InterruptedIOException();
+        } finally {
+            finish();
+        }
+    }
+
+    /**
+     * Closes every attempt but the winner and reports those that weren't already reported. Attempts
+     * that started before the winner are also recorded in the route database, so that their address
+     * family isn't preferred next time.
+     */
+    private void finish() {
+        List<Attempt> losers = new ArrayList<>();
+        int startedBeforeWinner = 0;
+        Attempt winner;
+        synchronized (this) {
+            canceled = true; // Attempts that complete from here on close their own sockets.
+            winner = this.winner;
+            for (Attempt attempt : attempts) {
+                if (attempt == winner) {
+                    startedBeforeWinner = losers.size();
+                } else if (!attempt.reported) {
+                    closeQuietly(attempt.socket);
+                    attempt.reported = true;
+                    losers.add(attempt);
+                }
+            }
+        }
+
+        for (int i = 0; i < losers.size(); i++) {
+            Route route = losers.get(i).route;
+            IOException failure = losers.get(i).failure;
+            if (failure != null) {
+                connectionPool.connectFailed(route, failure);
+            } else if (winner != null) {
+                failure = new IOException("Canceled: another route connected first");
+                if (i < startedBeforeWinner) connectionPool.routeDatabase.failed(route);
+            } else {
+                failure = new IOException("Canceled");
+            }
+            eventListener.connectFailed(call, route.socketAddress(), route.proxy(), null, failure);
+        }
+    }
+
+    /**
+     * Immediately closes every socket that is connecting. This is safe to call from any thread.
+     */
+    void cancel() {
+        List<Socket> sockets = new ArrayList<>();
+        synchronized (this) {
+            canceled = true;
+            for (Attempt attempt : attempts) {
+                if (attempt != winner && attempt.socket != null) sockets.add(attempt.socket);
+            }
+            notifyAll();
+        }
+        for (Socket socket : sockets) {
+            closeQuietly(socket);
+        }
+    }
+
+    final class Attempt implements Runnable {
+        final Route route;
+
+        // State guarded by FastFallback.this.
+        Socket socket;
+        IOException failure;
+        boolean done;
+        boolean reported;
+
+        Attempt(Route route) {
+            this.route = route;
+        }
+
+        @Override
+        public void run() {
+            Socket socket = null;
+            IOException failure = null;
+            try {
+                Proxy proxy = route.proxy();
+                socket = proxy.type() == Proxy.Type.DIRECT || proxy.type() == Proxy.Type.HTTP
+                        ? route.address().socketFactory().createSocket()
+                        : new Socket(proxy);
+                synchronized (FastFallback.this) {
+                    if (canceled) {
+                        closeQuietly(socket);
+                        done = true;
+                        return;
+                    }
+                    this.socket = socket;
+                }
+
+                socket.setSoTimeout(readTimeout);
+                Platform.get().connectSocket(socket, route.socketAddress(), connectTimeout);
+            } catch (ConnectException e) {
+                failure = new ConnectException("Failed to connect to " + route.socketAddress());
+                failure.initCause(e);
+            } catch (IOException e) {
+                failure = e;
+            }
+
+            synchronized (FastFallback.this) {
+                done = true;
+                if (canceled) {
+                    closeQuietly(socket);
+                } else if (failure != null) {
+                    closeQuietly(socket);
+                    this.failure = failure;
+                } else if (winner == null) {
+                    winner = this;
+                }
+                FastFallback.this.notifyAll();
+            }
+        }
+    }
+}
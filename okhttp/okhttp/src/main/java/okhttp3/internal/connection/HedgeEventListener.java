@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.connection;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * The event listener of a {@linkplain Transmitter#newHedge hedge}. It drops the hedge's events
+ * while the hedge races the call's own attempt, so that the call's listener never sees events of
+ * two attempts interleaved from two threads. Once the call {@linkplain Transmitter#adoptHedge
+ * adopts} the hedge, the remaining events of its exchange are forwarded to the call's listener.
+ */
+final class HedgeEventListener extends EventListener {
+    private final EventListener delegate;
+    private volatile boolean adopted;
+    /** Written by the hedge's thread before it hands its response to the call's thread. */
+    private boolean responseBodyStarted;
+
+    HedgeEventListener(EventListener delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Starts forwarding events. The call is told it acquired {@code connection} and, if the hedge
+     * has already started reading its response body, that the body started so that its end is
+     * paired with a start.
+     */
+    void adopted(Call call, @Nullable Connection connection) {
+        adopted = true;
+        if (connection != null) delegate.connectionAcquired(call, connection);
+        if (responseBodyStarted) delegate.responseBodyStart(call);
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        if (adopted) delegate.dnsStart(call, domainName);
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+        if (adopted) delegate.dnsEnd(call, domainName, inetAddressList);
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        if (adopted) delegate.connectStart(call, inetSocketAddress, proxy);
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+        if (adopted) delegate.secureConnectStart(call);
+    }
+
+    @Override
+    public void secureConnectEnd(Call call, @Nullable Handshake handshake) {
+        if (adopted) delegate.secureConnectEnd(call, handshake);
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy,
+                           @Nullable Protocol protocol) {
+        if (adopted) delegate.connectEnd(call, inetSocketAddress, proxy, protocol);
+    }
+
+    @Override
+    public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy,
+                              @Nullable Protocol protocol, IOException ioe) {
+        if (adopted) delegate.connectFailed(call, inetSocketAddress, proxy, protocol, ioe);
+    }
+
+    @Override
+    public void connectionAcquired(Call call, Connection connection) {
+        if (adopted) delegate.connectionAcquired(call, connection);
+    }
+
+    @Override
+    public void connectionReleased(Call call, Connection connection) {
+        if (adopted) delegate.connectionReleased(call, connection);
+    }
+
+    @Override
+    public void requestHeadersStart(Call call) {
+        if (adopted) delegate.requestHeadersStart(call);
+    }
+
+    @Override
+    public void requestHeadersEnd(Call call, Request request) {
+        if (adopted) delegate.requestHeadersEnd(call, request);
+    }
+
+    @Override
+    public void requestBodyStart(Call call) {
+        if (adopted) delegate.requestBodyStart(call);
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+        if (adopted) delegate.requestBodyEnd(call, byteCount);
+    }
+
+    @Override
+    public void requestFailed(Call call, IOException ioe) {
+        if (adopted) delegate.requestFailed(call, ioe);
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+        if (adopted) delegate.responseHeadersStart(call);
+    }
+
+    @Override
+    public void responseHeadersEnd(Call call, Response response) {
+        if (adopted) delegate.responseHeadersEnd(call, response);
+    }
+
+    @Override
+    public void responseBodyStart(Call call) {
+        if (adopted) {
+            delegate.responseBodyStart(call);
+        } else {
+            responseBodyStarted = true;
+        }
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        if (adopted) delegate.responseBodyEnd(call, byteCount);
+    }
+
+    @Override
+    public void responseFailed(Call call, IOException ioe) {
+        if (adopted) delegate.responseFailed(call, ioe);
+    }
+}
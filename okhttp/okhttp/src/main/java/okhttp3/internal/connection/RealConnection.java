@@ -155,6 +155,14 @@ public final class RealConnection extends Http2Connection.Listener implements Co
         return result;
     }
 
+    /**
+     * Uses {@code rawSocket}, which a {@link FastFallback} race connected to this connection's route,
+     * for the first attempt of {@link #connect}. This must be called before connecting.
+     */
+    void adoptRawSocket(Socket rawSocket) {
+        this.rawSocket = rawSocket;
+    }
+
     public void connect(int connectTimeout, int readTimeout, int writeTimeout,
                         int pingIntervalMillis, boolean connectionRetryEnabled, Call call,
                         EventListener eventListener) {
@@ -265,18 +273,21 @@ public final class RealConnection extends Http2Connection.Listener implements Co
         Proxy proxy = route.proxy();
         Address address = route.address();
 
-        rawSocket = proxy.type() == Proxy.Type.DIRECT || proxy.type() == Proxy.Type.HTTP
-                ? address.socketFactory().createSocket()
-                : new Socket(proxy);
+        // If a fast fallback race adopted a socket, it's already connected and reported.
+        if (rawSocket == null) {
+            rawSocket = proxy.type() == Proxy.Type.DIRECT || proxy.type() == Proxy.Type.HTTP
+                    ? address.socketFactory().createSocket()
+                    : new Socket(proxy);
 
-        eventListener.connectStart(call, route.socketAddress(), proxy);
-        rawSocket.setSoTimeout(readTimeout);
-        try {
-            Platform.get().connectSocket(rawSocket, route.socketAddress(), connectTimeout);
-        } catch (ConnectException e) {
-            ConnectException ce = new ConnectException("Failed to connect to " + route.socketAddress());
-            ce.initCause(e);
-            throw ce;
+            eventListener.connectStart(call, route.socketAddress(), proxy);
+            rawSocket.setSoTimeout(readTimeout);
+            try {
+                Platform.get().connectSocket(rawSocket, route.socketAddress(), connectTimeout);
+            } catch (ConnectException e) {
+                ConnectException ce = new ConnectException("Failed to connect to " + route.socketAddress());
+                ce.initCause(e);
+                throw ce;
+            }
         }
 
         // The following try/catch block is a pseudo hacky way to get around a crash on Android 7.0
@@ -111,6 +111,7 @@ public final class RealConnectionPool {
         for (RealConnection connection : connections) {
             if (requireMultiplexed && !connection.isMultiplexed()) continue;
             if (!connection.isEligible(address, routes)) continue;
+            if (!transmitter.canUse(connection)) continue;
             transmitter.acquireConnectionNoEvents(connection);
             return true;
         }
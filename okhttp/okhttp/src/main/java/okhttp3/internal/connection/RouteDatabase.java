@@ -15,6 +15,8 @@
  */
 package okhttp3.internal.connection;
 
+import java.net.Inet6Address;
+import java.net.InetAddress;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
@@ -25,15 +27,26 @@ import okhttp3.Route;
  * used so that OkHttp can learn from its mistakes: if there was a failure attempting to connect to
  * a specific IP address or proxy server, that failure is remembered and alternate routes are
  * preferred.
+ *
+ * <p>Failures are also tracked per address family. If connecting to an IPv6 address fails and no
+ * IPv6 address has connected since, IPv6 is failing and {@link RouteSelector} tries IPv4 first.
  */
 final class RouteDatabase {
     private final Set<Route> failedRoutes = new LinkedHashSet<>();
+    private boolean ipv4Failing;
+    private boolean ipv6Failing;
 
     /**
      * Records a failure connecting to {@code failedRoute}.
      */
     public synchronized void failed(Route failedRoute) {
         failedRoutes.add(failedRoute);
+        InetAddress address = failedRoute.socketAddress().getAddress();
+        if (address instanceof Inet6Address) {
+            ipv6Failing = true;
+        } else if (address != null) {
+            ipv4Failing = true;
+        }
     }
 
     /**
@@ -41,6 +54,22 @@ final class RouteDatabase {
      */
     public synchronized void connected(Route route) {
         failedRoutes.remove(route);
+        InetAddress address = route.socketAddress().getAddress();
+        if (address instanceof Inet6Address) {
+            ipv6Failing = false;
+        } else if (address != null) {
+            ipv4Failing = false;
+        }
+    }
+
+    /**
+     * Returns true if connections to {@code address}'s family have failed recently and connections
+     * to the other family haven't.
+     */
+    public synchronized boolean isFamilyFailing(InetAddress address) {
+        return address instanceof Inet6Address
+                ? ipv6Failing && !ipv4Failing
+                : ipv4Failing && !ipv6Failing;
     }
 
     /**
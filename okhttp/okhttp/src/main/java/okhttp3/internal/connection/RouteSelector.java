@@ -16,6 +16,7 @@
 package okhttp3.internal.connection;
 
 import java.io.IOException;
+import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
@@ -43,6 +44,7 @@ final class RouteSelector {
     private final RouteDatabase routeDatabase;
     private final Call call;
     private final EventListener eventListener;
+    private final boolean fastFallback;
 
     /* State for negotiating the next proxy to use. */
     private List<Proxy> proxies = Collections.emptyList();
@@ -55,11 +57,12 @@ final class RouteSelector {
     private final List<Route> postponedRoutes = new ArrayList<>();
 
     RouteSelector(Address address, RouteDatabase routeDatabase, Call call,
-                  EventListener eventListener) {
+                  EventListener eventListener, boolean fastFallback) {
         this.address = address;
         this.routeDatabase = routeDatabase;
         this.call = call;
         this.eventListener = eventListener;
+        this.fastFallback = fastFallback;
 
         resetNextProxy(address.url(), address.proxy());
     }
@@ -184,6 +187,10 @@ final class RouteSelector {
 
             eventListener.dnsEnd(call, socketHost, addresses);
 
+            if (fastFallback) {
+                addresses = interleaveFamilies(addresses);
+            }
+
             for (int i = 0, size = addresses.size(); i < size; i++) {
                 InetAddress inetAddress = addresses.get(i);
                 inetSocketAddresses.add(new InetSocketAddress(inetAddress, socketPort));
@@ -191,6 +198,36 @@ final class RouteSelector {
         }
     }
 
+    /**
+     * Returns {@code addresses} with IPv6 and IPv4 addresses alternating, so that a race to connect
+     * tries both families early. The family of the first address goes first unless the route
+     * database says that family is failing.
+     */
+    private List<InetAddress> interleaveFamilies(List<InetAddress> addresses) {
+        List<InetAddress> first = new ArrayList<>();
+        List<InetAddress> second = new ArrayList<>();
+        boolean firstIsIpv6 = addresses.get(0) instanceof Inet6Address;
+        for (InetAddress address : addresses) {
+            if ((address instanceof Inet6Address) == firstIsIpv6) {
+                first.add(address);
+            } else {
+                second.add(address);
+            }
+        }
+        if (!second.isEmpty() && routeDatabase.isFamilyFailing(first.get(0))) {
+            List<InetAddress> failing = first;
+            first = second;
+            second = failing;
+        }
+
+        List<InetAddress> result = new ArrayList<>(addresses.size());
+        for (int i = 0; i < first.size() || i < second.size(); i++) {
+            if (i < first.size()) result.add(first.get(i));
+            if (i < second.size()) result.add(second.get(i));
+        }
+        return result;
+    }
+
     /**
      * Obtain a "host" from an {@link InetSocketAddress}. This returns a string containing either an
      * actual host name or a numeric IP address.
@@ -224,6 +261,13 @@ final class RouteSelector {
             return nextRouteIndex < routes.size();
         }
 
+        /**
+         * Returns the number of routes that haven't been returned by {@link #next} yet.
+         */
+        int remaining() {
+            return routes.size() - nextRouteIndex;
+        }
+
         public Route next() {
             if (!hasNext()) {
                 throw new NoSuchElementException();
@@ -60,6 +60,8 @@ public final class Transmitter {
     private final RealConnectionPool connectionPool;
     private final Call call;
     private final EventListener eventListener;
+    private final @Nullable
+    Transmitter parent;
     private final AsyncTimeout timeout = new AsyncTimeout() {
         @Override
         protected void timedOut() {
@@ -82,19 +84,70 @@ public final class Transmitter {
     private boolean canceled;
     private boolean timeoutEarlyExit;
     private boolean noMoreExchanges;
+    private @Nullable
+    Transmitter hedge;
+    private long networkResponseNanos = -1L;
 
     public Transmitter(OkHttpClient client, Call call) {
         this.client = client;
         this.connectionPool = Internal.instance.realConnectionPool(client.connectionPool());
         this.call = call;
         this.eventListener = client.eventListenerFactory().create(call);
+        this.parent = null;
         this.timeout.timeout(client.callTimeoutMillis(), MILLISECONDS);
     }
 
+    private Transmitter(Transmitter parent) {
+        this.client = parent.client;
+        this.connectionPool = parent.connectionPool;
+        this.call = parent.call;
+        this.eventListener = new HedgeEventListener(parent.eventListener);
+        this.parent = parent;
+        this.callStackTrace = parent.callStackTrace;
+    }
+
+    /**
+     * Returns a transmitter for a second copy of this transmitter's request. The hedge shares this
+     * transmitter's call, but it never uses this transmitter's connection and it can be canceled
+     * independently. Canceling this transmitter cancels its most recent hedge. The hedge's events
+     * aren't reported to this transmitter's event listener unless its exchange is adopted.
+     *
+     * <p>The hedge doesn't start or end the call. Either release it with {@link #noMoreExchanges} or
+     * take over its exchange with {@link #adoptHedge}.
+     */
+    public Transmitter newHedge() {
+        Transmitter result = new Transmitter(this);
+        synchronized (connectionPool) {
+            result.canceled = canceled;
+            hedge = result;
+        }
+        return result;
+    }
+
+    public EventListener eventListener() {
+        return eventListener;
+    }
+
     public Timeout timeout() {
         return timeout;
     }
 
+    /**
+     * Records that the most recent response came from the network after {@code tookNanos}, or from
+     * the cache if {@code tookNanos} is -1.
+     */
+    public void responseReceived(long tookNanos) {
+        this.networkResponseNanos = tookNanos;
+    }
+
+    /**
+     * Returns how long the exchange for the most recent response took, or -1 if that response didn't
+     * come from the network.
+     */
+    public long networkResponseNanos() {
+        return networkResponseNanos;
+    }
+
     public void timeoutEnter() {
         timeout.enter();
     }
@@ -144,7 +197,7 @@ public final class Transmitter {
 
         this.request = request;
         this.exchangeFinder = new ExchangeFinder(this, connectionPool, createAddress(request.url()),
-                call, eventListener);
+                call, eventListener, client.fastFallback());
     }
 
     private Address createAddress(HttpUrl url) {
@@ -276,10 +329,60 @@ public final class Transmitter {
     IOException noMoreExchanges(@Nullable IOException e) {
         synchronized (connectionPool) {
             noMoreExchanges = true;
+            if (parent != null && parent.hedge == this) parent.hedge = null;
         }
         return maybeReleaseConnection(e, false);
     }
 
+    /**
+     * Takes over the connection and exchange of {@code hedge}, whose response is being returned in
+     * place of this transmitter's. This transmitter must not have an exchange; its connection, if
+     * any, is released.
+     */
+    public void adoptHedge(Transmitter hedge) {
+        maybeReleaseConnection(null, true);
+        RealConnection adopted;
+        synchronized (connectionPool) {
+            if (hedge.parent != this || exchange != null) throw new IllegalStateException();
+
+            adopted = hedge.connection;
+            if (adopted != null) {
+                for (int i = 0, size = adopted.transmitters.size(); i < size; i++) {
+                    if (adopted.transmitters.get(i).get() == hedge) {
+                        adopted.transmitters.set(i, new TransmitterReference(this, callStackTrace));
+                        break;
+                    }
+                }
+                this.connection = adopted;
+                hedge.connection = null;
+            }
+
+            this.exchange = hedge.exchange;
+            this.exchangeRequestDone = hedge.exchangeRequestDone;
+            this.exchangeResponseDone = hedge.exchangeResponseDone;
+            if (exchange != null) exchange.transmitter = this;
+            hedge.exchange = null;
+            hedge.noMoreExchanges = true;
+            if (this.hedge == hedge) this.hedge = null;
+        }
+
+        // The adopted exchange reports the rest of its events to this call's listener.
+        ((HedgeEventListener) hedge.eventListener).adopted(call, adopted);
+    }
+
+    /**
+     * Returns false if {@code connection} is in use by the transmitter this hedges. Sending both
+     * copies of a request on one connection would make them equally slow.
+     */
+    boolean canUse(RealConnection connection) {
+        assert (Thread.holdsLock(connectionPool));
+        if (parent == null) return true;
+        for (Reference<Transmitter> reference : connection.transmitters) {
+            if (reference.get() == parent) return false;
+        }
+        return true;
+    }
+
     /**
      * Release the connection if it is no longer needed. This is called after each exchange completes
      * and after the call signals that no more exchanges are expected.
@@ -303,7 +406,7 @@ public final class Transmitter {
                     ? releaseConnectionNoEvents()
                     : null;
             if (this.connection != null) releasedConnection = null;
-            callEnd = noMoreExchanges && exchange == null;
+            callEnd = noMoreExchanges && exchange == null && parent == null;
         }
         closeQuietly(socket);
 
@@ -343,20 +446,40 @@ public final class Transmitter {
      * Otherwise if a socket connection is being established, that is terminated.
      */
     public void cancel() {
+        Transmitter hedgeToCancel;
+        synchronized (connectionPool) {
+            canceled = true;
+            hedgeToCancel = hedge;
+        }
+        cancelAttempt();
+        if (hedgeToCancel != null) {
+            hedgeToCancel.cancel();
+        }
+    }
+
+    /**
+     * Like {@link #cancel}, but only interrupts the current exchange or connection attempt. The call
+     * isn't canceled. This is used to abandon a request that lost to its hedge.
+     */
+    public void cancelAttempt() {
         Exchange exchangeToCancel;
         RealConnection connectionToCancel;
+        FastFallback raceToCancel;
         synchronized (connectionPool) {
-            canceled = true;
             exchangeToCancel = exchange;
             connectionToCancel = exchangeFinder != null && exchangeFinder.connectingConnection() != null
                     ? exchangeFinder.connectingConnection()
                     : connection;
+            raceToCancel = exchangeFinder != null ? exchangeFinder.connectingRace() : null;
         }
         if (exchangeToCancel != null) {
             exchangeToCancel.cancel();
         } else if (connectionToCancel != null) {
             connectionToCancel.cancel();
         }
+        if (raceToCancel != null) {
+            raceToCancel.cancel();
+        }
     }
 
     public boolean isCanceled() {
@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import okhttp3.EventListener;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.RetryBudget;
+import okhttp3.internal.Internal;
+import okhttp3.internal.Util;
+import okhttp3.internal.connection.RouteException;
+import okhttp3.internal.connection.Transmitter;
+import okio.AsyncTimeout;
+
+import static okhttp3.internal.Util.closeQuietly;
+
+/**
+ * Sends a request and, if it hasn't received a response after a delay, a second copy of it on
+ * another connection. The first response is returned and the other copy is canceled.
+ *
+ * <p>The first copy runs on the calling thread with the call's transmitter. The hedge runs on a
+ * background thread with a {@linkplain Transmitter#newHedge hedge transmitter}. If the hedge wins,
+ * the call's transmitter adopts its exchange so that the rest of the call proceeds as if there had
+ * been only one copy.
+ */
+final class Hedge {
+    /**
+     * The most hedges in flight at once, across all clients. Hedges beyond this aren't sent, so a
+     * slow backend can't make hedging double the load on it or start a thread per request.
+     */
+    static final int MAX_CONCURRENT_HEDGES = 64;
+
+    private static final Executor executor = new ThreadPoolExecutor(0 /* corePoolSize */,
+            MAX_CONCURRENT_HEDGES /* maximumPoolSize */, 60L /* keepAliveTime */, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), Util.threadFactory("OkHttp Hedge", true));
+
+    private final RealInterceptorChain chain;
+    private final Request request;
+    private final Transmitter transmitter;
+    private final @Nullable
+    RetryBudget retryBudget;
+    private final AsyncTimeout timer = new AsyncTimeout() {
+        @Override
+        protected void timedOut() {
+            start();
+        }
+    };
+
+    private long tookMillis;
+
+    // State guarded by this.
+    private @Nullable
+    Transmitter hedgeTransmitter;
+    private @Nullable
+    Response hedgeResponse;
+    private long hedgeTookMillis;
+    private boolean started;
+    private boolean hedgeStartReported;
+    private boolean hedgeDone;
+    private boolean primaryWon;
+    private boolean primaryFailed;
+    private boolean budgetExhausted;
+
+    Hedge(RealInterceptorChain chain, Request request, Transmitter transmitter,
+          @Nullable RetryBudget retryBudget) {
+        this.chain = chain;
+        this.request = request;
+        this.transmitter = transmitter;
+        this.retryBudget = retryBudget;
+    }
+
+    /**
+     * Returns the first response to arrive. If {@code delayMillis} is -1 the request isn't hedged.
+     */
+    Response proceed(long delayMillis) throws IOException {
+        long startNanos = System.nanoTime();
+        if (delayMillis != -1L) {
+            timer.timeout(Math.max(delayMillis, 1L), TimeUnit.MILLISECONDS);
+            timer.enter();
+        }
+
+        Response response;
+        try {
+            response = chain.proceed(request, transmitter, null);
+        } catch (IOException | RouteException e) {
+            // This copy failed, possibly because the hedge won and canceled it.
+            timer.exit();
+            Response hedged = awaitHedge();
+            if (hedged == null) {
+                reportHedgeEnd(false);
+                throw e;
+            }
+            transmitter.exchangeDoneDueToException();
+            return adoptHedge(hedged);
+        }
+        timer.exit();
+
+        boolean won;
+        Transmitter hedgeToCancel;
+        synchronized (this) {
+            won = hedgeResponse == null;
+            primaryWon = won;
+            hedgeToCancel = hedgeTransmitter;
+        }
+
+        if (won) {
+            tookMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            if (hedgeToCancel != null) hedgeToCancel.cancel();
+            reportHedgeEnd(false);
+            return response;
+        }
+
+        // Both copies received a response and the hedge's arrived first.
+        closeQuietly(response);
+        transmitter.exchangeDoneDueToException();
+        return adoptHedge(hedgeResponse);
+    }
+
+    /**
+     * Returns how long it took to receive the response that was returned.
+     */
+    long tookMillis() {
+        return tookMillis;
+    }
+
+    private Response adoptHedge(Response hedged) throws InterruptedIOException {
+        transmitter.adoptHedge(hedgeTransmitter);
+        tookMillis = hedgeTookMillis;
+        reportHedgeEnd(true);
+        return hedged;
+    }
+
+    /**
+     * Waits for the hedge to complete if it was started, and returns its response if it got one.
+     */
+    private synchronized @Nullable
+    Response awaitHedge() throws InterruptedIOException {
+        primaryFailed = true;
+        try {
+            while (started && !hedgeDone) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Retain interrupted status.
+            if (hedgeTransmitter != null) hedgeTransmitter.cancel();
+            throw new InterruptedIOException();
+        }
+        return hedgeResponse;
+    }
+
+    /**
+     * Reports the outcome of the hedge, if there was one, or that the retry budget didn't allow one.
+     * This is done on the calling thread so that it precedes the call's remaining events.
+     */
+    private void reportHedgeEnd(boolean hedgeWon) throws InterruptedIOException {
+        boolean reportBudgetExhausted;
+        synchronized (this) {
+            reportBudgetExhausted = budgetExhausted;
+        }
+        if (reportBudgetExhausted) {
+            transmitter.eventListener().retryBudgetExhausted(chain.call());
+            return;
+        }
+        synchronized (this) {
+            if (hedgeTransmitter == null) return;
+            try {
+                while (!hedgeStartReported) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); // Retain interrupted status.
+                throw new InterruptedIOException();
+            }
+        }
+        transmitter.eventListener().hedgeEnd(chain.call(), hedgeWon);
+    }
+
+    /**
+     * Starts the hedge. This is called on the watchdog thread, so it hands off to another thread.
+     */
+    private void start() {
+        synchronized (this) {
+            if (primaryWon || primaryFailed) return;
+            started = true;
+        }
+        try {
+            executor.execute(this::runHedge);
+        } catch (RejectedExecutionException e) {
+            // Too many hedges are in flight. Let the first copy finish on its own.
+            synchronized (this) {
+                started = false;
+                notifyAll();
+            }
+        }
+    }
+
+    private void runHedge() {
+        EventListener eventListener = transmitter.eventListener();
+        Transmitter hedge;
+        synchronized (this) {
+            // Check for a winner before spending the budget on a hedge that wouldn't be sent.
+            if (primaryWon) {
+                hedgeDone = true;
+                notifyAll();
+                return;
+            }
+            if (retryBudget != null
+                    && !Internal.instance.tryAcquireRetry(retryBudget, request.url().host())) {
+                budgetExhausted = true;
+                hedgeDone = true;
+                notifyAll();
+                return;
+            }
+            hedge = transmitter.newHedge();
+            hedgeTransmitter = hedge;
+        }
+
+        long startNanos = System.nanoTime();
+        Response response = null;
+        IOException failure = null;
+        try {
+            eventListener.hedgeStart(chain.call());
+            synchronized (this) {
+                hedgeStartReported = true;
+                notifyAll();
+            }
+            hedge.prepareToConnect(request);
+            response = chain.proceed(request, hedge, null);
+        } catch (IOException e) {
+            failure = e;
+        } catch (RouteException e) {
+            failure = e.getFirstConnectException();
+        } finally {
+            // Always finish so that the first copy's thread doesn't wait forever.
+            if (response == null) hedge.exchangeDoneDueToException();
+            long tookMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            if (!finishHedge(response, tookMillis)) {
+                closeQuietly(response);
+                hedge.noMoreExchanges(failure);
+            }
+        }
+    }
+
+    /**
+     * Records the outcome of the hedge. Returns true if it won.
+     */
+    private synchronized boolean finishHedge(@Nullable Response response, long tookMillis) {
+        hedgeDone = true;
+        hedgeStartReported = true;
+        boolean won = response != null && !primaryWon;
+        if (won) {
+            hedgeResponse = response;
+            hedgeTookMillis = tookMillis;
+            // Interrupt the first copy. This is done while holding the lock so that it can't cancel
+            // the exchange that the first copy's thread adopts from this hedge.
+            transmitter.cancelAttempt();
+        }
+        notifyAll();
+        return won;
+    }
+}
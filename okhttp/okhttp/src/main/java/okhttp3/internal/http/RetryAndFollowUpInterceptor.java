@@ -22,17 +22,20 @@ import java.net.ProtocolException;
 import java.net.Proxy;
 import java.net.SocketTimeoutException;
 import java.security.cert.CertificateException;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
 import javax.net.ssl.SSLHandshakeException;
 import javax.net.ssl.SSLPeerUnverifiedException;
 
+import okhttp3.HedgePolicy;
 import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okhttp3.RetryBudget;
 import okhttp3.Route;
 import okhttp3.internal.Internal;
 import okhttp3.internal.connection.Exchange;
@@ -78,6 +81,7 @@ public final class RetryAndFollowUpInterceptor implements Interceptor {
 
         int followUpCount = 0;
         Response priorResponse = null;
+        recordRequest(request);
         while (true) {
             transmitter.prepareToConnect(request);
 
@@ -88,18 +92,18 @@ public final class RetryAndFollowUpInterceptor implements Interceptor {
             Response response;
             boolean success = false;
             try {
-                response = realChain.proceed(request, transmitter, null);
+                response = proceed(realChain, request, transmitter);
                 success = true;
             } catch (RouteException e) {
                 // The attempt to connect via a route failed. The request will not have been sent.
-                if (!recover(e.getLastConnectException(), transmitter, false, request)) {
+                if (!recover(e.getLastConnectException(), realChain, false, request)) {
                     throw e.getFirstConnectException();
                 }
                 continue;
             } catch (IOException e) {
                 // An attempt to communicate with a server failed. The request may have been sent.
                 boolean requestSendStarted = !(e instanceof ConnectionShutdownException);
-                if (!recover(e, transmitter, requestSendStarted, request)) throw e;
+                if (!recover(e, realChain, requestSendStarted, request)) throw e;
                 continue;
             } finally {
                 // The network call threw an exception. Release any resources.
@@ -144,6 +148,61 @@ public final class RetryAndFollowUpInterceptor implements Interceptor {
 
             request = followUp;
             priorResponse = response;
+            recordRequest(request);
+        }
+    }
+
+    /**
+     * Returns the response to {@code request}, hedging it if the client has a hedge policy.
+     */
+    private Response proceed(RealInterceptorChain realChain, Request request, Transmitter transmitter)
+            throws IOException {
+        HedgePolicy hedgePolicy = client.hedgePolicy();
+        if (hedgePolicy == null || !isHedgeable(request)) {
+            long startNanos = System.nanoTime();
+            Response response = realChain.proceed(request, transmitter, null);
+            transmitter.responseReceived(response.networkResponse() != null
+                    ? System.nanoTime() - startNanos
+                    : -1L);
+            return response;
+        }
+
+        String host = request.url().host();
+        Hedge hedge = new Hedge(realChain, request, transmitter, client.retryBudget());
+        Response response = hedge.proceed(Internal.instance.hedgeDelayMillis(hedgePolicy, host));
+
+        // Responses from the cache say nothing about how long the host takes to respond.
+        if (response.networkResponse() != null) {
+            Internal.instance.recordResponse(hedgePolicy, host, hedge.tookMillis());
+            transmitter.responseReceived(TimeUnit.MILLISECONDS.toNanos(hedge.tookMillis()));
+        } else {
+            transmitter.responseReceived(-1L);
+        }
+        return response;
+    }
+
+    /**
+     * Returns true if sending {@code request} twice has the same effect as sending it once.
+     */
+    private boolean isHedgeable(Request request) {
+        switch (request.method()) {
+            case "GET":
+            case "HEAD":
+            case "OPTIONS":
+            case "PUT":
+            case "DELETE":
+            case "TRACE":
+                RequestBody body = request.body();
+                return body == null || (!body.isOneShot() && !body.isDuplex());
+            default:
+                return false;
+        }
+    }
+
+    private void recordRequest(Request request) {
+        RetryBudget retryBudget = client.retryBudget();
+        if (retryBudget != null) {
+            Internal.instance.recordRequest(retryBudget, request.url().host());
         }
     }
 
@@ -153,8 +212,10 @@ public final class RetryAndFollowUpInterceptor implements Interceptor {
      * be recovered if the body is buffered or if the failure occurred before the request has been
      * sent.
      */
-    private boolean recover(IOException e, Transmitter transmitter,
+    private boolean recover(IOException e, RealInterceptorChain realChain,
                             boolean requestSendStarted, Request userRequest) {
+        Transmitter transmitter = realChain.transmitter();
+
         // The application layer has forbidden retries.
         if (!client.retryOnConnectionFailure()) return false;
 
@@ -167,6 +228,16 @@ public final class RetryAndFollowUpInterceptor implements Interceptor {
         // No more routes to attempt.
         if (!transmitter.canRetry()) return false;
 
+        // The host has been retried too often recently.
+        RetryBudget retryBudget = client.retryBudget();
+        if (retryBudget != null
+                && !Internal.instance.tryAcquireRetry(retryBudget, userRequest.url().host())) {
+            transmitter.eventListener().retryBudgetExhausted(realChain.call());
+            return false;
+        }
+
+        transmitter.eventListener().retryStart(realChain.call(), e);
+
         // For failure recovery, use the same route selector with a new connection.
         return true;
     }
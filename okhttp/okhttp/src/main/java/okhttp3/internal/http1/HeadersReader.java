@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.http1;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.util.Locale;
+
+import okhttp3.Headers;
+import okhttp3.Protocol;
+import okhttp3.internal.Internal;
+import okhttp3.internal.http.StatusLine;
+import okio.Buffer;
+import okio.BufferedSource;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Reads an HTTP/1 response's status line and headers, and its trailers.
+ *
+ * <p>Each line is copied from the source's buffer into a reused byte array and parsed there. Status
+ * codes are parsed from its bytes, and well-known header names and common reason phrases are
+ * matched against constants, so usually only header values are decoded into new strings. Lines
+ * that aren't well-formed fall back to {@link StatusLine#parse} and {@link Internal#addLenient}, so
+ * the results are the same either way.
+ *
+ * <p>A reader limits the total size of what it reads to 256 KiB.
+ */
+public final class HeadersReader {
+    private static final long HEADER_LIMIT = 256 * 1024;
+
+    private static final String[] MESSAGES = {
+            "OK",
+            "Created",
+            "Accepted",
+            "No Content",
+            "Partial Content",
+            "Moved Permanently",
+            "Found",
+            "See Other",
+            "Not Modified",
+            "Temporary Redirect",
+            "Permanent Redirect",
+            "Bad Request",
+            "Unauthorized",
+            "Forbidden",
+            "Not Found",
+            "Too Many Requests",
+            "Internal Server Error",
+            "Bad Gateway",
+            "Service Unavailable",
+            "Gateway Timeout",
+            "Continue",
+            "Switching Protocols",
+    };
+
+    private static final String[] NAMES = {
+            "Accept-Ranges",
+            "Access-Control-Allow-Origin",
+            "Age",
+            "Alt-Svc",
+            "Cache-Control",
+            "Connection",
+            "Content-Disposition",
+            "Content-Encoding",
+            "Content-Language",
+            "Content-Length",
+            "Content-Range",
+            "Content-Security-Policy",
+            "Content-Type",
+            "Date",
+            "ETag",
+            "Expires",
+            "Keep-Alive",
+            "Last-Modified",
+            "Link",
+            "Location",
+            "Pragma",
+            "Proxy-Authenticate",
+            "Retry-After",
+            "Server",
+            "Set-Cookie",
+            "Strict-Transport-Security",
+            "Transfer-Encoding",
+            "Vary",
+            "Via",
+            "WWW-Authenticate",
+            "X-Content-Type-Options",
+            "X-Frame-Options",
+            "X-XSS-Protection",
+    };
+
+    /**
+     * Reason phrases indexed by their length.
+     */
+    private static final String[][] MESSAGES_BY_LENGTH = byLength(MESSAGES);
+
+    /**
+     * Header names as they're commonly sent, in canonical and lowercase forms, indexed by length.
+     */
+    private static final String[][] NAMES_BY_LENGTH;
+
+    static {
+        String[] names = new String[NAMES.length * 2];
+        for (int i = 0; i < NAMES.length; i++) {
+            names[i * 2] = NAMES[i];
+            names[i * 2 + 1] = NAMES[i].toLowerCase(Locale.US);
+        }
+        NAMES_BY_LENGTH = byLength(names);
+    }
+
+    private final BufferedSource source;
+    private long headerLimit = HEADER_LIMIT;
+    private byte[] line = new byte[256];
+
+    public HeadersReader(BufferedSource source) {
+        this.source = source;
+    }
+
+    public StatusLine readStatusLine() throws IOException {
+        int length = readLine();
+        if (length == -1) return StatusLine.parse(readLineString());
+
+        // Parse protocol like "HTTP/1.1" followed by a space.
+        byte[] line = this.line;
+        int codeStart;
+        Protocol protocol;
+        if (length >= 9 && startsWith(line, "HTTP/1.") && line[8] == ' ') {
+            if (line[7] == '0') {
+                protocol = Protocol.HTTP_1_0;
+            } else if (line[7] == '1') {
+                protocol = Protocol.HTTP_1_1;
+            } else {
+                throw unexpectedStatusLine(length);
+            }
+            codeStart = 9;
+        } else if (length >= 4 && startsWith(line, "ICY ")) {
+            // Shoutcast uses ICY instead of "HTTP/1.0".
+            protocol = Protocol.HTTP_1_0;
+            codeStart = 4;
+        } else {
+            throw unexpectedStatusLine(length);
+        }
+
+        // Parse response code like "200". Always 3 digits.
+        if (length < codeStart + 3) throw unexpectedStatusLine(length);
+        int code = 0;
+        for (int i = codeStart; i < codeStart + 3; i++) {
+            if (line[i] < '0' || line[i] > '9') throw unexpectedStatusLine(length);
+            code = code * 10 + (line[i] - '0');
+        }
+
+        // Parse an optional response message like "OK" or "Not Modified". If it exists, it is
+        // separated from the response code by a space.
+        String message = "";
+        if (length > codeStart + 3) {
+            if (line[codeStart + 3] != ' ') throw unexpectedStatusLine(length);
+            message = string(MESSAGES_BY_LENGTH, line, codeStart + 4, length);
+        }
+
+        return new StatusLine(protocol, code, message);
+    }
+
+    /**
+     * Reads headers or trailers.
+     */
+    public Headers readHeaders() throws IOException {
+        Headers.Builder headers = new Headers.Builder();
+        // parse the result headers until the first blank line
+        while (true) {
+            int length = readLine();
+            if (length == -1) {
+                String line = readLineString();
+                if (line.length() == 0) break;
+                Internal.instance.addLenient(headers, line);
+                continue;
+            }
+            if (length == 0) break;
+
+            byte[] line = this.line;
+            int colon = -1;
+            for (int i = 1; i < length; i++) {
+                if (line[i] == ':') {
+                    colon = i;
+                    break;
+                }
+            }
+            if (colon == -1) {
+                // No header name, or an empty one.
+                Internal.instance.addLenient(headers, new String(line, 0, length, UTF_8));
+                continue;
+            }
+
+            // Trim the value like String.trim() does.
+            int valueStart = colon + 1;
+            int valueEnd = length;
+            while (valueStart < valueEnd && (line[valueStart] & 0xff) <= ' ') valueStart++;
+            while (valueEnd > valueStart && (line[valueEnd - 1] & 0xff) <= ' ') valueEnd--;
+
+            Internal.instance.addLenient(headers,
+                    string(NAMES_BY_LENGTH, line, 0, colon),
+                    new String(line, valueStart, valueEnd - valueStart, UTF_8));
+        }
+        return headers.build();
+    }
+
+    /**
+     * Copies the next line to {@link #line} without its line terminator and returns its length.
+     * Returns -1 without consuming anything if the source doesn't have a complete line within the
+     * header limit.
+     */
+    private int readLine() throws IOException {
+        long newline = source.indexOf((byte) '\n', 0, headerLimit);
+        if (newline == -1L) return -1;
+
+        Buffer buffer = source.getBuffer();
+        int length = newline > 0 && buffer.getByte(newline - 1) == '\r'
+                ? (int) newline - 1
+                : (int) newline;
+        if (line.length < length) {
+            line = new byte[Math.max(length, line.length * 2)];
+        }
+        for (int offset = 0; offset < length; ) {
+            offset += buffer.read(line, offset, length - offset);
+        }
+        buffer.skip(newline - length + 1);
+        headerLimit -= length;
+        return length;
+    }
+
+    private String readLineString() throws IOException {
+        String line = source.readUtf8LineStrict(headerLimit);
+        headerLimit -= line.length();
+        return line;
+    }
+
+    private ProtocolException unexpectedStatusLine(int length) {
+        return new ProtocolException(
+                "Unexpected status line: " + new String(line, 0, length, UTF_8));
+    }
+
+    private static boolean startsWith(byte[] line, String prefix) {
+        for (int i = 0, size = prefix.length(); i < size; i++) {
+            if (line[i] != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the string of {@code line} from {@code start} to {@code end}, using a constant from
+     * {@code constants} if one matches.
+     */
+    private static String string(String[][] constants, byte[] line, int start, int end) {
+        int length = end - start;
+        if (length < constants.length) {
+            candidates:
+            for (String candidate : constants[length]) {
+                for (int i = 0; i < length; i++) {
+                    if (line[start + i] != candidate.charAt(i)) continue candidates;
+                }
+                return candidate;
+            }
+        }
+        return new String(line, start, length, UTF_8);
+    }
+
+    private static String[][] byLength(String[] strings) {
+        int maxLength = 0;
+        for (String s : strings) {
+            maxLength = Math.max(maxLength, s.length());
+        }
+        String[][] result = new String[maxLength + 1][];
+        for (int length = 0; length <= maxLength; length++) {
+            int count = 0;
+            for (String s : strings) {
+                if (s.length() == length) count++;
+            }
+            result[length] = new String[count];
+            count = 0;
+            for (String s : strings) {
+                if (s.length() == length) result[length][count++] = s;
+            }
+        }
+        return result;
+    }
+}
@@ -19,28 +19,32 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.net.IDN;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import okhttp3.internal.platform.Platform;
 import okio.BufferedSource;
-import okio.GzipSource;
+import okio.ByteString;
 import okio.Okio;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static okhttp3.internal.Util.threadFactory;
 
 /**
  * A database of public suffixes provided by
  * <a href="https://publicsuffix.org/">publicsuffix.org</a>.
  */
 public final class PublicSuffixDatabase {
-    public static final String PUBLIC_SUFFIX_RESOURCE = "publicsuffixes.gz";
+    public static final String PUBLIC_SUFFIX_RESOURCE = "publicsuffixes.trie";
 
-    private static final byte[] WILDCARD_LABEL = new byte[]{'*'};
-    private static final String[] EMPTY_RULE = new String[0];
-    private static final String[] PREVAILING_RULE = new String[]{"*"};
+    /**
+     * The length of the implicit "*" rule, which applies when no other rule matches.
+     */
+    private static final int PREVAILING_RULE_LENGTH = 1;
 
-    private static final byte EXCEPTION_MARKER = '!';
+    private static final String ACE_PREFIX = "xn--";
 
     private static final PublicSuffixDatabase instance = new PublicSuffixDatabase();
 
@@ -54,12 +58,12 @@ public final class PublicSuffixDatabase {
      */
     private final CountDownLatch readCompleteLatch = new CountDownLatch(1);
 
-    // The lists are held as a large array of UTF-8 bytes. This is to avoid allocating lots of strings
-    // that will likely never be used. Each rule is separated by '\n'. Please see the
-    // PublicSuffixListGenerator class for how these lists are generated.
-    // Guarded by this.
-    private byte[] publicSuffixListBytes;
-    private byte[] publicSuffixExceptionListBytes;
+    /**
+     * The rules, held as a trie in one large array of UTF-8 bytes. This is to avoid allocating lots
+     * of strings that will likely never be used. Written before {@link #readCompleteLatch} is
+     * released and read after awaiting it.
+     */
+    private PublicSuffixTrie trie;
 
     public static PublicSuffixDatabase get() {
         return instance;
@@ -83,22 +87,23 @@ public final class PublicSuffixDatabase {
     public String getEffectiveTldPlusOne(String domain) {
         if (domain == null) throw new NullPointerException("domain == null");
 
-        // We use UTF-8 in the list so we need to convert to Unicode.
-        String unicodeDomain = IDN.toUnicode(domain);
+        // We use UTF-8 in the list so we need to convert to Unicode. Skip that for the common case of
+        // a domain with no punycode labels.
+        String unicodeDomain = domain.contains(ACE_PREFIX) ? IDN.toUnicode(domain) : domain;
         String[] domainLabels = unicodeDomain.split("\\.");
-        String[] rule = findMatchingRule(domainLabels);
-        if (domainLabels.length == rule.length && rule[0].charAt(0) != EXCEPTION_MARKER) {
+        int rule = findMatchingRule(domainLabels);
+        if (domainLabels.length == rule) {
             // The domain is a public suffix.
             return null;
         }
 
         int firstLabelOffset;
-        if (rule[0].charAt(0) == EXCEPTION_MARKER) {
+        if (rule < 0) {
             // Exception rules hold the effective TLD plus one.
-            firstLabelOffset = domainLabels.length - rule.length;
+            firstLabelOffset = domainLabels.length + rule;
         } else {
             // Otherwise the rule is for a public suffix, so we must take one more label.
-            firstLabelOffset = domainLabels.length - (rule.length + 1);
+            firstLabelOffset = domainLabels.length - (rule + 1);
         }
 
         StringBuilder effectiveTldPlusOne = new StringBuilder();
@@ -111,176 +116,81 @@ public final class PublicSuffixDatabase {
         return effectiveTldPlusOne.toString();
     }
 
-    private String[] findMatchingRule(String[] domainLabels) {
-        if (!listRead.get() && listRead.compareAndSet(false, true)) {
-            readTheListUninterruptibly();
-        } else {
-            try {
-                readCompleteLatch.await();
-            } catch (InterruptedException ignored) {
-                Thread.currentThread().interrupt(); // Retain interrupted status.
+    /**
+     * Returns the number of labels in the rule that matches {@code domainLabels}, negated if the rule
+     * is an exception rule.
+     */
+    private int findMatchingRule(String[] domainLabels) {
+        awaitTrie();
+
+        // Walk the trie from the rightmost label. For example, foo.bar.com visits the nodes for
+        // [com], [bar, com] and [foo, bar, com]. The longest matching rule of each kind wins.
+        int exactMatch = 0;
+        int wildcardMatch = 0;
+        int exceptionMatch = 0;
+        int node = PublicSuffixTrie.ROOT;
+        int flags = 0;
+        for (int i = domainLabels.length - 1; i >= 0; i--) {
+            // In theory, wildcard rules are not restricted to having the wildcard in the leftmost
+            // position. In practice, wildcards are always in the leftmost position. We assert this fact
+            // when we generate the public suffix file. If this assertion ever fails we'll need to
+            // refactor this implementation.
+            if ((flags & PublicSuffixTrie.FLAG_WILDCARD) != 0) {
+                wildcardMatch = domainLabels.length - i;
             }
-        }
+            if (node == PublicSuffixTrie.NO_CHILDREN) break;
 
-        synchronized (this) {
-            if (publicSuffixListBytes == null) {
-                throw new IllegalStateException("Unable to load " + PUBLIC_SUFFIX_RESOURCE + " resource "
-                        + "from the classpath.");
-            }
-        }
+            int entry = trie.find(node, domainLabels[i].getBytes(UTF_8));
+            if (entry == -1) break;
 
-        // Break apart the domain into UTF-8 labels, i.e. foo.bar.com turns into [foo, bar, com].
-        byte[][] domainLabelsUtf8Bytes = new byte[domainLabels.length][];
-        for (int i = 0; i < domainLabels.length; i++) {
-            domainLabelsUtf8Bytes[i] = domainLabels[i].getBytes(UTF_8);
-        }
-
-        // Start by looking for exact matches. We start at the leftmost label. For example, foo.bar.com
-        // will look like: [foo, bar, com], [bar, com], [com]. The longest matching rule wins.
-        String exactMatch = null;
-        for (int i = 0; i < domainLabelsUtf8Bytes.length; i++) {
-            String rule = binarySearchBytes(publicSuffixListBytes, domainLabelsUtf8Bytes, i);
-            if (rule != null) {
-                exactMatch = rule;
-                break;
+            flags = trie.flags(entry);
+            node = trie.children(entry);
+            if ((flags & PublicSuffixTrie.FLAG_RULE) != 0) {
+                exactMatch = domainLabels.length - i;
+            }
+            if ((flags & PublicSuffixTrie.FLAG_EXCEPTION) != 0) {
+                exceptionMatch = domainLabels.length - i;
             }
         }
 
-        // In theory, wildcard rules are not restricted to having the wildcard in the leftmost position.
-        // In practice, wildcards are always in the leftmost position. For now, this implementation
-        // cheats and does not attempt every possible permutation. Instead, it only considers wildcards
-        // in the leftmost position. We assert this fact when we generate the public suffix file. If
-        // this assertion ever fails we'll need to refactor this implementation.
-        String wildcardMatch = null;
-        if (domainLabelsUtf8Bytes.length > 1) {
-            byte[][] labelsWithWildcard = domainLabelsUtf8Bytes.clone();
-            for (int labelIndex = 0; labelIndex < labelsWithWildcard.length - 1; labelIndex++) {
-                labelsWithWildcard[labelIndex] = WILDCARD_LABEL;
-                String rule = binarySearchBytes(publicSuffixListBytes, labelsWithWildcard, labelIndex);
-                if (rule != null) {
-                    wildcardMatch = rule;
-                    break;
-                }
-            }
+        // Exception rules only apply to wildcard rules.
+        if (exceptionMatch != 0 && wildcardMatch != 0) {
+            return -exceptionMatch;
+        } else if (exactMatch == 0 && wildcardMatch == 0) {
+            return PREVAILING_RULE_LENGTH;
         }
+        return Math.max(exactMatch, wildcardMatch);
+    }
 
-        // Exception rules only apply to wildcard rules, so only try it if we matched a wildcard.
-        String exception = null;
-        if (wildcardMatch != null) {
-            for (int labelIndex = 0; labelIndex < domainLabelsUtf8Bytes.length - 1; labelIndex++) {
-                String rule = binarySearchBytes(
-                        publicSuffixExceptionListBytes, domainLabelsUtf8Bytes, labelIndex);
-                if (rule != null) {
-                    exception = rule;
-                    break;
-                }
+    private void awaitTrie() {
+        if (!listRead.get() && listRead.compareAndSet(false, true)) {
+            readTheListUninterruptibly();
+        } else {
+            try {
+                readCompleteLatch.await();
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt(); // Retain interrupted status.
             }
         }
 
-        if (exception != null) {
-            // Signal we've identified an exception rule.
-            exception = "!" + exception;
-            return exception.split("\\.");
-        } else if (exactMatch == null && wildcardMatch == null) {
-            return PREVAILING_RULE;
+        if (trie == null) {
+            throw new IllegalStateException("Unable to load " + PUBLIC_SUFFIX_RESOURCE + " resource "
+                    + "from the classpath.");
         }
-
-        String[] exactRuleLabels = exactMatch != null
-                ? exactMatch.split("\\.")
-                : EMPTY_RULE;
-
-        String[] wildcardRuleLabels = wildcardMatch != null
-                ? wildcardMatch.split("\\.")
-                : EMPTY_RULE;
-
-        return exactRuleLabels.length > wildcardRuleLabels.length
-                ? exactRuleLabels
-                : wildcardRuleLabels;
     }
 
-    private static String binarySearchBytes(byte[] bytesToSearch, byte[][] labels, int labelIndex) {
-        int low = 0;
-        int high = bytesToSearch.length;
-        String match = null;
-        while (low < high) {
-            int mid = (low + high) / 2;
-            // Search for a '\n' that marks the start of a value. Don't go back past the start of the
-            // array.
-            while (mid > -1 && bytesToSearch[mid] != '\n') {
-                mid--;
-            }
-            mid++;
-
-            // Now look for the ending '\n'.
-            int end = 1;
-            while (bytesToSearch[mid + end] != '\n') {
-                end++;
-            }
-            int publicSuffixLength = (mid + end) - mid;
-
-            // Compare the bytes. Note that the file stores UTF-8 encoded bytes, so we must compare the
-            // unsigned bytes.
-            int compareResult;
-            int currentLabelIndex = labelIndex;
-            int currentLabelByteIndex = 0;
-            int publicSuffixByteIndex = 0;
-
-            boolean expectDot = false;
-            while (true) {
-                int byte0;
-                if (expectDot) {
-                    byte0 = '.';
-                    expectDot = false;
-                } else {
-                    byte0 = labels[currentLabelIndex][currentLabelByteIndex] & 0xff;
-                }
-
-                int byte1 = bytesToSearch[mid + publicSuffixByteIndex] & 0xff;
-
-                compareResult = byte0 - byte1;
-                if (compareResult != 0) break;
-
-                publicSuffixByteIndex++;
-                currentLabelByteIndex++;
-                if (publicSuffixByteIndex == publicSuffixLength) break;
-
-                if (labels[currentLabelIndex].length == currentLabelByteIndex) {
-                    // We've exhausted our current label. Either there are more labels to compare, in which
-                    // case we expect a dot as the next character. Otherwise, we've checked all our labels.
-                    if (currentLabelIndex == labels.length - 1) {
-                        break;
-                    } else {
-                        currentLabelIndex++;
-                        currentLabelByteIndex = -1;
-                        expectDot = true;
-                    }
-                }
-            }
-
-            if (compareResult < 0) {
-                high = mid - 1;
-            } else if (compareResult > 0) {
-                low = mid + end + 1;
-            } else {
-                // We found a match, but are the lengths equal?
-                int publicSuffixBytesLeft = publicSuffixLength - publicSuffixByteIndex;
-                int labelBytesLeft = labels[currentLabelIndex].length - currentLabelByteIndex;
-                for (int i = currentLabelIndex + 1; i < labels.length; i++) {
-                    labelBytesLeft += labels[i].length;
-                }
+    /**
+     * Starts reading the list on a background thread if it hasn't been read yet, so that the first
+     * lookup doesn't have to wait for it. This is a no-op if the list is already loaded or loading.
+     * Applications request this with {@link okhttp3.OkHttpClient.Builder#preloadPublicSuffixes};
+     * otherwise the list is read by the first lookup.
+     */
+    public void loadInBackground() {
+        if (listRead.get() || !listRead.compareAndSet(false, true)) return;
 
-                if (labelBytesLeft < publicSuffixBytesLeft) {
-                    high = mid - 1;
-                } else if (labelBytesLeft > publicSuffixBytesLeft) {
-                    low = mid + end + 1;
-                } else {
-                    // Found a match.
-                    match = new String(bytesToSearch, mid, publicSuffixLength, UTF_8);
-                    break;
-                }
-            }
-        }
-        return match;
+        threadFactory("OkHttp PublicSuffixDatabase", true)
+                .newThread(this::readTheListUninterruptibly)
+                .start();
     }
 
     /**
@@ -304,6 +214,8 @@ public final class PublicSuffixDatabase {
                 }
             }
         } finally {
+            // Release waiting threads even if the list couldn't be read; they'll fail fast.
+            readCompleteLatch.countDown();
             if (interrupted) {
                 Thread.currentThread().interrupt(); // Retain interrupted status.
             }
@@ -311,37 +223,36 @@ public final class PublicSuffixDatabase {
     }
 
     private void readTheList() throws IOException {
-        byte[] publicSuffixListBytes;
-        byte[] publicSuffixExceptionListBytes;
-
         InputStream resource = PublicSuffixDatabase.class.getResourceAsStream(PUBLIC_SUFFIX_RESOURCE);
         if (resource == null) return;
 
-        try (BufferedSource bufferedSource = Okio.buffer(new GzipSource(Okio.source(resource)))) {
-            int totalBytes = bufferedSource.readInt();
-            publicSuffixListBytes = new byte[totalBytes];
-            bufferedSource.readFully(publicSuffixListBytes);
-
-            int totalExceptionBytes = bufferedSource.readInt();
-            publicSuffixExceptionListBytes = new byte[totalExceptionBytes];
-            bufferedSource.readFully(publicSuffixExceptionListBytes);
-        }
-
-        synchronized (this) {
-            this.publicSuffixListBytes = publicSuffixListBytes;
-            this.publicSuffixExceptionListBytes = publicSuffixExceptionListBytes;
+        // The trie is stored uncompressed so it can be used as-is, without decoding or sorting.
+        try (BufferedSource bufferedSource = Okio.buffer(Okio.source(resource))) {
+            trie = new PublicSuffixTrie(bufferedSource.readByteArray());
         }
-
-        readCompleteLatch.countDown();
     }
 
     /**
      * Visible for testing.
      */
     void setListBytes(byte[] publicSuffixListBytes, byte[] publicSuffixExceptionListBytes) {
-        this.publicSuffixListBytes = publicSuffixListBytes;
-        this.publicSuffixExceptionListBytes = publicSuffixExceptionListBytes;
+        this.trie = new PublicSuffixTrie(PublicSuffixTrie.encode(
+                splitRules(publicSuffixListBytes), splitRules(publicSuffixExceptionListBytes)));
         listRead.set(true);
         readCompleteLatch.countDown();
     }
+
+    private static List<ByteString> splitRules(byte[] listBytes) {
+        List<ByteString> result = new ArrayList<>();
+        int start = 0;
+        while (start < listBytes.length) {
+            int end = start;
+            while (listBytes[end] != '\n') {
+                end++;
+            }
+            result.add(ByteString.of(listBytes, start, end - start));
+            start = end + 1;
+        }
+        return result;
+    }
 }
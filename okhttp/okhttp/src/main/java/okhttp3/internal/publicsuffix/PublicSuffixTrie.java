@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.publicsuffix;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import okio.Buffer;
+import okio.ByteString;
+
+/**
+ * The public suffix list as a trie of UTF-8 labels, encoded in a single byte array so that it can
+ * be read directly from a resource and searched in place. Paths from the root spell out rules
+ * right-to-left: the rule {@code co.uk} is the entry reached by following {@code uk} then {@code
+ * co}.
+ *
+ * <p>Each node is an unsigned 16-bit entry count followed by that many 8-byte entries, sorted by
+ * label. An entry packs a label's offset (24 bits) and length (8 bits) into one int, then the
+ * entry's flags (8 bits) and the offset of its child node (24 bits) into another. Most entries have
+ * no children; their child offset is 0, which is the root. All labels follow the nodes, each stored
+ * once no matter how many rules use it. All ints are big-endian.
+ *
+ * <p>Please see the PublicSuffixListGenerator class for how this format is generated.
+ */
+final class PublicSuffixTrie {
+    /**
+     * The path to this entry is a rule, like {@code co.uk}.
+     */
+    static final int FLAG_RULE = 1;
+
+    /**
+     * The path to this entry prefixed by a wildcard is a rule, like {@code *.kawasaki.jp}.
+     */
+    static final int FLAG_WILDCARD = 1 << 1;
+
+    /**
+     * The path to this entry is an exception rule, like {@code !city.kawasaki.jp}.
+     */
+    static final int FLAG_EXCEPTION = 1 << 2;
+
+    static final int ROOT = 0;
+
+    static final int NO_CHILDREN = -1;
+
+    private static final int NODE_HEADER_SIZE = 2;
+    private static final int ENTRY_SIZE = 8;
+    private static final int MAX_LABEL_LENGTH = 0xff;
+    private static final int MAX_OFFSET = 0xffffff;
+    private static final int MAX_ENTRY_COUNT = 0xffff;
+    private static final ByteString WILDCARD_PREFIX = ByteString.encodeUtf8("*.");
+
+    private final byte[] bytes;
+
+    PublicSuffixTrie(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Returns the entry in {@code node} for {@code label}, or -1 if there is no such entry.
+     */
+    int find(int node, byte[] label) {
+        int low = 0;
+        int high = readShort(node) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int entry = node + NODE_HEADER_SIZE + mid * ENTRY_SIZE;
+            int labelOffsetAndLength = readInt(entry);
+            int compareResult = compare(labelOffsetAndLength >>> 8, labelOffsetAndLength & 0xff, label);
+            if (compareResult < 0) {
+                low = mid + 1;
+            } else if (compareResult > 0) {
+                high = mid - 1;
+            } else {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    int flags(int entry) {
+        return bytes[entry + 4];
+    }
+
+    /**
+     * Returns the node holding the children of {@code entry}, or {@link #NO_CHILDREN}.
+     */
+    int children(int entry) {
+        int node = readInt(entry + 4) & MAX_OFFSET;
+        return node != ROOT ? node : NO_CHILDREN;
+    }
+
+    /**
+     * Compares the label at {@code offset} to {@code label}. The list is UTF-8 so we compare unsigned
+     * bytes, the same order {@link ByteString#compareTo} sorts them in.
+     */
+    private int compare(int offset, int length, byte[] label) {
+        int limit = Math.min(length, label.length);
+        for (int i = 0; i < limit; i++) {
+            int compareResult = (bytes[offset + i] & 0xff) - (label[i] & 0xff);
+            if (compareResult != 0) return compareResult;
+        }
+        return length - label.length;
+    }
+
+    private int readShort(int offset) {
+        return (bytes[offset] & 0xff) << 8 | (bytes[offset + 1] & 0xff);
+    }
+
+    private int readInt(int offset) {
+        return (bytes[offset] & 0xff) << 24
+                | (bytes[offset + 1] & 0xff) << 16
+                | (bytes[offset + 2] & 0xff) << 8
+                | (bytes[offset + 3] & 0xff);
+    }
+
+    /**
+     * Returns the encoded trie for {@code rules} and {@code exceptionRules}. Wildcard rules must have
+     * a single wildcard in the leftmost position, and exception rules must omit the leading '!'.
+     */
+    static byte[] encode(Iterable<ByteString> rules, Iterable<ByteString> exceptionRules) {
+        Node root = new Node();
+        for (ByteString rule : rules) {
+            if (rule.startsWith(WILDCARD_PREFIX)) {
+                root.descendant(rule.substring(WILDCARD_PREFIX.size())).flags |= FLAG_WILDCARD;
+            } else {
+                root.descendant(rule).flags |= FLAG_RULE;
+            }
+        }
+        for (ByteString exceptionRule : exceptionRules) {
+            root.descendant(exceptionRule).flags |= FLAG_EXCEPTION;
+        }
+
+        // Lay out the nodes that have children breadth-first, then the distinct labels.
+        List<Node> nodes = new ArrayList<>();
+        Deque<Node> queue = new ArrayDeque<>();
+        queue.add(root);
+        int nodesSize = 0;
+        while (!queue.isEmpty()) {
+            Node node = queue.remove();
+            if (node.children.size() > MAX_ENTRY_COUNT) {
+                throw new IllegalArgumentException("too many entries: " + node.children.size());
+            }
+            node.offset = nodesSize;
+            nodesSize += NODE_HEADER_SIZE + node.children.size() * ENTRY_SIZE;
+            nodes.add(node);
+            for (Node child : node.children.values()) {
+                if (!child.children.isEmpty()) queue.add(child);
+            }
+        }
+
+        Map<ByteString, Integer> labelOffsets = new LinkedHashMap<>();
+        int labelsSize = nodesSize;
+        for (Node node : nodes) {
+            for (ByteString label : node.children.keySet()) {
+                if (label.size() > MAX_LABEL_LENGTH) {
+                    throw new IllegalArgumentException("label too long: " + label.utf8());
+                }
+                if (labelOffsets.get(label) == null) {
+                    labelOffsets.put(label, labelsSize);
+                    labelsSize += label.size();
+                }
+            }
+        }
+        if (labelsSize > MAX_OFFSET) throw new IllegalArgumentException("too many rules");
+
+        Buffer result = new Buffer();
+        for (Node node : nodes) {
+            result.writeShort(node.children.size());
+            for (Map.Entry<ByteString, Node> entry : node.children.entrySet()) {
+                ByteString label = entry.getKey();
+                Node child = entry.getValue();
+                result.writeInt(labelOffsets.get(label) << 8 | label.size());
+                result.writeInt(child.flags << 24 | child.offset);
+            }
+        }
+        for (ByteString label : labelOffsets.keySet()) {
+            result.write(label);
+        }
+        return result.readByteArray();
+    }
+
+    private static final class Node {
+        final Map<ByteString, Node> children = new TreeMap<>();
+        int flags;
+        int offset;
+
+        /**
+         * Returns the node for {@code rule}, creating it and its ancestors if necessary.
+         */
+        Node descendant(ByteString rule) {
+            Node node = this;
+            int end = rule.size();
+            while (end > 0) {
+                int start = end - 1;
+                while (start >= 0 && rule.getByte(start) != '.') {
+                    start--;
+                }
+                ByteString label = rule.substring(start + 1, end);
+                Node child = node.children.get(label);
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(label, child);
+                }
+                node = child;
+                end = start;
+            }
+            return node;
+        }
+    }
+}
@@ -20,6 +20,7 @@ import java.security.cert.Certificate;
 import java.security.cert.CertificateParsingException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -40,6 +41,11 @@ public final class OkHostnameVerifier implements HostnameVerifier {
     private static final int ALT_DNS_NAME = 2;
     private static final int ALT_IPA_NAME = 7;
 
+    /**
+     * Hosts and certificates, and whether the certificate is valid for the host.
+     */
+    private final LruCache<List<Object>, Boolean> results = new LruCache<>(64);
+
     private OkHostnameVerifier() {
     }
 
@@ -54,9 +60,15 @@ public final class OkHostnameVerifier implements HostnameVerifier {
     }
 
     public boolean verify(String host, X509Certificate certificate) {
-        return verifyAsIpAddress(host)
-                ? verifyIpAddress(host, certificate)
-                : verifyHostname(host, certificate);
+        List<Object> key = Arrays.asList(host, certificate);
+        Boolean result = results.get(key);
+        if (result == null) {
+            result = verifyAsIpAddress(host)
+                    ? verifyIpAddress(host, certificate)
+                    : verifyHostname(host, certificate);
+            results.put(key, result);
+        }
+        return result;
     }
 
     /**
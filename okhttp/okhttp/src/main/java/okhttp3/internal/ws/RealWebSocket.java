@@ -218,6 +218,7 @@ public final class RealWebSocket implements WebSocket, WebSocketReader.FrameCall
         client = client.newBuilder()
                 .eventListener(EventListener.NONE)
                 .protocols(ONLY_HTTP1)
+                .hedgePolicy(null)
                 .build();
         final Request request = originalRequest.newBuilder()
                 .header("Upgrade", "websocket")
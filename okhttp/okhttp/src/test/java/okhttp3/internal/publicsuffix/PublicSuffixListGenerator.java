@@ -37,12 +37,17 @@ import okio.Sink;
  * <p>The intent is to use this class to update the list periodically by manually running the main
  * method. This should be run from the top-level okhttp directory.
  *
- * <p>The resulting file is used by {@link PublicSuffixDatabase}.
+ * <p>The resulting trie is used by {@link PublicSuffixDatabase}. A sorted, gzipped copy of the
+ * rules is also written to the test resources, where tests check every rule against the trie.
  */
 public final class PublicSuffixListGenerator {
     private static final String OKHTTP_RESOURCE_DIR = "okhttp" + File.separator + "src"
             + File.separator + "main" + File.separator + "resources" + File.separator
             + "okhttp3" + File.separator + "internal" + File.separator + "publicsuffix";
+    private static final String OKHTTP_TESTS_RESOURCE_DIR = "okhttp-tests" + File.separator + "src"
+            + File.separator + "test" + File.separator + "resources" + File.separator
+            + "okhttp3" + File.separator + "internal" + File.separator + "publicsuffix";
+    private static final String PUBLIC_SUFFIX_LIST_RESOURCE = "publicsuffixes.gz";
 
     private static final ByteString EXCEPTION_RULE_MARKER = ByteString.encodeUtf8("!");
     private static final String WILDCARD_CHAR = "*";
@@ -54,10 +59,10 @@ public final class PublicSuffixListGenerator {
                 .build();
         SortedSet<ByteString> sortedRules = new TreeSet<>();
         SortedSet<ByteString> sortedExceptionRules = new TreeSet<>();
+        int totalRuleBytes = 0;
+        int totalExceptionRuleBytes = 0;
         try (Response response = client.newCall(request).execute()) {
             BufferedSource source = response.body().source();
-            int totalRuleBytes = 0;
-            int totalExceptionRuleBytes = 0;
             while (!source.exhausted()) {
                 String line = source.readUtf8LineStrict();
                 if (line.trim().isEmpty() || line.startsWith("//")) continue;
@@ -77,27 +82,38 @@ public final class PublicSuffixListGenerator {
                     sortedRules.add(rule);
                 }
             }
+        }
 
-            File resources = new File(OKHTTP_RESOURCE_DIR);
-            if (!resources.mkdirs() && !resources.exists()) {
-                throw new RuntimeException("Unable to create resource directory!");
-            }
+        File resources = resourceDirectory(OKHTTP_RESOURCE_DIR);
+        byte[] trie = PublicSuffixTrie.encode(sortedRules, sortedExceptionRules);
+        try (BufferedSink sink = Okio.buffer(
+                Okio.sink(new File(resources, PublicSuffixDatabase.PUBLIC_SUFFIX_RESOURCE)))) {
+            sink.write(trie);
+        }
 
-            Sink fileSink = Okio.sink(new File(resources, PublicSuffixDatabase.PUBLIC_SUFFIX_RESOURCE));
-            try (BufferedSink sink = Okio.buffer(new GzipSink(fileSink))) {
-                sink.writeInt(totalRuleBytes);
-                for (ByteString domain : sortedRules) {
-                    sink.write(domain).writeByte('\n');
-                }
+        File testResources = resourceDirectory(OKHTTP_TESTS_RESOURCE_DIR);
+        Sink fileSink = Okio.sink(new File(testResources, PUBLIC_SUFFIX_LIST_RESOURCE));
+        try (BufferedSink sink = Okio.buffer(new GzipSink(fileSink))) {
+            sink.writeInt(totalRuleBytes);
+            for (ByteString domain : sortedRules) {
+                sink.write(domain).writeByte('\n');
+            }
 
-                sink.writeInt(totalExceptionRuleBytes);
-                for (ByteString domain : sortedExceptionRules) {
-                    sink.write(domain).writeByte('\n');
-                }
+            sink.writeInt(totalExceptionRuleBytes);
+            for (ByteString domain : sortedExceptionRules) {
+                sink.write(domain).writeByte('\n');
             }
         }
     }
 
+    private static File resourceDirectory(String path) {
+        File result = new File(path);
+        if (!result.mkdirs() && !result.exists()) {
+            throw new RuntimeException("Unable to create resource directory!");
+        }
+        return result;
+    }
+
     /**
      * These assertions ensure the {@link PublicSuffixDatabase} remains correct. The specification is
      * very flexible regarding wildcard rules, but this flexibility is not something currently used
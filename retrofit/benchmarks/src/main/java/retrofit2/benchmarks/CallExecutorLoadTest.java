@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit2.benchmarks;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.ResponseBody;
+import retrofit2.Retrofit;
+import retrofit2.http.GET;
+import retrofit2.mock.NetworkBehavior;
+
+/**
+ * Compares the throughput and thread count of enqueued calls at high concurrency. {@code
+ * dispatcher} enqueues calls on OkHttp's dispatcher; {@code virtual-threads} executes them on
+ * virtual threads with {@link Retrofit.Builder#callExecutor}, and needs Java 21 or newer.
+ * <p>
+ * There is no server: an interceptor waits for a {@link NetworkBehavior} delay on the calling
+ * thread and returns a canned response, so each call blocks a thread like a slow network would.
+ * <pre>
+ * java -cp benchmarks.jar retrofit2.benchmarks.CallExecutorLoadTest [concurrency] [calls]
+ * </pre>
+ */
+public final class CallExecutorLoadTest {
+    private static final MediaType TEXT = MediaType.get("text/plain");
+
+    interface Service {
+        @GET("/")
+        CompletableFuture<ResponseBody> get();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+        int calls = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+
+        NetworkBehavior behavior = NetworkBehavior.create();
+        behavior.setDelay(100, TimeUnit.MILLISECONDS);
+        behavior.setVariancePercent(40);
+        behavior.setFailurePercent(0);
+        behavior.setErrorPercent(0);
+
+        System.out.printf("%,d calls, %,d concurrent, %d ms mean latency%n",
+                calls, concurrency, behavior.delay(TimeUnit.MILLISECONDS));
+        run("dispatcher", null, behavior, concurrency, calls);
+
+        ExecutorService virtualThreads = newVirtualThreadPerTaskExecutor();
+        if (virtualThreads != null) {
+            run("virtual-threads", virtualThreads, behavior, concurrency, calls);
+            virtualThreads.shutdown();
+        } else {
+            System.out.println("virtual-threads: requires Java 21 or newer");
+        }
+    }
+
+    static void run(String name, @Nullable ExecutorService callExecutor, NetworkBehavior behavior,
+                    int concurrency, int calls) throws InterruptedException {
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(simulatedNetwork(behavior))
+                .build();
+        client.dispatcher().setMaxRequests(concurrency);
+        client.dispatcher().setMaxRequestsPerHost(concurrency);
+        Retrofit.Builder builder = new Retrofit.Builder()
+                .baseUrl("https://example.com/")
+                .client(client);
+        if (callExecutor != null) {
+            builder.callExecutor(callExecutor);
+        }
+        Service service = builder.build().create(Service.class);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        Semaphore inFlight = new Semaphore(concurrency);
+        AtomicInteger failures = new AtomicInteger();
+        long start = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            inFlight.acquire();
+            service.get().whenComplete((body, failure) -> {
+                if (failure != null) {
+                    failures.incrementAndGet();
+                } else {
+                    body.close();
+                }
+                inFlight.release();
+            });
+        }
+        inFlight.acquire(concurrency);
+        long elapsedNanos = System.nanoTime() - start;
+
+        System.out.printf("%-16s %,9.0f calls/s  peak platform threads: %,6d  failures: %d%n",
+                name, calls / (elapsedNanos / 1e9), threads.getPeakThreadCount(), failures.get());
+        // Let the dispatcher's threads exit so they aren't counted by the next run.
+        client.dispatcher().executorService().shutdown();
+        client.dispatcher().executorService().awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    /** Returns an interceptor that answers every request after a simulated network delay. */
+    static Interceptor simulatedNetwork(NetworkBehavior behavior) {
+        return chain -> {
+            try {
+                Thread.sleep(behavior.calculateDelay(TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                throw new IOException("canceled", e);
+            }
+            return new okhttp3.Response.Builder()
+                    .request(chain.request())
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(200)
+                    .message("OK")
+                    .body(ResponseBody.create(TEXT, "Hi"))
+                    .build();
+        };
+    }
+
+    /** Returns a virtual thread per task executor, or null if this JVM has no virtual threads. */
+    static @Nullable
+    ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit2.benchmarks;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Retrofit;
+import retrofit2.http.GET;
+import retrofit2.http.Path;
+import retrofit2.http.Query;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.RunnerException;
+
+/**
+ * Measures creating a call and building its request for service methods with {@code paramCount}
+ * path parameters and as many query parameters. {@code ascii} values are copied into the URL as-is;
+ * {@code encoded} values contain characters that must be percent-encoded.
+ */
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RequestUrlBenchmark {
+    @Param({"1", "2", "4", "8"})
+    int paramCount;
+
+    @Param({"ascii", "encoded"})
+    String values;
+
+    private Service service;
+    private Method method;
+    private Object[] args;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl("https://example.com/")
+                .build();
+        service = retrofit.create(Service.class);
+
+        Class<?>[] parameterTypes = new Class<?>[paramCount * 2];
+        args = new Object[paramCount * 2];
+        for (int i = 0; i < args.length; i++) {
+            parameterTypes[i] = String.class;
+            args[i] = values.equals("ascii") ? "value" + i : "välue " + i;
+        }
+        method = Service.class.getMethod("params" + paramCount, parameterTypes);
+    }
+
+    @Benchmark
+    public Request request() throws Exception {
+        Call<?> call = (Call<?>) method.invoke(service, args);
+        return call.request();
+    }
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        Main.main(new String[]{
+                RequestUrlBenchmark.class.getName()
+        });
+    }
+
+    interface Service {
+        @GET("users/{p1}/items")
+        Call<ResponseBody> params1(@Path("p1") String p1, @Query("q1") String q1);
+
+        @GET("users/{p1}/items/{p2}")
+        Call<ResponseBody> params2(
+                @Path("p1") String p1, @Path("p2") String p2,
+                @Query("q1") String q1, @Query("q2") String q2);
+
+        @GET("users/{p1}/items/{p2}/tags/{p3}/{p4}")
+        Call<ResponseBody> params4(
+                @Path("p1") String p1, @Path("p2") String p2,
+                @Path("p3") String p3, @Path("p4") String p4,
+                @Query("q1") String q1, @Query("q2") String q2,
+                @Query("q3") String q3, @Query("q4") String q4);
+
+        @GET("users/{p1}/items/{p2}/tags/{p3}/{p4}/a/{p5}/b/{p6}/c/{p7}/{p8}")
+        Call<ResponseBody> params8(
+                @Path("p1") String p1, @Path("p2") String p2,
+                @Path("p3") String p3, @Path("p4") String p4,
+                @Path("p5") String p5, @Path("p6") String p6,
+                @Path("p7") String p7, @Path("p8") String p8,
+                @Query("q1") String q1, @Query("q2") String q2,
+                @Query("q3") String q3, @Query("q4") String q4,
+                @Query("q5") String q5, @Query("q6") String q6,
+                @Query("q7") String q7, @Query("q8") String q8);
+    }
+}
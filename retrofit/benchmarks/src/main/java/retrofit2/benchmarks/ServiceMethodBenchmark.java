@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit2.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Retrofit;
+import retrofit2.http.GET;
+import retrofit2.http.Path;
+import retrofit2.http.Query;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.RunnerException;
+
+/**
+ * Measures the overhead of calling a service proxy. {@code cold} calls a method of a new {@link
+ * Retrofit} instance, so the method's annotations are parsed by the call; {@code warm} calls a
+ * method that has already been loaded; {@code defaultMethod} calls a default method of the service
+ * interface that delegates to a warm method.
+ */
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ServiceMethodBenchmark {
+    private Retrofit.Builder builder;
+    private Service service;
+
+    @Setup
+    public void setUp() {
+        builder = new Retrofit.Builder()
+                .baseUrl("https://example.com/");
+        service = builder.build().create(Service.class);
+        service.user("jw", 1);
+    }
+
+    @Benchmark
+    public Call<ResponseBody> cold() {
+        return builder.build().create(Service.class).user("jw", 1);
+    }
+
+    @Benchmark
+    public Call<ResponseBody> warm() {
+        return service.user("jw", 1);
+    }
+
+    @Benchmark
+    public Call<ResponseBody> defaultMethod() {
+        return service.firstPage("jw");
+    }
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        Main.main(new String[]{
+                ServiceMethodBenchmark.class.getName()
+        });
+    }
+
+    interface Service {
+        @GET("users/{user}/repos")
+        Call<ResponseBody> user(@Path("user") String user, @Query("page") int page);
+
+        default Call<ResponseBody> firstPage(String user) {
+            return user(user, 1);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit2.adapter.batch;
+
+import java.io.IOException;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import retrofit2.Call;
+import retrofit2.Invocation;
+
+/**
+ * Combines calls to {@link Batched} methods into a single request, and splits its response into a
+ * result for each call. Each call is described by its {@link Invocation}, whose arguments are the
+ * arguments passed to the service method.
+ * <pre><code>
+ * BatchEndpoint&lt;List&lt;User&gt;, User&gt; users =
+ *     new BatchEndpoint&lt;List&lt;User&gt;, User&gt;() {
+ *   &#64;Override public Call&lt;List&lt;User&gt;&gt; newCall(List&lt;Invocation&gt; invocations) {
+ *     List&lt;String&gt; ids = new ArrayList&lt;&gt;();
+ *     for (Invocation invocation : invocations) {
+ *       ids.add((String) invocation.arguments().get(0));
+ *     }
+ *     return service.users(ids);
+ *   }
+ *
+ *   &#64;Override public List&lt;User&gt; demultiplex(List&lt;Invocation&gt; invocations,
+ *       List&lt;User&gt; body) {
+ *     return body;
+ *   }
+ * };
+ * </code></pre>
+ *
+ * @param <B> the body type of the batch response.
+ * @param <T> the body type of each batched call's response.
+ */
+public interface BatchEndpoint<B, T> {
+    /**
+     * Returns a call which requests the results of all of {@code invocations}. This is typically a
+     * call to a method of another Retrofit service.
+     */
+    Call<B> newCall(List<Invocation> invocations);
+
+    /**
+     * Returns the result of each of {@code invocations}, in the same order, from the body of a
+     * successful batch response. A result may be null.
+     */
+    List<T> demultiplex(List<Invocation> invocations, @Nullable B body) throws IOException;
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit2.adapter.batch;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Calls to the annotated method are combined with other calls to the same batch endpoint and sent
+ * as one request. The value is the name of a {@link BatchEndpoint} that was added to the
+ * {@link BatchingCallAdapterFactory}.
+ * <pre><code>
+ * &#64;Batched("users")
+ * &#64;GET("users/{id}")
+ * Call&lt;User&gt; user(@Path("id") String id);
+ * </code></pre>
+ * The method's own HTTP annotations are still used to build and validate each call's request, but
+ * that request is not sent.
+ */
+@Documented
+@Target(METHOD)
+@Retention(RUNTIME)
+public @interface Batched {
+    /**
+     * The name of the batch endpoint that calls to this method are sent through.
+     */
+    String value();
+}
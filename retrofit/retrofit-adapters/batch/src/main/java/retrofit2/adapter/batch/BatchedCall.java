@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit2.adapter.batch;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+import javax.annotation.Nullable;
+
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Invocation;
+import retrofit2.Response;
+
+/**
+ * A call whose request is sent as part of a batch. The delegate is the call Retrofit created for
+ * the service method; its request carries the {@link Invocation} that is passed to the batch
+ * endpoint, but it is never executed.
+ */
+final class BatchedCall<T> implements Call<T> {
+    private final Call<T> delegate;
+    private final Batcher<?, T> batcher;
+    private final @Nullable
+    Executor callbackExecutor;
+
+    private volatile boolean canceled;
+
+    // All guarded by this.
+    private boolean executed;
+    private boolean completed;
+    private @Nullable
+    Callback<T> callback;
+    private @Nullable
+    Executor executor;
+    private @Nullable
+    Invocation invocation;
+
+    BatchedCall(Call<T> delegate, Batcher<?, T> batcher, @Nullable Executor callbackExecutor) {
+        this.delegate = delegate;
+        this.batcher = batcher;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    @Override
+    public void enqueue(Callback<T> callback) {
+        Objects.requireNonNull(callback, "callback == null");
+        start(callback, callbackExecutor);
+    }
+
+    @Override
+    public Response<T> execute() throws IOException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Object[] result = new Object[1];
+        start(new Callback<T>() {
+            @Override
+            public void onResponse(Call<T> call, Response<T> response) {
+                result[0] = response;
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(Call<T> call, Throwable t) {
+                result[0] = t;
+                latch.countDown();
+            }
+        }, null);
+
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            cancel();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+
+        if (result[0] instanceof IOException) throw (IOException) result[0];
+        if (result[0] instanceof RuntimeException) throw (RuntimeException) result[0];
+        if (result[0] instanceof Error) throw (Error) result[0];
+        if (result[0] instanceof Throwable) throw new IOException((Throwable) result[0]);
+        @SuppressWarnings("unchecked") // Only responses and throwables are stored.
+        Response<T> response = (Response<T>) result[0];
+        return response;
+    }
+
+    private void start(Callback<T> callback, @Nullable Executor executor) {
+        synchronized (this) {
+            if (executed) throw new IllegalStateException("Already executed.");
+            executed = true;
+            this.callback = callback;
+            this.executor = executor;
+        }
+
+        if (canceled) {
+            failure(new IOException("Canceled"));
+            return;
+        }
+        try {
+            // Building the request validates the arguments and attaches the invocation.
+            Invocation invocation = delegate.request().tag(Invocation.class);
+            synchronized (this) {
+                this.invocation = invocation;
+            }
+        } catch (Throwable t) {
+            failure(t);
+            return;
+        }
+        batcher.add(this);
+    }
+
+    synchronized Invocation invocation() {
+        //noinspection ConstantConditions Set before this call is added to a batch.
+        return invocation;
+    }
+
+    void success(@Nullable T body, okhttp3.Response rawResponse) {
+        complete(Response.success(body, rawResponse.newBuilder().request(request()).build()), null);
+    }
+
+    void error(ResponseBody body, okhttp3.Response rawResponse) {
+        complete(Response.<T>error(body, rawResponse.newBuilder().request(request()).build()), null);
+    }
+
+    void failure(Throwable t) {
+        complete(null, t);
+    }
+
+    private void complete(@Nullable Response<T> response, @Nullable Throwable failure) {
+        Callback<T> callback;
+        Executor executor;
+        synchronized (this) {
+            if (completed) return;
+            completed = true;
+            callback = this.callback;
+            executor = this.executor;
+        }
+        if (canceled) {
+            response = null;
+            failure = new IOException("Canceled");
+        }
+
+        final Response<T> finalResponse = response;
+        final Throwable finalFailure = failure;
+        Runnable deliver = () -> {
+            //noinspection ConstantConditions Set before this call is added to a batch.
+            if (finalResponse != null) {
+                callback.onResponse(this, finalResponse);
+            } else {
+                callback.onFailure(this, finalFailure);
+            }
+        };
+        if (executor != null) {
+            executor.execute(deliver);
+        } else {
+            deliver.run();
+        }
+    }
+
+    @Override
+    public synchronized boolean isExecuted() {
+        return executed;
+    }
+
+    @Override
+    public void cancel() {
+        canceled = true;
+        if (batcher.remove(this)) {
+            failure(new IOException("Canceled"));
+        }
+    }
+
+    @Override
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    @SuppressWarnings("CloneDoesntCallSuperClone") // Performing deep clone.
+    @Override
+    public Call<T> clone() {
+        return new BatchedCall<>(delegate.clone(), batcher, callbackExecutor);
+    }
+
+    @Override
+    public Request request() {
+        return delegate.request();
+    }
+}
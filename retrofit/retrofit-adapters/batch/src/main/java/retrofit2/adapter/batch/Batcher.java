@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit2.adapter.batch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+
+import javax.annotation.Nullable;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Invocation;
+import retrofit2.Response;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Collects the calls to one batch endpoint. A batch is sent when it reaches the maximum size or
+ * when its first call has waited for the maximum delay, whichever comes first.
+ */
+final class Batcher<B, T> {
+    private final BatchEndpoint<B, T> endpoint;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Calls waiting to be sent. Guarded by this.
+     */
+    private List<BatchedCall<T>> pending = new ArrayList<>();
+    /**
+     * Sends the pending calls when the maximum delay elapses. Guarded by this.
+     */
+    private @Nullable
+    ScheduledFuture<?> scheduledFlush;
+
+    Batcher(BatchEndpoint<B, T> endpoint, int maxBatchSize, long maxDelayNanos,
+            ScheduledExecutorService scheduler) {
+        this.endpoint = endpoint;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = maxDelayNanos;
+        this.scheduler = scheduler;
+    }
+
+    void add(BatchedCall<T> call) {
+        List<BatchedCall<T>> batch = null;
+        synchronized (this) {
+            pending.add(call);
+            if (pending.size() >= maxBatchSize) {
+                batch = takePending();
+            } else if (pending.size() == 1) {
+                scheduledFlush = scheduler.schedule(this::flush, maxDelayNanos, NANOSECONDS);
+            }
+        }
+        if (batch != null) {
+            send(batch);
+        }
+    }
+
+    /**
+     * Removes {@code call} if it hasn't been sent yet. Returns false if it isn't pending.
+     */
+    synchronized boolean remove(BatchedCall<T> call) {
+        if (!pending.remove(call)) return false;
+        if (pending.isEmpty() && scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return true;
+    }
+
+    /**
+     * Sends the pending calls now.
+     */
+    void flush() {
+        List<BatchedCall<T>> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) return;
+            batch = takePending();
+        }
+        send(batch);
+    }
+
+    private List<BatchedCall<T>> takePending() {
+        assert Thread.holdsLock(this);
+        List<BatchedCall<T>> batch = pending;
+        pending = new ArrayList<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void send(final List<BatchedCall<T>> batch) {
+        final List<Invocation> invocations = new ArrayList<>(batch.size());
+        for (BatchedCall<T> call : batch) {
+            invocations.add(call.invocation());
+        }
+
+        Call<B> call;
+        try {
+            call = endpoint.newCall(invocations);
+        } catch (Throwable t) {
+            failAll(batch, t);
+            return;
+        }
+        call.enqueue(new Callback<B>() {
+            @Override
+            public void onResponse(Call<B> call, Response<B> response) {
+                if (response.isSuccessful()) {
+                    deliverSuccess(batch, invocations, response);
+                } else {
+                    deliverError(batch, response);
+                }
+            }
+
+            @Override
+            public void onFailure(Call<B> call, Throwable t) {
+                failAll(batch, t);
+            }
+        });
+    }
+
+    private void deliverSuccess(List<BatchedCall<T>> batch, List<Invocation> invocations,
+                                Response<B> response) {
+        List<T> results;
+        try {
+            results = endpoint.demultiplex(invocations, response.body());
+            if (results.size() != batch.size()) {
+                throw new IllegalStateException("Batch endpoint returned " + results.size()
+                        + " results for " + batch.size() + " invocations");
+            }
+        } catch (Throwable t) {
+            failAll(batch, t);
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).success(results.get(i), response.raw());
+        }
+    }
+
+    private void deliverError(List<BatchedCall<T>> batch, Response<B> response) {
+        // Each call gets its own copy of the error body.
+        byte[] bytes;
+        MediaType contentType;
+        //noinspection ConstantConditions Non-null for unsuccessful responses.
+        try (ResponseBody errorBody = response.errorBody()) {
+            contentType = errorBody.contentType();
+            bytes = errorBody.bytes();
+        } catch (IOException e) {
+            failAll(batch, e);
+            return;
+        }
+        for (BatchedCall<T> call : batch) {
+            call.error(ResponseBody.create(contentType, bytes), response.raw());
+        }
+    }
+
+    private static <T> void failAll(List<BatchedCall<T>> batch, Throwable t) {
+        for (BatchedCall<T> call : batch) {
+            call.failure(t);
+        }
+    }
+}
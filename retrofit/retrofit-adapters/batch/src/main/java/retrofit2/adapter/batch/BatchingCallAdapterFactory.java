@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit2.adapter.batch;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.Callback;
+import retrofit2.HttpException;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+
+/**
+ * A {@linkplain CallAdapter.Factory call adapter} which sends calls to {@link Batched} methods in
+ * batches. Calls made within a short window are collected and sent as a single request by the
+ * method's {@link BatchEndpoint}, and the batch response is split back into a response for each
+ * call.
+ * <pre><code>
+ * Retrofit retrofit = new Retrofit.Builder()
+ *     .baseUrl("https://api.example.com")
+ *     .addCallAdapterFactory(new BatchingCallAdapterFactory.Builder()
+ *         .addEndpoint("users", usersEndpoint)
+ *         .build())
+ *     .build();
+ * </code></pre>
+ * Batched methods may return {@code Call<T>} or {@code CompletableFuture<T>}. Each call's
+ * response has the status and headers of the batch response. If the batch request fails, or the
+ * batch response is unsuccessful, every call in the batch fails the same way. Methods without
+ * {@link Batched} are left to the other call adapters.
+ */
+public final class BatchingCallAdapterFactory extends CallAdapter.Factory {
+    private final Map<String, Batcher<?, ?>> batchers;
+
+    BatchingCallAdapterFactory(Map<String, Batcher<?, ?>> batchers) {
+        this.batchers = batchers;
+    }
+
+    @Override
+    public @Nullable
+    CallAdapter<?, ?> get(Type returnType, Annotation[] annotations, Retrofit retrofit) {
+        Batched batched = null;
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof Batched) {
+                batched = (Batched) annotation;
+                break;
+            }
+        }
+        if (batched == null) return null;
+
+        Batcher<?, ?> batcher = batchers.get(batched.value());
+        if (batcher == null) {
+            throw new IllegalArgumentException("No batch endpoint named \"" + batched.value() + "\"");
+        }
+        Class<?> rawType = getRawType(returnType);
+        if (rawType != Call.class && rawType != CompletableFuture.class) {
+            throw new IllegalArgumentException(
+                    "@Batched methods must return Call<Foo> or CompletableFuture<Foo>");
+        }
+        if (!(returnType instanceof ParameterizedType)) {
+            String name = rawType.getSimpleName();
+            throw new IllegalStateException(name + " return type must be parameterized"
+                    + " as " + name + "<Foo> or " + name + "<? extends Foo>");
+        }
+        Type responseType = getParameterUpperBound(0, (ParameterizedType) returnType);
+
+        if (rawType == Call.class) {
+            return new BatchedCallAdapter<>(responseType, batcher, retrofit.callbackExecutor());
+        }
+        return new BatchedFutureCallAdapter<>(responseType, batcher);
+    }
+
+    private static final class BatchedCallAdapter<R> implements CallAdapter<R, Call<R>> {
+        private final Type responseType;
+        private final Batcher<?, R> batcher;
+        private final @Nullable
+        Executor callbackExecutor;
+
+        @SuppressWarnings("unchecked") // The endpoint is trusted to produce the method's type.
+        BatchedCallAdapter(Type responseType, Batcher<?, ?> batcher,
+                           @Nullable Executor callbackExecutor) {
+            this.responseType = responseType;
+            this.batcher = (Batcher<?, R>) batcher;
+            this.callbackExecutor = callbackExecutor;
+        }
+
+        @Override
+        public Type responseType() {
+            return responseType;
+        }
+
+        @Override
+        public Call<R> adapt(Call<R> call) {
+            return new BatchedCall<>(call, batcher, callbackExecutor);
+        }
+    }
+
+    private static final class BatchedFutureCallAdapter<R>
+            implements CallAdapter<R, CompletableFuture<R>> {
+        private final Type responseType;
+        private final Batcher<?, R> batcher;
+
+        @SuppressWarnings("unchecked") // The endpoint is trusted to produce the method's type.
+        BatchedFutureCallAdapter(Type responseType, Batcher<?, ?> batcher) {
+            this.responseType = responseType;
+            this.batcher = (Batcher<?, R>) batcher;
+        }
+
+        @Override
+        public Type responseType() {
+            return responseType;
+        }
+
+        @Override
+        public CompletableFuture<R> adapt(Call<R> delegate) {
+            final Call<R> call = new BatchedCall<>(delegate, batcher, null);
+            final CompletableFuture<R> future = new CompletableFuture<R>() {
+                @Override
+                public boolean cancel(boolean mayInterruptIfRunning) {
+                    if (mayInterruptIfRunning) {
+                        call.cancel();
+                    }
+                    return super.cancel(mayInterruptIfRunning);
+                }
+            };
+
+            call.enqueue(new Callback<R>() {
+                @Override
+                public void onResponse(Call<R> call, Response<R> response) {
+                    if (response.isSuccessful()) {
+                        future.complete(response.body());
+                    } else {
+                        future.completeExceptionally(new HttpException(response));
+                    }
+                }
+
+                @Override
+                public void onFailure(Call<R> call, Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            });
+
+            return future;
+        }
+    }
+
+    /**
+     * Build a new {@link BatchingCallAdapterFactory}.
+     */
+    public static final class Builder {
+        private final Map<String, BatchEndpoint<?, ?>> endpoints = new LinkedHashMap<>();
+        private int maxBatchSize = 50;
+        private long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(10);
+        private @Nullable
+        ScheduledExecutorService scheduler;
+
+        /**
+         * Send calls to methods annotated {@code @Batched(name)} through {@code endpoint}.
+         */
+        public Builder addEndpoint(String name, BatchEndpoint<?, ?> endpoint) {
+            Objects.requireNonNull(name, "name == null");
+            Objects.requireNonNull(endpoint, "endpoint == null");
+            if (endpoints.containsKey(name)) {
+                throw new IllegalArgumentException("Duplicate batch endpoint: " + name);
+            }
+            endpoints.put(name, endpoint);
+            return this;
+        }
+
+        /**
+         * Send a batch as soon as it has {@code maxBatchSize} calls. The default is 50.
+         */
+        public Builder maxBatchSize(int maxBatchSize) {
+            if (maxBatchSize < 1) {
+                throw new IllegalArgumentException("maxBatchSize < 1: " + maxBatchSize);
+            }
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * Send a batch once its first call has waited for {@code delay}, even if it isn't full. The
+         * default is 10 milliseconds.
+         */
+        public Builder maxDelay(long delay, TimeUnit unit) {
+            Objects.requireNonNull(unit, "unit == null");
+            if (delay < 0) throw new IllegalArgumentException("delay < 0: " + delay);
+            this.maxDelayNanos = unit.toNanos(delay);
+            return this;
+        }
+
+        /**
+         * The executor used to send batches when their delay elapses. If unset, a single daemon
+         * thread is created for this factory.
+         */
+        public Builder scheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = Objects.requireNonNull(scheduler, "scheduler == null");
+            return this;
+        }
+
+        public BatchingCallAdapterFactory build() {
+            ScheduledExecutorService scheduler = this.scheduler;
+            if (scheduler == null) {
+                scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "Retrofit Batcher");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+
+            Map<String, Batcher<?, ?>> batchers = new LinkedHashMap<>();
+            for (Map.Entry<String, BatchEndpoint<?, ?>> entry : endpoints.entrySet()) {
+                batchers.put(entry.getKey(),
+                        new Batcher<>(entry.getValue(), maxBatchSize, maxDelayNanos, scheduler));
+            }
+            return new BatchingCallAdapterFactory(Collections.unmodifiableMap(batchers));
+        }
+    }
+}
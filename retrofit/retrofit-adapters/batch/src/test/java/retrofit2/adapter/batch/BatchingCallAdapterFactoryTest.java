@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit2.adapter.batch;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.HttpException;
+import retrofit2.Invocation;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.http.Body;
+import retrofit2.http.GET;
+import retrofit2.http.POST;
+import retrofit2.http.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class BatchingCallAdapterFactoryTest {
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    interface Service {
+        @Batched("users")
+        @GET("users/{id}")
+        Call<String> user(@Path("id") String id);
+
+        @Batched("users")
+        @GET("users/{id}")
+        CompletableFuture<String> userFuture(@Path("id") String id);
+
+        @Batched("unknown")
+        @GET("users/{id}")
+        Call<String> unknown(@Path("id") String id);
+
+        /**
+         * Takes comma-separated ids and returns comma-separated names.
+         */
+        @POST("users")
+        Call<String> users(@Body String ids);
+    }
+
+    /**
+     * Requests each invocation's id and returns the names in the same order.
+     */
+    static final class UsersEndpoint implements BatchEndpoint<String, String> {
+        Service service;
+
+        @Override
+        public Call<String> newCall(List<Invocation> invocations) {
+            List<String> ids = new ArrayList<>();
+            for (Invocation invocation : invocations) {
+                ids.add((String) invocation.arguments().get(0));
+            }
+            return service.users(String.join(",", ids));
+        }
+
+        @Override
+        public List<String> demultiplex(List<Invocation> invocations, @Nullable String body) {
+            //noinspection ConstantConditions The test server always returns a body.
+            return Arrays.asList(body.split(","));
+        }
+    }
+
+    private final UsersEndpoint endpoint = new UsersEndpoint();
+
+    private Service service(BatchingCallAdapterFactory.Builder builder) {
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(new StringConverterFactory())
+                .addCallAdapterFactory(builder.addEndpoint("users", endpoint).build())
+                .build();
+        Service service = retrofit.create(Service.class);
+        endpoint.service = service;
+        return service;
+    }
+
+    @Test
+    public void callsWithinDelayAreSentTogether() throws Exception {
+        Service service = service(new BatchingCallAdapterFactory.Builder()
+                .maxDelay(100, TimeUnit.MILLISECONDS));
+        server.enqueue(new MockResponse().setBody("Alice,Bob,Carol"));
+
+        CompletableFuture<String> a = service.userFuture("1");
+        CompletableFuture<String> b = service.userFuture("2");
+        CompletableFuture<String> c = service.userFuture("3");
+        assertThat(a.get()).isEqualTo("Alice");
+        assertThat(b.get()).isEqualTo("Bob");
+        assertThat(c.get()).isEqualTo("Carol");
+
+        RecordedRequest request = server.takeRequest();
+        assertThat(request.getPath()).isEqualTo("/users");
+        assertThat(request.getBody().readUtf8()).isEqualTo("1,2,3");
+        assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void fullBatchIsSentWithoutDelay() throws Exception {
+        Service service = service(new BatchingCallAdapterFactory.Builder()
+                .maxBatchSize(2)
+                .maxDelay(1, TimeUnit.HOURS));
+        server.enqueue(new MockResponse().setBody("Alice,Bob"));
+
+        CompletableFuture<String> a = service.userFuture("1");
+        CompletableFuture<String> b = service.userFuture("2");
+        assertThat(a.get(5, TimeUnit.SECONDS)).isEqualTo("Alice");
+        assertThat(b.get(5, TimeUnit.SECONDS)).isEqualTo("Bob");
+        assertThat(server.takeRequest().getBody().readUtf8()).isEqualTo("1,2");
+    }
+
+    @Test
+    public void executeWaitsForBatch() throws IOException {
+        Service service = service(new BatchingCallAdapterFactory.Builder());
+        server.enqueue(new MockResponse().setBody("Alice").addHeader("X-Batch", "true"));
+
+        Call<String> call = service.user("1");
+        Response<String> response = call.execute();
+        assertThat(response.body()).isEqualTo("Alice");
+        assertThat(response.headers().get("X-Batch")).isEqualTo("true");
+        // Each response keeps its own call's request.
+        assertThat(response.raw().request().url().encodedPath()).isEqualTo("/users/1");
+        Invocation invocation = response.raw().request().tag(Invocation.class);
+        assertThat(invocation.arguments()).isEqualTo(Arrays.asList("1"));
+        assertThat(call.isExecuted()).isTrue();
+
+        try {
+            call.execute();
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e).hasMessage("Already executed.");
+        }
+    }
+
+    @Test
+    public void enqueueDeliversToEachCallback() throws Exception {
+        Service service = service(new BatchingCallAdapterFactory.Builder()
+                .maxDelay(100, TimeUnit.MILLISECONDS));
+        server.enqueue(new MockResponse().setBody("Alice,Bob"));
+
+        CompletableFuture<Response<String>> a = enqueue(service.user("1"));
+        CompletableFuture<Response<String>> b = enqueue(service.user("2"));
+        assertThat(a.get().body()).isEqualTo("Alice");
+        assertThat(b.get().body()).isEqualTo("Bob");
+        assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void errorResponseIsDeliveredToEachCall() throws Exception {
+        Service service = service(new BatchingCallAdapterFactory.Builder()
+                .maxDelay(100, TimeUnit.MILLISECONDS));
+        server.enqueue(new MockResponse().setResponseCode(503).setBody("Try later"));
+
+        CompletableFuture<Response<String>> a = enqueue(service.user("1"));
+        CompletableFuture<Response<String>> b = enqueue(service.user("2"));
+        for (CompletableFuture<Response<String>> future : Arrays.asList(a, b)) {
+            Response<String> response = future.get();
+            assertThat(response.code()).isEqualTo(503);
+            assertThat(response.errorBody().string()).isEqualTo("Try later");
+        }
+    }
+
+    @Test
+    public void errorResponseFailsFutures() throws Exception {
+        Service service = service(new BatchingCallAdapterFactory.Builder());
+        server.enqueue(new MockResponse().setResponseCode(404));
+
+        try {
+            service.userFuture("1").get();
+            fail();
+        } catch (ExecutionException e) {
+            assertThat(e.getCause())
+                    .isInstanceOf(HttpException.class)
+                    .hasMessage("HTTP 404 Client Error");
+        }
+    }
+
+    @Test
+    public void mismatchedResultCountFailsEachCall() throws Exception {
+        Service service = service(new BatchingCallAdapterFactory.Builder()
+                .maxDelay(100, TimeUnit.MILLISECONDS));
+        server.enqueue(new MockResponse().setBody("Alice"));
+
+        CompletableFuture<String> a = service.userFuture("1");
+        CompletableFuture<String> b = service.userFuture("2");
+        for (CompletableFuture<String> future : Arrays.asList(a, b)) {
+            try {
+                future.get();
+                fail();
+            } catch (ExecutionException e) {
+                assertThat(e.getCause())
+                        .isInstanceOf(IllegalStateException.class)
+                        .hasMessage("Batch endpoint returned 1 results for 2 invocations");
+            }
+        }
+    }
+
+    @Test
+    public void canceledCallIsRemovedFromBatch() throws Exception {
+        Service service = service(new BatchingCallAdapterFactory.Builder()
+                .maxDelay(100, TimeUnit.MILLISECONDS));
+        server.enqueue(new MockResponse().setBody("Bob"));
+
+        Call<String> call = service.user("1");
+        CompletableFuture<Response<String>> a = enqueue(call);
+        CompletableFuture<Response<String>> b = enqueue(service.user("2"));
+        call.cancel();
+        assertThat(call.isCanceled()).isTrue();
+
+        try {
+            a.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(IOException.class).hasMessage("Canceled");
+        }
+        assertThat(b.get().body()).isEqualTo("Bob");
+        assertThat(server.takeRequest().getBody().readUtf8()).isEqualTo("2");
+    }
+
+    @Test
+    public void invalidArgumentsFailWithoutJoiningBatch() throws Exception {
+        Service service = service(new BatchingCallAdapterFactory.Builder());
+
+        try {
+            service.userFuture("..").get();
+            fail();
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(IllegalArgumentException.class);
+        }
+        assertThat(server.getRequestCount()).isZero();
+    }
+
+    @Test
+    public void unknownEndpointThrows() {
+        Service service = service(new BatchingCallAdapterFactory.Builder());
+        try {
+            service.unknown("1");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getCause()).hasMessage("No batch endpoint named \"unknown\"");
+        }
+    }
+
+    private static <T> CompletableFuture<Response<T>> enqueue(Call<T> call) {
+        CompletableFuture<Response<T>> future = new CompletableFuture<>();
+        call.enqueue(new Callback<T>() {
+            @Override
+            public void onResponse(Call<T> call, Response<T> response) {
+                future.complete(response);
+            }
+
+            @Override
+            public void onFailure(Call<T> call, Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit2.adapter.cache;
+
+import java.lang.reflect.Method;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import javax.annotation.Nullable;
+
+import okhttp3.CacheControl;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import retrofit2.Invocation;
+import retrofit2.Response;
+
+/**
+ * A least-recently-used map from invocations to their converted responses. Entries expire after
+ * the smaller of the cache's TTL and the time the response has left before it is stale.
+ */
+final class MemoryCache {
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongSupplier nanoTime;
+
+    /**
+     * Guarded by this. Iterates from least to most recently used.
+     */
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private int requestCount;
+    private int hitCount;
+
+    MemoryCache(int maxEntries, long ttlNanos, LongSupplier nanoTime) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlNanos;
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Returns the key for {@code request}, or null if its response must not be cached. The URL is
+     * part of the key so that services with different base URLs can share a cache. Headers are not,
+     * so calls that differ only by headers added outside the method's arguments share an entry.
+     */
+    static @Nullable
+    Key key(Request request) {
+        if (!request.method().equals("GET")) return null;
+        Invocation invocation = request.tag(Invocation.class);
+        if (invocation == null) return null;
+        return new Key(request.url(), invocation.method(), invocation.arguments());
+    }
+
+    /**
+     * Returns the cached response for {@code key}, or null if there is no fresh response. A request
+     * with {@code Cache-Control: no-cache} or {@code no-store} never uses the cache.
+     */
+    synchronized @Nullable
+    Response<?> get(Key key, Request request) {
+        requestCount++;
+        CacheControl cacheControl = request.cacheControl();
+        if (cacheControl.noCache() || cacheControl.noStore()) return null;
+
+        Entry entry = entries.get(key);
+        if (entry == null) return null;
+        if (nanoTime.getAsLong() - entry.expiresAtNanos >= 0) {
+            entries.remove(key);
+            return null;
+        }
+        hitCount++;
+        return entry.response;
+    }
+
+    /**
+     * Stores {@code response} for {@code key}, or removes the existing entry if the request or the
+     * response forbids caching it.
+     */
+    synchronized void put(Key key, Request request, Response<?> response) {
+        long lifetimeNanos = lifetimeNanos(request, response);
+        if (lifetimeNanos <= 0) {
+            entries.remove(key);
+            return;
+        }
+        entries.put(key, new Entry(response, nanoTime.getAsLong() + lifetimeNanos));
+
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxEntries) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private long lifetimeNanos(Request request, Response<?> response) {
+        if (!response.isSuccessful() || request.cacheControl().noStore()) return 0;
+
+        okhttp3.Response raw = response.raw();
+        CacheControl cacheControl = raw.cacheControl();
+        if (cacheControl.noStore() || cacheControl.noCache()) return 0;
+        long freshnessMillis = freshnessMillis(raw, cacheControl);
+        if (freshnessMillis == -1L) return ttlNanos;
+        long remainingMillis = freshnessMillis - ageMillis(raw, System.currentTimeMillis());
+        return Math.min(ttlNanos, TimeUnit.MILLISECONDS.toNanos(remainingMillis));
+    }
+
+    /**
+     * Returns how long {@code response} is fresh for from when it was served, or -1 if it has
+     * neither a {@code max-age} nor an {@code Expires} header.
+     */
+    private static long freshnessMillis(okhttp3.Response response, CacheControl cacheControl) {
+        if (cacheControl.maxAgeSeconds() != -1) {
+            return TimeUnit.SECONDS.toMillis(cacheControl.maxAgeSeconds());
+        }
+        Headers headers = response.headers();
+        Date expires = headers.getDate("Expires");
+        if (expires == null) return -1L;
+        Date served = headers.getDate("Date");
+        long servedMillis = served != null ? served.getTime() : response.receivedResponseAtMillis();
+        return Math.max(0L, expires.getTime() - servedMillis);
+    }
+
+    /**
+     * Returns the age of {@code response} at {@code nowMillis}, following RFC 7234, 4.2.3. A response
+     * from OkHttp's disk cache keeps the times it was first received at, so its age includes the
+     * time it spent on disk.
+     */
+    private static long ageMillis(okhttp3.Response response, long nowMillis) {
+        Headers headers = response.headers();
+        long receivedMillis = response.receivedResponseAtMillis();
+        Date served = headers.getDate("Date");
+        long apparentAgeMillis = served != null
+                ? Math.max(0L, receivedMillis - served.getTime())
+                : 0L;
+        String ageHeader = headers.get("Age");
+        long ageHeaderMillis = 0L;
+        if (ageHeader != null) {
+            try {
+                ageHeaderMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(ageHeader.trim()));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        long responseDurationMillis = receivedMillis - response.sentRequestAtMillis();
+        long residentDurationMillis = nowMillis - receivedMillis;
+        return Math.max(apparentAgeMillis, ageHeaderMillis)
+                + Math.max(0L, responseDurationMillis)
+                + Math.max(0L, residentDurationMillis);
+    }
+
+    synchronized void evictAll() {
+        entries.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized int requestCount() {
+        return requestCount;
+    }
+
+    synchronized int hitCount() {
+        return hitCount;
+    }
+
+    static final class Key {
+        private final HttpUrl url;
+        private final Method method;
+        private final List<?> arguments;
+
+        Key(HttpUrl url, Method method, List<?> arguments) {
+            this.url = url;
+            this.method = method;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object other) {
+            return other instanceof Key
+                    && ((Key) other).url.equals(url)
+                    && ((Key) other).method.equals(method)
+                    && ((Key) other).arguments.equals(arguments);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = url.hashCode();
+            result = 31 * result + method.hashCode();
+            result = 31 * result + arguments.hashCode();
+            return result;
+        }
+    }
+
+    private static final class Entry {
+        final Response<?> response;
+        final long expiresAtNanos;
+
+        Entry(Response<?> response, long expiresAtNanos) {
+            this.response = response;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit2.adapter.cache;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import javax.annotation.Nullable;
+
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.Invocation;
+import retrofit2.Retrofit;
+import retrofit2.http.Streaming;
+
+/**
+ * A {@linkplain CallAdapter.Factory call adapter} which caches converted response bodies in
+ * memory. A cache hit returns the same body object that the converter produced for an earlier
+ * call, so the response is neither fetched nor deserialized again.
+ * <pre><code>
+ * Retrofit retrofit = new Retrofit.Builder()
+ *     .baseUrl("https://api.example.com")
+ *     .client(new OkHttpClient.Builder().cache(diskCache).build())
+ *     .addCallAdapterFactory(MemoryCacheCallAdapterFactory.create(100, 30, TimeUnit.SECONDS))
+ *     .build();
+ * </code></pre>
+ * Only successful responses to {@code GET} requests are cached. They are keyed by the request URL
+ * and the {@linkplain Invocation invocation's} method and arguments, so arguments must implement
+ * {@code equals()} and {@code hashCode()}, and should be immutable. Request headers are not part of
+ * the key: calls that differ only by headers that don't come from the method's arguments, such as
+ * those added by an OkHttp interceptor, share an entry. An entry expires after the cache's time to
+ * live or when the response becomes stale, whichever is sooner. Staleness follows the response's
+ * {@code max-age} or {@code Expires} less the age it already had, such as time spent in the disk
+ * cache.
+ * <p>
+ * Methods that return a raw {@link ResponseBody} or are annotated {@link Streaming @Streaming} are
+ * not cached, because their bodies can only be read once.
+ * <p>
+ * {@code Cache-Control} is honored in both directions. Responses with {@code no-store} or {@code
+ * no-cache} are not cached and evict any earlier entry. Requests with {@code no-cache} skip the
+ * memory cache and replace its entry with the new response. Requests with {@code no-store} skip
+ * it and evict the entry.
+ * <p>
+ * On a miss the call is executed normally, so the {@link okhttp3.Cache} of the underlying {@link
+ * okhttp3.OkHttpClient}, if it has one, is consulted next.
+ * <p>
+ * This adapter wraps the {@link Call} given to the next call adapter that handles the method's
+ * return type, so it works with {@code Call}, {@code CompletableFuture}, RxJava and other return
+ * types. Add it before those call adapters.
+ */
+public final class MemoryCacheCallAdapterFactory extends CallAdapter.Factory {
+    /**
+     * Create an instance that caches up to {@code maxEntries} responses, each for at most {@code
+     * timeToLive}.
+     */
+    public static MemoryCacheCallAdapterFactory create(int maxEntries, long timeToLive,
+                                                       TimeUnit unit) {
+        return create(maxEntries, timeToLive, unit, System::nanoTime);
+    }
+
+    static MemoryCacheCallAdapterFactory create(int maxEntries, long timeToLive, TimeUnit unit,
+                                                LongSupplier nanoTime) {
+        if (maxEntries < 1) throw new IllegalArgumentException("maxEntries < 1: " + maxEntries);
+        if (timeToLive <= 0) throw new IllegalArgumentException("timeToLive <= 0: " + timeToLive);
+        Objects.requireNonNull(unit, "unit == null");
+        return new MemoryCacheCallAdapterFactory(
+                new MemoryCache(maxEntries, unit.toNanos(timeToLive), nanoTime));
+    }
+
+    private final MemoryCache cache;
+
+    private MemoryCacheCallAdapterFactory(MemoryCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public @Nullable
+    CallAdapter<?, ?> get(Type returnType, Annotation[] annotations, Retrofit retrofit) {
+        @SuppressWarnings("unchecked") // The delegate adapts calls of its own response type.
+        CallAdapter<Object, Object> delegate =
+                (CallAdapter<Object, Object>) retrofit.nextCallAdapter(this, returnType, annotations);
+        if (delegate.responseType() == ResponseBody.class || isStreaming(annotations)) {
+            return null; // One-shot bodies can't be handed to a second caller.
+        }
+        return new CallAdapter<Object, Object>() {
+            @Override
+            public Type responseType() {
+                return delegate.responseType();
+            }
+
+            @Override
+            public Object adapt(Call<Object> call) {
+                return delegate.adapt(new MemoryCachedCall<>(call, cache));
+            }
+        };
+    }
+
+    private static boolean isStreaming(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof Streaming) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes all responses from the cache.
+     */
+    public void evictAll() {
+        cache.evictAll();
+    }
+
+    /**
+     * Returns the number of responses in the cache, including any that have expired but haven't
+     * been evicted yet.
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * Returns the number of cacheable calls that have been executed.
+     */
+    public int requestCount() {
+        return cache.requestCount();
+    }
+
+    /**
+     * Returns the number of calls that were answered from the cache.
+     */
+    public int hitCount() {
+        return cache.hitCount();
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit2.adapter.cache;
+
+import java.io.IOException;
+import java.util.Objects;
+
+import javax.annotation.Nullable;
+
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * A call that returns a cached response instead of executing its delegate when it can, and caches
+ * the delegate's response when it can't.
+ */
+final class MemoryCachedCall<T> implements Call<T> {
+    private final Call<T> delegate;
+    private final MemoryCache cache;
+
+    private volatile boolean canceled;
+
+    // Guarded by this.
+    private boolean executed;
+
+    MemoryCachedCall(Call<T> delegate, MemoryCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public Response<T> execute() throws IOException {
+        markExecuted();
+        if (canceled) throw new IOException("Canceled");
+
+        Request request = delegate.request();
+        MemoryCache.Key key = MemoryCache.key(request);
+        if (key == null) return delegate.execute();
+
+        Response<T> cached = cached(key, request);
+        if (cached != null) return cached;
+
+        Response<T> response = delegate.execute();
+        cache.put(key, request, response);
+        return response;
+    }
+
+    @Override
+    public void enqueue(final Callback<T> callback) {
+        Objects.requireNonNull(callback, "callback == null");
+        markExecuted();
+        if (canceled) {
+            callback.onFailure(this, new IOException("Canceled"));
+            return;
+        }
+
+        final Request request;
+        try {
+            request = delegate.request();
+        } catch (Throwable t) {
+            callback.onFailure(this, t);
+            return;
+        }
+        final MemoryCache.Key key = MemoryCache.key(request);
+        if (key != null) {
+            Response<T> cached = cached(key, request);
+            if (cached != null) {
+                callback.onResponse(this, cached);
+                return;
+            }
+        }
+
+        delegate.enqueue(new Callback<T>() {
+            @Override
+            public void onResponse(Call<T> call, Response<T> response) {
+                if (key != null) {
+                    cache.put(key, request, response);
+                }
+                callback.onResponse(MemoryCachedCall.this, response);
+            }
+
+            @Override
+            public void onFailure(Call<T> call, Throwable t) {
+                callback.onFailure(MemoryCachedCall.this, t);
+            }
+        });
+    }
+
+    private @Nullable
+    Response<T> cached(MemoryCache.Key key, Request request) {
+        @SuppressWarnings("unchecked") // Keys include the method, which determines the type.
+        Response<T> cached = (Response<T>) cache.get(key, request);
+        if (cached == null) return null;
+        // Return a new response so callers don't share one instance, but keep the converted body.
+        return Response.success(cached.body(), cached.raw());
+    }
+
+    private synchronized void markExecuted() {
+        if (executed) throw new IllegalStateException("Already executed.");
+        executed = true;
+    }
+
+    @Override
+    public synchronized boolean isExecuted() {
+        return executed;
+    }
+
+    @Override
+    public void cancel() {
+        canceled = true;
+        delegate.cancel();
+    }
+
+    @Override
+    public boolean isCanceled() {
+        return canceled || delegate.isCanceled();
+    }
+
+    @SuppressWarnings("CloneDoesntCallSuperClone") // Performing deep clone.
+    @Override
+    public Call<T> clone() {
+        return new MemoryCachedCall<>(delegate.clone(), cache);
+    }
+
+    @Override
+    public Request request() {
+        return delegate.request();
+    }
+}
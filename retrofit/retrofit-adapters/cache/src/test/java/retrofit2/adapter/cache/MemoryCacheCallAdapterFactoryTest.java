@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit2.adapter.cache;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.http.Body;
+import retrofit2.http.GET;
+import retrofit2.http.Headers;
+import retrofit2.http.POST;
+import retrofit2.http.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class MemoryCacheCallAdapterFactoryTest {
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    interface Service {
+        @GET("users/{id}")
+        Call<String> user(@Path("id") String id);
+
+        @GET("users/{id}")
+        @Headers("Cache-Control: no-cache")
+        Call<String> userNoCache(@Path("id") String id);
+
+        @GET("users/{id}")
+        @Headers("Cache-Control: no-store")
+        Call<String> userNoStore(@Path("id") String id);
+
+        @GET("users/{id}")
+        Call<ResponseBody> userBody(@Path("id") String id);
+
+        @GET("users/{id}")
+        CompletableFuture<String> userFuture(@Path("id") String id);
+
+        @POST("users")
+        Call<String> create(@Body String name);
+    }
+
+    private final AtomicLong nanoTime = new AtomicLong();
+    private final MemoryCacheCallAdapterFactory factory =
+            MemoryCacheCallAdapterFactory.create(2, 10, TimeUnit.SECONDS, nanoTime::get);
+    private final Service service = new Retrofit.Builder()
+            .baseUrl(server.url("/"))
+            .addConverterFactory(new StringConverterFactory())
+            .addCallAdapterFactory(factory)
+            .build()
+            .create(Service.class);
+
+    @Test
+    public void hitReturnsConvertedBodyWithoutRequest() throws IOException {
+        server.enqueue(new MockResponse().setBody("Alice"));
+
+        Response<String> first = service.user("1").execute();
+        Response<String> second = service.user("1").execute();
+        assertThat(second.body()).isSameAs(first.body());
+        assertThat(second.headers()).isEqualTo(first.headers());
+        assertThat(server.getRequestCount()).isEqualTo(1);
+        assertThat(factory.requestCount()).isEqualTo(2);
+        assertThat(factory.hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void differentArgumentsMiss() throws IOException {
+        server.enqueue(new MockResponse().setBody("Alice"));
+        server.enqueue(new MockResponse().setBody("Bob"));
+
+        assertThat(service.user("1").execute().body()).isEqualTo("Alice");
+        assertThat(service.user("2").execute().body()).isEqualTo("Bob");
+        assertThat(server.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void differentBaseUrlsMiss() throws Exception {
+        server.enqueue(new MockResponse().setBody("Alice"));
+        server.enqueue(new MockResponse().setBody("Bob"));
+        Service other = new Retrofit.Builder()
+                .baseUrl(server.url("/v2/"))
+                .addConverterFactory(new StringConverterFactory())
+                .addCallAdapterFactory(factory)
+                .build()
+                .create(Service.class);
+
+        assertThat(service.user("1").execute().body()).isEqualTo("Alice");
+        assertThat(other.user("1").execute().body()).isEqualTo("Bob");
+        assertThat(service.user("1").execute().body()).isEqualTo("Alice");
+        assertThat(server.getRequestCount()).isEqualTo(2);
+        assertThat(server.takeRequest().getPath()).isEqualTo("/users/1");
+        assertThat(server.takeRequest().getPath()).isEqualTo("/v2/users/1");
+    }
+
+    @Test
+    public void enqueueHit() throws Exception {
+        server.enqueue(new MockResponse().setBody("Alice"));
+
+        assertThat(enqueue(service.user("1")).get().body()).isEqualTo("Alice");
+        assertThat(enqueue(service.user("1")).get().body()).isEqualTo("Alice");
+        assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void wrapsOtherCallAdapters() throws Exception {
+        server.enqueue(new MockResponse().setBody("Alice"));
+
+        assertThat(service.userFuture("1").get()).isEqualTo("Alice");
+        assertThat(service.userFuture("1").get()).isEqualTo("Alice");
+        assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void entriesExpireAfterTimeToLive() throws IOException {
+        server.enqueue(new MockResponse().setBody("Alice"));
+        server.enqueue(new MockResponse().setBody("Alicia"));
+
+        assertThat(service.user("1").execute().body()).isEqualTo("Alice");
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(9));
+        assertThat(service.user("1").execute().body()).isEqualTo("Alice");
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertThat(service.user("1").execute().body()).isEqualTo("Alicia");
+        assertThat(server.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void shorterMaxAgeWins() throws IOException {
+        server.enqueue(new MockResponse().setBody("Alice").addHeader("Cache-Control", "max-age=2"));
+        server.enqueue(new MockResponse().setBody("Alicia"));
+
+        assertThat(service.user("1").execute().body()).isEqualTo("Alice");
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        assertThat(service.user("1").execute().body()).isEqualTo("Alicia");
+    }
+
+    @Test
+    public void ageIsDeductedFromMaxAge() throws IOException {
+        server.enqueue(new MockResponse()
+                .setBody("Alice")
+                .addHeader("Cache-Control", "max-age=5")
+                .addHeader("Age", "3"));
+        server.enqueue(new MockResponse().setBody("Alicia"));
+
+        assertThat(service.user("1").execute().body()).isEqualTo("Alice");
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        assertThat(service.user("1").execute().body()).isEqualTo("Alicia");
+    }
+
+    @Test
+    public void responseOlderThanMaxAgeIsNotCached() throws IOException {
+        server.enqueue(new MockResponse()
+                .setBody("Alice")
+                .addHeader("Cache-Control", "max-age=5")
+                .addHeader("Age", "5"));
+        server.enqueue(new MockResponse().setBody("Alicia"));
+
+        assertThat(service.user("1").execute().body()).isEqualTo("Alice");
+        assertThat(factory.size()).isZero();
+        assertThat(service.user("1").execute().body()).isEqualTo("Alicia");
+    }
+
+    @Test
+    public void expiresIsHonoredWithoutMaxAge() throws IOException {
+        long nowMillis = System.currentTimeMillis();
+        server.enqueue(new MockResponse()
+                .setBody("Alice")
+                .addHeader("Date", httpDate(nowMillis))
+                .addHeader("Expires", httpDate(nowMillis + TimeUnit.SECONDS.toMillis(3))));
+        server.enqueue(new MockResponse().setBody("Alicia"));
+
+        assertThat(service.user("1").execute().body()).isEqualTo("Alice");
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(3));
+        assertThat(service.user("1").execute().body()).isEqualTo("Alicia");
+    }
+
+    @Test
+    public void rawBodiesAreNotCached() throws IOException {
+        server.enqueue(new MockResponse().setBody("Alice"));
+        server.enqueue(new MockResponse().setBody("Alice"));
+
+        assertThat(service.userBody("1").execute().body().string()).isEqualTo("Alice");
+        assertThat(service.userBody("1").execute().body().string()).isEqualTo("Alice");
+        assertThat(server.getRequestCount()).isEqualTo(2);
+        assertThat(factory.requestCount()).isZero();
+    }
+
+    @Test
+    public void noStoreResponseIsNotCached() throws IOException {
+        server.enqueue(new MockResponse().setBody("Alice").addHeader("Cache-Control", "no-store"));
+        server.enqueue(new MockResponse().setBody("Alicia"));
+
+        assertThat(service.user("1").execute().body()).isEqualTo("Alice");
+        assertThat(factory.size()).isZero();
+        assertThat(service.user("1").execute().body()).isEqualTo("Alicia");
+    }
+
+    @Test
+    public void noCacheResponseIsNotCached() throws IOException {
+        server.enqueue(new MockResponse().setBody("Alice").addHeader("Cache-Control", "no-cache"));
+        server.enqueue(new MockResponse().setBody("Alicia"));
+
+        assertThat(service.user("1").execute().body()).isEqualTo("Alice");
+        assertThat(factory.size()).isZero();
+        assertThat(service.user("1").execute().body()).isEqualTo("Alicia");
+    }
+
+    @Test
+    public void noCacheRequestSkipsCacheAndStoresResponse() throws IOException {
+        server.enqueue(new MockResponse().setBody("Alice"));
+        server.enqueue(new MockResponse().setBody("Alicia"));
+
+        assertThat(service.userNoCache("1").execute().body()).isEqualTo("Alice");
+        assertThat(service.userNoCache("1").execute().body()).isEqualTo("Alicia");
+        assertThat(factory.size()).isEqualTo(1);
+        assertThat(factory.hitCount()).isZero();
+    }
+
+    @Test
+    public void noStoreRequestSkipsCache() throws IOException {
+        server.enqueue(new MockResponse().setBody("Alice"));
+        server.enqueue(new MockResponse().setBody("Alicia"));
+
+        assertThat(service.userNoStore("1").execute().body()).isEqualTo("Alice");
+        assertThat(service.userNoStore("1").execute().body()).isEqualTo("Alicia");
+        assertThat(factory.size()).isZero();
+    }
+
+    @Test
+    public void evictAll() throws IOException {
+        server.enqueue(new MockResponse().setBody("Alice"));
+        server.enqueue(new MockResponse().setBody("Alicia"));
+
+        assertThat(service.user("1").execute().body()).isEqualTo("Alice");
+        factory.evictAll();
+        assertThat(factory.size()).isZero();
+        assertThat(service.user("1").execute().body()).isEqualTo("Alicia");
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvicted() throws IOException {
+        server.enqueue(new MockResponse().setBody("Alice"));
+        server.enqueue(new MockResponse().setBody("Bob"));
+        server.enqueue(new MockResponse().setBody("Carol"));
+        server.enqueue(new MockResponse().setBody("Bobby"));
+
+        service.user("1").execute();
+        service.user("2").execute();
+        service.user("1").execute(); // Hit. Now "2" is least recently used.
+        service.user("3").execute();
+        assertThat(factory.size()).isEqualTo(2);
+        assertThat(service.user("1").execute().body()).isEqualTo("Alice");
+        assertThat(service.user("2").execute().body()).isEqualTo("Bobby");
+        assertThat(server.getRequestCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void errorResponsesAreNotCached() throws IOException {
+        server.enqueue(new MockResponse().setResponseCode(500));
+        server.enqueue(new MockResponse().setBody("Alice"));
+
+        assertThat(service.user("1").execute().code()).isEqualTo(500);
+        assertThat(service.user("1").execute().body()).isEqualTo("Alice");
+        assertThat(server.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void postIsNotCached() throws IOException {
+        server.enqueue(new MockResponse().setBody("1"));
+        server.enqueue(new MockResponse().setBody("2"));
+
+        assertThat(service.create("Alice").execute().body()).isEqualTo("1");
+        assertThat(service.create("Alice").execute().body()).isEqualTo("2");
+        assertThat(factory.requestCount()).isZero();
+    }
+
+    @Test
+    public void hitsCanOnlyBeExecutedOnce() throws IOException {
+        server.enqueue(new MockResponse().setBody("Alice"));
+        service.user("1").execute();
+
+        Call<String> call = service.user("1");
+        call.execute();
+        assertThat(call.isExecuted()).isTrue();
+        try {
+            call.execute();
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e).hasMessage("Already executed.");
+        }
+    }
+
+    private static String httpDate(long millis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                Instant.ofEpochMilli(millis).atZone(ZoneOffset.UTC));
+    }
+
+    private static <T> CompletableFuture<Response<T>> enqueue(Call<T> call) {
+        CompletableFuture<Response<T>> future = new CompletableFuture<>();
+        call.enqueue(new Callback<T>() {
+            @Override
+            public void onResponse(Call<T> call, Response<T> response) {
+                future.complete(response);
+            }
+
+            @Override
+            public void onFailure(Call<T> call, Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+}
@@ -0,0 +1,818 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit2.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+import okhttp3.MediaType;
+import retrofit2.http.Body;
+import retrofit2.http.DELETE;
+import retrofit2.http.Field;
+import retrofit2.http.FieldMap;
+import retrofit2.http.FormUrlEncoded;
+import retrofit2.http.GET;
+import retrofit2.http.HEAD;
+import retrofit2.http.HTTP;
+import retrofit2.http.Header;
+import retrofit2.http.HeaderMap;
+import retrofit2.http.Headers;
+import retrofit2.http.Multipart;
+import retrofit2.http.OPTIONS;
+import retrofit2.http.PATCH;
+import retrofit2.http.POST;
+import retrofit2.http.PUT;
+import retrofit2.http.Part;
+import retrofit2.http.PartMap;
+import retrofit2.http.Path;
+import retrofit2.http.Query;
+import retrofit2.http.QueryMap;
+import retrofit2.http.QueryName;
+import retrofit2.http.Tag;
+import retrofit2.http.Url;
+
+/**
+ * Generates an implementation of each service interface that has methods annotated with an HTTP
+ * method, like {@link GET @GET} or {@link POST @POST}. {@code Retrofit.create} uses the generated
+ * class when it is present, instead of a {@link java.lang.reflect.Proxy}.
+ *
+ * <p>Service methods are validated at compile time with the same rules {@code Retrofit} applies at
+ * runtime. The generated class describes each method's request with a {@code ServiceMethodSpec}
+ * so that its annotations don't need to be parsed at runtime, and calls it directly.
+ *
+ * <p>Interfaces that are private, or nested in private classes, can't be implemented by generated
+ * code. {@code Retrofit.create} creates proxies for those.
+ */
+public final class RetrofitProcessor extends AbstractProcessor {
+    // Upper and lower characters, digits, underscores, and hyphens, starting with a character.
+    private static final String PARAM = "[a-zA-Z][a-zA-Z0-9_-]*";
+    private static final Pattern PARAM_URL_REGEX = Pattern.compile("\\{(" + PARAM + ")\\}");
+    private static final Pattern PARAM_NAME_REGEX = Pattern.compile(PARAM);
+
+    private static final List<Class<? extends Annotation>> HTTP_METHODS = Arrays.asList(
+            DELETE.class, GET.class, HEAD.class, PATCH.class, POST.class, PUT.class, OPTIONS.class,
+            HTTP.class);
+    private static final List<Class<? extends Annotation>> PARAMETER_ANNOTATIONS = Arrays.asList(
+            Url.class, Path.class, Query.class, QueryName.class, QueryMap.class, Header.class,
+            HeaderMap.class, Field.class, FieldMap.class, Part.class, PartMap.class, Body.class,
+            Tag.class);
+    private static final Set<String> URL_TYPES = new HashSet<>(Arrays.asList(
+            "okhttp3.HttpUrl", "java.lang.String", "java.net.URI", "android.net.Uri"));
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        Set<String> result = new LinkedHashSet<>();
+        for (Class<? extends Annotation> annotation : HTTP_METHODS) {
+            result.add(annotation.getCanonicalName());
+        }
+        return result;
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Set<TypeElement> services = new LinkedHashSet<>();
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                Element enclosing = element.getEnclosingElement();
+                if (element.getKind() == ElementKind.METHOD && enclosing instanceof TypeElement) {
+                    services.add((TypeElement) enclosing);
+                }
+            }
+        }
+        for (TypeElement service : services) {
+            try {
+                processService(service);
+            } catch (IOException e) {
+                error(service, "Unable to write implementation of %s: %s", service, e.getMessage());
+            }
+        }
+        return false;
+    }
+
+    private void processService(TypeElement service) throws IOException {
+        if (service.getKind() != ElementKind.INTERFACE) {
+            error(service, "API declarations must be interfaces.");
+            return;
+        }
+        for (TypeElement candidate = service; candidate != null;
+                candidate = superinterfaceWithTypeParameters(candidate)) {
+            if (!candidate.getTypeParameters().isEmpty()) {
+                error(service, "Type parameters are unsupported on %s",
+                        candidate.getQualifiedName());
+                return;
+            }
+        }
+        for (Element e = service; e instanceof TypeElement; e = e.getEnclosingElement()) {
+            if (e.getModifiers().contains(Modifier.PRIVATE)) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                        "No implementation generated for private interface "
+                                + service.getQualifiedName(), service);
+                return;
+            }
+        }
+
+        List<ServiceMethod> methods = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        boolean valid = true;
+        for (ExecutableElement method : ElementFilter.methodsIn(
+                processingEnv.getElementUtils().getAllMembers(service))) {
+            if (method.getEnclosingElement().getKind() != ElementKind.INTERFACE
+                    || !method.getModifiers().contains(Modifier.ABSTRACT)) {
+                continue; // Default, static and Object methods.
+            }
+            // Fields and spec constants share a namespace, so both names are reserved in one set.
+            String fieldName = uniqueName(names, method.getSimpleName().toString());
+            String specName = uniqueName(names, constantName(fieldName));
+            ServiceMethod serviceMethod = new ServiceMethod(method, fieldName, specName);
+            valid &= serviceMethod.parse();
+            methods.add(serviceMethod);
+        }
+        if (valid) {
+            write(service, methods);
+        }
+    }
+
+    /**
+     * Returns a superinterface of {@code type} that has type parameters, or null if none do.
+     */
+    private TypeElement superinterfaceWithTypeParameters(TypeElement type) {
+        for (TypeMirror superinterface : type.getInterfaces()) {
+            TypeElement element =
+                    (TypeElement) processingEnv.getTypeUtils().asElement(superinterface);
+            if (!element.getTypeParameters().isEmpty()) return element;
+            TypeElement result = superinterfaceWithTypeParameters(element);
+            if (result != null) return result;
+        }
+        return null;
+    }
+
+    private static String uniqueName(Set<String> names, String base) {
+        String result = base;
+        for (int i = 2; !names.add(result); i++) {
+            result = base + i;
+        }
+        return result;
+    }
+
+    /**
+     * Returns {@code name} in upper snake case, like {@code FOO_BAR} for {@code fooBar}.
+     */
+    private static String constantName(String name) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c) && i > 0 && !Character.isUpperCase(name.charAt(i - 1))
+                    && name.charAt(i - 1) != '_') {
+                result.append('_');
+            }
+            result.append(Character.toUpperCase(c));
+        }
+        return result.toString();
+    }
+
+    private void write(TypeElement service, List<ServiceMethod> methods) throws IOException {
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(service);
+        String packageName = packageElement.isUnnamed()
+                ? ""
+                : packageElement.getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(service).toString();
+        String simpleName = "Retrofit_" + binaryName
+                .substring(packageName.isEmpty() ? 0 : packageName.length() + 1)
+                .replace('$', '_');
+        String className = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+
+        StringBuilder out = new StringBuilder();
+        out.append("// Generated by the Retrofit annotation processor. Do not edit.\n");
+        if (!packageName.isEmpty()) {
+            out.append("package ").append(packageName).append(";\n\n");
+        }
+        out.append("@SuppressWarnings(\"unchecked\")\n");
+        out.append("final class ").append(simpleName)
+                .append(" implements ").append(service.getQualifiedName()).append(" {\n");
+        for (ServiceMethod method : methods) {
+            method.writeSpec(out, service);
+        }
+        out.append('\n');
+        for (ServiceMethod method : methods) {
+            out.append("    private final retrofit2.ServiceMethodSpec.Invoker ")
+                    .append(method.fieldName).append(";\n");
+        }
+        out.append('\n');
+        out.append("    ").append(simpleName).append("(retrofit2.Retrofit retrofit) {\n");
+        for (ServiceMethod method : methods) {
+            out.append("        this.").append(method.fieldName).append(" = ")
+                    .append(method.specName).append(".bind(retrofit);\n");
+        }
+        out.append("    }\n");
+        for (ServiceMethod method : methods) {
+            method.writeMethod(out);
+        }
+        out.append("}\n");
+
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(className, service);
+        try (Writer writer = file.openWriter()) {
+            writer.write(out.toString());
+        }
+
+        writeProguardRules(service, binaryName, className);
+    }
+
+    /**
+     * Writes rules that keep the names Retrofit.create uses to find the generated class. These are
+     * exact, so unlike the patterns in retrofit2.pro they hold for nested interfaces and names with
+     * underscores. R8 and ProGuard apply them when the service is packaged in a library.
+     */
+    private void writeProguardRules(TypeElement service, String binaryName, String className)
+            throws IOException {
+        FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT,
+                "", "META-INF/proguard/" + className + ".pro", service);
+        try (Writer writer = file.openWriter()) {
+            writer.write("# Generated by the Retrofit annotation processor. Do not edit.\n"
+                    + "-keepnames interface " + binaryName + "\n"
+                    + "-keep class " + className + " {\n"
+                    + "    <init>(retrofit2.Retrofit);\n"
+                    + "}\n");
+        }
+    }
+
+    private void error(Element element, String message, Object... args) {
+        processingEnv.getMessager().printMessage(
+                Diagnostic.Kind.ERROR, String.format(message, args), element);
+    }
+
+    /**
+     * One method of a service interface, and the request data parsed from its annotations.
+     */
+    final class ServiceMethod {
+        final ExecutableElement method;
+        final String fieldName;
+        final String specName;
+        final List<String> calls = new ArrayList<>();
+
+        String httpMethod;
+        boolean hasBody;
+        String relativeUrl;
+        Set<String> relativeUrlParamNames;
+        boolean isFormEncoded;
+        boolean isMultipart;
+        boolean gotField;
+        boolean gotPart;
+        boolean gotBody;
+        boolean gotPath;
+        boolean gotQuery;
+        boolean gotQueryName;
+        boolean gotQueryMap;
+        boolean gotUrl;
+        boolean isKotlinSuspendFunction;
+        final List<TypeMirror> tagTypes = new ArrayList<>();
+        boolean valid = true;
+
+        ServiceMethod(ExecutableElement method, String fieldName, String specName) {
+            this.method = method;
+            this.fieldName = fieldName;
+            this.specName = specName;
+        }
+
+        /**
+         * Parses and validates the method's annotations. Returns false if it is invalid.
+         */
+        boolean parse() {
+            for (Class<? extends Annotation> type : HTTP_METHODS) {
+                Annotation annotation = method.getAnnotation(type);
+                if (annotation instanceof DELETE) {
+                    parseHttpMethodAndPath("DELETE", ((DELETE) annotation).value(), false);
+                } else if (annotation instanceof GET) {
+                    parseHttpMethodAndPath("GET", ((GET) annotation).value(), false);
+                } else if (annotation instanceof HEAD) {
+                    parseHttpMethodAndPath("HEAD", ((HEAD) annotation).value(), false);
+                } else if (annotation instanceof PATCH) {
+                    parseHttpMethodAndPath("PATCH", ((PATCH) annotation).value(), true);
+                } else if (annotation instanceof POST) {
+                    parseHttpMethodAndPath("POST", ((POST) annotation).value(), true);
+                } else if (annotation instanceof PUT) {
+                    parseHttpMethodAndPath("PUT", ((PUT) annotation).value(), true);
+                } else if (annotation instanceof OPTIONS) {
+                    parseHttpMethodAndPath("OPTIONS", ((OPTIONS) annotation).value(), false);
+                } else if (annotation instanceof HTTP) {
+                    HTTP http = (HTTP) annotation;
+                    parseHttpMethodAndPath(http.method(), http.path(), http.hasBody());
+                }
+            }
+            if (!valid) return false;
+            if (httpMethod == null) {
+                return methodError("HTTP method annotation is required (e.g., @GET, @POST, etc.).");
+            }
+            calls.add(String.format("request(%s, %s, %s)",
+                    literal(httpMethod), literal(relativeUrl), hasBody));
+
+            Headers headers = method.getAnnotation(Headers.class);
+            if (headers != null) parseHeaders(headers.value());
+            if (method.getAnnotation(Multipart.class) != null) {
+                isMultipart = true;
+                calls.add("multipart()");
+            }
+            if (method.getAnnotation(FormUrlEncoded.class) != null) {
+                if (isMultipart) return methodError("Only one encoding annotation is allowed.");
+                isFormEncoded = true;
+                calls.add("formUrlEncoded()");
+            }
+            if (!hasBody) {
+                if (isMultipart) {
+                    return methodError("Multipart can only be specified on HTTP methods with "
+                            + "request body (e.g., @POST).");
+                }
+                if (isFormEncoded) {
+                    return methodError("FormUrlEncoded can only be specified on HTTP methods with "
+                            + "request body (e.g., @POST).");
+                }
+            }
+
+            List<? extends VariableElement> parameters = method.getParameters();
+            for (int p = 0; p < parameters.size() && valid; p++) {
+                parseParameter(p, parameters.get(p), p == parameters.size() - 1);
+            }
+            if (!valid) return false;
+
+            if (relativeUrl == null && !gotUrl) {
+                return methodError("Missing either @" + httpMethod + " URL or @Url parameter.");
+            }
+            if (!isFormEncoded && !isMultipart && !hasBody && gotBody) {
+                return methodError("Non-body HTTP method cannot contain @Body.");
+            }
+            if (isFormEncoded && !gotField) {
+                return methodError("Form-encoded method must contain at least one @Field.");
+            }
+            if (isMultipart && !gotPart) {
+                return methodError("Multipart method must contain at least one @Part.");
+            }
+
+            TypeMirror returnType = method.getReturnType();
+            if (isKotlinSuspendFunction) return true;
+            if (hasUnresolvableType(returnType)) {
+                return methodError("Method return type must not include a type variable or "
+                        + "wildcard: " + returnType);
+            }
+            if (returnType.getKind() == TypeKind.VOID) {
+                return methodError("Service methods cannot return void.");
+            }
+            return valid;
+        }
+
+        private void parseHttpMethodAndPath(String httpMethod, String value, boolean hasBody) {
+            if (this.httpMethod != null) {
+                methodError(String.format("Only one HTTP method is allowed. Found: %s and %s.",
+                        this.httpMethod, httpMethod));
+                return;
+            }
+            this.httpMethod = httpMethod;
+            this.hasBody = hasBody;
+            if (value.isEmpty()) return;
+
+            // Get the relative URL path and existing query string, if present.
+            int question = value.indexOf('?');
+            if (question != -1 && question < value.length() - 1) {
+                // Ensure the query string does not have any named parameters.
+                String queryParams = value.substring(question + 1);
+                Matcher queryParamMatcher = PARAM_URL_REGEX.matcher(queryParams);
+                if (queryParamMatcher.find()) {
+                    methodError(String.format("URL query string \"%s\" must not have replace "
+                            + "block. For dynamic query parameters use @Query.", queryParams));
+                    return;
+                }
+            }
+
+            this.relativeUrl = value;
+            this.relativeUrlParamNames = new LinkedHashSet<>();
+            Matcher m = PARAM_URL_REGEX.matcher(value);
+            while (m.find()) {
+                relativeUrlParamNames.add(m.group(1));
+            }
+        }
+
+        private void parseHeaders(String[] headers) {
+            if (headers.length == 0) {
+                methodError("@Headers annotation is empty.");
+                return;
+            }
+            List<String> namesAndValues = new ArrayList<>();
+            for (String header : headers) {
+                int colon = header.indexOf(':');
+                if (colon == -1 || colon == 0 || colon == header.length() - 1) {
+                    methodError(String.format("@Headers value must be in the form \"Name: Value\". "
+                            + "Found: \"%s\"", header));
+                    return;
+                }
+                String headerName = header.substring(0, colon);
+                String headerValue = header.substring(colon + 1).trim();
+                if ("Content-Type".equalsIgnoreCase(headerName)) {
+                    if (MediaType.parse(headerValue) == null) {
+                        methodError("Malformed content type: " + headerValue);
+                        return;
+                    }
+                    calls.add("contentType(" + literal(headerValue) + ")");
+                } else {
+                    namesAndValues.add(literal(headerName));
+                    namesAndValues.add(literal(headerValue));
+                }
+            }
+            if (!namesAndValues.isEmpty()) {
+                calls.add("headers(" + join(namesAndValues) + ")");
+            }
+        }
+
+        private void parseParameter(int p, VariableElement parameter, boolean allowContinuation) {
+            Annotation result = null;
+            for (Class<? extends Annotation> type : PARAMETER_ANNOTATIONS) {
+                Annotation annotation = parameter.getAnnotation(type);
+                if (annotation == null) continue;
+                if (result != null) {
+                    parameterError(p, "Multiple Retrofit annotations found, only one allowed.");
+                    return;
+                }
+                result = annotation;
+            }
+
+            TypeMirror type = parameter.asType();
+            if (result == null) {
+                if (allowContinuation
+                        && erasure(type).toString().equals("kotlin.coroutines.Continuation")) {
+                    isKotlinSuspendFunction = true;
+                    calls.add("continuation()");
+                    return;
+                }
+                parameterError(p, "No Retrofit annotation found.");
+                return;
+            }
+            if (!(result instanceof HeaderMap && isType(type, "okhttp3.Headers"))
+                    && hasUnresolvableType(type)) {
+                parameterError(p,
+                        "Parameter type must not include a type variable or wildcard: " + type);
+                return;
+            }
+            parseParameterAnnotation(p, type, result);
+        }
+
+        private void parseParameterAnnotation(int p, TypeMirror type, Annotation annotation) {
+            if (annotation instanceof Url) {
+                if (gotUrl) {
+                    parameterError(p, "Multiple @Url method annotations found.");
+                } else if (gotPath) {
+                    parameterError(p, "@Path parameters may not be used with @Url.");
+                } else if (gotQuery) {
+                    parameterError(p, "A @Url parameter must not come after a @Query.");
+                } else if (gotQueryName) {
+                    parameterError(p, "A @Url parameter must not come after a @QueryName.");
+                } else if (gotQueryMap) {
+                    parameterError(p, "A @Url parameter must not come after a @QueryMap.");
+                } else if (relativeUrl != null) {
+                    parameterError(p, "@Url cannot be used with @" + httpMethod + " URL");
+                } else if (!URL_TYPES.contains(type.toString())) {
+                    parameterError(p, "@Url must be okhttp3.HttpUrl, String, java.net.URI, or "
+                            + "android.net.Uri type.");
+                }
+                gotUrl = true;
+                calls.add("url()");
+
+            } else if (annotation instanceof Path) {
+                Path path = (Path) annotation;
+                if (gotQuery) {
+                    parameterError(p, "A @Path parameter must not come after a @Query.");
+                } else if (gotQueryName) {
+                    parameterError(p, "A @Path parameter must not come after a @QueryName.");
+                } else if (gotQueryMap) {
+                    parameterError(p, "A @Path parameter must not come after a @QueryMap.");
+                } else if (gotUrl) {
+                    parameterError(p, "@Path parameters may not be used with @Url.");
+                } else if (relativeUrl == null) {
+                    parameterError(p, "@Path can only be used with relative url on @" + httpMethod);
+                } else if (!PARAM_NAME_REGEX.matcher(path.value()).matches()) {
+                    parameterError(p, String.format("@Path parameter name must match %s. Found: %s",
+                            PARAM_URL_REGEX.pattern(), path.value()));
+                } else if (!relativeUrlParamNames.contains(path.value())) {
+                    parameterError(p, String.format(
+                            "URL \"%s\" does not contain \"{%s}\".", relativeUrl, path.value()));
+                }
+                gotPath = true;
+                calls.add("path(" + literal(path.value()) + ", " + path.encoded() + ")");
+
+            } else if (annotation instanceof Query) {
+                Query query = (Query) annotation;
+                checkRepeatable(p, type);
+                gotQuery = true;
+                calls.add("query(" + literal(query.value()) + ", " + query.encoded() + ")");
+
+            } else if (annotation instanceof QueryName) {
+                checkRepeatable(p, type);
+                gotQueryName = true;
+                calls.add("queryName(" + ((QueryName) annotation).encoded() + ")");
+
+            } else if (annotation instanceof QueryMap) {
+                checkMap(p, type, "@QueryMap");
+                gotQueryMap = true;
+                calls.add("queryMap(" + ((QueryMap) annotation).encoded() + ")");
+
+            } else if (annotation instanceof Header) {
+                checkRepeatable(p, type);
+                calls.add("header(" + literal(((Header) annotation).value()) + ")");
+
+            } else if (annotation instanceof HeaderMap) {
+                if (!isType(type, "okhttp3.Headers")) {
+                    checkMap(p, type, "@HeaderMap");
+                }
+                calls.add("headerMap()");
+
+            } else if (annotation instanceof Field) {
+                Field field = (Field) annotation;
+                if (!isFormEncoded) {
+                    parameterError(p, "@Field parameters can only be used with form encoding.");
+                }
+                checkRepeatable(p, type);
+                gotField = true;
+                calls.add("field(" + literal(field.value()) + ", " + field.encoded() + ")");
+
+            } else if (annotation instanceof FieldMap) {
+                if (!isFormEncoded) {
+                    parameterError(p, "@FieldMap parameters can only be used with form encoding.");
+                }
+                checkMap(p, type, "@FieldMap");
+                gotField = true;
+                calls.add("fieldMap(" + ((FieldMap) annotation).encoded() + ")");
+
+            } else if (annotation instanceof Part) {
+                Part part = (Part) annotation;
+                if (!isMultipart) {
+                    parameterError(p, "@Part parameters can only be used with multipart encoding.");
+                }
+                gotPart = true;
+                TypeMirror elementType = checkRepeatable(p, type);
+                boolean isRawPart =
+                        elementType != null && isType(elementType, "okhttp3.MultipartBody.Part");
+                if (part.value().isEmpty() && !isRawPart) {
+                    parameterError(p, "@Part annotation must supply a name or use "
+                            + "MultipartBody.Part parameter type.");
+                } else if (!part.value().isEmpty() && isRawPart) {
+                    parameterError(p, "@Part parameters using the MultipartBody.Part must not "
+                            + "include a part name in the annotation.");
+                }
+                calls.add("part(" + literal(part.value()) + ", " + literal(part.encoding()) + ")");
+
+            } else if (annotation instanceof PartMap) {
+                if (!isMultipart) {
+                    parameterError(p,
+                            "@PartMap parameters can only be used with multipart encoding.");
+                }
+                gotPart = true;
+                TypeMirror valueType = checkMap(p, type, "@PartMap");
+                if (valueType != null && isType(valueType, "okhttp3.MultipartBody.Part")) {
+                    parameterError(p, "@PartMap values cannot be MultipartBody.Part. "
+                            + "Use @Part List<Part> or a different value type instead.");
+                }
+                calls.add("partMap(" + literal(((PartMap) annotation).encoding()) + ")");
+
+            } else if (annotation instanceof Body) {
+                if (isFormEncoded || isMultipart) {
+                    parameterError(p,
+                            "@Body parameters cannot be used with form or multi-part encoding.");
+                } else if (gotBody) {
+                    parameterError(p, "Multiple @Body method annotations found.");
+                }
+                gotBody = true;
+                calls.add("body()");
+
+            } else if (annotation instanceof Tag) {
+                TypeMirror tagType = erasure(type);
+                for (int i = 0; i < tagTypes.size(); i++) {
+                    if (processingEnv.getTypeUtils().isSameType(tagTypes.get(i), tagType)) {
+                        parameterError(p, "@Tag type " + tagType + " is duplicate of a previous "
+                                + "parameter and would always overwrite its value.");
+                    }
+                }
+                tagTypes.add(tagType);
+                calls.add("tag()");
+            }
+        }
+
+        /**
+         * Checks that {@code type} has a type argument if it is an iterable and returns the type of
+         * its elements, or of an array's components. Returns {@code type} if it is neither.
+         */
+        private TypeMirror checkRepeatable(int p, TypeMirror type) {
+            if (type.getKind() == TypeKind.ARRAY) {
+                return ((ArrayType) type).getComponentType();
+            }
+            TypeMirror iterable = supertype(type, "java.lang.Iterable");
+            if (iterable == null) return type;
+            if (((DeclaredType) type).getTypeArguments().isEmpty()) {
+                String simpleName = ((DeclaredType) type).asElement().getSimpleName().toString();
+                parameterError(p, simpleName + " must include generic type (e.g., " + simpleName
+                        + "<String>)");
+                return null;
+            }
+            List<? extends TypeMirror> arguments = ((DeclaredType) iterable).getTypeArguments();
+            return arguments.isEmpty() ? null : arguments.get(0);
+        }
+
+        /**
+         * Checks that {@code type} is a map with string keys and returns the type of its values.
+         */
+        private TypeMirror checkMap(int p, TypeMirror type, String annotation) {
+            TypeMirror map = supertype(type, "java.util.Map");
+            if (map == null) {
+                parameterError(p, annotation + " parameter type must be Map.");
+                return null;
+            }
+            List<? extends TypeMirror> arguments = ((DeclaredType) map).getTypeArguments();
+            if (arguments.isEmpty()) {
+                parameterError(p, "Map must include generic types (e.g., Map<String, String>)");
+                return null;
+            }
+            if (!isType(arguments.get(0), "java.lang.String")) {
+                parameterError(p, annotation + " keys must be of type String: " + arguments.get(0));
+                return null;
+            }
+            return arguments.get(1);
+        }
+
+        void writeSpec(StringBuilder out, TypeElement service) {
+            out.append("    private static final retrofit2.ServiceMethodSpec ").append(specName)
+                    .append(" =\n            new retrofit2.ServiceMethodSpec(")
+                    .append(((TypeElement) method.getEnclosingElement()).getQualifiedName())
+                    .append(".class, ").append(literal(method.getSimpleName().toString()));
+            for (VariableElement parameter : method.getParameters()) {
+                out.append(", ").append(erasure(parameter.asType())).append(".class");
+            }
+            out.append(')');
+            for (String call : calls) {
+                out.append("\n                    .").append(call);
+            }
+            out.append(";\n");
+        }
+
+        void writeMethod(StringBuilder out) {
+            out.append("\n    @Override\n    public ").append(method.getReturnType()).append(' ')
+                    .append(method.getSimpleName()).append('(');
+            List<? extends VariableElement> parameters = method.getParameters();
+            for (int i = 0; i < parameters.size(); i++) {
+                if (i > 0) out.append(", ");
+                TypeMirror type = parameters.get(i).asType();
+                if (method.isVarArgs() && i == parameters.size() - 1) {
+                    out.append(((ArrayType) type).getComponentType()).append("...");
+                } else {
+                    out.append(type);
+                }
+                out.append(' ').append(parameters.get(i).getSimpleName());
+            }
+            out.append(')');
+            List<? extends TypeMirror> thrownTypes = method.getThrownTypes();
+            for (int i = 0; i < thrownTypes.size(); i++) {
+                out.append(i == 0 ? " throws " : ", ").append(thrownTypes.get(i));
+            }
+            out.append(" {\n        return (").append(method.getReturnType()).append(") this.")
+                    .append(fieldName).append(".invoke(");
+            out.append("new Object[]{");
+            for (int i = 0; i < parameters.size(); i++) {
+                if (i > 0) out.append(", ");
+                out.append(parameters.get(i).getSimpleName());
+            }
+            out.append("});\n    }\n");
+        }
+
+        private boolean methodError(String message) {
+            error(method, "%s", message);
+            valid = false;
+            return false;
+        }
+
+        private void parameterError(int p, String message) {
+            error(method.getParameters().get(p), "%s (parameter #%s)", message, p + 1);
+            valid = false;
+        }
+    }
+
+    /**
+     * Returns the supertype of {@code type} whose erasure is {@code name}, or null if it has none.
+     */
+    private TypeMirror supertype(TypeMirror type, String name) {
+        if (type.getKind() != TypeKind.DECLARED) return null;
+        if (erasure(type).toString().equals(name)) return type;
+        for (TypeMirror supertype : processingEnv.getTypeUtils().directSupertypes(type)) {
+            TypeMirror result = supertype(supertype, name);
+            if (result != null) return result;
+        }
+        return null;
+    }
+
+    private TypeMirror erasure(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type);
+    }
+
+    private boolean isType(TypeMirror type, String name) {
+        return type.getKind() == TypeKind.DECLARED && erasure(type).toString().equals(name);
+    }
+
+    private static boolean hasUnresolvableType(TypeMirror type) {
+        switch (type.getKind()) {
+            case TYPEVAR:
+            case WILDCARD:
+                return true;
+            case ARRAY:
+                return hasUnresolvableType(((ArrayType) type).getComponentType());
+            case DECLARED:
+                for (TypeMirror argument : ((DeclaredType) type).getTypeArguments()) {
+                    if (hasUnresolvableType(argument)) return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    static String literal(String value) {
+        if (value == null) return "null";
+        StringBuilder result = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    result.append("\\\"");
+                    break;
+                case '\\':
+                    result.append("\\\\");
+                    break;
+                case '\n':
+                    result.append("\\n");
+                    break;
+                case '\r':
+                    result.append("\\r");
+                    break;
+                case '\t':
+                    result.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7e) {
+                        result.append(String.format(Locale.US, "\\u%04x", (int) c));
+                    } else {
+                        result.append(c);
+                    }
+            }
+        }
+        return result.append('"').toString();
+    }
+
+    private static String join(List<String> strings) {
+        StringBuilder result = new StringBuilder();
+        for (String s : strings) {
+            if (result.length() > 0) result.append(", ");
+            result.append(s);
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit2.compiler;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Call;
+import retrofit2.Retrofit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class RetrofitProcessorTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    private final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+
+    @Test
+    public void generatesImplementation() throws Exception {
+        ClassLoader classLoader = compile("example.GitHub", ""
+                + "package example;\n"
+                + "\n"
+                + "import java.util.List;\n"
+                + "import okhttp3.RequestBody;\n"
+                + "import okhttp3.ResponseBody;\n"
+                + "import retrofit2.Call;\n"
+                + "import retrofit2.http.*;\n"
+                + "\n"
+                + "public interface GitHub {\n"
+                + "  @GET(\"users/{user}/repos\")\n"
+                + "  Call<ResponseBody> repos(\n"
+                + "      @Path(\"user\") String user, @Query(\"sort\") List<String> sort);\n"
+                + "\n"
+                + "  @Headers({\"Accept: text/plain\", \"Content-Type: text/plain\"})\n"
+                + "  @POST(\"gists\")\n"
+                + "  Call<ResponseBody> gist(\n"
+                + "      @Header(\"X-Name\") String name, @Body RequestBody body);\n"
+                + "\n"
+                + "  @POST(\"gists\")\n"
+                + "  Call<ResponseBody> gist(@Body RequestBody body);\n"
+                + "\n"
+                + "  default Call<ResponseBody> mine() {\n"
+                + "    return repos(\"me\", null);\n"
+                + "  }\n"
+                + "}\n");
+        assertThat(errors()).isEmpty();
+
+        String generated = new String(Files.readAllBytes(
+                new File(temporaryFolder.getRoot(), "example/Retrofit_GitHub.java").toPath()),
+                StandardCharsets.UTF_8);
+        assertThat(generated).contains(""
+                + "    private static final retrofit2.ServiceMethodSpec REPOS =\n"
+                + "            new retrofit2.ServiceMethodSpec(example.GitHub.class, \"repos\", "
+                + "java.lang.String.class, java.util.List.class)\n"
+                + "                    .request(\"GET\", \"users/{user}/repos\", false)\n"
+                + "                    .path(\"user\", false)\n"
+                + "                    .query(\"sort\", false);\n");
+        assertThat(generated).contains(""
+                + "                    .request(\"POST\", \"gists\", true)\n"
+                + "                    .contentType(\"text/plain\")\n"
+                + "                    .headers(\"Accept\", \"text/plain\")\n"
+                + "                    .header(\"X-Name\")\n"
+                + "                    .body();\n");
+        assertThat(generated).contains("private final retrofit2.ServiceMethodSpec.Invoker gist2;");
+        assertThat(generated).doesNotContain("mine");
+
+        Class<?> service = classLoader.loadClass("example.GitHub");
+        Object github = retrofit().create(service);
+        assertThat(github.getClass().getName()).isEqualTo("example.Retrofit_GitHub");
+
+        server.enqueue(new MockResponse().setBody("repos"));
+        Method mine = service.getMethod("mine");
+        Call<?> call = (Call<?>) mine.invoke(github);
+        assertThat(call.execute().isSuccessful()).isTrue();
+        RecordedRequest request = server.takeRequest();
+        assertThat(request.getPath()).isEqualTo("/users/me/repos");
+    }
+
+    @Test
+    public void nestedInterface() throws Exception {
+        ClassLoader classLoader = compile("example.Api", ""
+                + "package example;\n"
+                + "\n"
+                + "import okhttp3.ResponseBody;\n"
+                + "import retrofit2.Call;\n"
+                + "import retrofit2.http.*;\n"
+                + "\n"
+                + "public final class Api {\n"
+                + "  interface Users {\n"
+                + "    @FormUrlEncoded\n"
+                + "    @PUT(\"users/{id}\")\n"
+                + "    Call<ResponseBody> update(\n"
+                + "        @Path(\"id\") long id, @Field(\"names\") String... names);\n"
+                + "  }\n"
+                + "\n"
+                + "  private interface Hidden {\n"
+                + "    @GET(\"/\")\n"
+                + "    Call<ResponseBody> get();\n"
+                + "  }\n"
+                + "}\n");
+        assertThat(errors()).isEmpty();
+        assertThat(new File(temporaryFolder.getRoot(), "example/Retrofit_Api_Hidden.java"))
+                .doesNotExist();
+
+        String rules = new String(Files.readAllBytes(new File(temporaryFolder.getRoot(),
+                "META-INF/proguard/example.Retrofit_Api_Users.pro").toPath()),
+                StandardCharsets.UTF_8);
+        assertThat(rules).contains(""
+                + "-keepnames interface example.Api$Users\n"
+                + "-keep class example.Retrofit_Api_Users {\n"
+                + "    <init>(retrofit2.Retrofit);\n"
+                + "}\n");
+
+        Class<?> service = classLoader.loadClass("example.Api$Users");
+        Object users = retrofit().create(service);
+        assertThat(users.getClass().getName()).isEqualTo("example.Retrofit_Api_Users");
+
+        server.enqueue(new MockResponse());
+        Method update = service.getDeclaredMethod("update", long.class, String[].class);
+        update.setAccessible(true);
+        ((Call<?>) update.invoke(users, 42L, new String[]{"a", "b"})).execute();
+        RecordedRequest request = server.takeRequest();
+        assertThat(request.getMethod()).isEqualTo("PUT");
+        assertThat(request.getPath()).isEqualTo("/users/42");
+        assertThat(request.getBody().readUtf8()).isEqualTo("names=a&names=b");
+    }
+
+    @Test
+    public void methodNamesWithTheSameConstantName() throws Exception {
+        ClassLoader classLoader = compile("example.Names", ""
+                + "package example;\n"
+                + "\n"
+                + "import okhttp3.ResponseBody;\n"
+                + "import retrofit2.Call;\n"
+                + "import retrofit2.http.*;\n"
+                + "\n"
+                + "public interface Names {\n"
+                + "  @GET(\"a\")\n"
+                + "  Call<ResponseBody> fooBar();\n"
+                + "\n"
+                + "  @GET(\"b\")\n"
+                + "  Call<ResponseBody> foo_bar();\n"
+                + "\n"
+                + "  @GET(\"c\")\n"
+                + "  Call<ResponseBody> FOO_BAR();\n"
+                + "}\n");
+        assertThat(errors()).isEmpty();
+
+        Class<?> service = classLoader.loadClass("example.Names");
+        Object names = retrofit().create(service);
+        assertThat(names.getClass().getName()).isEqualTo("example.Retrofit_Names");
+
+        server.enqueue(new MockResponse());
+        server.enqueue(new MockResponse());
+        server.enqueue(new MockResponse());
+        ((Call<?>) service.getMethod("fooBar").invoke(names)).execute();
+        ((Call<?>) service.getMethod("foo_bar").invoke(names)).execute();
+        ((Call<?>) service.getMethod("FOO_BAR").invoke(names)).execute();
+        assertThat(server.takeRequest().getPath()).isEqualTo("/a");
+        assertThat(server.takeRequest().getPath()).isEqualTo("/b");
+        assertThat(server.takeRequest().getPath()).isEqualTo("/c");
+    }
+
+    @Test
+    public void invalidMethodsAreReportedAtCompileTime() throws IOException {
+        compile("example.Invalid", ""
+                + "package example;\n"
+                + "\n"
+                + "import java.util.Map;\n"
+                + "import okhttp3.ResponseBody;\n"
+                + "import retrofit2.Call;\n"
+                + "import retrofit2.http.*;\n"
+                + "\n"
+                + "public interface Invalid {\n"
+                + "  @GET(\"users/{user}\")\n"
+                + "  Call<ResponseBody> path(@Path(\"name\") String name);\n"
+                + "\n"
+                + "  @GET(\"users\")\n"
+                + "  Call<ResponseBody> unannotated(String name);\n"
+                + "\n"
+                + "  @GET(\"users\")\n"
+                + "  @POST(\"users\")\n"
+                + "  Call<ResponseBody> twoMethods();\n"
+                + "\n"
+                + "  @GET(\"users\")\n"
+                + "  Call<ResponseBody> body(@Body String body);\n"
+                + "\n"
+                + "  @GET(\"users\")\n"
+                + "  Call<ResponseBody> queryMap(@QueryMap Map<Integer, String> query);\n"
+                + "\n"
+                + "  @GET(\"users\")\n"
+                + "  <T> Call<T> typeVariable();\n"
+                + "\n"
+                + "  @GET(\"users\")\n"
+                + "  void noReturn();\n"
+                + "}\n");
+        assertThat(errors()).containsExactlyInAnyOrder(
+                "URL \"users/{user}\" does not contain \"{name}\". (parameter #1)",
+                "No Retrofit annotation found. (parameter #1)",
+                "Only one HTTP method is allowed. Found: GET and POST.",
+                "Non-body HTTP method cannot contain @Body.",
+                "@QueryMap keys must be of type String: java.lang.Integer (parameter #1)",
+                "Method return type must not include a type variable or wildcard: "
+                        + "retrofit2.Call<T>",
+                "Service methods cannot return void.");
+        assertThat(new File(temporaryFolder.getRoot(), "example/Retrofit_Invalid.java"))
+                .doesNotExist();
+    }
+
+    private Retrofit retrofit() {
+        return new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .build();
+    }
+
+    /**
+     * Compiles {@code source} with the processor and returns a class loader for the result.
+     */
+    private ClassLoader compile(String className, String source) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        File output = temporaryFolder.getRoot();
+        List<String> options = Arrays.asList(
+                "-d", output.getPath(),
+                "-s", output.getPath(),
+                "-classpath", classPath());
+        JavaFileObject file = new SimpleJavaFileObject(
+                new File(output, className.replace('.', '/') + ".java").toURI(),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(
+                diagnostics, Locale.US, StandardCharsets.UTF_8)) {
+            JavaCompiler.CompilationTask task = compiler.getTask(
+                    null, fileManager, diagnostics, options, null, Collections.singletonList(file));
+            task.setProcessors(Collections.singletonList(new RetrofitProcessor()));
+            task.call();
+        }
+        return new URLClassLoader(new URL[]{output.toURI().toURL()}, getClass().getClassLoader());
+    }
+
+    private List<String> errors() {
+        List<String> result = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                result.add(diagnostic.getMessage(Locale.US));
+            }
+        }
+        return result;
+    }
+
+    private static String classPath() {
+        // Surefire puts the test class path in a manifest-only jar unless it's told otherwise.
+        String surefireClassPath = System.getProperty("surefire.test.class.path");
+        return surefireClassPath != null
+                ? surefireClassPath
+                : System.getProperty("java.class.path");
+    }
+}
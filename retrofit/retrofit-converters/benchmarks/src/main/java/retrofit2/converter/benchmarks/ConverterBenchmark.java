@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit2.converter.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.protobuf.ListValue;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ByteString;
+import okio.Okio;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+import retrofit2.converter.moshi.MoshiConverterFactory;
+import retrofit2.converter.protobuf.ProtoConverterFactory;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.RunnerException;
+
+/**
+ * Compares the converters on decoding response bodies and encoding request bodies. The payload is
+ * a list of {@link Item} objects; protocol buffers encode the same data as a {@link ListValue} of
+ * {@link Struct}s.
+ * <p>
+ * {@code gson-charstream} decodes through {@link ResponseBody#charStream()}, which is how the Gson
+ * converter decoded bodies before it read UTF-8 directly from the body's source.
+ */
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConverterBenchmark {
+    private static final MediaType JSON = MediaType.get("application/json; charset=UTF-8");
+    private static final MediaType PROTOBUF = MediaType.get("application/x-protobuf");
+
+    @Param({"gson", "gson-charstream", "moshi", "jackson", "protobuf"})
+    String library;
+
+    /** Small, medium and large payloads: roughly 200 bytes, 20 KiB and 2 MiB of JSON. */
+    @Param({"1", "100", "10000"})
+    int itemCount;
+
+    private Converter<ResponseBody, ?> responseBodyConverter;
+    private Converter<Object, RequestBody> requestBodyConverter;
+    private MediaType mediaType;
+    private Object value;
+    private ByteString encoded;
+
+    @Setup
+    @SuppressWarnings("unchecked") // The factories accept the types we give them.
+    public void setUp() throws IOException {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < itemCount; i++) {
+            items.add(Item.create(i));
+        }
+
+        Converter.Factory factory;
+        Type type = Item.LIST_TYPE;
+        mediaType = JSON;
+        value = items;
+        switch (library) {
+            case "gson":
+            case "gson-charstream":
+                factory = GsonConverterFactory.create();
+                break;
+            case "moshi":
+                factory = MoshiConverterFactory.create();
+                break;
+            case "jackson":
+                factory = JacksonConverterFactory.create();
+                break;
+            case "protobuf":
+                factory = ProtoConverterFactory.create();
+                type = ListValue.class;
+                mediaType = PROTOBUF;
+                value = toProto(items);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown library: " + library);
+        }
+
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl("https://example.com/")
+                .addConverterFactory(factory)
+                .build();
+        Annotation[] annotations = new Annotation[0];
+        responseBodyConverter = library.equals("gson-charstream")
+                ? new CharStreamGsonConverter(new Gson(), type)
+                : retrofit.responseBodyConverter(type, annotations);
+        requestBodyConverter = (Converter<Object, RequestBody>) retrofit.requestBodyConverter(
+                type, annotations, annotations);
+
+        Buffer buffer = new Buffer();
+        requestBodyConverter.convert(value).writeTo(buffer);
+        encoded = buffer.readByteString();
+    }
+
+    @Benchmark
+    public Object decode() throws IOException {
+        return responseBodyConverter.convert(ResponseBody.create(mediaType, encoded));
+    }
+
+    @Benchmark
+    public long encode() throws IOException {
+        RequestBody body = requestBodyConverter.convert(value);
+        RequestBodyBenchmark.CountingSink counter = new RequestBodyBenchmark.CountingSink();
+        BufferedSink sink = Okio.buffer(counter);
+        body.writeTo(sink);
+        sink.flush();
+        return counter.byteCount;
+    }
+
+    static ListValue toProto(List<Item> items) {
+        ListValue.Builder result = ListValue.newBuilder();
+        for (Item item : items) {
+            ListValue.Builder tags = ListValue.newBuilder();
+            for (String tag : item.tags) {
+                tags.addValues(Value.newBuilder().setStringValue(tag));
+            }
+            Struct struct = Struct.newBuilder()
+                    .putFields("id", Value.newBuilder().setNumberValue(item.id).build())
+                    .putFields("name", Value.newBuilder().setStringValue(item.name).build())
+                    .putFields("description",
+                            Value.newBuilder().setStringValue(item.description).build())
+                    .putFields("available", Value.newBuilder().setBoolValue(item.available).build())
+                    .putFields("price", Value.newBuilder().setNumberValue(item.price).build())
+                    .putFields("tags", Value.newBuilder().setListValue(tags).build())
+                    .build();
+            result.addValues(Value.newBuilder().setStructValue(struct));
+        }
+        return result.build();
+    }
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        Main.main(new String[]{
+                ConverterBenchmark.class.getName()
+        });
+    }
+
+    /** Decodes like the Gson converter did before it decoded UTF-8 itself. */
+    static final class CharStreamGsonConverter implements Converter<ResponseBody, Object> {
+        private final Gson gson;
+        private final TypeAdapter<?> adapter;
+
+        CharStreamGsonConverter(Gson gson, Type type) {
+            this.gson = gson;
+            this.adapter = gson.getAdapter(TypeToken.get(type));
+        }
+
+        @Override
+        public Object convert(ResponseBody value) throws IOException {
+            JsonReader jsonReader = gson.newJsonReader(value.charStream());
+            try {
+                return adapter.read(jsonReader);
+            } finally {
+                value.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit2.converter.benchmarks;
+
+import com.squareup.moshi.Types;
+
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A typical API model object, roughly 200 bytes of JSON.
+ */
+public final class Item {
+    static final Type LIST_TYPE = Types.newParameterizedType(List.class, Item.class);
+
+    public long id;
+    public String name;
+    public String description;
+    public boolean available;
+    public double price;
+    public List<String> tags;
+
+    static Item create(int i) {
+        Item item = new Item();
+        item.id = 1_000_000L + i;
+        item.name = "Item " + i;
+        item.description = "A description of item " + i + " with \"quotes\", "
+                + "non-ASCII text like café and 東京, and enough words to be realistic.";
+        item.available = i % 3 != 0;
+        item.price = i * 1.25;
+        item.tags = Arrays.asList("tag" + (i % 10), "tag" + (i % 7), "featured");
+        return item;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit2.converter.benchmarks;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Sink;
+import okio.Timeout;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+import retrofit2.converter.moshi.MoshiConverterFactory;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.RunnerException;
+
+/**
+ * Measures converting a 10 MiB JSON request body and writing it to a sink. {@code buffered} is the
+ * default, where the value is serialized into memory by the converter; {@code streaming} and
+ * {@code replayable} serialize it as the body is written.
+ * <p>
+ * Run {@link #main} to print each configuration's peak live heap before the JMH run. Pass
+ * {@code -prof gc} to JMH to also report the bytes allocated per operation.
+ */
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RequestBodyBenchmark {
+    static final long BODY_SIZE = 10L * 1024L * 1024L;
+
+    @Param({"gson", "moshi"})
+    String library;
+
+    @Param({"buffered", "streaming", "replayable"})
+    String mode;
+
+    private Converter<Object, RequestBody> converter;
+    private List<Item> payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        converter = converter(library, mode);
+        payload = payload(converter, BODY_SIZE);
+    }
+
+    @Benchmark
+    public long convertAndWrite() throws IOException {
+        RequestBody body = converter.convert(payload);
+        CountingSink counter = new CountingSink();
+        BufferedSink sink = Okio.buffer(counter);
+        body.writeTo(sink);
+        sink.flush();
+        return counter.byteCount;
+    }
+
+    /** Returns a request body converter for {@code List<Item>}. */
+    @SuppressWarnings("unchecked") // The factories accept any type.
+    static Converter<Object, RequestBody> converter(String library, String mode) {
+        Converter.Factory factory;
+        switch (library) {
+            case "gson":
+                GsonConverterFactory gson = GsonConverterFactory.create();
+                factory = mode.equals("buffered")
+                        ? gson
+                        : gson.withStreamingRequestBodies(mode.equals("replayable"));
+                break;
+            case "moshi":
+                MoshiConverterFactory moshi = MoshiConverterFactory.create();
+                factory = mode.equals("buffered")
+                        ? moshi
+                        : moshi.withStreamingRequestBodies(mode.equals("replayable"));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown library: " + library);
+        }
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl("https://example.com/")
+                .addConverterFactory(factory)
+                .build();
+        return (Converter<Object, RequestBody>) retrofit.requestBodyConverter(
+                Item.LIST_TYPE, new Annotation[0], new Annotation[0]);
+    }
+
+    /** Returns a list of items whose JSON encoding is at least {@code byteCount} bytes. */
+    static List<Item> payload(Converter<Object, RequestBody> converter, long byteCount)
+            throws IOException {
+        List<Item> single = Arrays.asList(Item.create(0));
+        Buffer buffer = new Buffer();
+        converter.convert(single).writeTo(buffer);
+        long itemSize = buffer.size();
+
+        List<Item> result = new ArrayList<>();
+        for (int i = 0; i < byteCount / itemSize + 1; i++) {
+            result.add(Item.create(i));
+        }
+        return result;
+    }
+
+    /**
+     * Returns how much the live heap grows while a body is converted and written. This collects
+     * garbage after each mebibyte written, so it's much slower than the benchmark itself.
+     */
+    static long peakLiveHeap(Converter<Object, RequestBody> converter, List<Item> payload)
+            throws IOException {
+        long baseline = liveHeap();
+        RequestBody body = converter.convert(payload);
+        HeapSampler sampler = new HeapSampler(baseline);
+        BufferedSink sink = Okio.buffer(sampler);
+        body.writeTo(sink);
+        sink.flush();
+        return sampler.peak;
+    }
+
+    static long liveHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 2; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        for (String library : Arrays.asList("gson", "moshi")) {
+            for (String mode : Arrays.asList("buffered", "streaming", "replayable")) {
+                Converter<Object, RequestBody> converter = converter(library, mode);
+                List<Item> payload = payload(converter, BODY_SIZE);
+                long peak = peakLiveHeap(converter, payload);
+                System.out.printf("%-6s %-10s peak live heap: %,d KiB%n",
+                        library, mode, peak / 1024L);
+            }
+        }
+
+        Main.main(new String[]{
+                RequestBodyBenchmark.class.getName()
+        });
+    }
+
+    /** Discards what's written to it and counts the bytes. */
+    static class CountingSink implements Sink {
+        long byteCount;
+
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            source.skip(byteCount);
+            this.byteCount += byteCount;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /** Measures the live heap after each mebibyte written to it. */
+    static final class HeapSampler extends CountingSink {
+        private final long baseline;
+        private long nextSample = 1024L * 1024L;
+        long peak;
+
+        HeapSampler(long baseline) {
+            this.baseline = baseline;
+        }
+
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            super.write(source, byteCount);
+            if (this.byteCount >= nextSample) {
+                nextSample += 1024L * 1024L;
+                peak = Math.max(peak, liveHeap() - baseline);
+            }
+        }
+    }
+}
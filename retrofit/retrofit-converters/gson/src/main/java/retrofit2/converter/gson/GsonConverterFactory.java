@@ -51,13 +51,31 @@ public final class GsonConverterFactory extends Converter.Factory {
     @SuppressWarnings("ConstantConditions") // Guarding public API nullability.
     public static GsonConverterFactory create(Gson gson) {
         if (gson == null) throw new NullPointerException("gson == null");
-        return new GsonConverterFactory(gson);
+        return new GsonConverterFactory(gson, false, false);
     }
 
     private final Gson gson;
+    private final boolean streaming;
+    private final boolean replayable;
 
-    private GsonConverterFactory(Gson gson) {
+    private GsonConverterFactory(Gson gson, boolean streaming, boolean replayable) {
         this.gson = gson;
+        this.streaming = streaming;
+        this.replayable = replayable;
+    }
+
+    /**
+     * Return a new factory whose request bodies are serialized as they're written, directly into
+     * the HTTP stream. By default bodies are serialized into memory when the call is created.
+     * <p>
+     * Streaming bodies don't know their length so they're sent with chunked encoding, and
+     * serialization errors are thrown when the call executes. If {@code replayable} is false each
+     * body is {@linkplain RequestBody#isOneShot() one-shot} and won't be retried by OkHttp. If it's
+     * true each body keeps a copy of what it wrote, so that it can be sent again on a retry or
+     * redirect.
+     */
+    public GsonConverterFactory withStreamingRequestBodies(boolean replayable) {
+        return new GsonConverterFactory(gson, true, replayable);
     }
 
     @Override
@@ -71,6 +89,9 @@ public final class GsonConverterFactory extends Converter.Factory {
     public Converter<?, RequestBody> requestBodyConverter(Type type,
                                                           Annotation[] parameterAnnotations, Annotation[] methodAnnotations, Retrofit retrofit) {
         TypeAdapter<?> adapter = gson.getAdapter(TypeToken.get(type));
+        if (streaming) {
+            return new GsonStreamingRequestBodyConverter<>(gson, adapter, replayable);
+        }
         return new GsonRequestBodyConverter<>(gson, adapter);
     }
 }
@@ -48,6 +48,7 @@ final class GsonRequestBodyConverter<T> implements Converter<T, RequestBody> {
         JsonWriter jsonWriter = gson.newJsonWriter(writer);
         adapter.write(jsonWriter, value);
         jsonWriter.close();
-        return RequestBody.create(MEDIA_TYPE, buffer.readByteString());
+        // A snapshot shares the buffer's segments instead of copying them.
+        return RequestBody.create(MEDIA_TYPE, buffer.snapshot());
     }
 }
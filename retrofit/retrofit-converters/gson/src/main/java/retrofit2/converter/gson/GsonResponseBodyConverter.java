@@ -22,11 +22,22 @@ import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
 
+import okhttp3.MediaType;
 import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.ByteString;
 import retrofit2.Converter;
 
 final class GsonResponseBodyConverter<T> implements Converter<ResponseBody, T> {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final ByteString UTF8_BOM = ByteString.decodeHex("EFBBBF");
+    private static final ByteString UTF16_BE_BOM = ByteString.decodeHex("FEFF");
+    private static final ByteString UTF16_LE_BOM = ByteString.decodeHex("FFFE");
+    private static final ByteString UTF32_BE_BOM = ByteString.decodeHex("0000FEFF");
+
     private final Gson gson;
     private final TypeAdapter<T> adapter;
 
@@ -37,8 +48,8 @@ final class GsonResponseBodyConverter<T> implements Converter<ResponseBody, T> {
 
     @Override
     public T convert(ResponseBody value) throws IOException {
-        JsonReader jsonReader = gson.newJsonReader(value.charStream());
         try {
+            JsonReader jsonReader = gson.newJsonReader(reader(value));
             T result = adapter.read(jsonReader);
             if (jsonReader.peek() != JsonToken.END_DOCUMENT) {
                 throw new JsonIOException("JSON document was not fully consumed.");
@@ -48,4 +59,26 @@ final class GsonResponseBodyConverter<T> implements Converter<ResponseBody, T> {
             value.close();
         }
     }
+
+    /**
+     * Returns a reader that decodes UTF-8 straight from the body's source when the body is UTF-8,
+     * and the body's {@linkplain ResponseBody#charStream() char stream} otherwise.
+     */
+    private static Reader reader(ResponseBody value) throws IOException {
+        MediaType contentType = value.contentType();
+        Charset charset = contentType != null ? contentType.charset(UTF_8) : UTF_8;
+        BufferedSource source = value.source();
+        if (source.rangeEquals(0, UTF8_BOM)) {
+            source.skip(UTF8_BOM.size());
+            return new Utf8Reader(source);
+        }
+        // A byte order mark overrides the declared charset.
+        if (!UTF_8.equals(charset)
+                || source.rangeEquals(0, UTF16_BE_BOM)
+                || source.rangeEquals(0, UTF16_LE_BOM)
+                || source.rangeEquals(0, UTF32_BE_BOM)) {
+            return value.charStream();
+        }
+        return new Utf8Reader(source);
+    }
 }
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit2.converter.gson;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import javax.annotation.Nullable;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ByteString;
+import okio.Okio;
+import okio.Sink;
+import okio.Timeout;
+import retrofit2.Converter;
+
+/**
+ * Converts values to request bodies that are serialized when they're written, directly into the
+ * HTTP stream.
+ */
+final class GsonStreamingRequestBodyConverter<T> implements Converter<T, RequestBody> {
+    private static final MediaType MEDIA_TYPE = MediaType.get("application/json; charset=UTF-8");
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Gson gson;
+    private final TypeAdapter<T> adapter;
+    private final boolean replayable;
+
+    GsonStreamingRequestBodyConverter(Gson gson, TypeAdapter<T> adapter, boolean replayable) {
+        this.gson = gson;
+        this.adapter = adapter;
+        this.replayable = replayable;
+    }
+
+    @Override
+    public RequestBody convert(T value) {
+        return new StreamingRequestBody<>(gson, adapter, value, replayable);
+    }
+
+    /**
+     * A body that can be written once, unless it's replayable. Replayable bodies keep a copy of the
+     * bytes they wrote and write that copy if they're asked to write again.
+     */
+    static final class StreamingRequestBody<T> extends RequestBody {
+        private final Gson gson;
+        private final TypeAdapter<T> adapter;
+        private final T value;
+        private final boolean replayable;
+        private boolean written;
+        private @Nullable
+        ByteString replay;
+
+        StreamingRequestBody(Gson gson, TypeAdapter<T> adapter, T value, boolean replayable) {
+            this.gson = gson;
+            this.adapter = adapter;
+            this.value = value;
+            this.replayable = replayable;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return MEDIA_TYPE;
+        }
+
+        @Override
+        public boolean isOneShot() {
+            return !replayable;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            if (replay != null) {
+                sink.write(replay);
+                return;
+            }
+            if (!replayable) {
+                if (written) throw new IllegalStateException("This body can only be written once");
+                written = true;
+                write(sink);
+                return;
+            }
+
+            Buffer copy = new Buffer();
+            BufferedSink tee = Okio.buffer(new TeeSink(sink, copy));
+            write(tee);
+            replay = copy.snapshot();
+        }
+
+        private void write(BufferedSink sink) throws IOException {
+            Writer writer = new OutputStreamWriter(sink.outputStream(), UTF_8);
+            JsonWriter jsonWriter = gson.newJsonWriter(writer);
+            adapter.write(jsonWriter, value);
+            // Flush rather than close: the caller owns the sink.
+            jsonWriter.flush();
+        }
+    }
+
+    /**
+     * Writes to {@code sink} and keeps a copy in {@code copy}.
+     */
+    static final class TeeSink implements Sink {
+        private final BufferedSink sink;
+        private final Buffer copy;
+
+        TeeSink(BufferedSink sink, Buffer copy) {
+            this.sink = sink;
+            this.copy = copy;
+        }
+
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            source.copyTo(copy, 0, byteCount);
+            sink.write(source, byteCount);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            sink.flush();
+        }
+
+        @Override
+        public Timeout timeout() {
+            return sink.timeout();
+        }
+
+        @Override
+        public void close() throws IOException {
+            sink.close();
+        }
+    }
+}
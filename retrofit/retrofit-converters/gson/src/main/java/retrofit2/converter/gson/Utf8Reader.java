@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit2.converter.gson;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import okio.Buffer;
+import okio.BufferedSource;
+
+/**
+ * A reader that decodes UTF-8 directly from an okio source. Unlike {@link
+ * java.io.InputStreamReader} this doesn't go through an {@link java.io.InputStream} and a {@link
+ * java.nio.charset.CharsetDecoder}, and it doesn't synchronize on each read.
+ * <p>
+ * Malformed input is decoded as U+FFFD, one for each maximal well-formed prefix of a sequence, like
+ * the JDK's decoder does. Overlong and out-of-range sequences are therefore rejected at their second
+ * byte. An encoded surrogate is replaced as a whole, as the JDK does.
+ */
+final class Utf8Reader extends Reader {
+    private static final char REPLACEMENT_CHARACTER = '\ufffd';
+
+    private final BufferedSource source;
+    private final byte[] bytes = new byte[8192];
+    /**
+     * The second half of a surrogate pair that didn't fit in the previous read, or 0.
+     */
+    private char pendingLowSurrogate;
+
+    Utf8Reader(BufferedSource source) {
+        this.source = source;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (pendingLowSurrogate != 0) {
+            cbuf[off] = pendingLowSurrogate;
+            pendingLowSurrogate = 0;
+            return 1;
+        }
+        if (!source.request(1)) return -1;
+
+        // Each byte decodes to at most one char, so reading up to len bytes can't overflow cbuf.
+        // Code points that span the end of the range are left in the buffer for the next read.
+        Buffer buffer = source.getBuffer();
+        int byteCount = (int) Math.min(Math.min(buffer.size(), len), bytes.length);
+        byteCount = completeCodePointsLength(buffer, byteCount);
+        if (byteCount == 0) {
+            // The buffer starts with a code point whose bytes haven't all arrived, or which is too
+            // long for len. Read it by itself, and only as far as it's well-formed: a malformed
+            // sequence decodes to one replacement char and the bytes after it may be more chars.
+            byte b0 = buffer.getByte(0);
+            int length = sequenceLength(b0);
+            source.request(length);
+            byteCount = 1;
+            while (byteCount < length && byteCount < buffer.size()
+                    && isContinuation(b0, byteCount, buffer.getByte(byteCount))) {
+                byteCount++;
+            }
+        }
+        for (int read = 0; read < byteCount; ) {
+            read += buffer.read(bytes, read, byteCount - read);
+        }
+        return decode(cbuf, off, len, byteCount);
+    }
+
+    private int decode(char[] cbuf, int off, int len, int byteCount) {
+        int charCount = 0;
+        int i = 0;
+        while (i < byteCount) {
+            int b0 = bytes[i];
+            if (b0 >= 0) {
+                // ASCII: 0xxxxxxx.
+                cbuf[off + charCount++] = (char) b0;
+                i++;
+                continue;
+            }
+
+            int length = sequenceLength(b0);
+            if (length == 1) {
+                // An unexpected continuation byte or an invalid lead byte.
+                cbuf[off + charCount++] = REPLACEMENT_CHARACTER;
+                i++;
+                continue;
+            }
+
+            int codePoint = b0 & (0x7f >> length);
+            int end = i + 1;
+            for (; end < i + length && end < byteCount; end++) {
+                int b = bytes[end];
+                if (!isContinuation(b0, end - i, b)) break;
+                codePoint = codePoint << 6 | (b & 0x3f);
+            }
+            if (end == i + length
+                    && codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+                // The JDK replaces all three bytes of an encoded surrogate with one char.
+                cbuf[off + charCount++] = REPLACEMENT_CHARACTER;
+                i = end;
+                continue;
+            }
+            if (end != i + length) {
+                // Truncated, or an ill-formed byte. The bytes so far decode to one replacement char.
+                cbuf[off + charCount++] = REPLACEMENT_CHARACTER;
+                i = end;
+                continue;
+            }
+            i = end;
+
+            if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                cbuf[off + charCount++] = (char) codePoint;
+            } else {
+                cbuf[off + charCount++] = Character.highSurrogate(codePoint);
+                if (charCount < len) {
+                    cbuf[off + charCount++] = Character.lowSurrogate(codePoint);
+                } else {
+                    pendingLowSurrogate = Character.lowSurrogate(codePoint);
+                }
+            }
+        }
+        return charCount;
+    }
+
+    /**
+     * Returns the length of the prefix of the first {@code byteCount} bytes of {@code buffer} that
+     * doesn't end with a partial code point.
+     */
+    private static int completeCodePointsLength(Buffer buffer, int byteCount) {
+        for (int i = byteCount - 1; i >= 0 && i >= byteCount - 3; i--) {
+            byte b = buffer.getByte(i);
+            if ((b & 0xc0) != 0x80) {
+                return i + sequenceLength(b) > byteCount ? i : byteCount;
+            }
+        }
+        // Only continuation bytes. They're malformed, so decode them as they are.
+        return byteCount;
+    }
+
+    /**
+     * Returns the number of bytes in the UTF-8 sequence that starts with {@code b}, or 1 if it
+     * can't start a sequence.
+     */
+    private static int sequenceLength(int b) {
+        int unsigned = b & 0xff;
+        if (unsigned < 0x80) return 1;
+        if (unsigned < 0xc2) return 1; // A continuation byte or an overlong 2-byte lead.
+        if (unsigned < 0xe0) return 2;
+        if (unsigned < 0xf0) return 3;
+        if (unsigned < 0xf5) return 4;
+        return 1;
+    }
+
+    /**
+     * Returns true if {@code b} can be the byte at {@code index} of a sequence that starts with
+     * {@code b0}. The second byte's range is narrower after some lead bytes, so that a sequence
+     * can't be overlong or exceed U+10FFFF.
+     */
+    private static boolean isContinuation(int b0, int index, int b) {
+        int unsigned = b & 0xff;
+        if (index == 1) {
+            switch (b0 & 0xff) {
+                case 0xe0:
+                    return unsigned >= 0xa0 && unsigned <= 0xbf;
+                case 0xf0:
+                    return unsigned >= 0x90 && unsigned <= 0xbf;
+                case 0xf4:
+                    return unsigned >= 0x80 && unsigned <= 0x8f;
+                default:
+                    break;
+            }
+        }
+        return (unsigned & 0xc0) == 0x80;
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+}
@@ -28,10 +28,13 @@ import org.junit.Rule;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
 
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.ByteString;
 import retrofit2.Call;
 import retrofit2.Response;
 import retrofit2.Retrofit;
@@ -120,6 +123,8 @@ public final class GsonConverterFactoryTest {
         Call<Value> value();
     }
 
+    private static final GsonConverterFactory FACTORY = GsonConverterFactory.create();
+
     @Rule
     public final MockWebServer server = new MockWebServer();
 
@@ -187,6 +192,40 @@ public final class GsonConverterFactoryTest {
         assertThat(response.body().getName()).isNull();
     }
 
+    @Test
+    public void utf8BomSkipped() throws IOException {
+        Buffer responseBody = new Buffer()
+                .write(ByteString.decodeHex("EFBBBF"))
+                .writeUtf8("{\"theName\":\"caf\u00e9 \ud83c\udf69\"}");
+        server.enqueue(new MockResponse().setBody(responseBody));
+
+        Call<AnImplementation> call = service.anImplementation(new AnImplementation("value"));
+        assertThat(call.execute().body().theName).isEqualTo("caf\u00e9 \ud83c\udf69");
+    }
+
+    @Test
+    public void utf16BomOverridesCharset() throws IOException {
+        Buffer responseBody = new Buffer()
+                .write(ByteString.decodeHex("FEFF"))
+                .writeString("{\"theName\":\"caf\u00e9\"}", Charset.forName("UTF-16BE"));
+        server.enqueue(new MockResponse().setBody(responseBody));
+
+        Call<AnImplementation> call = service.anImplementation(new AnImplementation("value"));
+        assertThat(call.execute().body().theName).isEqualTo("caf\u00e9");
+    }
+
+    @Test
+    public void nonUtf8CharsetHonored() throws IOException {
+        Buffer responseBody = new Buffer()
+                .writeString("{\"theName\":\"caf\u00e9\"}", Charset.forName("ISO-8859-1"));
+        server.enqueue(new MockResponse()
+                .setHeader("Content-Type", "application/json; charset=ISO-8859-1")
+                .setBody(responseBody));
+
+        Call<AnImplementation> call = service.anImplementation(new AnImplementation("value"));
+        assertThat(call.execute().body().theName).isEqualTo("caf\u00e9");
+    }
+
     @Test
     public void requireFullResponseDocumentConsumption() throws Exception {
         server.enqueue(new MockResponse().setBody("{\"theName\":\"value\"}"));
@@ -199,4 +238,62 @@ public final class GsonConverterFactoryTest {
             assertThat(e).hasMessage("JSON document was not fully consumed.");
         }
     }
+
+    @Test
+    public void streamingRequestBody() throws IOException, InterruptedException {
+        Service streamingService = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(FACTORY.withStreamingRequestBodies(false))
+                .build()
+                .create(Service.class);
+        server.enqueue(new MockResponse().setBody("{\"theName\":\"value\"}"));
+
+        Call<AnImplementation> call =
+                streamingService.anImplementation(new AnImplementation("value"));
+        assertThat(call.request().body().isOneShot()).isTrue();
+        assertThat(call.request().body().contentLength()).isEqualTo(-1L);
+        assertThat(call.execute().body().theName).isEqualTo("value");
+
+        RecordedRequest request = server.takeRequest();
+        assertThat(request.getBody().readUtf8()).isEqualTo("{\"theName\":\"value\"}");
+        assertThat(request.getHeader("Content-Type")).isEqualTo("application/json; charset=UTF-8");
+        assertThat(request.getHeader("Transfer-Encoding")).isEqualTo("chunked");
+    }
+
+    @Test
+    public void streamingRequestBodyIsNotRetried() throws IOException {
+        Service streamingService = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(FACTORY.withStreamingRequestBodies(false))
+                .build()
+                .create(Service.class);
+        server.enqueue(new MockResponse().setResponseCode(408));
+
+        Response<AnImplementation> response =
+                streamingService.anImplementation(new AnImplementation("value")).execute();
+        assertThat(response.code()).isEqualTo(408);
+        assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void replayableStreamingRequestBodyIsRetried()
+            throws IOException, InterruptedException {
+        Service streamingService = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(FACTORY.withStreamingRequestBodies(true))
+                .build()
+                .create(Service.class);
+        server.enqueue(new MockResponse().setResponseCode(408));
+        server.enqueue(new MockResponse().setBody("{\"theName\":\"value\"}"));
+
+        Call<AnImplementation> call =
+                streamingService.anImplementation(new AnImplementation("value"));
+        assertThat(call.request().body().isOneShot()).isFalse();
+        assertThat(call.execute().body().theName).isEqualTo("value");
+
+        assertThat(server.takeRequest().getBody().readUtf8())
+                .isEqualTo("{\"theName\":\"value\"}");
+        assertThat(server.takeRequest().getBody().readUtf8())
+                .isEqualTo("{\"theName\":\"value\"}");
+    }
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit2.converter.gson;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import okio.Buffer;
+import okio.ByteString;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class Utf8ReaderTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String TEXT = "{\"a\":\"ascii\",\"é\":\"café\",\"東京\":\"日本語\","
+            + "\"emoji\":\"🍩🐈\",\"ß\":\"\u0000\u007f\u0080߿ࠀ￿\"}";
+
+    @Test
+    public void decodesLikeTheJdk() throws IOException {
+        Buffer buffer = new Buffer().writeUtf8(TEXT);
+        assertThat(readAll(new Utf8Reader(buffer), 1024)).isEqualTo(TEXT);
+    }
+
+    @Test
+    public void codePointsSplitAcrossReads() throws IOException {
+        for (int charCount = 1; charCount <= 5; charCount++) {
+            Buffer buffer = new Buffer().writeUtf8(TEXT);
+            assertThat(readAll(new Utf8Reader(buffer), charCount)).isEqualTo(TEXT);
+        }
+    }
+
+    @Test
+    public void codePointsSplitAcrossArrivals() throws IOException {
+        Source oneByteAtATime = new ForwardingSource(new Buffer().writeUtf8(TEXT)) {
+            @Override
+            public long read(Buffer sink, long byteCount) throws IOException {
+                return super.read(sink, Math.min(byteCount, 1));
+            }
+        };
+        assertThat(readAll(new Utf8Reader(Okio.buffer(oneByteAtATime)), 1024)).isEqualTo(TEXT);
+    }
+
+    @Test
+    public void malformedInputIsReplaced() throws IOException {
+        assertDecodesLikeTheJdk("80");
+        assertDecodesLikeTheJdk("41ff42");
+        assertDecodesLikeTheJdk("c080");
+        assertDecodesLikeTheJdk("e28241");
+        assertDecodesLikeTheJdk("e282");
+        assertDecodesLikeTheJdk("f09f8d");
+        assertDecodesLikeTheJdk("e241");
+        assertDecodesLikeTheJdk("f09f4141");
+        assertDecodesLikeTheJdk("41e2824142");
+        assertDecodesLikeTheJdk("f09f8d41f09f8d");
+    }
+
+    @Test
+    public void illFormedSecondBytesAreReplacedOneByOne() throws IOException {
+        assertDecodesLikeTheJdk("e08080"); // Overlong.
+        assertDecodesLikeTheJdk("e09fbf");
+        assertDecodesLikeTheJdk("e0a080");
+        assertDecodesLikeTheJdk("eda080"); // Surrogate.
+        assertDecodesLikeTheJdk("edbfbf");
+        assertDecodesLikeTheJdk("ed9fbf");
+        assertDecodesLikeTheJdk("f0808080"); // Overlong.
+        assertDecodesLikeTheJdk("f08fbfbf");
+        assertDecodesLikeTheJdk("f0908080");
+        assertDecodesLikeTheJdk("f4908080"); // Above U+10FFFF.
+        assertDecodesLikeTheJdk("f48fbfbf");
+        assertDecodesLikeTheJdk("41e0804142");
+        assertDecodesLikeTheJdk("f490");
+    }
+
+    private static void assertDecodesLikeTheJdk(String hex) throws IOException {
+        ByteString bytes = ByteString.decodeHex(hex);
+        String expected = new String(bytes.toByteArray(), UTF_8);
+        // Small reads take a different path for sequences longer than the read.
+        for (int charCount : new int[]{1, 2, 1024}) {
+            String actual = readAll(new Utf8Reader(new Buffer().write(bytes)), charCount);
+            assertThat(actual)
+                    .overridingErrorMessage("%s decoded as %s with char[%s]", hex, actual, charCount)
+                    .isEqualTo(expected);
+        }
+    }
+
+    private static String readAll(Utf8Reader reader, int charCount) throws IOException {
+        StringBuilder result = new StringBuilder();
+        char[] chars = new char[charCount];
+        for (int read; (read = reader.read(chars, 0, charCount)) != -1; ) {
+            result.append(chars, 0, read);
+        }
+        return result.toString();
+    }
+}
@@ -58,41 +58,63 @@ public final class MoshiConverterFactory extends Converter.Factory {
     @SuppressWarnings("ConstantConditions") // Guarding public API nullability.
     public static MoshiConverterFactory create(Moshi moshi) {
         if (moshi == null) throw new NullPointerException("moshi == null");
-        return new MoshiConverterFactory(moshi, false, false, false);
+        return new MoshiConverterFactory(moshi, false, false, false, false, false);
     }
 
     private final Moshi moshi;
     private final boolean lenient;
     private final boolean failOnUnknown;
     private final boolean serializeNulls;
+    private final boolean streaming;
+    private final boolean replayable;
 
     private MoshiConverterFactory(Moshi moshi, boolean lenient, boolean failOnUnknown,
-                                  boolean serializeNulls) {
+                                  boolean serializeNulls, boolean streaming, boolean replayable) {
         this.moshi = moshi;
         this.lenient = lenient;
         this.failOnUnknown = failOnUnknown;
         this.serializeNulls = serializeNulls;
+        this.streaming = streaming;
+        this.replayable = replayable;
     }
 
     /**
      * Return a new factory which uses {@linkplain JsonAdapter#lenient() lenient} adapters.
      */
     public MoshiConverterFactory asLenient() {
-        return new MoshiConverterFactory(moshi, true, failOnUnknown, serializeNulls);
+        return new MoshiConverterFactory(moshi, true, failOnUnknown, serializeNulls, streaming,
+                replayable);
     }
 
     /**
      * Return a new factory which uses {@link JsonAdapter#failOnUnknown()} adapters.
      */
     public MoshiConverterFactory failOnUnknown() {
-        return new MoshiConverterFactory(moshi, lenient, true, serializeNulls);
+        return new MoshiConverterFactory(moshi, lenient, true, serializeNulls, streaming,
+                replayable);
     }
 
     /**
      * Return a new factory which includes null values into the serialized JSON.
      */
     public MoshiConverterFactory withNullSerialization() {
-        return new MoshiConverterFactory(moshi, lenient, failOnUnknown, true);
+        return new MoshiConverterFactory(moshi, lenient, failOnUnknown, true, streaming,
+                replayable);
+    }
+
+    /**
+     * Return a new factory whose request bodies are serialized as they're written, directly into
+     * the HTTP stream. By default bodies are serialized into memory when the call is created.
+     * <p>
+     * Streaming bodies don't know their length so they're sent with chunked encoding, and
+     * serialization errors are thrown when the call executes. If {@code replayable} is false each
+     * body is {@linkplain RequestBody#isOneShot() one-shot} and won't be retried by OkHttp. If it's
+     * true each body keeps a copy of what it wrote, so that it can be sent again on a retry or
+     * redirect.
+     */
+    public MoshiConverterFactory withStreamingRequestBodies(boolean replayable) {
+        return new MoshiConverterFactory(moshi, lenient, failOnUnknown, serializeNulls, true,
+                replayable);
     }
 
     @Override
@@ -124,6 +146,9 @@ public final class MoshiConverterFactory extends Converter.Factory {
         if (serializeNulls) {
             adapter = adapter.serializeNulls();
         }
+        if (streaming) {
+            return new MoshiStreamingRequestBodyConverter<>(adapter, replayable);
+        }
         return new MoshiRequestBodyConverter<>(adapter);
     }
 
@@ -39,6 +39,7 @@ final class MoshiRequestBodyConverter<T> implements Converter<T, RequestBody> {
         Buffer buffer = new Buffer();
         JsonWriter writer = JsonWriter.of(buffer);
         adapter.toJson(writer, value);
-        return RequestBody.create(MEDIA_TYPE, buffer.readByteString());
+        // A snapshot shares the buffer's segments instead of copying them.
+        return RequestBody.create(MEDIA_TYPE, buffer.snapshot());
     }
 }
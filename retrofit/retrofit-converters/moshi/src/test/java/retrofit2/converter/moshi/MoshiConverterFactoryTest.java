@@ -150,6 +150,8 @@ public final class MoshiConverterFactoryTest {
         Call<String> annotations(@Body @Qualifier @NonQualifer String body);
     }
 
+    private static final MoshiConverterFactory FACTORY = MoshiConverterFactory.create();
+
     @Rule
     public final MockWebServer server = new MockWebServer();
 
@@ -323,4 +325,62 @@ public final class MoshiConverterFactoryTest {
             assertThat(e).hasMessage("JSON document was not fully consumed.");
         }
     }
+
+    @Test
+    public void streamingRequestBody() throws IOException, InterruptedException {
+        Service streamingService = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(FACTORY.withStreamingRequestBodies(false))
+                .build()
+                .create(Service.class);
+        server.enqueue(new MockResponse().setBody("{\"theName\":\"value\"}"));
+
+        Call<AnImplementation> call =
+                streamingService.anImplementation(new AnImplementation("value"));
+        assertThat(call.request().body().isOneShot()).isTrue();
+        assertThat(call.request().body().contentLength()).isEqualTo(-1L);
+        assertThat(call.execute().body().theName).isEqualTo("value");
+
+        RecordedRequest request = server.takeRequest();
+        assertThat(request.getBody().readUtf8()).isEqualTo("{\"theName\":\"value\"}");
+        assertThat(request.getHeader("Content-Type")).isEqualTo("application/json; charset=UTF-8");
+        assertThat(request.getHeader("Transfer-Encoding")).isEqualTo("chunked");
+    }
+
+    @Test
+    public void streamingRequestBodyIsNotRetried() throws IOException {
+        Service streamingService = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(FACTORY.withStreamingRequestBodies(false))
+                .build()
+                .create(Service.class);
+        server.enqueue(new MockResponse().setResponseCode(408));
+
+        Response<AnImplementation> response =
+                streamingService.anImplementation(new AnImplementation("value")).execute();
+        assertThat(response.code()).isEqualTo(408);
+        assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void replayableStreamingRequestBodyIsRetried()
+            throws IOException, InterruptedException {
+        Service streamingService = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(FACTORY.withStreamingRequestBodies(true))
+                .build()
+                .create(Service.class);
+        server.enqueue(new MockResponse().setResponseCode(408));
+        server.enqueue(new MockResponse().setBody("{\"theName\":\"value\"}"));
+
+        Call<AnImplementation> call =
+                streamingService.anImplementation(new AnImplementation("value"));
+        assertThat(call.request().body().isOneShot()).isFalse();
+        assertThat(call.execute().body().theName).isEqualTo("value");
+
+        assertThat(server.takeRequest().getBody().readUtf8())
+                .isEqualTo("{\"theName\":\"value\"}");
+        assertThat(server.takeRequest().getBody().readUtf8())
+                .isEqualTo("{\"theName\":\"value\"}");
+    }
 }
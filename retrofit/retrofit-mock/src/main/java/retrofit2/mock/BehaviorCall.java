@@ -19,32 +19,47 @@ import java.io.IOException;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 
 import okhttp3.Request;
+import okhttp3.RequestBody;
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
 
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
+/**
+ * A call that applies {@link NetworkBehavior} to its delegate. Delays are scheduled on {@code
+ * scheduler} rather than slept, and callbacks are invoked on {@code backgroundExecutor}.
+ */
 final class BehaviorCall<T> implements Call<T> {
     final NetworkBehavior behavior;
     final ExecutorService backgroundExecutor;
+    final ScheduledExecutorService scheduler;
     final Call<T> delegate;
 
+    private volatile @Nullable
+    Runnable admission;
     private volatile @Nullable
     Future<?> task;
+    private volatile @Nullable
+    Callback<T> callback;
+    private final AtomicBoolean completed = new AtomicBoolean();
     volatile boolean canceled;
     @GuardedBy("this")
     private boolean executed;
 
-    BehaviorCall(NetworkBehavior behavior, ExecutorService backgroundExecutor, Call<T> delegate) {
+    BehaviorCall(NetworkBehavior behavior, ExecutorService backgroundExecutor,
+                 ScheduledExecutorService scheduler, Call<T> delegate) {
         this.behavior = behavior;
         this.backgroundExecutor = backgroundExecutor;
+        this.scheduler = scheduler;
         this.delegate = delegate;
     }
 
@@ -52,7 +67,7 @@ final class BehaviorCall<T> implements Call<T> {
     // We are a final type & this saves clearing state.
     @Override
     public Call<T> clone() {
-        return new BehaviorCall<>(behavior, backgroundExecutor, delegate.clone());
+        return new BehaviorCall<>(behavior, backgroundExecutor, scheduler, delegate.clone());
     }
 
     @Override
@@ -69,52 +84,79 @@ final class BehaviorCall<T> implements Call<T> {
             if (executed) throw new IllegalStateException("Already executed");
             executed = true;
         }
-        task = backgroundExecutor.submit(new Runnable() {
-            boolean delaySleep() {
-                long sleepMs = behavior.calculateDelay(MILLISECONDS);
-                if (sleepMs > 0) {
-                    try {
-                        Thread.sleep(sleepMs);
-                    } catch (InterruptedException e) {
-                        callback.onFailure(BehaviorCall.this, new IOException("canceled"));
-                        return false;
-                    }
+        this.callback = callback;
+        // Start on the background executor once the behavior's concurrency limit admits the call.
+        Runnable admission = () -> backgroundExecutor.execute(() -> start(callback));
+        this.admission = admission;
+        behavior.admitCall(admission);
+    }
+
+    private void start(final Callback<T> callback) {
+        if (canceled) {
+            finish(() -> callback.onFailure(this, new IOException("canceled")));
+            return;
+        }
+        final long startNanos = behavior.reserveStart(System.nanoTime());
+        final long delayNanos = behavior.calculateDelay(NANOSECONDS);
+        if (behavior.calculateIsFailure()) {
+            schedule(startNanos + delayNanos,
+                    () -> callback.onFailure(this, behavior.failureException()));
+        } else if (behavior.calculateIsError()) {
+            //noinspection unchecked An error response has no body.
+            Response<T> error = (Response<T>) behavior.createErrorResponse();
+            schedule(startNanos + delayNanos, () -> callback.onResponse(this, error));
+        } else {
+            delegate.enqueue(new Callback<T>() {
+                @Override
+                public void onResponse(Call<T> call, Response<T> response) {
+                    long readyNanos = Math.max(startNanos, System.nanoTime()) + delayNanos;
+                    long doneNanos = behavior.reserveTransfer(
+                            readyNanos, requestSize() + behavior.responseSize());
+                    schedule(doneNanos, () -> callback.onResponse(call, response));
                 }
-                return true;
-            }
 
-            @Override
-            public void run() {
-                if (canceled) {
-                    callback.onFailure(BehaviorCall.this, new IOException("canceled"));
-                } else if (behavior.calculateIsFailure()) {
-                    if (delaySleep()) {
-                        callback.onFailure(BehaviorCall.this, behavior.failureException());
-                    }
-                } else if (behavior.calculateIsError()) {
-                    if (delaySleep()) {
-                        //noinspection unchecked An error response has no body.
-                        callback.onResponse(BehaviorCall.this, (Response<T>) behavior.createErrorResponse());
-                    }
-                } else {
-                    delegate.enqueue(new Callback<T>() {
-                        @Override
-                        public void onResponse(Call<T> call, Response<T> response) {
-                            if (delaySleep()) {
-                                callback.onResponse(call, response);
-                            }
-                        }
-
-                        @Override
-                        public void onFailure(Call<T> call, Throwable t) {
-                            if (delaySleep()) {
-                                callback.onFailure(call, t);
-                            }
-                        }
-                    });
+                @Override
+                public void onFailure(Call<T> call, Throwable t) {
+                    long readyNanos = Math.max(startNanos, System.nanoTime()) + delayNanos;
+                    schedule(readyNanos, () -> callback.onFailure(call, t));
                 }
-            }
-        });
+            });
+        }
+    }
+
+    private long requestSize() {
+        try {
+            RequestBody body = delegate.request().body();
+            return body != null ? Math.max(body.contentLength(), 0) : 0;
+        } catch (IOException | RuntimeException e) {
+            return 0;
+        }
+    }
+
+    /** Invokes {@code result} on the background executor at {@code dueNanos}. */
+    private void schedule(long dueNanos, Runnable result) {
+        long delayNanos = dueNanos - System.nanoTime();
+        Future<?> task = scheduler.schedule(() -> finish(result), Math.max(delayNanos, 0),
+                NANOSECONDS);
+        this.task = task;
+        // A cancel between start() checking and the task being published didn't see the task.
+        if (canceled && task.cancel(false)) {
+            finishCanceled();
+        }
+    }
+
+    /** Releases this call's place in the network and invokes {@code result}, once. */
+    private void finish(Runnable result) {
+        if (!completed.compareAndSet(false, true)) return;
+        behavior.finishCall();
+        backgroundExecutor.execute(result);
+    }
+
+    private void finishCanceled() {
+        Callback<T> callback = this.callback;
+        if (callback != null) {
+            finish(() -> callback.onFailure(this, new IOException("canceled")));
+        }
     }
 
     @Override
@@ -156,9 +198,19 @@ final class BehaviorCall<T> implements Call<T> {
     @Override
     public void cancel() {
         canceled = true;
+        Runnable admission = this.admission;
+        Callback<T> callback = this.callback;
+        if (admission != null && callback != null && behavior.cancelWaitingCall(admission)) {
+            // The call never took a place in the network, so it has none to release.
+            if (completed.compareAndSet(false, true)) {
+                backgroundExecutor.execute(
+                        () -> callback.onFailure(this, new IOException("canceled")));
+            }
+            return;
+        }
         Future<?> task = this.task;
-        if (task != null) {
-            task.cancel(true);
+        if (task != null && task.cancel(false)) {
+            finishCanceled();
         }
     }
 
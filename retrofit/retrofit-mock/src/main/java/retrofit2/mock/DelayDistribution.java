@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit2.mock;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The distribution of network round trip delays. Real latencies have a long tail that a delay
+ * with a plus-or-minus variance doesn't model; use one of these with
+ * {@link NetworkBehavior#setDelayDistribution(DelayDistribution)} to simulate it.
+ */
+public abstract class DelayDistribution {
+    /** The standard normal quantile of the 99th percentile. */
+    private static final double Z_99 = 2.3263478740408408;
+
+    /**
+     * A log-normal distribution with the given median and 99th percentile. Half of the delays are
+     * shorter than {@code median} and 1% are longer than {@code p99}.
+     */
+    @SuppressWarnings("ConstantConditions") // Guarding public API nullability.
+    public static DelayDistribution logNormal(long median, long p99, TimeUnit unit) {
+        if (unit == null) throw new NullPointerException("unit == null");
+        if (median <= 0) throw new IllegalArgumentException("median <= 0: " + median);
+        if (p99 < median) throw new IllegalArgumentException("p99 < median: " + p99);
+        double sigma = Math.log((double) p99 / median) / Z_99;
+        return new LogNormal(unit.toNanos(median), sigma);
+    }
+
+    /**
+     * A distribution that replays recorded percentiles, such as those of a production service's
+     * latency. {@code percentiles[i]} is the percentile, between 0 and 100, of the delay
+     * {@code delays[i]}. Delays between two percentiles are interpolated linearly. Delays below the
+     * lowest percentile are equal to its delay, so include percentile 0 to set the minimum. Delays
+     * above the highest percentile are equal to its delay.
+     */
+    @SuppressWarnings("ConstantConditions") // Guarding public API nullability.
+    public static DelayDistribution percentiles(double[] percentiles, long[] delays,
+                                                TimeUnit unit) {
+        if (percentiles == null) throw new NullPointerException("percentiles == null");
+        if (delays == null) throw new NullPointerException("delays == null");
+        if (unit == null) throw new NullPointerException("unit == null");
+        if (percentiles.length == 0 || percentiles.length != delays.length) {
+            throw new IllegalArgumentException(
+                    "Expected the same number of percentiles and delays, and at least one.");
+        }
+        long[] delayNanos = new long[delays.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            if (!(percentiles[i] >= 0 && percentiles[i] <= 100)) {
+                throw new IllegalArgumentException("Percentiles must be between 0 and 100.");
+            }
+            if (delays[i] < 0) {
+                throw new IllegalArgumentException("Delays must be positive values.");
+            }
+            if (i > 0 && (percentiles[i] <= percentiles[i - 1] || delays[i] < delays[i - 1])) {
+                throw new IllegalArgumentException(
+                        "Percentiles must be increasing and delays must not decrease.");
+            }
+            delayNanos[i] = unit.toNanos(delays[i]);
+        }
+        return new Percentiles(percentiles.clone(), delayNanos);
+    }
+
+    DelayDistribution() {
+    }
+
+    /** Returns a random delay from this distribution. */
+    abstract long sampleNanos(Random random);
+
+    static final class LogNormal extends DelayDistribution {
+        private final long medianNanos;
+        private final double sigma;
+
+        LogNormal(long medianNanos, double sigma) {
+            this.medianNanos = medianNanos;
+            this.sigma = sigma;
+        }
+
+        @Override
+        long sampleNanos(Random random) {
+            double nanos = medianNanos * Math.exp(sigma * random.nextGaussian());
+            return nanos < Long.MAX_VALUE ? (long) nanos : Long.MAX_VALUE;
+        }
+    }
+
+    static final class Percentiles extends DelayDistribution {
+        private final double[] percentiles;
+        private final long[] delayNanos;
+
+        Percentiles(double[] percentiles, long[] delayNanos) {
+            this.percentiles = percentiles;
+            this.delayNanos = delayNanos;
+        }
+
+        @Override
+        long sampleNanos(Random random) {
+            double percentile = random.nextDouble() * 100;
+            if (percentile <= percentiles[0]) return delayNanos[0];
+            for (int i = 1; i < percentiles.length; i++) {
+                if (percentile <= percentiles[i]) {
+                    double fraction = (percentile - percentiles[i - 1])
+                            / (percentiles[i] - percentiles[i - 1]);
+                    return delayNanos[i - 1]
+                            + (long) (fraction * (delayNanos[i] - delayNanos[i - 1]));
+                }
+            }
+            return delayNanos[delayNanos.length - 1];
+        }
+    }
+}
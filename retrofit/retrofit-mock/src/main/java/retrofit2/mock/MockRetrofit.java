@@ -18,6 +18,9 @@ package retrofit2.mock;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
 
@@ -27,11 +30,14 @@ public final class MockRetrofit {
     private final Retrofit retrofit;
     private final NetworkBehavior behavior;
     private final ExecutorService executor;
+    private final ScheduledExecutorService scheduler;
 
-    MockRetrofit(Retrofit retrofit, NetworkBehavior behavior, ExecutorService executor) {
+    MockRetrofit(Retrofit retrofit, NetworkBehavior behavior, ExecutorService executor,
+                 ScheduledExecutorService scheduler) {
         this.retrofit = retrofit;
         this.behavior = behavior;
         this.executor = executor;
+        this.scheduler = scheduler;
     }
 
     public Retrofit retrofit() {
@@ -48,7 +54,7 @@ public final class MockRetrofit {
 
     @SuppressWarnings("unchecked") // Single-interface proxy creation guarded by parameter safety.
     public <T> BehaviorDelegate<T> create(Class<T> service) {
-        return new BehaviorDelegate<>(retrofit, behavior, executor, service);
+        return new BehaviorDelegate<>(retrofit, behavior, executor, scheduler, service);
     }
 
     public static final class Builder {
@@ -71,6 +77,12 @@ public final class MockRetrofit {
             return this;
         }
 
+        /**
+         * The executor on which callbacks are invoked. If it is a {@link ScheduledExecutorService}
+         * network delays are also scheduled on it. Otherwise they're scheduled on a single daemon
+         * thread which only hands results to this executor, so calls waiting for their delay don't
+         * occupy its threads.
+         */
         @SuppressWarnings("ConstantConditions") // Guarding public API nullability.
         public Builder backgroundExecutor(ExecutorService executor) {
             if (executor == null) throw new NullPointerException("executor == null");
@@ -81,7 +93,23 @@ public final class MockRetrofit {
         public MockRetrofit build() {
             if (behavior == null) behavior = NetworkBehavior.create();
             if (executor == null) executor = Executors.newCachedThreadPool();
-            return new MockRetrofit(retrofit, behavior, executor);
+            ScheduledExecutorService scheduler = executor instanceof ScheduledExecutorService
+                    ? (ScheduledExecutorService) executor
+                    : newScheduler();
+            return new MockRetrofit(retrofit, behavior, executor, scheduler);
+        }
+
+        private static ScheduledExecutorService newScheduler() {
+            ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "MockRetrofit scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // Let the thread exit when no calls are waiting so unused instances don't leak it.
+            scheduler.setKeepAliveTime(60, TimeUnit.SECONDS);
+            scheduler.allowCoreThreadTimeOut(true);
+            scheduler.setRemoveOnCancelPolicy(true);
+            return scheduler;
         }
     }
 }
@@ -16,14 +16,21 @@
 package retrofit2.mock;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
 import okhttp3.ResponseBody;
 import retrofit2.Response;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 /**
  * A simple emulation of the behavior of network calls.
@@ -37,8 +44,23 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
  * Behavior can be applied to a Retrofit interface with {@link MockRetrofit}. Behavior can also
  * be applied elsewhere using {@link #calculateDelay(TimeUnit)} and {@link #calculateIsFailure()}.
  * <p>
+ * For load and capacity testing, calls made through {@link MockRetrofit} can also be limited like
+ * those of a real network:
+ * <ul>
+ * <li>Delay distribution – a {@linkplain DelayDistribution long-tailed or recorded} distribution
+ * of delays to use instead of the delay and variance.</li>
+ * <li>Bandwidth – the bytes per second shared by all calls. Each successful call transfers its
+ * request body and a {@linkplain #setResponseSize response} of a fixed size.</li>
+ * <li>Throughput – the maximum number of calls started per second.</li>
+ * <li>Concurrency – the maximum number of calls in flight. Further calls wait for one to
+ * finish.</li>
+ * </ul>
+ * These limits are shared by every call that uses this behavior. Delays are scheduled rather than
+ * slept, so many concurrent calls don't need as many threads.
+ * <p>
  * By default, instances of this class will use a 2 second delay with 40% variance. Failures
- * will occur 3% of the time. HTTP errors will occur 0% of the time.
+ * will occur 3% of the time. HTTP errors will occur 0% of the time. Bandwidth, throughput, and
+ * concurrency are unlimited.
  */
 public final class NetworkBehavior {
     private static final int DEFAULT_DELAY_MS = 2000; // Network calls will take 2 seconds.
@@ -72,6 +94,22 @@ public final class NetworkBehavior {
     private volatile int errorPercent = DEFAULT_ERROR_PERCENT;
     private volatile Callable<Response<?>> errorFactory =
             () -> Response.error(500, ResponseBody.create(null, new byte[0]));
+    private volatile @Nullable
+    DelayDistribution delayDistribution;
+    private volatile long bandwidth;
+    private volatile long responseSize;
+    private volatile int maxCallsPerSecond;
+    private volatile int maxConcurrentCalls;
+
+    // The simulated network's state, shared by all calls which use this behavior.
+    @GuardedBy("this")
+    private long nextStartNanos = Long.MIN_VALUE;
+    @GuardedBy("this")
+    private long linkFreeNanos = Long.MIN_VALUE;
+    @GuardedBy("this")
+    private int activeCalls;
+    @GuardedBy("this")
+    private final ArrayDeque<Runnable> waitingCalls = new ArrayDeque<>();
 
     private NetworkBehavior(Random random) {
         this.random = random;
@@ -94,7 +132,7 @@ public final class NetworkBehavior {
      * The network round trip delay.
      */
     public long delay(TimeUnit unit) {
-        return MILLISECONDS.convert(delayMs, unit);
+        return unit.convert(delayMs, MILLISECONDS);
     }
 
     /**
@@ -112,6 +150,93 @@ public final class NetworkBehavior {
         return variancePercent;
     }
 
+    /**
+     * Set the distribution of network round trip delays, or null to use the {@linkplain
+     * #setDelay delay} and {@linkplain #setVariancePercent variance}.
+     */
+    public void setDelayDistribution(@Nullable DelayDistribution delayDistribution) {
+        this.delayDistribution = delayDistribution;
+    }
+
+    /**
+     * The distribution of network round trip delays, or null if the delay and variance are used.
+     */
+    public @Nullable
+    DelayDistribution delayDistribution() {
+        return delayDistribution;
+    }
+
+    /**
+     * Set the bandwidth in bytes per second shared by all calls, or 0 for unlimited bandwidth.
+     */
+    public void setBandwidth(long bytesPerSecond) {
+        if (bytesPerSecond < 0) {
+            throw new IllegalArgumentException("Bandwidth must be positive value.");
+        }
+        this.bandwidth = bytesPerSecond;
+    }
+
+    /**
+     * The bandwidth in bytes per second shared by all calls, or 0 for unlimited bandwidth.
+     */
+    public long bandwidth() {
+        return bandwidth;
+    }
+
+    /**
+     * Set the size in bytes of each successful response. Its transfer is delayed by the
+     * {@linkplain #setBandwidth bandwidth}.
+     */
+    public void setResponseSize(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Response size must be positive value.");
+        }
+        this.responseSize = bytes;
+    }
+
+    /**
+     * The size in bytes of each successful response.
+     */
+    public long responseSize() {
+        return responseSize;
+    }
+
+    /**
+     * Set the maximum number of calls started per second, or 0 for no limit. Calls over the limit
+     * are delayed until it allows them to start.
+     */
+    public void setMaxCallsPerSecond(int maxCallsPerSecond) {
+        if (maxCallsPerSecond < 0) {
+            throw new IllegalArgumentException("Max calls per second must be positive value.");
+        }
+        this.maxCallsPerSecond = maxCallsPerSecond;
+    }
+
+    /**
+     * The maximum number of calls started per second, or 0 for no limit.
+     */
+    public int maxCallsPerSecond() {
+        return maxCallsPerSecond;
+    }
+
+    /**
+     * Set the maximum number of calls in flight, or 0 for no limit. Calls over the limit wait for
+     * another call to finish before they start.
+     */
+    public void setMaxConcurrentCalls(int maxConcurrentCalls) {
+        if (maxConcurrentCalls < 0) {
+            throw new IllegalArgumentException("Max concurrent calls must be positive value.");
+        }
+        this.maxConcurrentCalls = maxConcurrentCalls;
+    }
+
+    /**
+     * The maximum number of calls in flight, or 0 for no limit.
+     */
+    public int maxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
     /**
      * Set the percentage of calls to {@link #calculateIsFailure()} that return {@code true}.
      */
@@ -215,13 +340,82 @@ public final class NetworkBehavior {
      * behavior.
      */
     public long calculateDelay(TimeUnit unit) {
+        DelayDistribution delayDistribution = this.delayDistribution;
+        if (delayDistribution != null) {
+            return unit.convert(delayDistribution.sampleNanos(random), NANOSECONDS);
+        }
         float delta = variancePercent / 100f; // e.g., 20 / 100f == 0.2f
         float lowerBound = 1f - delta; // 0.2f --> 0.8f
         float upperBound = 1f + delta; // 0.2f --> 1.2f
         float bound = upperBound - lowerBound; // 1.2f - 0.8f == 0.4f
         float delayPercent = lowerBound + (random.nextFloat() * bound); // 0.8 + (rnd * 0.4)
         long callDelayMs = (long) (delayMs * delayPercent);
-        return MILLISECONDS.convert(callDelayMs, unit);
+        return unit.convert(callDelayMs, MILLISECONDS);
+    }
+
+    /**
+     * Runs {@code call} now if fewer than the maximum concurrent calls are in flight, and when
+     * another call {@linkplain #finishCall() finishes} otherwise.
+     */
+    void admitCall(Runnable call) {
+        synchronized (this) {
+            int max = maxConcurrentCalls;
+            if (max != 0 && activeCalls >= max) {
+                waitingCalls.add(call);
+                return;
+            }
+            activeCalls++;
+        }
+        call.run();
+    }
+
+    /**
+     * Removes {@code call} if it is waiting to be admitted, and returns true if it was.
+     */
+    synchronized boolean cancelWaitingCall(Runnable call) {
+        return waitingCalls.remove(call);
+    }
+
+    /**
+     * Releases an admitted call's place and admits waiting calls in its place.
+     */
+    void finishCall() {
+        List<Runnable> admitted = new ArrayList<>();
+        synchronized (this) {
+            activeCalls--;
+            int max = maxConcurrentCalls;
+            while (!waitingCalls.isEmpty() && (max == 0 || activeCalls < max)) {
+                admitted.add(waitingCalls.removeFirst());
+                activeCalls++;
+            }
+        }
+        for (Runnable call : admitted) {
+            call.run();
+        }
+    }
+
+    /**
+     * Returns the time at which a call ready at {@code nowNanos} may start without exceeding the
+     * maximum calls per second.
+     */
+    synchronized long reserveStart(long nowNanos) {
+        int max = maxCallsPerSecond;
+        if (max == 0) return nowNanos;
+        long startNanos = Math.max(nowNanos, nextStartNanos);
+        nextStartNanos = startNanos + TimeUnit.SECONDS.toNanos(1) / max;
+        return startNanos;
+    }
+
+    /**
+     * Returns the time at which a transfer of {@code bytes} that is ready at {@code readyNanos}
+     * completes. Transfers use the bandwidth one at a time, in the order they are reserved.
+     */
+    synchronized long reserveTransfer(long readyNanos, long bytes) {
+        long bandwidth = this.bandwidth;
+        if (bandwidth == 0 || bytes <= 0) return readyNanos;
+        long startNanos = Math.max(readyNanos, linkFreeNanos);
+        linkFreeNanos = startNanos + (long) (bytes * 1e9 / bandwidth);
+        return linkFreeNanos;
     }
 
     private static void checkPercentageValidity(int percentage, String message) {
@@ -22,7 +22,10 @@ import org.junit.Test;
 import java.io.IOException;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -319,4 +322,137 @@ public final class BehaviorDelegateTest {
         assertTrue(latch.await(1, SECONDS));
         assertThat(failureRef.get()).isExactlyInstanceOf(IOException.class).hasMessage("canceled");
     }
+
+    @Test
+    public void concurrentCallsAreLimited() throws InterruptedException {
+        behavior.setDelay(100, MILLISECONDS);
+        behavior.setVariancePercent(0);
+        behavior.setFailurePercent(0);
+        behavior.setMaxConcurrentCalls(2);
+
+        // The third and fourth calls wait for the first two to finish.
+        assertThat(enqueueAndAwait(4)).isGreaterThanOrEqualTo(200);
+    }
+
+    @Test
+    public void callsPerSecondAreLimited() throws InterruptedException {
+        behavior.setDelay(0, MILLISECONDS);
+        behavior.setFailurePercent(0);
+        behavior.setMaxCallsPerSecond(10);
+
+        // Calls start 100ms apart.
+        assertThat(enqueueAndAwait(3)).isGreaterThanOrEqualTo(200);
+    }
+
+    @Test
+    public void bandwidthIsShared() throws InterruptedException {
+        behavior.setDelay(0, MILLISECONDS);
+        behavior.setFailurePercent(0);
+        behavior.setBandwidth(10_000);
+        behavior.setResponseSize(1_000);
+
+        // Each response takes 100ms to transfer, one after the other.
+        assertThat(enqueueAndAwait(3)).isGreaterThanOrEqualTo(300);
+    }
+
+    @Test
+    public void delaysDoNotOccupyThreads() throws InterruptedException {
+        behavior.setDelay(500, MILLISECONDS);
+        behavior.setVariancePercent(0);
+        behavior.setFailurePercent(0);
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            Retrofit retrofit = new Retrofit.Builder()
+                    .baseUrl("http://example.com")
+                    .build();
+            BehaviorDelegate<DoWorkService> delegate = new MockRetrofit.Builder(retrofit)
+                    .networkBehavior(behavior)
+                    .backgroundExecutor(executor)
+                    .build()
+                    .create(DoWorkService.class);
+
+            // One thread completes all of the calls after a single delay.
+            final CountDownLatch latch = new CountDownLatch(1000);
+            long startNanos = System.nanoTime();
+            for (int i = 0; i < 1000; i++) {
+                delegate.returningResponse("Response!").response().enqueue(countDown(latch));
+            }
+            assertTrue(latch.await(5, SECONDS));
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos))
+                    .isBetween(500L, 2500L);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void callWaitingForConcurrencyCanBeCanceled() throws InterruptedException {
+        behavior.setDelay(10, SECONDS);
+        behavior.setVariancePercent(0);
+        behavior.setFailurePercent(0);
+        behavior.setMaxConcurrentCalls(1);
+
+        Call<String> first = service.response();
+        first.enqueue(countDown(new CountDownLatch(1)));
+
+        Call<String> waiting = service.response();
+        final AtomicReference<Throwable> failureRef = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        waiting.enqueue(new Callback<String>() {
+            @Override
+            public void onResponse(Call<String> call, Response<String> response) {
+                throw new AssertionError();
+            }
+
+            @Override
+            public void onFailure(Call<String> call, Throwable t) {
+                failureRef.set(t);
+                latch.countDown();
+            }
+        });
+        waiting.cancel();
+
+        assertTrue(latch.await(1, SECONDS));
+        assertThat(failureRef.get()).isExactlyInstanceOf(IOException.class).hasMessage("canceled");
+        first.cancel();
+    }
+
+    /** Enqueues {@code count} calls and returns how long they took to complete, in milliseconds. */
+    private long enqueueAndAwait(int count) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(count);
+        final AtomicInteger failures = new AtomicInteger();
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            service.response().enqueue(new Callback<String>() {
+                @Override
+                public void onResponse(Call<String> call, Response<String> response) {
+                    latch.countDown();
+                }
+
+                @Override
+                public void onFailure(Call<String> call, Throwable t) {
+                    failures.incrementAndGet();
+                    latch.countDown();
+                }
+            });
+        }
+        assertTrue(latch.await(5, SECONDS));
+        assertThat(failures.get()).isZero();
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private static Callback<String> countDown(final CountDownLatch latch) {
+        return new Callback<String>() {
+            @Override
+            public void onResponse(Call<String> call, Response<String> response) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(Call<String> call, Throwable t) {
+                latch.countDown();
+            }
+        };
+    }
 }
@@ -18,6 +18,7 @@ package retrofit2.mock;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Random;
 import java.util.concurrent.Callable;
 
@@ -25,6 +26,7 @@ import okhttp3.ResponseBody;
 import retrofit2.Response;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
@@ -230,4 +232,112 @@ public final class NetworkBehaviorTest {
         assertThat(upperBound).isEqualTo(2799); // ~40% above 2000
         assertThat(lowerBound).isEqualTo(1200); // ~40% below 2000
     }
+
+    @Test
+    public void delayConvertsToRequestedUnit() {
+        behavior.setDelay(2, SECONDS);
+        behavior.setVariancePercent(0);
+        assertThat(behavior.delay(MILLISECONDS)).isEqualTo(2000);
+        assertThat(behavior.calculateDelay(NANOSECONDS)).isEqualTo(2_000_000_000L);
+    }
+
+    @Test
+    public void logNormalDelayDistribution() {
+        behavior.setDelayDistribution(DelayDistribution.logNormal(100, 1000, MILLISECONDS));
+
+        long[] delays = new long[100000];
+        for (int i = 0; i < delays.length; i++) {
+            delays[i] = behavior.calculateDelay(MILLISECONDS);
+        }
+        Arrays.sort(delays);
+        assertThat(delays[50000]).isBetween(95L, 105L);
+        assertThat(delays[99000]).isBetween(900L, 1100L);
+        assertThat(delays[0]).isGreaterThanOrEqualTo(0L);
+    }
+
+    @Test
+    public void percentileDelayDistribution() {
+        behavior.setDelayDistribution(DelayDistribution.percentiles(
+                new double[]{0, 50, 90, 100}, new long[]{10, 100, 200, 1000}, MILLISECONDS));
+
+        long[] delays = new long[100000];
+        for (int i = 0; i < delays.length; i++) {
+            delays[i] = behavior.calculateDelay(MILLISECONDS);
+        }
+        Arrays.sort(delays);
+        assertThat(delays[0]).isGreaterThanOrEqualTo(10L);
+        assertThat(delays[25000]).isBetween(50L, 60L);
+        assertThat(delays[50000]).isBetween(98L, 102L);
+        assertThat(delays[90000]).isBetween(198L, 202L);
+        assertThat(delays[99999]).isLessThanOrEqualTo(1000L);
+
+        behavior.setDelayDistribution(null);
+        behavior.setDelay(2, SECONDS);
+        behavior.setVariancePercent(0);
+        assertThat(behavior.calculateDelay(MILLISECONDS)).isEqualTo(2000);
+    }
+
+    @Test
+    public void delayDistributionsRejectInvalidValues() {
+        try {
+            DelayDistribution.logNormal(0, 100, MILLISECONDS);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e).hasMessage("median <= 0: 0");
+        }
+        try {
+            DelayDistribution.logNormal(100, 10, MILLISECONDS);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e).hasMessage("p99 < median: 10");
+        }
+        try {
+            DelayDistribution.percentiles(new double[]{50}, new long[0], MILLISECONDS);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e).hasMessage(
+                    "Expected the same number of percentiles and delays, and at least one.");
+        }
+        try {
+            DelayDistribution.percentiles(new double[]{50, 101}, new long[]{1, 2}, MILLISECONDS);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e).hasMessage("Percentiles must be between 0 and 100.");
+        }
+        try {
+            DelayDistribution.percentiles(new double[]{50, 90}, new long[]{2, 1}, MILLISECONDS);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e).hasMessage(
+                    "Percentiles must be increasing and delays must not decrease.");
+        }
+    }
+
+    @Test
+    public void limitsMustBePositive() {
+        try {
+            behavior.setBandwidth(-1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e).hasMessage("Bandwidth must be positive value.");
+        }
+        try {
+            behavior.setResponseSize(-1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e).hasMessage("Response size must be positive value.");
+        }
+        try {
+            behavior.setMaxCallsPerSecond(-1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e).hasMessage("Max calls per second must be positive value.");
+        }
+        try {
+            behavior.setMaxConcurrentCalls(-1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e).hasMessage("Max concurrent calls must be positive value.");
+        }
+    }
 }
@@ -19,6 +19,7 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.concurrent.Executor;
 
 import javax.annotation.Nullable;
 
@@ -104,16 +105,20 @@ abstract class HttpServiceMethod<ResponseT, ReturnT> extends ServiceMethod<Retur
                 createResponseConverter(retrofit, method, responseType);
 
         okhttp3.Call.Factory callFactory = retrofit.callFactory;
+        Executor callExecutor = retrofit.callExecutor;
         if (!isKotlinSuspendFunction) {
-            return new CallAdapted<>(requestFactory, callFactory, responseConverter, callAdapter);
+            return new CallAdapted<>(requestFactory, callFactory, callExecutor, responseConverter,
+                    callAdapter);
         } else if (continuationWantsResponse) {
             //noinspection unchecked Kotlin compiler guarantees ReturnT to be Object.
             return (HttpServiceMethod<ResponseT, ReturnT>) new SuspendForResponse<>(requestFactory,
-                    callFactory, responseConverter, (CallAdapter<ResponseT, Call<ResponseT>>) callAdapter);
+                    callFactory, callExecutor, responseConverter,
+                    (CallAdapter<ResponseT, Call<ResponseT>>) callAdapter);
         } else {
             //noinspection unchecked Kotlin compiler guarantees ReturnT to be Object.
             return (HttpServiceMethod<ResponseT, ReturnT>) new SuspendForBody<>(requestFactory,
-                    callFactory, responseConverter, (CallAdapter<ResponseT, Call<ResponseT>>) callAdapter,
+                    callFactory, callExecutor, responseConverter,
+                    (CallAdapter<ResponseT, Call<ResponseT>>) callAdapter,
                     continuationBodyNullable);
         }
     }
@@ -140,12 +145,16 @@ abstract class HttpServiceMethod<ResponseT, ReturnT> extends ServiceMethod<Retur
 
     private final RequestFactory requestFactory;
     private final okhttp3.Call.Factory callFactory;// OkHttpClient
+    private final @Nullable
+    Executor callExecutor;
     private final Converter<ResponseBody, ResponseT> responseConverter;// 请求相应转换器
 
     HttpServiceMethod(RequestFactory requestFactory, okhttp3.Call.Factory callFactory,
+                      @Nullable Executor callExecutor,
                       Converter<ResponseBody, ResponseT> responseConverter) {
         this.requestFactory = requestFactory;
         this.callFactory = callFactory;
+        this.callExecutor = callExecutor;
         this.responseConverter = responseConverter;
     }
 
@@ -154,7 +163,8 @@ abstract class HttpServiceMethod<ResponseT, ReturnT> extends ServiceMethod<Retur
     final @Nullable
     ReturnT invoke(Object[] args) {
         // 创建OkHttpCall对象(封装了OkHttp的请求)，用来发起网络请求
-        Call<ResponseT> call = new OkHttpCall<>(requestFactory, args, callFactory, responseConverter);
+        Call<ResponseT> call = new OkHttpCall<>(requestFactory, args, callFactory, callExecutor,
+                responseConverter);
         return adapt(call, args);
     }
 
@@ -177,9 +187,10 @@ abstract class HttpServiceMethod<ResponseT, ReturnT> extends ServiceMethod<Retur
         private final CallAdapter<ResponseT, ReturnT> callAdapter;
 
         CallAdapted(RequestFactory requestFactory, okhttp3.Call.Factory callFactory,
+                    @Nullable Executor callExecutor,
                     Converter<ResponseBody, ResponseT> responseConverter,
                     CallAdapter<ResponseT, ReturnT> callAdapter) {
-            super(requestFactory, callFactory, responseConverter);
+            super(requestFactory, callFactory, callExecutor, responseConverter);
             this.callAdapter = callAdapter;
         }
 
@@ -195,9 +206,10 @@ abstract class HttpServiceMethod<ResponseT, ReturnT> extends ServiceMethod<Retur
         private final CallAdapter<ResponseT, Call<ResponseT>> callAdapter;
 
         SuspendForResponse(RequestFactory requestFactory, okhttp3.Call.Factory callFactory,
+                           @Nullable Executor callExecutor,
                            Converter<ResponseBody, ResponseT> responseConverter,
                            CallAdapter<ResponseT, Call<ResponseT>> callAdapter) {
-            super(requestFactory, callFactory, responseConverter);
+            super(requestFactory, callFactory, callExecutor, responseConverter);
             this.callAdapter = callAdapter;
         }
 
@@ -217,9 +229,10 @@ abstract class HttpServiceMethod<ResponseT, ReturnT> extends ServiceMethod<Retur
         private final boolean isNullable;
 
         SuspendForBody(RequestFactory requestFactory, okhttp3.Call.Factory callFactory,
+                       @Nullable Executor callExecutor,
                        Converter<ResponseBody, ResponseT> responseConverter,
                        CallAdapter<ResponseT, Call<ResponseT>> callAdapter, boolean isNullable) {
-            super(requestFactory, callFactory, responseConverter);
+            super(requestFactory, callFactory, callExecutor, responseConverter);
             this.callAdapter = callAdapter;
             this.isNullable = isNullable;
         }
@@ -16,7 +16,10 @@
 package retrofit2;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
@@ -39,6 +42,12 @@ final class OkHttpCall<T> implements Call<T> {
     private final RequestFactory requestFactory;
     private final Object[] args;
     private final okhttp3.Call.Factory callFactory;// OkHttpClient
+    /**
+     * Runs enqueued calls with {@link okhttp3.Call#execute()}, or null to use {@link
+     * okhttp3.Call#enqueue}.
+     */
+    private final @Nullable
+    Executor callExecutor;
     private final Converter<ResponseBody, T> responseConverter;
 
     private volatile boolean canceled;
@@ -52,11 +61,12 @@ final class OkHttpCall<T> implements Call<T> {
     @GuardedBy("this")
     private boolean executed;
 
-    OkHttpCall(RequestFactory requestFactory, Object[] args,
-               okhttp3.Call.Factory callFactory, Converter<ResponseBody, T> responseConverter) {
+    OkHttpCall(RequestFactory requestFactory, Object[] args, okhttp3.Call.Factory callFactory,
+               @Nullable Executor callExecutor, Converter<ResponseBody, T> responseConverter) {
         this.requestFactory = requestFactory;
         this.args = args;
         this.callFactory = callFactory;
+        this.callExecutor = callExecutor;
         this.responseConverter = responseConverter;
     }
 
@@ -64,7 +74,7 @@ final class OkHttpCall<T> implements Call<T> {
     // We are a final type & this saves clearing state.
     @Override
     public OkHttpCall<T> clone() {
-        return new OkHttpCall<>(requestFactory, args, callFactory, responseConverter);
+        return new OkHttpCall<>(requestFactory, args, callFactory, callExecutor, responseConverter);
     }
 
     @Override
@@ -128,6 +138,11 @@ final class OkHttpCall<T> implements Call<T> {
             call.cancel();
         }
 
+        if (callExecutor != null) {
+            executeOn(callExecutor, call, callback);
+            return;
+        }
+
         // 真正发起异步请求的地方，这个call是OkHttp的call
         call.enqueue(new okhttp3.Callback() {
             @Override
@@ -165,6 +180,49 @@ final class OkHttpCall<T> implements Call<T> {
         });
     }
 
+    /**
+     * Executes {@code call} synchronously on a thread of {@code executor} and invokes
+     * {@code callback} on that thread. This bypasses the OkHttp dispatcher, its thread pool and its
+     * limits on concurrent calls.
+     */
+    private void executeOn(Executor executor, final okhttp3.Call call, final Callback<T> callback) {
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Response<T> response;
+                    try {
+                        response = parseResponse(call.execute());
+                    } catch (Throwable e) {
+                        throwIfFatal(e);
+                        callFailure(callback, e);
+                        return;
+                    }
+
+                    try {
+                        callback.onResponse(OkHttpCall.this, response);
+                    } catch (Throwable t) {
+                        throwIfFatal(t);
+                        t.printStackTrace(); // TODO this is not great
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            InterruptedIOException ioException = new InterruptedIOException("executor rejected");
+            ioException.initCause(e);
+            callFailure(callback, ioException);
+        }
+    }
+
+    private void callFailure(Callback<T> callback, Throwable e) {
+        try {
+            callback.onFailure(this, e);
+        } catch (Throwable t) {
+            throwIfFatal(t);
+            t.printStackTrace(); // TODO this is not great
+        }
+    }
+
     @Override
     public synchronized boolean isExecuted() {
         return executed;
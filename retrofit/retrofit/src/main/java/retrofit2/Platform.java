@@ -19,6 +19,8 @@ import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandleProxies;
 import java.lang.invoke.MethodHandles.Lookup;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
@@ -92,17 +94,32 @@ class Platform {
         return hasJava8Types && method.isDefault();
     }
 
-    @Nullable
-    Object invokeDefaultMethod(Method method, Class<?> declaringClass, Object object,
-                               @Nullable Object... args) throws Throwable {
+    /**
+     * Invokes a default method on {@code receiver} with arguments spread from {@code args}.
+     */
+    public interface DefaultMethodInvoker {
+        @Nullable
+        Object invoke(Object receiver, Object[] args) throws Throwable;
+    }
+
+    /**
+     * Returns an invoker for the default {@code method}. Creating it is costly, so callers should
+     * reuse it for every invocation of {@code method}.
+     */
+    DefaultMethodInvoker defaultMethodInvoker(Method method) throws ReflectiveOperationException {
         // Because the service interface might not be public, we need to use a MethodHandle lookup
         // that ignores the visibility of the declaringClass.
+        Class<?> declaringClass = method.getDeclaringClass();
         Constructor<Lookup> constructor = Lookup.class.getDeclaredConstructor(Class.class, int.class);
         constructor.setAccessible(true);
-        return constructor.newInstance(declaringClass, -1 /* trusted */)
-                .unreflectSpecial(method, declaringClass)
-                .bindTo(object)
-                .invokeWithArguments(args);
+        MethodHandle handle = constructor.newInstance(declaringClass, -1 /* trusted */)
+                .unreflectSpecial(method, declaringClass);
+        MethodHandle spreader = handle.asType(handle.type().generic())
+                .asSpreader(Object[].class, method.getParameterTypes().length);
+        // Calling the handle directly would need invokeExact, which D8 rejects below API 26, or
+        // invokeWithArguments, which adapts the arguments on every call. Behind an interface the
+        // platform calls the adapted handle exactly and our bytecode is an ordinary interface call.
+        return MethodHandleProxies.asInterfaceInstance(DefaultMethodInvoker.class, spreader);
     }
 
     // Android平台
@@ -16,7 +16,6 @@
 package retrofit2;
 
 import java.io.IOException;
-import java.util.regex.Pattern;
 
 import javax.annotation.Nullable;
 
@@ -27,7 +26,6 @@ import okhttp3.MediaType;
 import okhttp3.MultipartBody;
 import okhttp3.Request;
 import okhttp3.RequestBody;
-import okio.Buffer;
 import okio.BufferedSink;
 
 /**
@@ -39,25 +37,41 @@ final class RequestBuilder {
     private static final String PATH_SEGMENT_ALWAYS_ENCODE_SET = " \"<>^`{}|\\?#";
 
     /**
-     * Matches strings that contain {@code .} or {@code ..} as a complete path segment. This also
-     * matches dots in their percent-encoded form, {@code %2E}.
-     *
-     * <p>It is okay to have these strings within a larger path segment (like {@code a..z} or {@code
-     * index.html}) but when alone they have a special meaning. A single dot resolves to no path
-     * segment so {@code /one/./three/} becomes {@code /one/three/}. A double-dot pops the preceding
-     * directory, so {@code /one/../three/} becomes {@code /three/}.
-     *
-     * <p>We forbid these in Retrofit paths because they're likely to have the unintended effect.
-     * For example, passing {@code ..} to {@code DELETE /account/book/{isbn}/} yields {@code DELETE
-     * /account/}.
+     * Characters that are always percent-encoded in a path segment: controls, delete, and {@link
+     * #PATH_SEGMENT_ALWAYS_ENCODE_SET}. Characters outside of ASCII are always encoded too.
      */
-    private static final Pattern PATH_TRAVERSAL = Pattern.compile("(.*/)?(\\.|%2e|%2E){1,2}(/.*)?");
+    private static final boolean[] PATH_SEGMENT_ALWAYS_ENCODE = new boolean[0x80];
+
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            PATH_SEGMENT_ALWAYS_ENCODE[c] = true;
+        }
+        PATH_SEGMENT_ALWAYS_ENCODE[0x7f] = true;
+        for (int i = 0; i < PATH_SEGMENT_ALWAYS_ENCODE_SET.length(); i++) {
+            PATH_SEGMENT_ALWAYS_ENCODE[PATH_SEGMENT_ALWAYS_ENCODE_SET.charAt(i)] = true;
+        }
+    }
 
     private final String method;
 
     private final HttpUrl baseUrl;
     private @Nullable
     String relativeUrl;
+    private final @Nullable
+    UrlTemplate urlTemplate;
+    /**
+     * Path parameter values indexed like {@link UrlTemplate#names}, or null if none have been set.
+     */
+    private @Nullable
+    String[] pathValues;
+    private @Nullable
+    boolean[] pathValuesEncoded;
+    /**
+     * The indexes of the path parameters in the order they were set.
+     */
+    private @Nullable
+    int[] pathValuesOrder;
+    private int pathValuesCount;
     private @Nullable
     HttpUrl.Builder urlBuilder;
 
@@ -74,12 +88,14 @@ final class RequestBuilder {
     private @Nullable
     RequestBody body;
 
-    RequestBuilder(String method, HttpUrl baseUrl,
-                   @Nullable String relativeUrl, @Nullable Headers headers, @Nullable MediaType contentType,
-                   boolean hasBody, boolean isFormEncoded, boolean isMultipart) {
+    RequestBuilder(String method, HttpUrl baseUrl, @Nullable String relativeUrl,
+                   @Nullable UrlTemplate urlTemplate, @Nullable Headers headers,
+                   @Nullable MediaType contentType, boolean hasBody, boolean isFormEncoded,
+                   boolean isMultipart) {
         this.method = method;
         this.baseUrl = baseUrl;
         this.relativeUrl = relativeUrl;
+        this.urlTemplate = urlTemplate;
         this.requestBuilder = new Request.Builder();
         this.contentType = contentType;
         this.hasBody = hasBody;
@@ -121,77 +137,197 @@ final class RequestBuilder {
     }
 
     void addPathParam(String name, String value, boolean encoded) {
-        if (relativeUrl == null) {
+        UrlTemplate urlTemplate = this.urlTemplate;
+        if (relativeUrl == null || urlTemplate == null) {
             // The relative URL is cleared when the first query parameter is set.
             throw new AssertionError();
         }
-        String replacement = canonicalizeForPath(value, encoded);
-        String newRelativeUrl = relativeUrl.replace("{" + name + "}", replacement);
-        if (PATH_TRAVERSAL.matcher(newRelativeUrl).matches()) {
+        int index = urlTemplate.indexOf(name);
+        if (index == -1) return;
+
+        String[] pathValues = this.pathValues;
+        if (pathValues == null) {
+            int nameCount = urlTemplate.names.length;
+            this.pathValues = pathValues = new String[nameCount];
+            pathValuesEncoded = new boolean[nameCount];
+            pathValuesOrder = new int[nameCount];
+        }
+        // Once a name's blocks are replaced a second value for it has nothing to replace.
+        if (pathValues[index] != null) return;
+        pathValues[index] = value;
+        //noinspection ConstantConditions Allocated with pathValues.
+        pathValuesEncoded[index] = encoded;
+        //noinspection ConstantConditions Allocated with pathValues.
+        pathValuesOrder[pathValuesCount++] = index;
+    }
+
+    /**
+     * Returns the relative URL with its path parameters substituted. The URL is built in a single
+     * pass over the precompiled template, and values that don't need encoding are copied as-is.
+     */
+    private String expandRelativeUrl(String relativeUrl) {
+        UrlTemplate urlTemplate = this.urlTemplate;
+        String[] pathValues = this.pathValues;
+        if (urlTemplate == null || pathValues == null) return relativeUrl;
+
+        String result = expand(urlTemplate, pathValues);
+        if (isPathTraversal(result)) {
             throw new IllegalArgumentException(
-                    "@Path parameters shouldn't perform path traversal ('.' or '..'): " + value);
+                    "@Path parameters shouldn't perform path traversal ('.' or '..'): "
+                            + pathTraversalValue(urlTemplate));
         }
-        relativeUrl = newRelativeUrl;
+        return result;
     }
 
-    private static String canonicalizeForPath(String input, boolean alreadyEncoded) {
-        int codePoint;
-        for (int i = 0, limit = input.length(); i < limit; i += Character.charCount(codePoint)) {
-            codePoint = input.codePointAt(i);
-            if (codePoint < 0x20 || codePoint >= 0x7f
-                    || PATH_SEGMENT_ALWAYS_ENCODE_SET.indexOf(codePoint) != -1
-                    || (!alreadyEncoded && (codePoint == '/' || codePoint == '%'))) {
+    private String expand(UrlTemplate urlTemplate, String[] pathValues) {
+        boolean[] pathValuesEncoded = this.pathValuesEncoded;
+        StringBuilder out = urlTemplate.newBuilder(pathValues);
+        int[] blockNameIndexes = urlTemplate.blockNameIndexes;
+        for (int i = 0; i < blockNameIndexes.length; i++) {
+            out.append(urlTemplate.literals[i]);
+            int index = blockNameIndexes[i];
+            String value = pathValues[index];
+            if (value != null) {
+                //noinspection ConstantConditions Allocated with pathValues.
+                canonicalizeForPath(out, value, pathValuesEncoded[index]);
+            } else {
+                out.append('{').append(urlTemplate.names[index]).append('}');
+            }
+        }
+        out.append(urlTemplate.literals[blockNameIndexes.length]);
+        return out.toString();
+    }
+
+    /**
+     * Returns the first path parameter value that, when it was substituted, caused the URL to
+     * perform path traversal. This repeats the substitutions one at a time, so it's only used to
+     * report errors.
+     */
+    private String pathTraversalValue(UrlTemplate urlTemplate) {
+        String[] values = new String[urlTemplate.names.length];
+        //noinspection ConstantConditions Only called after a path parameter was set.
+        for (int i = 0; i < pathValuesCount; i++) {
+            int index = pathValuesOrder[i];
+            //noinspection ConstantConditions Only called after a path parameter was set.
+            values[index] = pathValues[index];
+            if (isPathTraversal(expand(urlTemplate, values))) return values[index];
+        }
+        throw new AssertionError();
+    }
+
+    /**
+     * Returns true if {@code url} contains {@code .} or {@code ..} as a complete path segment. This
+     * also matches dots in their percent-encoded form, {@code %2E}.
+     *
+     * <p>It is okay to have these strings within a larger path segment (like {@code a..z} or {@code
+     * index.html}) but when alone they have a special meaning. A single dot resolves to no path
+     * segment so {@code /one/./three/} becomes {@code /one/three/}. A double-dot pops the preceding
+     * directory, so {@code /one/../three/} becomes {@code /three/}.
+     *
+     * <p>We forbid these in Retrofit paths because they're likely to have the unintended effect.
+     * For example, passing {@code ..} to {@code DELETE /account/book/{isbn}/} yields {@code DELETE
+     * /account/}.
+     */
+    static boolean isPathTraversal(String url) {
+        int segmentStart = 0;
+        for (int i = 0, limit = url.length(); i <= limit; i++) {
+            if (i == limit || url.charAt(i) == '/') {
+                if (isDotSegment(url, segmentStart, i)) return true;
+                segmentStart = i + 1;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isDotSegment(String url, int pos, int limit) {
+        int dots = 0;
+        while (pos < limit) {
+            if (url.charAt(pos) == '.') {
+                pos++;
+            } else if (url.regionMatches(true, pos, "%2e", 0, 3) && pos + 3 <= limit) {
+                pos += 3;
+            } else {
+                return false;
+            }
+            if (++dots > 2) return false;
+        }
+        return dots > 0;
+    }
+
+    private static void canonicalizeForPath(StringBuilder out, String input,
+                                            boolean alreadyEncoded) {
+        for (int i = 0, limit = input.length(); i < limit; i++) {
+            char c = input.charAt(i);
+            if (c >= 0x80 || PATH_SEGMENT_ALWAYS_ENCODE[c]
+                    || (!alreadyEncoded && (c == '/' || c == '%'))) {
                 // Slow path: the character at i requires encoding!
-                Buffer out = new Buffer();
-                out.writeUtf8(input, 0, i);
+                out.append(input, 0, i);
                 canonicalizeForPath(out, input, i, limit, alreadyEncoded);
-                return out.readUtf8();
+                return;
             }
         }
 
         // Fast path: no characters required encoding.
-        return input;
+        out.append(input);
     }
 
-    private static void canonicalizeForPath(Buffer out, String input, int pos, int limit,
+    private static void canonicalizeForPath(StringBuilder out, String input, int pos, int limit,
                                             boolean alreadyEncoded) {
-        Buffer utf8Buffer = null; // Lazily allocated.
         int codePoint;
         for (int i = pos; i < limit; i += Character.charCount(codePoint)) {
             codePoint = input.codePointAt(i);
             if (alreadyEncoded
                     && (codePoint == '\t' || codePoint == '\n' || codePoint == '\f' || codePoint == '\r')) {
                 // Skip this character.
-            } else if (codePoint < 0x20 || codePoint >= 0x7f
-                    || PATH_SEGMENT_ALWAYS_ENCODE_SET.indexOf(codePoint) != -1
+            } else if (codePoint >= 0x80 || PATH_SEGMENT_ALWAYS_ENCODE[codePoint]
                     || (!alreadyEncoded && (codePoint == '/' || codePoint == '%'))) {
                 // Percent encode this character.
-                if (utf8Buffer == null) {
-                    utf8Buffer = new Buffer();
-                }
-                utf8Buffer.writeUtf8CodePoint(codePoint);
-                while (!utf8Buffer.exhausted()) {
-                    int b = utf8Buffer.readByte() & 0xff;
-                    out.writeByte('%');
-                    out.writeByte(HEX_DIGITS[(b >> 4) & 0xf]);
-                    out.writeByte(HEX_DIGITS[b & 0xf]);
-                }
+                percentEncodeUtf8(out, codePoint);
             } else {
                 // This character doesn't need encoding. Just copy it over.
-                out.writeUtf8CodePoint(codePoint);
+                out.append((char) codePoint);
             }
         }
     }
 
+    private static void percentEncodeUtf8(StringBuilder out, int codePoint) {
+        if (codePoint < 0x80) {
+            percentEncode(out, codePoint);
+        } else if (codePoint < 0x800) {
+            percentEncode(out, 0xc0 | codePoint >> 6);
+            percentEncode(out, 0x80 | codePoint & 0x3f);
+        } else if (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+            // Unpaired surrogates are encoded as '?', like okio does.
+            percentEncode(out, '?');
+        } else if (codePoint < 0x10000) {
+            percentEncode(out, 0xe0 | codePoint >> 12);
+            percentEncode(out, 0x80 | codePoint >> 6 & 0x3f);
+            percentEncode(out, 0x80 | codePoint & 0x3f);
+        } else {
+            percentEncode(out, 0xf0 | codePoint >> 18);
+            percentEncode(out, 0x80 | codePoint >> 12 & 0x3f);
+            percentEncode(out, 0x80 | codePoint >> 6 & 0x3f);
+            percentEncode(out, 0x80 | codePoint & 0x3f);
+        }
+    }
+
+    private static void percentEncode(StringBuilder out, int b) {
+        out.append('%');
+        out.append(HEX_DIGITS[(b >> 4) & 0xf]);
+        out.append(HEX_DIGITS[b & 0xf]);
+    }
+
     void addQueryParam(String name, @Nullable String value, boolean encoded) {
+        String relativeUrl = this.relativeUrl;
         if (relativeUrl != null) {
             // Do a one-time combination of the built relative URL and the base URL.
+            relativeUrl = expandRelativeUrl(relativeUrl);
             urlBuilder = baseUrl.newBuilder(relativeUrl);
             if (urlBuilder == null) {
                 throw new IllegalArgumentException(
                         "Malformed URL. Base: " + baseUrl + ", Relative: " + relativeUrl);
             }
-            relativeUrl = null;
+            this.relativeUrl = null;
         }
 
         if (encoded) {
@@ -241,6 +377,7 @@ final class RequestBuilder {
         } else {
             // No query parameters triggered builder creation, just combine the relative URL and base URL.
             //noinspection ConstantConditions Non-null if urlBuilder is null.
+            String relativeUrl = expandRelativeUrl(this.relativeUrl);
             url = baseUrl.resolve(relativeUrl);
             if (url == null) {
                 throw new IllegalArgumentException(
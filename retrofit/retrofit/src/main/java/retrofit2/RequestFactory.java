@@ -78,6 +78,8 @@ final class RequestFactory {
     private final @Nullable
     String relativeUrl;
     private final @Nullable
+    UrlTemplate urlTemplate;
+    private final @Nullable
     Headers headers;
     private final @Nullable
     MediaType contentType;
@@ -88,17 +90,27 @@ final class RequestFactory {
     final boolean isKotlinSuspendFunction;
 
     RequestFactory(Builder builder) {
-        method = builder.method;
-        baseUrl = builder.retrofit.baseUrl;
-        httpMethod = builder.httpMethod;
-        relativeUrl = builder.relativeUrl;
-        headers = builder.headers;
-        contentType = builder.contentType;
-        hasBody = builder.hasBody;
-        isFormEncoded = builder.isFormEncoded;
-        isMultipart = builder.isMultipart;
-        parameterHandlers = builder.parameterHandlers;
-        isKotlinSuspendFunction = builder.isKotlinSuspendFunction;
+        this(builder.method, builder.retrofit.baseUrl, builder.httpMethod, builder.relativeUrl,
+                builder.headers, builder.contentType, builder.hasBody, builder.isFormEncoded,
+                builder.isMultipart, builder.parameterHandlers, builder.isKotlinSuspendFunction);
+    }
+
+    RequestFactory(Method method, HttpUrl baseUrl, String httpMethod, @Nullable String relativeUrl,
+                   @Nullable Headers headers, @Nullable MediaType contentType, boolean hasBody,
+                   boolean isFormEncoded, boolean isMultipart, ParameterHandler<?>[] parameterHandlers,
+                   boolean isKotlinSuspendFunction) {
+        this.method = method;
+        this.baseUrl = baseUrl;
+        this.httpMethod = httpMethod;
+        this.relativeUrl = relativeUrl;
+        this.urlTemplate = UrlTemplate.parse(relativeUrl);
+        this.headers = headers;
+        this.contentType = contentType;
+        this.hasBody = hasBody;
+        this.isFormEncoded = isFormEncoded;
+        this.isMultipart = isMultipart;
+        this.parameterHandlers = parameterHandlers;
+        this.isKotlinSuspendFunction = isKotlinSuspendFunction;
     }
 
     /**
@@ -124,7 +136,7 @@ final class RequestFactory {
         }
 
         RequestBuilder requestBuilder = new RequestBuilder(httpMethod, baseUrl, relativeUrl,
-                headers, contentType, hasBody, isFormEncoded, isMultipart);
+                urlTemplate, headers, contentType, hasBody, isFormEncoded, isMultipart);
 
         if (isKotlinSuspendFunction) {
             // The Continuation is the last parameter and the handlers array contains null at that index.
@@ -152,7 +164,7 @@ final class RequestFactory {
     static final class Builder {
         // Upper and lower characters, digits, underscores, and hyphens, starting with a character.
         private static final String PARAM = "[a-zA-Z][a-zA-Z0-9_-]*";
-        private static final Pattern PARAM_URL_REGEX = Pattern.compile("\\{(" + PARAM + ")\\}");
+        static final Pattern PARAM_URL_REGEX = Pattern.compile("\\{(" + PARAM + ")\\}");
         private static final Pattern PARAM_NAME_REGEX = Pattern.compile(PARAM);
 
         final Retrofit retrofit;
@@ -871,7 +883,7 @@ final class RequestFactory {
             return patterns;
         }
 
-        private static Class<?> boxIfPrimitive(Class<?> type) {
+        static Class<?> boxIfPrimitive(Class<?> type) {
             if (boolean.class == type) return Boolean.class;
             if (byte.class == type) return Byte.class;
             if (char.class == type) return Character.class;
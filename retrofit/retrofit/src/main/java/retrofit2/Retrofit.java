@@ -16,7 +16,9 @@
 package retrofit2;
 
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Proxy;
@@ -27,10 +29,12 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 import javax.annotation.Nullable;
 
@@ -93,8 +97,14 @@ import static java.util.Collections.unmodifiableList;
  */
 public final class Retrofit {
 
-    // 缓存解析出来的方法
-    private final Map<Method, ServiceMethod<?>> serviceMethodCache = new ConcurrentHashMap<>();
+    // 缓存解析出来的方法。值是ServiceMethod，或者是正在解析该方法的FutureTask
+    private final ConcurrentHashMap<Method, Object> serviceMethodCache = new ConcurrentHashMap<>();
+    // 缓存接口默认方法的调用器，创建MethodHandle的代价比调用它高得多
+    private final ConcurrentHashMap<Method, Platform.DefaultMethodInvoker> defaultMethodInvokerCache =
+            new ConcurrentHashMap<>();
+    // 缓存没有注解处理器生成实现类的接口，避免每次create()都查找类并抛出ClassNotFoundException
+    private final Set<Class<?>> servicesWithoutGenerated =
+            Collections.newSetFromMap(new ConcurrentHashMap<>());
 
     // 负责创建 HTTP 请求，HTTP 请求被抽象为了 okhttp3.Call 类，它表示一个已经准备好，
     // 可以随时执行的 HTTP 请求；默认为OkHttpClient
@@ -142,17 +152,21 @@ public final class Retrofit {
     // 用于执行回调 Android中默认是 MainThreadExecutor
     final @Nullable
     Executor callbackExecutor;
+    final @Nullable
+    Executor callExecutor;
     // 是否需要立即解析接口中的方法
     final boolean validateEagerly;
 
     Retrofit(okhttp3.Call.Factory callFactory, HttpUrl baseUrl,
              List<Converter.Factory> converterFactories, List<CallAdapter.Factory> callAdapterFactories,
-             @Nullable Executor callbackExecutor, boolean validateEagerly) {
+             @Nullable Executor callbackExecutor, @Nullable Executor callExecutor,
+             boolean validateEagerly) {
         this.callFactory = callFactory;
         this.baseUrl = baseUrl;
         this.converterFactories = converterFactories; // Copy+unmodifiable at call site.
         this.callAdapterFactories = callAdapterFactories; // Copy+unmodifiable at call site.
         this.callbackExecutor = callbackExecutor;
+        this.callExecutor = callExecutor;
         this.validateEagerly = validateEagerly;
     }
 
@@ -202,14 +216,28 @@ public final class Retrofit {
      *   Call&lt;List&lt;Item&gt;&gt; categoryList(@Path("cat") String a, @Query("page") int b);
      * }
      * </pre>
+     * If the Retrofit annotation processor generated an implementation of {@code service} it is
+     * used instead of a {@link Proxy}. Its methods call their service methods directly, and those
+     * are created from request data the processor computed at compile time rather than by parsing
+     * annotations.
+     * <p>
      * 代理模式：https://a.codekk.com/detail/Android/Caij/%E5%85%AC%E5%85%B1%E6%8A%80%E6%9C%AF%E7%82%B9%E4%B9%8B%20Java%20%E5%8A%A8%E6%80%81%E4%BB%A3%E7%90%86
      * <p>
      * 这里泛型T就是代理类service的Class类型（上面实例中的CategoryService）
      */
     @SuppressWarnings("unchecked") // Single-interface proxy creation guarded by parameter safety.
     public <T> T create(final Class<T> service) {
+        T generated = createGenerated(service);
+        if (generated != null) return generated;
+
         // 验证接口的合法性以及是否要将所有请求方法缓存起来
         validateServiceInterface(service);
+        // 提前解析方法
+        if (validateEagerly) {
+            for (Method method : serviceMethods(service)) {
+                loadServiceMethod(method);
+            }
+        }
         /**
          * 代理模式（参考上面链接或下面内容）
          * <p>
@@ -262,7 +290,8 @@ public final class Retrofit {
                         }
                         // 为了兼容 Java8 平台，Android 中不会执行
                         if (platform.isDefaultMethod(method)) {
-                            return platform.invokeDefaultMethod(method, service, proxy, args);
+                            return loadDefaultMethodInvoker(method)
+                                    .invoke(proxy, args != null ? args : emptyArgs);
                         }
                         /**
                          * loadServiceMethod返回的是CallAdapted（HttpServiceMethod）
@@ -280,6 +309,41 @@ public final class Retrofit {
                 });
     }
 
+    /**
+     * Returns an instance of the implementation of {@code service} generated by the Retrofit
+     * annotation processor, or null if there isn't one.
+     */
+    private @Nullable
+    <T> T createGenerated(Class<T> service) {
+        if (servicesWithoutGenerated.contains(service)) return null;
+        Class<?> generatedClass;
+        try {
+            generatedClass = Class.forName(
+                    ServiceMethodSpec.generatedClassName(service), true, service.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            servicesWithoutGenerated.add(service);
+            return null;
+        }
+        if (!service.isAssignableFrom(generatedClass)) {
+            servicesWithoutGenerated.add(service);
+            return null;
+        }
+
+        try {
+            Constructor<?> constructor = generatedClass.getDeclaredConstructor(Retrofit.class);
+            constructor.setAccessible(true);
+            return service.cast(constructor.newInstance(this));
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new RuntimeException(cause);
+        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException e) {
+            throw new IllegalStateException(
+                    "Unable to create generated implementation " + generatedClass.getName(), e);
+        }
+    }
+
     private void validateServiceInterface(Class<?> service) {
         if (!service.isInterface()) {// 验证是否是接口类
             throw new IllegalArgumentException("API declarations must be interfaces.");
@@ -300,34 +364,134 @@ public final class Retrofit {
             }
             Collections.addAll(check, candidate.getInterfaces());
         }
+    }
 
-        // 提前解析方法
-        if (validateEagerly) {
-            Platform platform = Platform.get();
-            for (Method method : service.getDeclaredMethods()) {
-                if (!platform.isDefaultMethod(method) && !Modifier.isStatic(method.getModifiers())) {
-                    loadServiceMethod(method);
-                }
+    /** Returns the methods of {@code service} that are implemented by service methods. */
+    private static List<Method> serviceMethods(Class<?> service) {
+        Platform platform = Platform.get();
+        List<Method> result = new ArrayList<>();
+        for (Method method : service.getDeclaredMethods()) {
+            if (!platform.isDefaultMethod(method) && !Modifier.isStatic(method.getModifiers())) {
+                result.add(method);
             }
         }
+        return result;
     }
 
     // 返回的是CallAdapted（HttpServiceMethod）
     ServiceMethod<?> loadServiceMethod(Method method) {
+        return loadServiceMethod(method, null);
+    }
+
+    /**
+     * Loads the service methods of each of {@code services} on {@code executor} so that their first
+     * calls don't pay to parse them. Each method is submitted as a separate task and the returned
+     * {@link WarmUp} reports how long each one took. Unlike {@linkplain Builder#validateEagerly
+     * eager validation}, this doesn't block the calling thread, and methods that fail to load are
+     * reported in {@link WarmUp#failures()} instead of being thrown.
+     *
+     * @throws IllegalArgumentException if any of {@code services} isn't a valid service interface.
+     */
+    public WarmUp warmUp(Executor executor, Class<?>... services) {
+        Objects.requireNonNull(executor, "executor == null");
+        List<Method> methods = new ArrayList<>();
+        for (Class<?> service : services) {
+            validateServiceInterface(service);
+            methods.addAll(serviceMethods(service));
+        }
+        WarmUp warmUp = new WarmUp(methods);
+        for (Method method : methods) {
+            executor.execute(warmUp.task(this, method));
+        }
+        return warmUp;
+    }
+
+    /**
+     * Returns the service method for {@code method}, creating it from {@code spec} if that is
+     * non-null and by parsing the method's annotations otherwise.
+     */
+    ServiceMethod<?> loadServiceMethod(Method method, @Nullable ServiceMethodSpec spec) {
         // 缓存逻辑，同一个 API 的同一个方法，只会创建一次。这里由于我们每次获取 API 实例都是传入的 class 对象，
         // 而 class 对象是进程内单例的，所以获取到它的同一个方法 Method 实例也是单例的，所以这里的缓存是有效的。
-        ServiceMethod<?> result = serviceMethodCache.get(method);
-        if (result != null) return result;
-
-        synchronized (serviceMethodCache) {
-            result = serviceMethodCache.get(method);
-            if (result == null) {
-                result = ServiceMethod.parseAnnotations(this, method);
-                serviceMethodCache.put(method, result);
+        // 每个方法由自己的FutureTask解析，解析一个方法时不会阻塞其他方法的调用者，等待的线程也不持有监视器锁。
+        while (true) {
+            Object lookup = serviceMethodCache.get(method);
+            if (lookup instanceof ServiceMethod<?>) {
+                // HttpServiceMethod.CallAdapted
+                return (ServiceMethod<?>) lookup;
+            }
+
+            if (lookup == null) {
+                FutureTask<ServiceMethod<?>> task = new FutureTask<>(() -> spec != null
+                        ? spec.toServiceMethod(this, method)
+                        : ServiceMethod.parseAnnotations(this, method));
+                lookup = serviceMethodCache.putIfAbsent(method, task);
+                if (lookup == null) {
+                    // On successful task insertion, perform the work and update the map.
+                    task.run();
+                    try {
+                        ServiceMethod<?> result = getUninterruptibly(task);
+                        serviceMethodCache.replace(method, task, result);
+                        return result;
+                    } catch (ExecutionException e) {
+                        // Remove the task on failure. Any threads waiting for it will retry.
+                        serviceMethodCache.remove(method, task);
+                        Throwable cause = e.getCause();
+                        if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                        if (cause instanceof Error) throw (Error) cause;
+                        throw new RuntimeException(cause);
+                    }
+                }
+                if (lookup instanceof ServiceMethod<?>) {
+                    return (ServiceMethod<?>) lookup;
+                }
+            }
+
+            // Either the initial lookup or the attempt to put our task in the map has returned
+            // someone else's task. This means they are doing the same work, so wait for it.
+            @SuppressWarnings("unchecked") // Only tasks and service methods are in the cache.
+            FutureTask<ServiceMethod<?>> task = (FutureTask<ServiceMethod<?>>) lookup;
+            try {
+                return getUninterruptibly(task);
+            } catch (ExecutionException e) {
+                // The other thread failed its attempt. Remove its task if it hasn't yet and retry.
+                serviceMethodCache.remove(method, task);
+            }
+        }
+    }
+
+    private static <T> T getUninterruptibly(FutureTask<T> task) throws ExecutionException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
             }
         }
-        // HttpServiceMethod.CallAdapted
-        return result;
+    }
+
+    /**
+     * Returns the invoker for the default {@code method} of a service interface, creating it on first
+     * use.
+     */
+    private Platform.DefaultMethodInvoker loadDefaultMethodInvoker(Method method)
+            throws ReflectiveOperationException {
+        Platform.DefaultMethodInvoker invoker = defaultMethodInvokerCache.get(method);
+        if (invoker == null) {
+            // Creating an invoker twice in a race is harmless; only one of them is kept.
+            invoker = Platform.get().defaultMethodInvoker(method);
+            Platform.DefaultMethodInvoker existing =
+                    defaultMethodInvokerCache.putIfAbsent(method, invoker);
+            if (existing != null) invoker = existing;
+        }
+        return invoker;
     }
 
     /**
@@ -551,6 +715,15 @@ public final class Retrofit {
         return callbackExecutor;
     }
 
+    /**
+     * The executor on which enqueued calls are executed, or {@code null} if they are enqueued on
+     * the {@link okhttp3.Dispatcher} of the {@link #callFactory()}.
+     */
+    public @Nullable
+    Executor callExecutor() {
+        return callExecutor;
+    }
+
     public Builder newBuilder() {
         return new Builder(this);
     }
@@ -572,6 +745,8 @@ public final class Retrofit {
         // 线程池：Android平台为MainThreadExecutor，Java平台为null
         private @Nullable
         Executor callbackExecutor;
+        private @Nullable
+        Executor callExecutor;
         private boolean validateEagerly;
 
         Builder(Platform platform) {
@@ -602,6 +777,7 @@ public final class Retrofit {
             }
 
             callbackExecutor = retrofit.callbackExecutor;
+            callExecutor = retrofit.callExecutor;
             validateEagerly = retrofit.validateEagerly;
         }
 
@@ -737,6 +913,24 @@ public final class Retrofit {
             return this;
         }
 
+        /**
+         * The executor on which enqueued calls are executed. By default {@link Call#enqueue}
+         * enqueues the call on the {@link okhttp3.Dispatcher} of the {@linkplain #client client}.
+         * When this is set, the call instead runs on a thread of {@code executor} using the
+         * blocking {@link okhttp3.Call#execute()}. Its callback is invoked on that thread, unless a
+         * {@linkplain #callbackExecutor callback executor} is in use. Futures returned from service
+         * methods are completed directly on that thread.
+         * <p>
+         * This is intended for executors whose threads are cheap to block, such as {@code
+         * Executors.newVirtualThreadPerTaskExecutor()} on Java 21 and newer. Calls executed this way
+         * are not subject to the dispatcher's {@linkplain okhttp3.Dispatcher#setMaxRequests limits}
+         * on concurrent requests.
+         */
+        public Builder callExecutor(Executor executor) {
+            this.callExecutor = Objects.requireNonNull(executor, "executor == null");
+            return this;
+        }
+
         /**
          * Returns a modifiable list of call adapter factories.
          */
@@ -753,7 +947,8 @@ public final class Retrofit {
 
         /**
          * When calling {@link #create} on the resulting {@link Retrofit} instance, eagerly validate
-         * the configuration of all methods in the supplied interface.
+         * the configuration of all methods in the supplied interface. Use {@link Retrofit#warmUp}
+         * to load them on a background executor instead.
          */
         public Builder validateEagerly(boolean validateEagerly) {
             this.validateEagerly = validateEagerly;
@@ -808,7 +1003,8 @@ public final class Retrofit {
             converterFactories.addAll(platform.defaultConverterFactories());// 平台默认Converter.Factory
 
             return new Retrofit(callFactory, baseUrl, unmodifiableList(converterFactories),
-                    unmodifiableList(callAdapterFactories), callbackExecutor, validateEagerly);
+                    unmodifiableList(callAdapterFactories), callbackExecutor, callExecutor,
+                    validateEagerly);
         }
     }
 }
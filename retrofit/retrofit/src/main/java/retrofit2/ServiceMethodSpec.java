@@ -0,0 +1,412 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit2;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+
+import static retrofit2.Utils.parameterError;
+
+/**
+ * The request data of one service method, as computed at compile time by the Retrofit annotation
+ * processor. Generated implementations of service interfaces hold one of these per method and
+ * {@linkplain #bind bind} it to a {@link Retrofit} to call it. Creating a service method from a
+ * spec skips parsing and validating the method's annotations; converters and call adapters are
+ * still looked up from the {@link Retrofit} instance.
+ * <p>
+ * This class is for generated code. Use {@link Retrofit#create} to create services.
+ */
+public final class ServiceMethodSpec {
+    /**
+     * Returns the name of the class the annotation processor generates for {@code service}: {@code
+     * Retrofit_} followed by its simple name, or by its enclosing classes' and its simple names
+     * separated by {@code _} if it is nested.
+     */
+    public static String generatedClassName(Class<?> service) {
+        String name = service.getName();
+        int dot = name.lastIndexOf('.');
+        return name.substring(0, dot + 1) + "Retrofit_" + name.substring(dot + 1).replace('$', '_');
+    }
+
+    enum Kind {
+        URL, PATH, QUERY, QUERY_NAME, QUERY_MAP, HEADER, HEADER_MAP, FIELD, FIELD_MAP, PART,
+        PART_MAP, BODY, TAG, CONTINUATION
+    }
+
+    static final class Parameter {
+        final Kind kind;
+        final @Nullable
+        String name;
+        final boolean encoded;
+        final @Nullable
+        String encoding;
+
+        Parameter(Kind kind, @Nullable String name, boolean encoded, @Nullable String encoding) {
+            this.kind = kind;
+            this.name = name;
+            this.encoded = encoded;
+            this.encoding = encoding;
+        }
+    }
+
+    final Class<?> service;
+    final String methodName;
+    final Class<?>[] parameterTypes;
+    @Nullable
+    String httpMethod;
+    @Nullable
+    String relativeUrl;
+    boolean hasBody;
+    @Nullable
+    Headers headers;
+    @Nullable
+    MediaType contentType;
+    boolean isFormEncoded;
+    boolean isMultipart;
+    final List<Parameter> parameters = new ArrayList<>();
+    private volatile @Nullable
+    Method method;
+
+    /**
+     * Create a spec for the method of {@code service} named {@code methodName} whose parameters
+     * have the raw types {@code parameterTypes}.
+     */
+    public ServiceMethodSpec(Class<?> service, String methodName, Class<?>... parameterTypes) {
+        this.service = service;
+        this.methodName = methodName;
+        this.parameterTypes = parameterTypes.clone();
+    }
+
+    public ServiceMethodSpec request(String httpMethod, @Nullable String relativeUrl,
+                                     boolean hasBody) {
+        this.httpMethod = httpMethod;
+        this.relativeUrl = relativeUrl;
+        this.hasBody = hasBody;
+        return this;
+    }
+
+    /**
+     * Adds the {@link retrofit2.http.Headers @Headers}, except for {@code Content-Type}.
+     */
+    public ServiceMethodSpec headers(String... namesAndValues) {
+        this.headers = Headers.of(namesAndValues);
+        return this;
+    }
+
+    public ServiceMethodSpec contentType(String contentType) {
+        this.contentType = MediaType.get(contentType);
+        return this;
+    }
+
+    public ServiceMethodSpec formUrlEncoded() {
+        this.isFormEncoded = true;
+        return this;
+    }
+
+    public ServiceMethodSpec multipart() {
+        this.isMultipart = true;
+        return this;
+    }
+
+    // The following methods describe the method's parameters, in order.
+
+    public ServiceMethodSpec url() {
+        return add(Kind.URL, null, false, null);
+    }
+
+    public ServiceMethodSpec path(String name, boolean encoded) {
+        return add(Kind.PATH, name, encoded, null);
+    }
+
+    public ServiceMethodSpec query(String name, boolean encoded) {
+        return add(Kind.QUERY, name, encoded, null);
+    }
+
+    public ServiceMethodSpec queryName(boolean encoded) {
+        return add(Kind.QUERY_NAME, null, encoded, null);
+    }
+
+    public ServiceMethodSpec queryMap(boolean encoded) {
+        return add(Kind.QUERY_MAP, null, encoded, null);
+    }
+
+    public ServiceMethodSpec header(String name) {
+        return add(Kind.HEADER, name, false, null);
+    }
+
+    public ServiceMethodSpec headerMap() {
+        return add(Kind.HEADER_MAP, null, false, null);
+    }
+
+    public ServiceMethodSpec field(String name, boolean encoded) {
+        return add(Kind.FIELD, name, encoded, null);
+    }
+
+    public ServiceMethodSpec fieldMap(boolean encoded) {
+        return add(Kind.FIELD_MAP, null, encoded, null);
+    }
+
+    /**
+     * Adds a {@link retrofit2.http.Part @Part}. Parts of type {@code MultipartBody.Part} have an
+     * empty name.
+     */
+    public ServiceMethodSpec part(String name, String encoding) {
+        return add(Kind.PART, name, false, encoding);
+    }
+
+    public ServiceMethodSpec partMap(String encoding) {
+        return add(Kind.PART_MAP, null, false, encoding);
+    }
+
+    public ServiceMethodSpec body() {
+        return add(Kind.BODY, null, false, null);
+    }
+
+    public ServiceMethodSpec tag() {
+        return add(Kind.TAG, null, false, null);
+    }
+
+    /**
+     * Adds the {@code Continuation} parameter of a Kotlin suspend function. It must be last.
+     */
+    public ServiceMethodSpec continuation() {
+        return add(Kind.CONTINUATION, null, false, null);
+    }
+
+    private ServiceMethodSpec add(
+            Kind kind, @Nullable String name, boolean encoded, @Nullable String encoding) {
+        parameters.add(new Parameter(kind, name, encoded, encoding));
+        return this;
+    }
+
+    /**
+     * Returns an invoker that calls this method on {@code retrofit}. If {@code retrofit}
+     * {@linkplain Retrofit.Builder#validateEagerly validates eagerly} the service method is created
+     * immediately.
+     */
+    public Invoker bind(Retrofit retrofit) {
+        return new Invoker(retrofit, this);
+    }
+
+    Method method() {
+        Method result = method;
+        if (result == null) {
+            try {
+                result = service.getDeclaredMethod(methodName, parameterTypes);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException(
+                        "Generated code for " + service.getName() + " is out of date", e);
+            }
+            method = result;
+        }
+        return result;
+    }
+
+    ServiceMethod<?> toServiceMethod(Retrofit retrofit, Method method) {
+        Type[] types = method.getGenericParameterTypes();
+        Annotation[][] annotations = method.getParameterAnnotations();
+        Annotation[] methodAnnotations = method.getAnnotations();
+
+        ParameterHandler<?>[] handlers = new ParameterHandler<?>[parameters.size()];
+        boolean isKotlinSuspendFunction = false;
+        for (int p = 0; p < handlers.length; p++) {
+            Parameter parameter = parameters.get(p);
+            if (parameter.kind == Kind.CONTINUATION) {
+                isKotlinSuspendFunction = true;
+                continue;
+            }
+            handlers[p] = handler(retrofit, method, p, parameter, types[p], annotations[p],
+                    methodAnnotations);
+        }
+
+        RequestFactory requestFactory = new RequestFactory(method, retrofit.baseUrl, httpMethod,
+                relativeUrl, headers, contentType, hasBody, isFormEncoded, isMultipart, handlers,
+                isKotlinSuspendFunction);
+        return HttpServiceMethod.parseAnnotations(retrofit, method, requestFactory);
+    }
+
+    private static ParameterHandler<?> handler(Retrofit retrofit, Method method, int p,
+                                               Parameter parameter, Type type,
+                                               Annotation[] annotations,
+                                               Annotation[] methodAnnotations) {
+        String name = parameter.name;
+        boolean encoded = parameter.encoded;
+        switch (parameter.kind) {
+            case URL:
+                return new ParameterHandler.RelativeUrl(method, p);
+
+            case PATH:
+                return new ParameterHandler.Path<>(method, p, name,
+                        retrofit.stringConverter(type, annotations), encoded);
+
+            case QUERY: {
+                Converter<?, String> converter =
+                        retrofit.stringConverter(elementType(type), annotations);
+                return repeated(new ParameterHandler.Query<>(name, converter, encoded), type);
+            }
+
+            case QUERY_NAME: {
+                Converter<?, String> converter =
+                        retrofit.stringConverter(elementType(type), annotations);
+                return repeated(new ParameterHandler.QueryName<>(converter, encoded), type);
+            }
+
+            case QUERY_MAP: {
+                Converter<?, String> converter =
+                        retrofit.stringConverter(mapValueType(type), annotations);
+                return new ParameterHandler.QueryMap<>(method, p, converter, encoded);
+            }
+
+            case HEADER: {
+                Converter<?, String> converter =
+                        retrofit.stringConverter(elementType(type), annotations);
+                return repeated(new ParameterHandler.Header<>(name, converter), type);
+            }
+
+            case HEADER_MAP: {
+                if (type == Headers.class) {
+                    return new ParameterHandler.Headers(method, p);
+                }
+                Converter<?, String> converter =
+                        retrofit.stringConverter(mapValueType(type), annotations);
+                return new ParameterHandler.HeaderMap<>(method, p, converter);
+            }
+
+            case FIELD: {
+                Converter<?, String> converter =
+                        retrofit.stringConverter(elementType(type), annotations);
+                return repeated(new ParameterHandler.Field<>(name, converter, encoded), type);
+            }
+
+            case FIELD_MAP: {
+                Converter<?, String> converter =
+                        retrofit.stringConverter(mapValueType(type), annotations);
+                return new ParameterHandler.FieldMap<>(method, p, converter, encoded);
+            }
+
+            case PART: {
+                if (name.isEmpty()) {
+                    return repeated(ParameterHandler.RawPart.INSTANCE, type);
+                }
+                Headers headers = Headers.of(
+                        "Content-Disposition", "form-data; name=\"" + name + "\"",
+                        "Content-Transfer-Encoding", parameter.encoding);
+                Converter<?, RequestBody> converter = retrofit.requestBodyConverter(
+                        elementType(type), annotations, methodAnnotations);
+                return repeated(new ParameterHandler.Part<>(method, p, headers, converter), type);
+            }
+
+            case PART_MAP: {
+                Converter<?, RequestBody> converter = retrofit.requestBodyConverter(
+                        mapValueType(type), annotations, methodAnnotations);
+                return new ParameterHandler.PartMap<>(method, p, converter, parameter.encoding);
+            }
+
+            case BODY: {
+                Converter<?, RequestBody> converter;
+                try {
+                    converter = retrofit.requestBodyConverter(type, annotations, methodAnnotations);
+                } catch (RuntimeException e) {
+                    // Wide exception range because factories are user code.
+                    throw parameterError(method, e, p,
+                            "Unable to create @Body converter for %s", type);
+                }
+                return new ParameterHandler.Body<>(method, p, converter);
+            }
+
+            case TAG:
+                return new ParameterHandler.Tag<>(Utils.getRawType(type));
+
+            default:
+                throw new AssertionError(parameter.kind);
+        }
+    }
+
+    /**
+     * Returns the type of the elements of {@code type} if it is an iterable or an array, and {@code
+     * type} itself otherwise.
+     */
+    private static Type elementType(Type type) {
+        Class<?> rawType = Utils.getRawType(type);
+        if (Iterable.class.isAssignableFrom(rawType)) {
+            return Utils.getParameterUpperBound(0, (ParameterizedType) type);
+        }
+        if (rawType.isArray()) {
+            return RequestFactory.Builder.boxIfPrimitive(rawType.getComponentType());
+        }
+        return type;
+    }
+
+    /**
+     * Returns a handler that applies {@code handler} to each element of {@code type} if it is an
+     * iterable or an array.
+     */
+    private static ParameterHandler<?> repeated(ParameterHandler<?> handler, Type type) {
+        Class<?> rawType = Utils.getRawType(type);
+        if (Iterable.class.isAssignableFrom(rawType)) return handler.iterable();
+        if (rawType.isArray()) return handler.array();
+        return handler;
+    }
+
+    private static Type mapValueType(Type type) {
+        Type mapType = Utils.getSupertype(type, Utils.getRawType(type), Map.class);
+        return Utils.getParameterUpperBound(1, (ParameterizedType) mapType);
+    }
+
+    /**
+     * Calls a service method on one {@link Retrofit} instance. The service method is created on the
+     * first call and shared with proxies that {@link Retrofit#create} returns.
+     */
+    public static final class Invoker {
+        private final Retrofit retrofit;
+        private final ServiceMethodSpec spec;
+        private volatile @Nullable
+        ServiceMethod<?> serviceMethod;
+
+        Invoker(Retrofit retrofit, ServiceMethodSpec spec) {
+            this.retrofit = retrofit;
+            this.spec = spec;
+            if (retrofit.validateEagerly) {
+                serviceMethod();
+            }
+        }
+
+        public @Nullable
+        Object invoke(Object[] args) {
+            return serviceMethod().invoke(args);
+        }
+
+        private ServiceMethod<?> serviceMethod() {
+            ServiceMethod<?> result = serviceMethod;
+            if (result == null) {
+                result = retrofit.loadServiceMethod(spec.method(), spec);
+                serviceMethod = result;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+
+import javax.annotation.Nullable;
+
+/**
+ * A relative URL split into literal text and {@code {name}} replace blocks. Templates are parsed
+ * once per service method so that each call can build its URL in one pass, without searching the
+ * URL for each path parameter.
+ */
+final class UrlTemplate {
+    /**
+     * The text before, between and after the replace blocks. This has one more element than
+     * {@link #blockNameIndexes}.
+     */
+    final String[] literals;
+    /**
+     * For each replace block, the index of its name in {@link #names}.
+     */
+    final int[] blockNameIndexes;
+    /**
+     * The unique parameter names, in the order they first appear.
+     */
+    final String[] names;
+    private final int literalsLength;
+
+    private UrlTemplate(String[] literals, int[] blockNameIndexes, String[] names) {
+        this.literals = literals;
+        this.blockNameIndexes = blockNameIndexes;
+        this.names = names;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalsLength = length;
+    }
+
+    /**
+     * Returns the template for {@code relativeUrl}, or null if it has no replace blocks.
+     */
+    static @Nullable
+    UrlTemplate parse(@Nullable String relativeUrl) {
+        if (relativeUrl == null) return null;
+
+        Matcher matcher = RequestFactory.Builder.PARAM_URL_REGEX.matcher(relativeUrl);
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<Integer> blockNameIndexes = new ArrayList<>();
+        int pos = 0;
+        while (matcher.find()) {
+            literals.add(relativeUrl.substring(pos, matcher.start()));
+            String name = matcher.group(1);
+            int nameIndex = names.indexOf(name);
+            if (nameIndex == -1) {
+                nameIndex = names.size();
+                names.add(name);
+            }
+            blockNameIndexes.add(nameIndex);
+            pos = matcher.end();
+        }
+        if (names.isEmpty()) return null;
+        literals.add(relativeUrl.substring(pos));
+
+        int[] indexes = new int[blockNameIndexes.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = blockNameIndexes.get(i);
+        }
+        return new UrlTemplate(literals.toArray(new String[0]), indexes,
+                names.toArray(new String[0]));
+    }
+
+    /**
+     * Returns the index of {@code name} in {@link #names}, or -1 if this has no such block.
+     */
+    int indexOf(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a builder large enough for this template with {@code values} substituted, assuming
+     * they don't need to be percent-encoded.
+     */
+    StringBuilder newBuilder(String[] values) {
+        int length = literalsLength;
+        for (int index : blockNameIndexes) {
+            String value = values[index];
+            length += value != null ? value.length() : names[index].length() + 2;
+        }
+        return new StringBuilder(length);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit2;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+/**
+ * The progress of loading service methods ahead of their first call. Create instances with
+ * {@link Retrofit#warmUp}.
+ * <p>
+ * Each method is loaded by its own task, so methods are parsed in parallel when the executor has
+ * multiple threads. Calls to a service method that is still loading wait for that method only.
+ */
+public final class WarmUp {
+    private final List<Method> methods;
+    private final ConcurrentLinkedQueue<Timing> timings = new ConcurrentLinkedQueue<>();
+    private final CountDownLatch remaining;
+
+    WarmUp(List<Method> methods) {
+        this.methods = Collections.unmodifiableList(methods);
+        this.remaining = new CountDownLatch(methods.size());
+    }
+
+    /**
+     * The service methods being loaded.
+     */
+    public List<Method> methods() {
+        return methods;
+    }
+
+    /**
+     * Returns true once every method has been loaded or has failed to load.
+     */
+    public boolean isDone() {
+        return remaining.getCount() == 0;
+    }
+
+    /**
+     * Blocks until every method has been loaded or has failed to load.
+     */
+    public void await() throws InterruptedException {
+        remaining.await();
+    }
+
+    /**
+     * Blocks until every method has been loaded or has failed to load, or until {@code timeout}
+     * elapses. Returns true if the warm-up finished.
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return remaining.await(timeout, unit);
+    }
+
+    /**
+     * Returns the timings of the methods that have finished so far, in the order they finished.
+     */
+    public List<Timing> timings() {
+        return Collections.unmodifiableList(new ArrayList<>(timings));
+    }
+
+    /**
+     * Returns the timings of the methods that failed to load. Their errors are thrown again when
+     * the methods are first called.
+     */
+    public List<Timing> failures() {
+        List<Timing> result = new ArrayList<>();
+        for (Timing timing : timings) {
+            if (timing.failure != null) result.add(timing);
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    Runnable task(final Retrofit retrofit, final Method method) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                Throwable failure = null;
+                long start = System.nanoTime();
+                try {
+                    retrofit.loadServiceMethod(method);
+                } catch (Throwable t) {
+                    failure = t;
+                } finally {
+                    timings.add(new Timing(method, System.nanoTime() - start, failure));
+                    remaining.countDown();
+                }
+            }
+        };
+    }
+
+    /**
+     * How long it took to load one service method.
+     */
+    public static final class Timing {
+        private final Method method;
+        private final long durationNanos;
+        private final @Nullable
+        Throwable failure;
+
+        Timing(Method method, long durationNanos, @Nullable Throwable failure) {
+            this.method = method;
+            this.durationNanos = durationNanos;
+            this.failure = failure;
+        }
+
+        public Method method() {
+            return method;
+        }
+
+        /**
+         * The time spent loading the method. This is close to zero if the method was already
+         * loaded, and includes any time spent waiting for another thread that was loading it.
+         */
+        public long durationNanos() {
+            return durationNanos;
+        }
+
+        /**
+         * The exception thrown while loading the method, or null if it loaded successfully.
+         */
+        public @Nullable
+        Throwable failure() {
+            return failure;
+        }
+
+        @Override
+        public String toString() {
+            return method.getDeclaringClass().getName() + "." + method.getName() + " "
+                    + TimeUnit.NANOSECONDS.toMicros(durationNanos) + "us"
+                    + (failure != null ? " failed: " + failure : "");
+        }
+    }
+}
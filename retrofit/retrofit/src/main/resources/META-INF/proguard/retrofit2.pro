@@ -27,3 +27,23 @@
 # and replaces all potential values with null. Explicitly keeping the interfaces prevents this.
 -if interface * { @retrofit2.http.* <methods>; }
 -keep,allowobfuscation interface <1>
+
+# Retrofit.create looks up implementations generated by retrofit-compiler by name. Generated
+# classes are named after their interfaces, so neither can be renamed. A nested interface's
+# generated class replaces each '$' in its name with '_'. The processor also writes exact rules for
+# each generated class, which cover names that contain '_' when the services are in a library.
+-keepclasseswithmembers class **.Retrofit_* {
+    <init>(retrofit2.Retrofit);
+}
+-if class **.Retrofit_* {
+    <init>(retrofit2.Retrofit);
+}
+-keepnames interface <1>.<2>
+-if class **.Retrofit_*_* {
+    <init>(retrofit2.Retrofit);
+}
+-keepnames interface <1>.<2>$<3>
+-if class **.Retrofit_*_*_* {
+    <init>(retrofit2.Retrofit);
+}
+-keepnames interface <1>.<2>$<3>$<4>
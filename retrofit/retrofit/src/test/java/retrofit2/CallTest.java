@@ -19,9 +19,13 @@ import org.junit.Rule;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -87,6 +91,100 @@ public final class CallTest {
         assertThat(response.body()).isEqualTo("Hi");
     }
 
+    @Test
+    public void http200AsyncOnCallExecutor() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor(
+                runnable -> new Thread(runnable, "call executor"));
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(new ToStringConverterFactory())
+                .callExecutor(executor)
+                .build();
+        Service example = retrofit.create(Service.class);
+
+        server.enqueue(new MockResponse().setBody("Hi"));
+
+        final AtomicReference<Response<String>> responseRef = new AtomicReference<>();
+        final AtomicReference<String> threadRef = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        example.getString().enqueue(new Callback<String>() {
+            @Override
+            public void onResponse(Call<String> call, Response<String> response) {
+                responseRef.set(response);
+                threadRef.set(Thread.currentThread().getName());
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(Call<String> call, Throwable t) {
+                t.printStackTrace();
+            }
+        });
+        assertTrue(latch.await(10, SECONDS));
+        executor.shutdown();
+
+        Response<String> response = responseRef.get();
+        assertThat(response.body()).isEqualTo("Hi");
+        assertThat(threadRef.get()).isEqualTo("call executor");
+    }
+
+    @Test
+    public void transportProblemAsyncOnCallExecutor() throws InterruptedException {
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(new ToStringConverterFactory())
+                .callExecutor(Runnable::run)
+                .build();
+        Service example = retrofit.create(Service.class);
+
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+
+        final AtomicReference<Throwable> failureRef = new AtomicReference<>();
+        example.getString().enqueue(new Callback<String>() {
+            @Override
+            public void onResponse(Call<String> call, Response<String> response) {
+                throw new AssertionError();
+            }
+
+            @Override
+            public void onFailure(Call<String> call, Throwable t) {
+                failureRef.set(t);
+            }
+        });
+        // A direct executor runs the call before enqueue returns.
+        assertThat(failureRef.get()).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void rejectedByCallExecutor() {
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(new ToStringConverterFactory())
+                .callExecutor(command -> {
+                    throw new RejectedExecutionException();
+                })
+                .build();
+        Service example = retrofit.create(Service.class);
+
+        final AtomicReference<Throwable> failureRef = new AtomicReference<>();
+        example.getString().enqueue(new Callback<String>() {
+            @Override
+            public void onResponse(Call<String> call, Response<String> response) {
+                throw new AssertionError();
+            }
+
+            @Override
+            public void onFailure(Call<String> call, Throwable t) {
+                failureRef.set(t);
+            }
+        });
+        assertThat(failureRef.get())
+                .isInstanceOf(InterruptedIOException.class)
+                .hasMessage("executor rejected")
+                .hasCauseInstanceOf(RejectedExecutionException.class);
+        assertThat(server.getRequestCount()).isZero();
+    }
+
     @Test
     public void http200Async() throws InterruptedException {
         Retrofit retrofit = new Retrofit.Builder()
@@ -27,6 +27,7 @@ import retrofit2.http.GET;
 import retrofit2.http.Query;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 public final class Java8DefaultMethodsTest {
     @Rule
@@ -39,6 +40,14 @@ public final class Java8DefaultMethodsTest {
         default Call<String> user() {
             return user("hey");
         }
+
+        default int add(int a, long b, Integer c) {
+            return (int) (a + b + c);
+        }
+
+        default void check(String name) throws IOException {
+            throw new IOException(name);
+        }
     }
 
     @Test
@@ -57,4 +66,22 @@ public final class Java8DefaultMethodsTest {
         Response<String> response2 = example.user("Hi").execute();
         assertThat(response2.body()).isEqualTo("Hi");
     }
+
+    @Test
+    public void defaultMethodArgumentsAndReturnTypes() {
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(new ToStringConverterFactory())
+                .build();
+        Example example = retrofit.create(Example.class);
+
+        assertThat(example.add(1, 2L, 3)).isEqualTo(6);
+        assertThat(example.add(4, 5L, 6)).isEqualTo(15);
+        try {
+            example.check("Hi");
+            fail();
+        } catch (IOException e) {
+            assertThat(e).hasMessage("Hi");
+        }
+    }
 }
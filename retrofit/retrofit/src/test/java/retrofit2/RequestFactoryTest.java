@@ -984,6 +984,33 @@ public final class RequestFactoryTest {
         assertThat(request.body()).isNull();
     }
 
+    @Test
+    public void getWithRepeatedPathParam() {
+        class Example {
+            @GET("/foo/{ping}/bar/{ping}/{pong}")
+                //
+            Call<ResponseBody> method(@Path("ping") String ping, @Path("pong") String pong) {
+                return null;
+            }
+        }
+        Request request = buildRequest(Example.class, "a b", "c");
+        assertThat(request.url().toString()).isEqualTo("http://example.com/foo/a%20b/bar/a%20b/c");
+    }
+
+    @Test
+    public void getWithNonAsciiPathParam() {
+        class Example {
+            @GET("/foo/{ping}/")
+                //
+            Call<ResponseBody> method(@Path("ping") String ping) {
+                return null;
+            }
+        }
+        Request request = buildRequest(Example.class, "caf\u00e9 \ud83c\udf69\ud83c");
+        assertThat(request.url().encodedPath())
+                .isEqualTo("/foo/caf%C3%A9%20%F0%9F%8D%A9%3F/");
+    }
+
     @Test
     public void getWithEncodedPathParam() {
         class Example {
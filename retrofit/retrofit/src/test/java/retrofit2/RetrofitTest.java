@@ -25,11 +25,13 @@ import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -115,6 +117,11 @@ public final class RetrofitTest {
     interface ExtendingTypeParam extends TypeParam<String> {
     }
 
+    interface StringCallMethod {
+        @GET("/")
+        Call<String> get();
+    }
+
     interface StringService {
         @GET("/")
         String get();
@@ -262,6 +269,7 @@ public final class RetrofitTest {
                 .addConverterFactory(converter)
                 .baseUrl(baseUrl)
                 .callbackExecutor(executor)
+                .callExecutor(executor)
                 .callFactory(callFactory)
                 .build();
 
@@ -284,6 +292,7 @@ public final class RetrofitTest {
         assertThat(two.converterFactories()).contains(converter, converter2);
         assertSame(baseUrl, two.baseUrl());
         assertSame(executor, two.callbackExecutor());
+        assertSame(executor, two.callExecutor());
         assertSame(callFactory, two.callFactory());
     }
 
@@ -381,6 +390,142 @@ public final class RetrofitTest {
         }
     }
 
+    @Test
+    public void warmUpLoadsServiceMethodsOnExecutor() throws Exception {
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .build();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            WarmUp warmUp = retrofit.warmUp(executor, CallMethod.class, VoidService.class);
+            assertThat(warmUp.methods()).hasSize(11);
+            assertTrue(warmUp.await(10, TimeUnit.SECONDS));
+            assertThat(warmUp.isDone()).isTrue();
+
+            assertThat(warmUp.timings()).hasSize(11);
+            for (WarmUp.Timing timing : warmUp.timings()) {
+                assertThat(timing.durationNanos()).isGreaterThanOrEqualTo(0L);
+            }
+            Set<String> failed = new LinkedHashSet<>();
+            for (WarmUp.Timing failure : warmUp.failures()) {
+                failed.add(failure.method().getName());
+                assertThat(failure.failure()).isInstanceOf(IllegalArgumentException.class);
+            }
+            assertThat(failed).containsExactlyInAnyOrder("disallowed", "badType1", "badType2",
+                    "nope");
+        } finally {
+            executor.shutdown();
+        }
+
+        // Failures are reported again when the method is called.
+        try {
+            retrofit.create(VoidService.class).nope();
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e).hasMessageStartingWith("Service methods cannot return void.");
+        }
+    }
+
+    @Test
+    public void warmUpDoesNotBlockOtherMethods() throws Exception {
+        final CountDownLatch converterRequested = new CountDownLatch(1);
+        final CountDownLatch releaseConverter = new CountDownLatch(1);
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(new Converter.Factory() {
+                    @Override
+                    public @Nullable
+                    Converter<ResponseBody, ?> responseBodyConverter(Type type,
+                            Annotation[] annotations, Retrofit retrofit) {
+                        converterRequested.countDown();
+                        try {
+                            releaseConverter.await();
+                        } catch (InterruptedException e) {
+                            throw new AssertionError(e);
+                        }
+                        return new ToStringConverterFactory()
+                                .responseBodyConverter(type, annotations, retrofit);
+                    }
+                })
+                .build();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            WarmUp warmUp = retrofit.warmUp(executor, StringCallMethod.class);
+            assertTrue(converterRequested.await(10, TimeUnit.SECONDS));
+
+            // Loading an unrelated method doesn't wait for the slow one.
+            CallMethod example = retrofit.create(CallMethod.class);
+            assertThat(example.getResponseBody()).isNotNull();
+            assertThat(warmUp.isDone()).isFalse();
+
+            releaseConverter.countDown();
+            assertTrue(warmUp.await(10, TimeUnit.SECONDS));
+            assertThat(warmUp.failures()).isEmpty();
+        } finally {
+            releaseConverter.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void concurrentCallersOfOneMethodShareItsParse() throws Exception {
+        final AtomicInteger converterRequests = new AtomicInteger();
+        final CountDownLatch converterRequested = new CountDownLatch(1);
+        final CountDownLatch releaseConverter = new CountDownLatch(1);
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(new Converter.Factory() {
+                    @Override
+                    public @Nullable
+                    Converter<ResponseBody, ?> responseBodyConverter(Type type,
+                            Annotation[] annotations, Retrofit retrofit) {
+                        converterRequests.incrementAndGet();
+                        converterRequested.countDown();
+                        try {
+                            releaseConverter.await();
+                        } catch (InterruptedException e) {
+                            throw new AssertionError(e);
+                        }
+                        return new ToStringConverterFactory()
+                                .responseBodyConverter(type, annotations, retrofit);
+                    }
+                })
+                .build();
+        final StringCallMethod example = retrofit.create(StringCallMethod.class);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Call<String>> first = executor.submit(example::get);
+            assertTrue(converterRequested.await(10, TimeUnit.SECONDS));
+            Future<Boolean> waiterInterrupted = executor.submit(() -> {
+                // Waiting for the other thread's parse survives interruption.
+                Thread.currentThread().interrupt();
+                example.get();
+                return Thread.interrupted();
+            });
+
+            releaseConverter.countDown();
+            assertThat(first.get(10, TimeUnit.SECONDS)).isNotNull();
+            assertThat(waiterInterrupted.get(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(converterRequests.get()).isEqualTo(1);
+        } finally {
+            releaseConverter.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void warmUpRejectsInvalidInterfaces() {
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .build();
+        try {
+            retrofit.warmUp(Executors.newSingleThreadExecutor(), String.class);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e).hasMessage("API declarations must be interfaces.");
+        }
+    }
+
     @Test
     public void callCallAdapterAddedByDefault() {
         Retrofit retrofit = new Retrofit.Builder()
@@ -1533,6 +1678,24 @@ public final class RetrofitTest {
         assertThat(retrofit.callbackExecutor()).isSameAs(executor);
     }
 
+    @Test
+    public void callExecutorNullThrows() {
+        try {
+            new Retrofit.Builder().callExecutor(null);
+            fail();
+        } catch (NullPointerException e) {
+            assertThat(e).hasMessage("executor == null");
+        }
+    }
+
+    @Test
+    public void callExecutorDefaultsToNull() {
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl("http://example.com/")
+                .build();
+        assertThat(retrofit.callExecutor()).isNull();
+    }
+
     @Test
     public void callbackExecutorUsedForSuccess() throws InterruptedException {
         final CountDownLatch runnableLatch = new CountDownLatch(1);
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2019 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit2;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.helpers.ToStringConverterFactory;
+import retrofit2.http.Body;
+import retrofit2.http.Field;
+import retrofit2.http.FieldMap;
+import retrofit2.http.FormUrlEncoded;
+import retrofit2.http.GET;
+import retrofit2.http.Header;
+import retrofit2.http.POST;
+import retrofit2.http.Path;
+import retrofit2.http.Query;
+
+import static java.util.Collections.singletonMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class ServiceMethodSpecTest {
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    interface Service {
+        @GET("users/{user}/repos")
+        Call<String> repos(@Path("user") String user, @Query("sort") List<String> sort,
+                           @Header("Accept") String accept);
+
+        @POST("echo")
+        Call<String> echo(@Body String body);
+
+        @FormUrlEncoded
+        @POST("form")
+        Call<String> form(@Field("a") int[] a, @FieldMap Map<String, String> fields);
+
+        @GET("unconvertible")
+        Call<Object> unconvertible();
+
+        default Call<String> defaultMethod() {
+            return echo("default");
+        }
+    }
+
+    @Test
+    public void generatedClassName() {
+        assertThat(ServiceMethodSpec.generatedClassName(Service.class))
+                .isEqualTo("retrofit2.Retrofit_ServiceMethodSpecTest_Service");
+        assertThat(ServiceMethodSpec.generatedClassName(Retrofit.class))
+                .isEqualTo("retrofit2.Retrofit_Retrofit");
+    }
+
+    @Test
+    public void createUsesGeneratedImplementation() throws IOException, InterruptedException {
+        Retrofit retrofit = retrofit(false);
+        Service service = retrofit.create(Service.class);
+        assertThat(service).isInstanceOf(Retrofit_ServiceMethodSpecTest_Service.class);
+
+        server.enqueue(new MockResponse().setBody("repos"));
+        Call<String> call = service.repos("jake", Arrays.asList("name", "date"), "text/plain");
+        assertThat(call.execute().body()).isEqualTo("repos");
+        RecordedRequest request = server.takeRequest();
+        assertThat(request.getMethod()).isEqualTo("GET");
+        assertThat(request.getPath()).isEqualTo("/users/jake/repos?sort=name&sort=date");
+        assertThat(request.getHeader("Accept")).isEqualTo("text/plain");
+
+        Invocation invocation = call.request().tag(Invocation.class);
+        assertThat(invocation.method().getName()).isEqualTo("repos");
+        assertThat(invocation.arguments()).isEqualTo(
+                Arrays.<Object>asList("jake", Arrays.asList("name", "date"), "text/plain"));
+    }
+
+    @Test
+    public void bodiesAndFields() throws IOException, InterruptedException {
+        Service service = retrofit(false).create(Service.class);
+
+        server.enqueue(new MockResponse().setBody("echo"));
+        assertThat(service.defaultMethod().execute().body()).isEqualTo("echo");
+        assertThat(server.takeRequest().getBody().readUtf8()).isEqualTo("default");
+
+        server.enqueue(new MockResponse().setBody("form"));
+        service.form(new int[]{1, 2}, singletonMap("b", "c")).execute();
+        RecordedRequest request = server.takeRequest();
+        assertThat(request.getHeader("Content-Type"))
+                .isEqualTo("application/x-www-form-urlencoded");
+        assertThat(request.getBody().readUtf8()).isEqualTo("a=1&a=2&b=c");
+    }
+
+    @Test
+    public void generatedAndProxyImplementationsShareServiceMethods() throws Exception {
+        Retrofit retrofit = retrofit(false);
+        Service service = retrofit.create(Service.class);
+        server.enqueue(new MockResponse());
+        service.echo("a").execute();
+
+        ServiceMethod<?> serviceMethod =
+                retrofit.loadServiceMethod(Service.class.getDeclaredMethod("echo", String.class));
+        assertThat(serviceMethod).isInstanceOf(HttpServiceMethod.class);
+        assertThat(retrofit.loadServiceMethod(
+                Service.class.getDeclaredMethod("echo", String.class))).isSameAs(serviceMethod);
+    }
+
+    @Test
+    public void serviceMethodsAreCreatedOnFirstCall() {
+        Service service = retrofit(false).create(Service.class);
+        try {
+            service.unconvertible();
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected).hasMessageStartingWith(
+                    "Unable to create converter for class java.lang.Object");
+        }
+    }
+
+    @Test
+    public void validateEagerlyCreatesServiceMethods() {
+        try {
+            retrofit(true).create(Service.class);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected).hasMessageStartingWith(
+                    "Unable to create converter for class java.lang.Object");
+        }
+    }
+
+    private Retrofit retrofit(boolean validateEagerly) {
+        return new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(new ToStringConverterFactory())
+                .validateEagerly(validateEagerly)
+                .build();
+    }
+}
+
+/**
+ * The implementation of {@link ServiceMethodSpecTest.Service} as the annotation processor would
+ * generate it.
+ */
+@SuppressWarnings("unchecked")
+final class Retrofit_ServiceMethodSpecTest_Service implements ServiceMethodSpecTest.Service {
+    private static final ServiceMethodSpec REPOS =
+            new ServiceMethodSpec(ServiceMethodSpecTest.Service.class, "repos",
+                    String.class, List.class, String.class)
+                    .request("GET", "users/{user}/repos", false)
+                    .path("user", false)
+                    .query("sort", false)
+                    .header("Accept");
+    private static final ServiceMethodSpec ECHO =
+            new ServiceMethodSpec(ServiceMethodSpecTest.Service.class, "echo", String.class)
+                    .request("POST", "echo", true)
+                    .body();
+    private static final ServiceMethodSpec FORM =
+            new ServiceMethodSpec(ServiceMethodSpecTest.Service.class, "form", int[].class,
+                    Map.class)
+                    .request("POST", "form", true)
+                    .formUrlEncoded()
+                    .field("a", false)
+                    .fieldMap(false);
+    private static final ServiceMethodSpec UNCONVERTIBLE =
+            new ServiceMethodSpec(ServiceMethodSpecTest.Service.class, "unconvertible")
+                    .request("GET", "unconvertible", false);
+
+    private final ServiceMethodSpec.Invoker repos;
+    private final ServiceMethodSpec.Invoker echo;
+    private final ServiceMethodSpec.Invoker form;
+    private final ServiceMethodSpec.Invoker unconvertible;
+
+    Retrofit_ServiceMethodSpecTest_Service(Retrofit retrofit) {
+        this.repos = REPOS.bind(retrofit);
+        this.echo = ECHO.bind(retrofit);
+        this.form = FORM.bind(retrofit);
+        this.unconvertible = UNCONVERTIBLE.bind(retrofit);
+    }
+
+    @Override
+    public Call<String> repos(String user, List<String> sort, String accept) {
+        return (Call<String>) this.repos.invoke(new Object[]{user, sort, accept});
+    }
+
+    @Override
+    public Call<String> echo(String body) {
+        return (Call<String>) this.echo.invoke(new Object[]{body});
+    }
+
+    @Override
+    public Call<String> form(int[] a, Map<String, String> fields) {
+        return (Call<String>) this.form.invoke(new Object[]{a, fields});
+    }
+
+    @Override
+    public Call<Object> unconvertible() {
+        return (Call<Object>) this.unconvertible.invoke(new Object[]{});
+    }
+}